@@ -0,0 +1,248 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>AsyncSolver</code> class solves puzzles in the background, returning a
+ * <code>CompletableFuture</code> of each <code>Solver.Result</code>, so that a server can fan out many
+ * solves per request without blocking its own threads on them.
+ * </p>
+ * <p>
+ * The solves run on a fixed number of threads, each with its own <code>Solver</code>, fed from a bounded
+ * queue. When the queue is full a solve is rejected at once, rather than waiting for room or running on the
+ * caller's thread: its future is already completed exceptionally with a
+ * <code>RejectedExecutionException</code> when <code>solveAsync()</code> returns, so an overloaded server
+ * sheds load in microseconds and can answer accordingly. Rejections are counted in
+ * <code>Metrics.global()</code>, as are solves cancelled while still queued (as aborted), which are then
+ * never started.
+ * </p>
+ * <p>
+ * The futures compose with the stages either side of a solve, for example
+ * <code>CompletableFuture.supplyAsync(() -&gt; Sudoku.dataParse(file), solver.executor())
+ * .thenCompose(solver::solveAsync).thenApply(Solver.Result::toString)</code>, where the parse runs on the
+ * same bounded threads (and so is rejected in the same way) and the render on whichever completes the
+ * solve.
+ * </p>
+ * <p>
+ * The threads are created once, with the solver, so one should be kept for the life of the server (it is
+ * safe to call from any number of threads at once) and closed when finished with.
+ * </p>
+ */
+public final class AsyncSolver implements Closeable {
+
+    // The number of solves which can wait for a thread by default.
+    static final int DEFAULT_QUEUE = 1024;
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * <p>
+     * Create a solver with a thread per processor and a queue of <code>DEFAULT_QUEUE</code>.
+     * </p>
+     */
+    public AsyncSolver() {
+
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE);
+
+    }
+
+    /**
+     * <p>
+     * Create a solver.
+     * </p>
+     *
+     * @param threads  The number of threads to solve with.
+     * @param capacity The number of solves which can wait for a thread, beyond which they are rejected.
+     * @throws IllegalArgumentException If either is not positive.
+     */
+    public AsyncSolver(int threads, int capacity) {
+
+        if (threads < 1 || capacity < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid number of threads or queue capacity: " + threads + ", "
+                    + capacity);
+
+        }
+
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), runnable -> {
+
+            Thread thread = new Thread(runnable, "async-solver");
+
+            thread.setDaemon(true);
+
+            return thread;
+
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+    }
+
+    /**
+     * <p>
+     * The <code>executor()</code> method returns the bounded threads the solves run on, for stages to be
+     * composed with them.
+     * </p>
+     *
+     * @return The executor, which rejects work when its queue is full.
+     */
+    public Executor executor() {
+
+        return pool;
+
+    }
+
+    /**
+     * <p>
+     * The <code>queued()</code> method returns the number of solves waiting for a thread.
+     * </p>
+     *
+     * @return The number.
+     */
+    public int queued() {
+
+        return pool.getQueue().size();
+
+    }
+
+    /**
+     * <p>
+     * The <code>solveAsync()</code> method queues a puzzle in the shape returned by
+     * <code>Sudoku.dataParse()</code> to be solved.
+     * </p>
+     *
+     * @param data The puzzle, 9 rows of 9 digits (0 for empty), which is copied, so may be reused at once.
+     * @return The future result, completed exceptionally with a <code>RejectedExecutionException</code> if the
+     *         queue is full or the solver is closed.
+     * @throws IllegalArgumentException If the puzzle is not 9 x 9 or a digit is out of range.
+     */
+    public CompletableFuture<Solver.Result> solveAsync(int[][] data) {
+
+        return submit(copy(data), Long.MAX_VALUE);
+
+    }
+
+    /**
+     * <p>
+     * The <code>solveAsync()</code> method queues a puzzle in the shape returned by
+     * <code>Sudoku.dataParse()</code> to be solved within a time limit. The limit runs from now, not from
+     * when a thread takes the puzzle, so it includes any time spent queued.
+     * </p>
+     *
+     * @param data    The puzzle, 9 rows of 9 digits (0 for empty), which is copied, so may be reused at once.
+     * @param timeout The time limit.
+     * @param unit    The unit of the time limit.
+     * @return The future result, with the status <code>DEADLINE_EXCEEDED</code> if time ran out, or completed
+     *         exceptionally with a <code>RejectedExecutionException</code> if the queue is full or the solver
+     *         is closed.
+     * @throws IllegalArgumentException If the puzzle is not 9 x 9 or a digit is out of range.
+     */
+    public CompletableFuture<Solver.Result> solveAsync(int[][] data, long timeout, TimeUnit unit) {
+
+        return submit(copy(data), System.nanoTime() + unit.toNanos(timeout));
+
+    }
+
+    /**
+     * <p>
+     * Copy and check a puzzle on the caller's thread, so that a bad one fails where it was submitted.
+     * </p>
+     */
+    private static int[] copy(int[][] data) {
+
+        if (data.length != 9) {
+
+            throw new IllegalArgumentException("ERROR: Expected 9 rows, got " + data.length);
+
+        }
+
+        int[] cells = new int[81];
+
+        for (int r = 0; r < 9; r++) {
+
+            if (data[r].length != 9) {
+
+                throw new IllegalArgumentException("ERROR: Expected 9 columns in row " + r + ", got " + data[r].length);
+
+            }
+
+            for (int c = 0; c < 9; c++) {
+
+                if (data[r][c] < 0 || data[r][c] > 9) {
+
+                    throw new IllegalArgumentException("ERROR: Invalid digit at (" + r + ", " + c + "): " + data[r][c]);
+
+                }
+
+                cells[r * 9 + c] = data[r][c];
+
+            }
+
+        }
+
+        return cells;
+
+    }
+
+    private CompletableFuture<Solver.Result> submit(int[] cells, long deadline) {
+
+        CompletableFuture<Solver.Result> future = new CompletableFuture<>();
+
+        try {
+
+            pool.execute(() -> {
+
+                if (future.isDone()) {
+
+                    // Cancelled while queued.
+                    Metrics.global().aborted();
+
+                    return;
+
+                }
+
+                try {
+
+                    Solver solver = Solver.forCurrentThread();
+
+                    future.complete(deadline == Long.MAX_VALUE ? solver.solve(cells)
+                            : solver.solve(cells, deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+
+                } catch (RuntimeException | Error e) {
+
+                    future.completeExceptionally(e);
+
+                }
+
+            });
+
+        } catch (RejectedExecutionException e) {
+
+            Metrics.global().rejected();
+            future.completeExceptionally(e);
+
+        }
+
+        return future;
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method stops accepting puzzles, and lets those already queued finish.
+     * </p>
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+
+    }
+
+}
@@ -0,0 +1,321 @@
+package zone.otto;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * <p>
+ * The <code>BatchJob</code> class solves a file of puzzles into a file of results, one line per puzzle in
+ * the same order, and can be killed at any point and restarted without losing or duplicating a result.
+ * </p>
+ * <p>
+ * The puzzles are read with a <code>PuzzleReader</code>, so may be in any of its formats, most often one
+ * per line, 81 characters with <code>0</code> or <code>.</code> for empty cells. A puzzle's result line is
+ * the 81 digits of the solution, or <code>NO_SOLUTION</code>, <code>CONFLICTING_GIVENS</code> or
+ * <code>INVALID</code> if it is malformed (blank lines and comments are skipped, and have no result).
+ * </p>
+ * <p>
+ * Every <code>interval</code> puzzles (and at the end) the job makes the output written so far durable and
+ * then records how far it has got, as byte offsets into the input and output (and the input's format), in a
+ * sidecar checkpoint file next to the output, replacing the previous checkpoint atomically. On restart the
+ * output is truncated back to the checkpointed offset, discarding any results written after it, and the
+ * input is read on from its checkpointed offset, so those puzzles are simply solved again. A finished job
+ * leaves its checkpoint, so running it again does nothing (or carries on, if more puzzles have been
+ * appended to the input).
+ * </p>
+ */
+class BatchJob {
+
+    // The number of puzzles between checkpoints by default.
+    static final int DEFAULT_INTERVAL = 10_000;
+
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private static final String INPUT_OFFSET = "input.offset";
+    private static final String INPUT_FORMAT = "input.format";
+    private static final String OUTPUT_OFFSET = "output.offset";
+    private static final String COMPLETED = "completed";
+
+    private final Path input;
+    private final Path output;
+    private final Path checkpoint;
+    private final int interval;
+
+    /**
+     * <p>
+     * Create a job which checkpoints every <code>DEFAULT_INTERVAL</code> puzzles.
+     * </p>
+     *
+     * @param input  The puzzles.
+     * @param output The results, whose checkpoint is the same path with <code>CHECKPOINT_SUFFIX</code>.
+     */
+    BatchJob(Path input, Path output) {
+
+        this(input, output, DEFAULT_INTERVAL);
+
+    }
+
+    /**
+     * <p>
+     * Create a job.
+     * </p>
+     *
+     * @param input    The puzzles.
+     * @param output   The results, whose checkpoint is the same path with <code>CHECKPOINT_SUFFIX</code>.
+     * @param interval The number of puzzles between checkpoints.
+     * @throws IllegalArgumentException If the interval is not positive.
+     */
+    BatchJob(Path input, Path output, int interval) {
+
+        if (interval < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid checkpoint interval: " + interval);
+
+        }
+
+        this.input = input;
+        this.output = output;
+        this.checkpoint = output.resolveSibling(output.getFileName() + CHECKPOINT_SUFFIX);
+        this.interval = interval;
+
+    }
+
+    /**
+     * <p>
+     * The <code>checkpoint()</code> method returns the path of the job's checkpoint file.
+     * </p>
+     *
+     * @return The path.
+     */
+    Path checkpoint() {
+
+        return checkpoint;
+
+    }
+
+    /**
+     * <p>
+     * The <code>run()</code> method runs the job, from its last checkpoint if it has one, to the end of the
+     * input.
+     * </p>
+     *
+     * @return The total number of puzzles completed, including those before the checkpoint.
+     * @throws IOException If a file cannot be read or written, or the checkpoint doesn't match the files.
+     */
+    long run() throws IOException {
+
+        long inputOffset = 0;
+        long outputOffset = 0;
+        long completed = 0;
+        PuzzleReader.Format format = null;
+
+        if (Files.exists(checkpoint)) {
+
+            Properties state = new Properties();
+
+            try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+
+                state.load(reader);
+
+            }
+
+            try {
+
+                inputOffset = Long.parseLong(state.getProperty(INPUT_OFFSET));
+                outputOffset = Long.parseLong(state.getProperty(OUTPUT_OFFSET));
+                completed = Long.parseLong(state.getProperty(COMPLETED));
+
+                if (state.getProperty(INPUT_FORMAT) != null) {
+
+                    format = PuzzleReader.Format.valueOf(state.getProperty(INPUT_FORMAT));
+
+                }
+
+            } catch (IllegalArgumentException | NullPointerException e) {
+
+                throw new IOException("ERROR: Invalid checkpoint: " + checkpoint, e);
+
+            }
+
+        }
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            if (in.size() < inputOffset || out.size() < outputOffset) {
+
+                throw new IOException("ERROR: The checkpoint is beyond the end of the input or output: " + checkpoint);
+
+            }
+
+            // Anything after the checkpoint is discarded, and solved again.
+            out.truncate(outputOffset);
+            in.position(inputOffset);
+            out.position(outputOffset);
+
+            // The format is detected from the start of the input and kept in the checkpoint, as the rest of the
+            // input mightn't show it.
+            PuzzleReader reader = format == null ? new PuzzleReader(Channels.newInputStream(in), input.toString())
+                    : new PuzzleReader(Channels.newInputStream(in), input.toString(), format);
+            OutputStream writer = new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16);
+            Solver solver = Solver.forCurrentThread();
+            long start = inputOffset;
+            int[][] data = new int[9][9];
+            int[] cells = new int[81];
+            int[] solution = new int[81];
+            int pending = 0;
+
+            format = reader.format();
+
+            while (true) {
+
+                byte[] result;
+
+                try {
+
+                    if (!reader.read(data)) {
+
+                        break;
+
+                    }
+
+                    result = solve(data, cells, solution, solver);
+
+                } catch (PuzzleReader.MalformedPuzzleException e) {
+
+                    result = "INVALID".getBytes(StandardCharsets.US_ASCII);
+
+                }
+
+                inputOffset = start + reader.offset();
+
+                writer.write(result);
+                writer.write('\n');
+                outputOffset += result.length + 1;
+                completed++;
+
+                if (++pending == interval) {
+
+                    save(writer, out, inputOffset, format, outputOffset, completed);
+                    pending = 0;
+
+                }
+
+            }
+
+            // Anything after the last puzzle, such as comments, is consumed too.
+            inputOffset = start + reader.offset();
+
+            save(writer, out, inputOffset, format, outputOffset, completed);
+
+        }
+
+        return completed;
+
+    }
+
+    /**
+     * <p>
+     * Solve a puzzle, returning its result line.
+     * </p>
+     */
+    private static byte[] solve(int[][] data, int[] cells, int[] solution, Solver solver) {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            cells[cell] = data[cell / 9][cell % 9];
+
+        }
+
+        Solver.Status status = solver.solve(cells, solution);
+
+        if (status != Solver.Status.SOLVED) {
+
+            return status.name().getBytes(StandardCharsets.US_ASCII);
+
+        }
+
+        byte[] result = new byte[81];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            result[cell] = (byte) ('0' + solution[cell]);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * Make the output durable, then replace the checkpoint with one recording it.
+     * </p>
+     */
+    private void save(OutputStream writer, FileChannel out, long inputOffset, PuzzleReader.Format format,
+            long outputOffset, long completed) throws IOException {
+
+        writer.flush();
+        out.force(false);
+
+        Properties state = new Properties();
+
+        state.setProperty(INPUT_OFFSET, Long.toString(inputOffset));
+
+        // Until a puzzle has been read the format is only a guess (an empty input is taken to be LINE).
+        if (completed > 0) {
+
+            state.setProperty(INPUT_FORMAT, format.name());
+
+        }
+
+        state.setProperty(OUTPUT_OFFSET, Long.toString(outputOffset));
+        state.setProperty(COMPLETED, Long.toString(completed));
+
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+
+        StringWriter text = new StringWriter();
+
+        state.store(text, "Checkpoint of " + input + " -> " + output);
+
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+
+            while (bytes.hasRemaining()) {
+
+                file.write(bytes);
+
+            }
+
+            file.force(false);
+
+        }
+
+        try {
+
+            Files.move(temp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (AtomicMoveNotSupportedException e) {
+
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+
+        }
+
+    }
+
+}
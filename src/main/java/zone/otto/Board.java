@@ -0,0 +1,1169 @@
+package zone.otto;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * The <code>Board</code> class is a stateful, incrementally maintained Sudoku board, for callers (such as
+ * an interactive hint service) which make many small changes and query candidates after each one.
+ * </p>
+ * <p>
+ * Rather than recalculating candidates from scratch as <code>Sudoku.getValidSet()</code> does, the board
+ * keeps one bitmask per unit of the digits already used (bit <code>v</code> for digit <code>v</code>).
+ * Placing or erasing a digit updates the masks of the cell's units, and the candidates of a cell are
+ * simply the digits missing from all of them, so every move and every candidate query is O(1).
+ * </p>
+ * <p>
+ * The units come from a <code>Variant</code>, classic Sudoku (a row, column and box per cell) unless
+ * another is given. For a Killer variant the board also keeps each cage's remaining sum and empty cell
+ * count, and narrows the candidates of its cells to the digits which can still make up the sum.
+ * </p>
+ * <p>
+ * Cells are addressed by their flat index, <code>cell = r * 9 + c</code> (see <code>cell()</code>).
+ * Every <code>place()</code> and <code>erase()</code> is recorded so that it can be reverted with
+ * <code>undo()</code>.
+ * </p>
+ * <p>
+ * The board also keeps a Zobrist hash of its cells (the XOR of a fixed random key per cell and digit),
+ * updated with each move, which identifies the state for a <code>NogoodTable</code>.
+ * </p>
+ */
+class Board {
+
+    /**
+     * <p>
+     * The <code>ValueOrder</code> enum lists the orders in which a search can try the candidates of the
+     * cell it branches on.
+     * </p>
+     * <ul>
+     * <li><code>ASCENDING</code>: 1 to 9, as <code>Sudoku.getValidSet()</code> does.</li>
+     * <li><code>RANDOM</code>: a random shuffle, reproducible from the seed of the search's random source.</li>
+     * <li><code>LEAST_CONSTRAINING</code>: the digit which rules out the fewest candidates of the cell's
+     * empty peers first (ties broken randomly, if the search has a random source).</li>
+     * </ul>
+     */
+    enum ValueOrder {
+        ASCENDING, RANDOM, LEAST_CONSTRAINING
+    }
+
+    // The candidate mask of a cell with no constraints at all, i.e. digits 1 to 9.
+    static final int ALL = 0x3FE;
+
+    // The row, column and box of each cell.
+    static final int[] ROW = new int[81];
+    static final int[] COL = new int[81];
+    static final int[] BOX = new int[81];
+
+    // The 27 units (rows 0-8, columns 9-17, boxes 18-26) as flat cell indices, 9 per unit.
+    static final int[] UNITS = new int[27 * 9];
+
+    // The 20 peers (cells sharing a row, column or box) of each cell, 20 per cell.
+    static final int[] PEERS = new int[81 * 20];
+
+    // The Zobrist key of each digit in each cell, ZOBRIST[cell * 10 + v]. The seed is fixed, so hashes
+    // are the same from run to run.
+    static final long[] ZOBRIST = new long[81 * 10];
+
+    // How many nodes the search expands between checks of its cancellation flag.
+    static final int CANCEL_INTERVAL = 1024;
+
+    // How many nodes the search expands between checks of its deadline, if it has one.
+    static final int DEADLINE_INTERVAL = 64;
+
+    static {
+
+        SplittableRandom random = new SplittableRandom(0x5EED_50D0L);
+
+        for (int i = 0; i < ZOBRIST.length; i++) {
+
+            ZOBRIST[i] = random.nextLong();
+
+        }
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            ROW[cell] = cell / 9;
+            COL[cell] = cell % 9;
+            BOX[cell] = 3 * (cell / 27) + (cell % 9) / 3;
+
+        }
+
+        for (int i = 0; i < 9; i++) {
+
+            for (int j = 0; j < 9; j++) {
+
+                UNITS[i * 9 + j] = i * 9 + j;
+                UNITS[(9 + i) * 9 + j] = j * 9 + i;
+                UNITS[(18 + i) * 9 + j] = (3 * (i / 3) + j / 3) * 9 + 3 * (i % 3) + j % 3;
+
+            }
+
+        }
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            int count = 0;
+
+            for (int other = 0; other < 81; other++) {
+
+                if (other != cell
+                        && (ROW[other] == ROW[cell] || COL[other] == COL[cell] || BOX[other] == BOX[cell])) {
+
+                    PEERS[cell * 20 + count++] = other;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    private final Variant variant;
+    private final int[] cellUnitStart;
+    private final int[] cellUnits;
+    private final int[] cellHouses;
+    private final int[] cellExtraStart;
+    private final boolean cages;
+
+    // Whether every cell has just its three houses, as in classic or jigsaw Sudoku.
+    private final boolean simple;
+
+    private final int[] cells = new int[81];
+    private final int[] unitMask;
+
+    // The sum still needed, and number of empty cells, of each unit (only maintained for cages).
+    private final int[] unitRemaining;
+    private final int[] unitEmpty;
+
+    private final boolean[] givens = new boolean[81];
+    private int empty = 81;
+    private long hash;
+
+    // The options of the current search (the objects may be null), the nodes it has expanded, and whether
+    // it was cut short.
+    private NogoodTable nogoods;
+    private AtomicBoolean cancelled;
+    private ValueOrder order = ValueOrder.ASCENDING;
+    private SplittableRandom random;
+    private long nodeLimit;
+    private long nodes;
+    private long backtracks;
+    private boolean stopped;
+
+    // The time (by nanoTime()) at which the current search gives up, and where it records the fullest state
+    // it reaches, and how many cells that state left empty (the array may be null).
+    private long deadline = Long.MAX_VALUE;
+    private int[] deepest;
+    private int deepestEmpty;
+
+    // Receives every branch and backtrack of every search, if not null (see trace()).
+    private SearchTrace trace;
+
+    // The candidates of the cell being branched on in the order they are to be tried, 9 per level of the
+    // search (indexed by the empty count, which differs at every level), and scratch for sorting them.
+    private final int[] ordered = new int[82 * 9];
+    private final int[] orderKeys = new int[9];
+
+    // The cells filled by the most recent successful search(), so they can be unwound.
+    private final int[] searchFilled = new int[81];
+    private int searchFilledSize;
+
+    // The undo history, each move packed as (cell | previous value << 8 | new value << 16).
+    private int[] history = new int[64];
+    private int historySize;
+
+    /**
+     * <p>
+     * Create an empty classic board.
+     * </p>
+     */
+    Board() {
+
+        this(Variant.CLASSIC);
+
+    }
+
+    /**
+     * <p>
+     * Create an empty board for a variant.
+     * </p>
+     *
+     * @param variant The constraints.
+     */
+    Board(Variant variant) {
+
+        this.variant = variant;
+        this.cellUnitStart = variant.cellUnitStart;
+        this.cellUnits = variant.cellUnits;
+        this.cellHouses = variant.cellHouses;
+        this.cellExtraStart = variant.cellExtraStart;
+        this.cages = variant.hasCages();
+        this.simple = !cages && !variant.hasExtras();
+        this.unitMask = new int[variant.unitCount()];
+        this.unitRemaining = variant.unitSum.clone();
+        this.unitEmpty = new int[variant.unitCount()];
+
+        for (int u = 0; u < unitEmpty.length; u++) {
+
+            unitEmpty[u] = variant.unitStart[u + 1] - variant.unitStart[u];
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Create a copy of a board, without its undo history, for example for another thread to search.
+     * </p>
+     *
+     * @param board The board to copy.
+     */
+    Board(Board board) {
+
+        this.variant = board.variant;
+        this.cellUnitStart = board.cellUnitStart;
+        this.cellUnits = board.cellUnits;
+        this.cellHouses = board.cellHouses;
+        this.cellExtraStart = board.cellExtraStart;
+        this.cages = board.cages;
+        this.simple = board.simple;
+        this.unitMask = board.unitMask.clone();
+        this.unitRemaining = board.unitRemaining.clone();
+        this.unitEmpty = board.unitEmpty.clone();
+
+        System.arraycopy(board.cells, 0, cells, 0, 81);
+        System.arraycopy(board.givens, 0, givens, 0, 81);
+        this.empty = board.empty;
+        this.hash = board.hash;
+
+    }
+
+    /**
+     * <p>
+     * Create a classic board holding the givens of a puzzle (which are not part of the undo history).
+     * </p>
+     *
+     * @param data The puzzle, as returned by <code>Sudoku.dataParse()</code>.
+     * @throws IllegalArgumentException If a value is out of range or the givens conflict.
+     */
+    Board(int[][] data) {
+
+        this(Variant.CLASSIC, data);
+
+    }
+
+    /**
+     * <p>
+     * Create a board for a variant holding the givens of a puzzle (which are not part of the undo history).
+     * </p>
+     *
+     * @param variant The constraints.
+     * @param data    The puzzle, as returned by <code>Sudoku.dataParse()</code>.
+     * @throws IllegalArgumentException If a value is out of range or the givens conflict.
+     */
+    Board(Variant variant, int[][] data) {
+
+        this(variant);
+
+        for (int r = 0; r < 9; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                int v = data[r][c];
+
+                if (v != 0 && !give(cell(r, c), v)) {
+
+                    throw new IllegalArgumentException("ERROR: Invalid or conflicting given at row " + r + ", column " + c + ": " + v);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>cell()</code> method converts a row and column to a flat cell index.
+     * </p>
+     *
+     * @param r The row.
+     * @param c The column.
+     * @return The cell index.
+     */
+    static int cell(int r, int c) {
+
+        return r * 9 + c;
+
+    }
+
+    /**
+     * <p>
+     * The <code>variant()</code> method returns the constraints the board enforces.
+     * </p>
+     *
+     * @return The variant.
+     */
+    Variant variant() {
+
+        return variant;
+
+    }
+
+    /**
+     * <p>
+     * The <code>hash()</code> method returns the Zobrist hash of the cells, which depends only on the
+     * digits in them (not on the order they were placed in).
+     * </p>
+     *
+     * @return The hash.
+     */
+    long hash() {
+
+        return hash;
+
+    }
+
+    /**
+     * <p>
+     * The <code>nodes()</code> method returns the number of nodes the most recent search expanded.
+     * </p>
+     *
+     * @return The node count.
+     */
+    long nodes() {
+
+        return nodes;
+
+    }
+
+    /**
+     * <p>
+     * The <code>backtracks()</code> method returns the number of placements the most recent search tried
+     * and had to take back.
+     * </p>
+     *
+     * @return The backtrack count.
+     */
+    long backtracks() {
+
+        return backtracks;
+
+    }
+
+    /**
+     * <p>
+     * The <code>trace()</code> method attaches a trace, which records every branch and backtrack of this
+     * board's searches from now on, until it is detached. Copies of the board are not traced.
+     * </p>
+     *
+     * @param trace The trace, or <code>null</code> to detach it.
+     */
+    void trace(SearchTrace trace) {
+
+        this.trace = trace;
+
+    }
+
+    /**
+     * <p>
+     * The <code>isStopped()</code> method returns whether the most recent search was cut short, by
+     * cancellation, its node limit or its deadline, in which case its failure proves nothing.
+     * </p>
+     *
+     * @return Whether the search was stopped.
+     */
+    boolean isStopped() {
+
+        return stopped;
+
+    }
+
+    /**
+     * <p>
+     * The <code>get()</code> method returns the value of a cell, 0 if it is empty.
+     * </p>
+     *
+     * @param cell The cell index.
+     * @return The value.
+     */
+    int get(int cell) {
+
+        return cells[cell];
+
+    }
+
+    /**
+     * <p>
+     * The <code>isGiven()</code> method returns whether a cell holds one of the puzzle's givens.
+     * </p>
+     *
+     * @param cell The cell index.
+     * @return Whether the cell is a given.
+     */
+    boolean isGiven(int cell) {
+
+        return givens[cell];
+
+    }
+
+    /**
+     * <p>
+     * The <code>emptyCount()</code> method returns the number of empty cells.
+     * </p>
+     *
+     * @return The number of empty cells.
+     */
+    int emptyCount() {
+
+        return empty;
+
+    }
+
+    /**
+     * <p>
+     * The <code>candidates()</code> method returns the digits which could legally be placed in a cell,
+     * as a mask (bit <code>v</code> for digit <code>v</code>). A filled cell has no candidates.
+     * </p>
+     *
+     * @param cell The cell index.
+     * @return The candidate mask.
+     */
+    int candidates(int cell) {
+
+        if (cells[cell] != 0) {
+
+            return 0;
+
+        }
+
+        int h = cell * 3;
+        int used = unitMask[cellHouses[h]] | unitMask[cellHouses[h + 1]] | unitMask[cellHouses[h + 2]];
+
+        return simple ? ALL & ~used : extraCandidates(cell, ALL & ~used);
+
+    }
+
+    /**
+     * <p>
+     * The <code>candidates()</code> method fills <code>out</code> with the candidate mask of every cell.
+     * </p>
+     *
+     * @param out Receives 81 candidate masks.
+     */
+    void candidates(int[] out) {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            out[cell] = candidates(cell);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>place()</code> method places a digit in an empty cell, if it is a candidate there.
+     * </p>
+     *
+     * @param cell The cell index.
+     * @param v    The digit, 1 to 9.
+     * @return Whether the digit was placed, <code>false</code> if the cell is filled or the digit conflicts.
+     */
+    boolean place(int cell, int v) {
+
+        if (v < 1 || v > 9 || (candidates(cell) & (1 << v)) == 0) {
+
+            return false;
+
+        }
+
+        record(cell, 0, v);
+        set(cell, v);
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>give()</code> method places one of the puzzle's givens, which (unlike a <code>place()</code>)
+     * is not part of the undo history and cannot be erased.
+     * </p>
+     *
+     * @param cell The cell index.
+     * @param v    The digit, 1 to 9.
+     * @return Whether the digit was placed, <code>false</code> if the cell is filled or the digit conflicts.
+     */
+    boolean give(int cell, int v) {
+
+        if (v < 1 || v > 9 || (candidates(cell) & (1 << v)) == 0) {
+
+            return false;
+
+        }
+
+        set(cell, v);
+        givens[cell] = true;
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>reset()</code> method empties the board, givens, undo history and search counts included, so
+     * that it can be reused for another puzzle without allocating anything.
+     * </p>
+     */
+    void reset() {
+
+        Arrays.fill(cells, 0);
+        Arrays.fill(givens, false);
+        Arrays.fill(unitMask, 0);
+        System.arraycopy(variant.unitSum, 0, unitRemaining, 0, unitRemaining.length);
+
+        for (int u = 0; u < unitEmpty.length; u++) {
+
+            unitEmpty[u] = variant.unitStart[u + 1] - variant.unitStart[u];
+
+        }
+
+        empty = 81;
+        hash = 0;
+        historySize = 0;
+        nodes = 0;
+        backtracks = 0;
+        stopped = false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>erase()</code> method empties a filled cell (other than a given).
+     * </p>
+     *
+     * @param cell The cell index.
+     * @return Whether the cell was erased, <code>false</code> if it was already empty or is a given.
+     */
+    boolean erase(int cell) {
+
+        int v = cells[cell];
+
+        if (v == 0 || givens[cell]) {
+
+            return false;
+
+        }
+
+        record(cell, v, 0);
+        clear(cell);
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>undo()</code> method reverts the most recent <code>place()</code> or <code>erase()</code>.
+     * </p>
+     *
+     * @return Whether there was anything to undo.
+     */
+    boolean undo() {
+
+        if (historySize == 0) {
+
+            return false;
+
+        }
+
+        int move = history[--historySize];
+        int cell = move & 0xFF;
+        int previous = (move >>> 8) & 0xFF;
+
+        if (previous == 0) {
+
+            clear(cell);
+
+        } else {
+
+            set(cell, previous);
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>isDeadEnd()</code> method is a quick check for an empty cell with no candidates left,
+     * which means that the board certainly cannot be completed.
+     * </p>
+     *
+     * @return Whether some empty cell has no candidates.
+     */
+    boolean isDeadEnd() {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (cells[cell] == 0 && candidates(cell) == 0) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>isSolvable()</code> method determines whether the board, as it stands, can be completed.
+     * The search works directly on the board's own masks and restores them afterwards, so nothing is
+     * rebuilt (or allocated).
+     * </p>
+     *
+     * @return Whether a solution exists.
+     */
+    boolean isSolvable() {
+
+        return solution(null);
+
+    }
+
+    /**
+     * <p>
+     * The <code>solution()</code> method finds a completion of the board, leaving the board unchanged.
+     * </p>
+     *
+     * @param out Receives the 81 solved cell values, if not <code>null</code>.
+     * @return Whether a solution exists.
+     */
+    boolean solution(int[] out) {
+
+        return solution(out, null, null);
+
+    }
+
+    /**
+     * <p>
+     * The <code>solution()</code> method finds a completion of the board, leaving the board unchanged,
+     * pruning (and recording) dead ends with a nogood table and stopping early if cancelled.
+     * </p>
+     *
+     * @param out       Receives the 81 solved cell values, if not <code>null</code>.
+     * @param nogoods   The dead ends known so far (shared with other searches over the same variant), or
+     *                  <code>null</code> to search without one.
+     * @param cancelled Abandons the search when set, or <code>null</code> if it cannot be cancelled.
+     * @return Whether a solution was found, <code>false</code> if there is none or the search was cancelled.
+     */
+    boolean solution(int[] out, NogoodTable nogoods, AtomicBoolean cancelled) {
+
+        return solution(out, nogoods, cancelled, ValueOrder.ASCENDING, null, Long.MAX_VALUE);
+
+    }
+
+    /**
+     * <p>
+     * The <code>solution()</code> method finds a completion of the board, leaving the board unchanged, trying
+     * candidates in the given order and giving up after a number of nodes (see <code>isStopped()</code>).
+     * </p>
+     * <p>
+     * With the same board, order, seed and limit (and no shared nogood table) the search is entirely
+     * deterministic, so a slow run can be replayed exactly.
+     * </p>
+     *
+     * @param out       Receives the 81 solved cell values, if not <code>null</code>.
+     * @param nogoods   The dead ends known so far, or <code>null</code> to search without one.
+     * @param cancelled Abandons the search when set, or <code>null</code> if it cannot be cancelled.
+     * @param order     The order to try candidates in.
+     * @param random    The source for <code>RANDOM</code> order and tie breaks, or <code>null</code>.
+     * @param nodeLimit The most nodes to expand.
+     * @return Whether a solution was found.
+     * @throws IllegalArgumentException If the order is <code>RANDOM</code> without a random source.
+     */
+    boolean solution(int[] out, NogoodTable nogoods, AtomicBoolean cancelled, ValueOrder order,
+                     SplittableRandom random, long nodeLimit) {
+
+        if (order == ValueOrder.RANDOM && random == null) {
+
+            throw new IllegalArgumentException("ERROR: RANDOM order needs a random source");
+
+        }
+
+        this.nogoods = nogoods;
+        this.cancelled = cancelled;
+        this.order = order;
+        this.random = random;
+        this.nodeLimit = nodeLimit;
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.stopped = false;
+
+        boolean found = search();
+
+        this.nogoods = null;
+        this.cancelled = null;
+        this.random = null;
+
+        if (!found) {
+
+            return false;
+
+        }
+
+        if (out != null) {
+
+            System.arraycopy(cells, 0, out, 0, 81);
+
+        }
+
+        // The search leaves the solution in place, so unwind it again.
+        unwind();
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>solution()</code> method finds a completion of the board, leaving the board unchanged,
+     * giving up at a deadline (see <code>isStopped()</code>) and recording the fullest state the search
+     * reached on the way: every state it visits is consistent, so if it gives up that is the best partial
+     * answer it has.
+     * </p>
+     *
+     * @param out      Receives the 81 solved cell values, if not <code>null</code>.
+     * @param deadline The time, as returned by <code>System.nanoTime()</code>, at which to give up.
+     * @param deepest  Receives the 81 cell values of the state with the fewest empty cells the search
+     *                 reached (the solution, if it found one).
+     * @return Whether a solution was found.
+     */
+    boolean solution(int[] out, long deadline, int[] deepest) {
+
+        this.deadline = deadline;
+        this.deepest = deepest;
+        this.deepestEmpty = 82;
+
+        try {
+
+            return solution(out, null, null, ValueOrder.ASCENDING, null, Long.MAX_VALUE);
+
+        } finally {
+
+            this.deadline = Long.MAX_VALUE;
+            this.deepest = null;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>toArray()</code> method copies the board into the int[][] shape used by <code>Sudoku</code>.
+     * </p>
+     *
+     * @return The board as a 9 x 9 array.
+     */
+    int[][] toArray() {
+
+        int[][] result = new int[9][9];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            result[ROW[cell]][COL[cell]] = cells[cell];
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>mostConstrained()</code> method finds the empty cell with the fewest candidates, which is
+     * where a search should branch next.
+     * </p>
+     *
+     * @return The cell (which has no candidates at all at a dead end), or -1 if the board is full.
+     */
+    int mostConstrained() {
+
+        int best = -1;
+        int bestCount = 10;
+
+        for (int cell = 0; cell < 81 && bestCount > 1; cell++) {
+
+            if (cells[cell] == 0) {
+
+                int count = Integer.bitCount(candidates(cell));
+
+                if (count < bestCount) {
+
+                    best = cell;
+                    bestCount = count;
+
+                    if (count == 0) {
+
+                        break;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return best;
+
+    }
+
+    /**
+     * <p>
+     * The <code>search()</code> method is a plain backtracking search which always branches on the empty
+     * cell with the fewest candidates. On success the solution is left on the board (and the cells it
+     * filled are noted for <code>unwind()</code>); on failure the board is left as it was.
+     * </p>
+     * <p>
+     * A state whose every branch fails is added to the nogood table (if any) and one already in it is not
+     * expanded. A stopped search unwinds without recording anything, since it has not proved anything.
+     * </p>
+     *
+     * @return Whether a solution was found.
+     */
+    private boolean search() {
+
+        if (deepest != null && empty < deepestEmpty) {
+
+            deepestEmpty = empty;
+            System.arraycopy(cells, 0, deepest, 0, 81);
+
+        }
+
+        int best = mostConstrained();
+
+        if (best < 0) {
+
+            searchFilledSize = 0;
+
+            return true;
+
+        }
+
+        int m = candidates(best);
+
+        if (m == 0) {
+
+            return false;
+
+        }
+
+        if (nogoods != null && nogoods.contains(hash)) {
+
+            return false;
+
+        }
+
+        if (stopped || ++nodes > nodeLimit
+                || (nodes % CANCEL_INTERVAL == 1 && cancelled != null && cancelled.get())
+                || (deadline != Long.MAX_VALUE && nodes % DEADLINE_INTERVAL == 1 && System.nanoTime() - deadline > 0)) {
+
+            stopped = true;
+
+            return false;
+
+        }
+
+        if (order == ValueOrder.ASCENDING) {
+
+            for (; m != 0; m &= m - 1) {
+
+                if (branch(best, Integer.numberOfTrailingZeros(m))) {
+
+                    return true;
+
+                }
+
+            }
+
+        } else {
+
+            int base = empty * 9;
+            int count = order(best, m, base);
+
+            for (int i = 0; i < count; i++) {
+
+                if (branch(best, ordered[base + i])) {
+
+                    return true;
+
+                }
+
+            }
+
+        }
+
+        if (nogoods != null && !stopped) {
+
+            nogoods.add(hash);
+
+        }
+
+        return false;
+
+    }
+
+    private boolean branch(int cell, int v) {
+
+        if (trace != null) {
+
+            trace.branch(cell, v, Integer.bitCount(candidates(cell)), empty);
+
+        }
+
+        set(cell, v);
+
+        if (search()) {
+
+            searchFilled[searchFilledSize++] = cell;
+
+            return true;
+
+        }
+
+        clear(cell);
+        backtracks++;
+
+        if (trace != null) {
+
+            trace.backtrack(cell, v, empty);
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>order()</code> method writes the candidates of a cell into <code>ordered</code> in the
+     * order the search should try them.
+     * </p>
+     *
+     * @param cell The cell.
+     * @param m    Its candidate mask.
+     * @param base Where to write them.
+     * @return The number of candidates.
+     */
+    private int order(int cell, int m, int base) {
+
+        int count = 0;
+
+        for (; m != 0; m &= m - 1) {
+
+            ordered[base + count++] = Integer.numberOfTrailingZeros(m);
+
+        }
+
+        if (order == ValueOrder.RANDOM) {
+
+            for (int i = count - 1; i > 0; i--) {
+
+                int j = random.nextInt(i + 1);
+                int swap = ordered[base + i];
+
+                ordered[base + i] = ordered[base + j];
+                ordered[base + j] = swap;
+
+            }
+
+            return count;
+
+        }
+
+        // Least constraining: count how many empty peers each candidate would remove a candidate from.
+        int[] keys = orderKeys;
+
+        for (int i = 0; i < count; i++) {
+
+            keys[i] = 0;
+
+        }
+
+        for (int i = variant.peerStart[cell]; i < variant.peerStart[cell + 1]; i++) {
+
+            int peer = variant.peers[i];
+
+            if (cells[peer] == 0) {
+
+                int shared = candidates(peer);
+
+                for (int k = 0; k < count; k++) {
+
+                    keys[k] += (shared >>> ordered[base + k]) & 1;
+
+                }
+
+            }
+
+        }
+
+        // Sort by count (keeping the digit alongside), with a random tie break in the low bits.
+        for (int i = 0; i < count; i++) {
+
+            keys[i] = (keys[i] << 8 | (random != null ? random.nextInt(16) : 0) << 4) | ordered[base + i];
+
+        }
+
+        for (int i = 1; i < count; i++) {
+
+            int key = keys[i];
+            int j = i - 1;
+
+            while (j >= 0 && keys[j] > key) {
+
+                keys[j + 1] = keys[j];
+                j--;
+
+            }
+
+            keys[j + 1] = key;
+
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            ordered[base + i] = keys[i] & 0xF;
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * <p>
+     * The <code>unwind()</code> method empties the cells filled by the last successful <code>search()</code>.
+     * </p>
+     */
+    private void unwind() {
+
+        while (searchFilledSize > 0) {
+
+            clear(searchFilled[--searchFilledSize]);
+
+        }
+
+    }
+
+    private int extraCandidates(int cell, int mask) {
+
+        for (int i = cellExtraStart[cell]; i < cellUnitStart[cell + 1]; i++) {
+
+            mask &= ~unitMask[cellUnits[i]];
+
+        }
+
+        for (int i = variant.cellCageStart[cell]; i < variant.cellCageStart[cell + 1] && mask != 0; i++) {
+
+            int u = variant.cellCages[i];
+
+            mask &= Variant.cageCandidates(unitMask[u], unitEmpty[u], unitRemaining[u]);
+
+        }
+
+        return mask;
+
+    }
+
+    private void record(int cell, int previous, int next) {
+
+        if (historySize == history.length) {
+
+            history = Arrays.copyOf(history, history.length * 2);
+
+        }
+
+        history[historySize++] = cell | previous << 8 | next << 16;
+
+    }
+
+    private void set(int cell, int v) {
+
+        int bit = 1 << v;
+
+        cells[cell] = v;
+        hash ^= ZOBRIST[cell * 10 + v];
+
+        int h = cell * 3;
+
+        unitMask[cellHouses[h]] |= bit;
+        unitMask[cellHouses[h + 1]] |= bit;
+        unitMask[cellHouses[h + 2]] |= bit;
+
+        for (int i = cellExtraStart[cell]; i < cellUnitStart[cell + 1]; i++) {
+
+            unitMask[cellUnits[i]] |= bit;
+
+        }
+
+        if (cages) {
+
+            for (int i = variant.cellCageStart[cell]; i < variant.cellCageStart[cell + 1]; i++) {
+
+                unitRemaining[variant.cellCages[i]] -= v;
+                unitEmpty[variant.cellCages[i]]--;
+
+            }
+
+        }
+
+        empty--;
+
+    }
+
+    private void clear(int cell) {
+
+        int v = cells[cell];
+        int bit = ~(1 << v);
+
+        cells[cell] = 0;
+        hash ^= ZOBRIST[cell * 10 + v];
+
+        int h = cell * 3;
+
+        unitMask[cellHouses[h]] &= bit;
+        unitMask[cellHouses[h + 1]] &= bit;
+        unitMask[cellHouses[h + 2]] &= bit;
+
+        for (int i = cellExtraStart[cell]; i < cellUnitStart[cell + 1]; i++) {
+
+            unitMask[cellUnits[i]] &= bit;
+
+        }
+
+        if (cages) {
+
+            for (int i = variant.cellCageStart[cell]; i < variant.cellCageStart[cell + 1]; i++) {
+
+                unitRemaining[variant.cellCages[i]] += v;
+                unitEmpty[variant.cellCages[i]]++;
+
+            }
+
+        }
+
+        empty++;
+
+    }
+
+}
@@ -0,0 +1,650 @@
+package zone.otto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * The <code>Coordinator</code> class solves a <code>PackedFormat</code> file of puzzles on several worker
+ * processes, so that a batch can use more than one JVM's heap (and garbage collector), and later more than
+ * one host.
+ * </p>
+ * <p>
+ * The coordinator listens on a local port, and any number of <code>Worker</code>s connect to it, whether
+ * spawned by <code>spawn()</code> as JVMs of their own or started elsewhere. <code>solve()</code> cuts the
+ * file into shards of <code>shardSize</code> consecutive records (records are fixed size, so a shard is
+ * read straight from its offset) and queues them; each connection takes a shard, sends it and waits for
+ * its results, then takes the next, so faster workers simply take more shards. The results are written to
+ * the solutions file in the order of the puzzles, each shard as soon as every shard before it is done.
+ * </p>
+ * <p>
+ * A worker which hangs up, sends something unexpected (including a result which is not a valid answer to
+ * its puzzle), or takes longer than <code>timeout</code> over a shard is dropped, and its shard queued
+ * again for another worker, up to <code>MAX_ATTEMPTS</code> times in all (after which it is presumed to be
+ * the shard's fault, and the job fails). The job also fails if no worker has been connected for
+ * <code>timeout</code>.
+ * </p>
+ */
+class Coordinator implements Closeable {
+
+    static final int DEFAULT_SHARD_SIZE = 1024;
+    static final int MAX_ATTEMPTS = 3;
+    static final int DEFAULT_TIMEOUT_MILLIS = 300_000;
+
+    private final ServerSocket server;
+    private final int shardSize;
+    private final int timeoutMillis;
+    private final BlockingQueue<Shard> queue = new LinkedBlockingQueue<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> handlers = ConcurrentHashMap.newKeySet();
+    private final List<Process> processes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private volatile long lastConnected = System.nanoTime();
+
+    /**
+     * <p>
+     * The <code>Shard</code> class is a range of consecutive puzzles, and the job it belongs to.
+     * </p>
+     */
+    private static final class Shard {
+
+        final Job job;
+        final int index;
+        final int count;
+        int attempts;
+
+        Shard(Job job, int index, int count) {
+
+            this.job = job;
+            this.index = index;
+            this.count = count;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Create a coordinator with the default shard size and timeout, listening on a free loopback port.
+     * </p>
+     *
+     * @throws IOException If the port cannot be opened.
+     */
+    Coordinator() throws IOException {
+
+        this(DEFAULT_SHARD_SIZE, DEFAULT_TIMEOUT_MILLIS);
+
+    }
+
+    /**
+     * <p>
+     * Create a coordinator listening on a free loopback port.
+     * </p>
+     *
+     * @param shardSize     The number of puzzles per shard.
+     * @param timeoutMillis The longest to wait for a shard's results, or for a worker to connect.
+     * @throws IOException              If the port cannot be opened.
+     * @throws IllegalArgumentException If the shard size or timeout is not positive.
+     */
+    Coordinator(int shardSize, int timeoutMillis) throws IOException {
+
+        if (shardSize < 1 || timeoutMillis < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid shard size or timeout: " + shardSize + ", " + timeoutMillis);
+
+        }
+
+        this.shardSize = shardSize;
+        this.timeoutMillis = timeoutMillis;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        daemon("coordinator", this::accept).start();
+
+    }
+
+    /**
+     * <p>
+     * The <code>port()</code> method returns the port workers connect to.
+     * </p>
+     *
+     * @return The port, on the loopback address.
+     */
+    int port() {
+
+        return server.getLocalPort();
+
+    }
+
+    /**
+     * <p>
+     * The <code>spawn()</code> method starts a worker in a JVM of its own, with the same class path as this
+     * one, which is stopped when the coordinator is closed.
+     * </p>
+     *
+     * @return The worker's process.
+     * @throws IOException If it cannot be started.
+     */
+    Process spawn() throws IOException {
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Worker.class.getName(), server.getInetAddress().getHostAddress(), Integer.toString(port()))
+                .inheritIO()
+                .start();
+
+        processes.add(process);
+
+        return process;
+
+    }
+
+    /**
+     * <p>
+     * The <code>connected()</code> method returns the number of workers connected.
+     * </p>
+     *
+     * @return The count.
+     */
+    int connected() {
+
+        return connected.get();
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a file of puzzles on the workers.
+     * </p>
+     *
+     * @param puzzles   The <code>PackedFormat</code> file of puzzles.
+     * @param solutions The <code>PackedFormat</code> file to write their solutions to, in the same order, all
+     *                  empty for a puzzle without one.
+     * @return The number of puzzles solved.
+     * @throws IOException If a file cannot be read or written, a shard fails <code>MAX_ATTEMPTS</code>
+     *                     times, or there are no workers.
+     */
+    synchronized long solve(Path puzzles, Path solutions) throws IOException {
+
+        try (PackedFormat.Reader reader = new PackedFormat.Reader(puzzles);
+             PackedFormat.Writer writer = new PackedFormat.Writer(solutions)) {
+
+            int shards = (int) ((reader.count() + shardSize - 1) / shardSize);
+            Job job = new Job(reader, writer, shards);
+
+            lastConnected = System.nanoTime();
+
+            for (int i = 0; i < shards; i++) {
+
+                queue.add(new Shard(job, i, (int) Math.min(shardSize, reader.count() - (long) i * shardSize)));
+
+            }
+
+            try {
+
+                return job.await();
+
+            } finally {
+
+                job.close();
+                queue.removeIf(shard -> shard.job == job);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>Job</code> class is the state of one call to <code>solve()</code>.
+     * </p>
+     */
+    private final class Job {
+
+        private final PackedFormat.Reader reader;
+        private final PackedFormat.Writer writer;
+        private final int shards;
+        private final TreeMap<Integer, byte[]> done = new TreeMap<>();
+        private final int[][] grid = new int[9][9];
+        private int next;
+        private long solved;
+        private IOException error;
+        private boolean closed;
+
+        Job(PackedFormat.Reader reader, PackedFormat.Writer writer, int shards) {
+
+            this.reader = reader;
+            this.writer = writer;
+            this.shards = shards;
+
+        }
+
+        synchronized byte[] read(Shard shard) {
+
+            if (closed || error != null) {
+
+                return null;
+
+            }
+
+            ByteBuffer records = ByteBuffer.allocate(shard.count * PackedFormat.RECORD_BYTES);
+
+            try {
+
+                reader.seek((long) shard.index * shardSize);
+
+                for (int i = 0; i < shard.count; i++) {
+
+                    if (!reader.read(grid)) {
+
+                        throw new IOException("ERROR: Unexpected end of file.");
+
+                    }
+
+                    PackedFormat.encode(grid, records);
+
+                }
+
+            } catch (IOException e) {
+
+                // The file's fault, not the worker's.
+                fail(e);
+
+                return null;
+
+            }
+
+            return records.array();
+
+        }
+
+        /**
+         * <p>
+         * Accept a shard's results, which <code>exchange()</code> has verified, and write out every shard now
+         * ready in order.
+         * </p>
+         */
+        synchronized void complete(Shard shard, byte[] results) {
+
+            if (closed || error != null || shard.index < next || done.containsKey(shard.index)) {
+
+                return;
+
+            }
+
+            done.put(shard.index, results);
+
+            try {
+
+                for (byte[] ready; (ready = done.remove(next)) != null; next++) {
+
+                    ByteBuffer buffer = ByteBuffer.wrap(ready);
+
+                    while (buffer.hasRemaining()) {
+
+                        if (buffer.get() == Solver.Status.SOLVED.ordinal()) {
+
+                            solved++;
+
+                        }
+
+                        PackedFormat.decode(buffer, grid);
+                        writer.write(grid);
+
+                    }
+
+                }
+
+            } catch (IOException e) {
+
+                // The solutions file's fault, as the results were verified.
+                fail(e);
+
+            }
+
+            notifyAll();
+
+        }
+
+        synchronized void retry(Shard shard, IOException cause) {
+
+            if (closed || error != null) {
+
+                return;
+
+            }
+
+            if (++shard.attempts >= MAX_ATTEMPTS) {
+
+                fail(new IOException("ERROR: Shard " + shard.index + " failed " + shard.attempts + " times", cause));
+
+            } else {
+
+                queue.add(shard);
+
+            }
+
+        }
+
+        synchronized void fail(IOException e) {
+
+            if (error == null) {
+
+                error = e;
+
+            }
+
+            notifyAll();
+
+        }
+
+        synchronized long await() throws IOException {
+
+            while (next < shards && error == null) {
+
+                try {
+
+                    wait(100);
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+
+                    throw new IOException("ERROR: Interrupted while solving", e);
+
+                }
+
+                if (connected.get() == 0
+                        && System.nanoTime() - lastConnected > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+
+                    fail(new IOException("ERROR: No workers connected for " + timeoutMillis + " ms"));
+
+                }
+
+            }
+
+            if (error != null) {
+
+                throw error;
+
+            }
+
+            return solved;
+
+        }
+
+        synchronized void close() {
+
+            closed = true;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Accept workers until closed, each handled by a thread of its own.
+     * </p>
+     */
+    private void accept() {
+
+        while (!server.isClosed()) {
+
+            try {
+
+                Socket socket = server.accept();
+
+                sockets.add(socket);
+                daemon("coordinator-worker", () -> handle(socket)).start();
+
+            } catch (IOException e) {
+
+                // Closed, or a failed connection which the worker will see for itself.
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Feed one worker shards until it fails or the coordinator is closed.
+     * </p>
+     */
+    private void handle(Socket socket) {
+
+        handlers.add(Thread.currentThread());
+
+        try {
+
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeoutMillis);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (in.readInt() != Worker.MAGIC || in.readInt() != Worker.VERSION) {
+
+                return;
+
+            }
+
+            connected.incrementAndGet();
+
+            try {
+
+                while (true) {
+
+                    Shard shard = queue.take();
+                    byte[] records = shard.job.read(shard);
+
+                    if (records == null) {
+
+                        // Its job is over.
+                        continue;
+
+                    }
+
+                    try {
+
+                        shard.job.complete(shard, exchange(shard, records, in, out));
+
+                    } catch (IOException e) {
+
+                        shard.job.retry(shard, e);
+
+                        return;
+
+                    }
+
+                }
+
+            } finally {
+
+                lastConnected = System.nanoTime();
+                connected.decrementAndGet();
+
+            }
+
+        } catch (IOException | InterruptedException e) {
+
+            // The worker (or the coordinator) is gone.
+
+        } finally {
+
+            handlers.remove(Thread.currentThread());
+            sockets.remove(socket);
+
+            try {
+
+                socket.close();
+
+            } catch (IOException e) {
+
+                // Nothing more to do with it.
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Send a shard to a worker and wait for its results, which are verified before they are returned.
+     * </p>
+     */
+    private static byte[] exchange(Shard shard, byte[] records, DataInputStream in, DataOutputStream out)
+            throws IOException {
+
+        out.writeInt(shard.index);
+        out.writeInt(shard.count);
+        out.write(records);
+        out.flush();
+
+        int index = in.readInt();
+        int count = in.readInt();
+
+        if (index != shard.index || count != shard.count) {
+
+            throw new IOException("ERROR: Expected shard " + shard.index + " of " + shard.count + ", got " + index + " of " + count);
+
+        }
+
+        byte[] results = new byte[count * Worker.RESULT_BYTES];
+
+        in.readFully(results);
+        verify(records, results);
+
+        return results;
+
+    }
+
+    /**
+     * <p>
+     * Check every result of a shard against its puzzle, so that a worker which sends garbage is dropped (and
+     * its shard retried) rather than failing the job when the results are written: each status must be one
+     * the worker can send, a solution must be a valid grid agreeing with the givens, and anything else must
+     * be all empty.
+     * </p>
+     */
+    private static void verify(byte[] records, byte[] results) throws IOException {
+
+        ByteBuffer puzzles = ByteBuffer.wrap(records);
+        ByteBuffer buffer = ByteBuffer.wrap(results);
+        int[][] puzzle = new int[9][9];
+        int[][] grid = new int[9][9];
+
+        for (int i = 0; buffer.hasRemaining(); i++) {
+
+            int status = buffer.get();
+
+            if (status != Solver.Status.SOLVED.ordinal() && status != Solver.Status.NO_SOLUTION.ordinal()
+                    && status != Solver.Status.CONFLICTING_GIVENS.ordinal()) {
+
+                throw new IOException("ERROR: Invalid status for puzzle " + i + " of the shard: " + status);
+
+            }
+
+            PackedFormat.decode(puzzles, puzzle);
+            PackedFormat.decode(buffer, grid);
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                int v = grid[cell / 9][cell % 9];
+                int given = puzzle[cell / 9][cell % 9];
+
+                if (status == Solver.Status.SOLVED.ordinal() ? given != 0 && v != given : v != 0) {
+
+                    throw new IOException("ERROR: Invalid result for puzzle " + i + " of the shard");
+
+                }
+
+            }
+
+            if (status == Solver.Status.SOLVED.ordinal() && !GridValidator.isValid(grid)) {
+
+                throw new IOException("ERROR: Invalid solution for puzzle " + i + " of the shard");
+
+            }
+
+        }
+
+    }
+
+    private static Thread daemon(String name, Runnable runnable) {
+
+        Thread thread = new Thread(runnable, name);
+
+        thread.setDaemon(true);
+
+        return thread;
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method stops listening, hangs up on every worker, and stops those it spawned.
+     * </p>
+     *
+     * @throws IOException If the port cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        server.close();
+
+        for (Socket socket : sockets) {
+
+            socket.close();
+
+        }
+
+        for (Thread handler : handlers) {
+
+            handler.interrupt();
+
+        }
+
+        for (Process process : processes) {
+
+            try {
+
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+
+                    process.destroyForcibly();
+
+                }
+
+            } catch (InterruptedException e) {
+
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+
+            }
+
+        }
+
+    }
+
+}
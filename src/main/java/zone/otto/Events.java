@@ -0,0 +1,338 @@
+package zone.otto;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * <p>
+ * The <code>Events</code> class holds the Java Flight Recorder events the solver emits, so that a recording
+ * shows where the time went puzzle by puzzle (parse, solve, render and memo lookups) rather than as
+ * anonymous <code>dataSolve</code> frames.
+ * </p>
+ * <p>
+ * Every event carries the puzzle as an 81 character line (digits, and <code>.</code> for empty cells), the
+ * same whichever phase it is from, so a slow solve can be matched to its parse event and so to its input.
+ * </p>
+ * <p>
+ * When recording is off (or an event is disabled) each call site costs one check of a flag: the event is
+ * only created, timed and filled in (including building the puzzle line) if its type is enabled, and only
+ * committed if it passed the recording's threshold, so the events can be left in under full load without
+ * allocating. <code>Cache</code> events, one per lookup, are disabled unless a recording enables them.
+ * </p>
+ */
+class Events {
+
+    /**
+     * <p>
+     * The <code>Parse</code> event is the parsing of one puzzle.
+     * </p>
+     */
+    @Name("zone.otto.Parse")
+    @Label("Puzzle Parse")
+    @Category("Sudoku")
+    static final class Parse extends Event {
+
+        @Label("Source")
+        @Description("The file read, or stdin")
+        String source;
+
+        @Label("Puzzle")
+        String puzzle;
+
+        @Label("Clues")
+        int clues;
+
+    }
+
+    /**
+     * <p>
+     * The <code>Solve</code> event is the solving of one puzzle.
+     * </p>
+     */
+    @Name("zone.otto.Solve")
+    @Label("Puzzle Solve")
+    @Category("Sudoku")
+    static final class Solve extends Event {
+
+        @Label("Engine")
+        String engine;
+
+        @Label("Puzzle")
+        String puzzle;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Nodes")
+        @Description("The number of search nodes expanded (0 if the engine doesn't count them)")
+        long nodes;
+
+        @Label("Backtracks")
+        @Description("The number of placements tried and taken back (0 if the engine doesn't count them)")
+        long backtracks;
+
+    }
+
+    /**
+     * <p>
+     * The <code>Cache</code> event is one lookup in a memo table.
+     * </p>
+     */
+    @Name("zone.otto.Cache")
+    @Label("Memo Lookup")
+    @Category("Sudoku")
+    @Enabled(false)
+    static final class Cache extends Event {
+
+        @Label("Cache")
+        String cache;
+
+        @Label("Key")
+        long key;
+
+        @Label("Hit")
+        boolean hit;
+
+    }
+
+    /**
+     * <p>
+     * The <code>Render</code> event is the rendering of one puzzle to text.
+     * </p>
+     */
+    @Name("zone.otto.Render")
+    @Label("Puzzle Render")
+    @Category("Sudoku")
+    static final class Render extends Event {
+
+        @Label("Puzzle")
+        String puzzle;
+
+        @Label("Characters")
+        int length;
+
+    }
+
+    // One instance of each, never committed, to check cheaply whether the type is enabled.
+    private static final Parse PARSE = new Parse();
+    private static final Solve SOLVE = new Solve();
+    private static final Cache CACHE = new Cache();
+    private static final Render RENDER = new Render();
+
+    /**
+     * <p>
+     * The <code>parse()</code> method starts a <code>Parse</code> event.
+     * </p>
+     *
+     * @return The event, begun, or <code>null</code> if it is disabled.
+     */
+    static Parse parse() {
+
+        if (!PARSE.isEnabled()) {
+
+            return null;
+
+        }
+
+        Parse event = new Parse();
+
+        event.begin();
+
+        return event;
+
+    }
+
+    /**
+     * <p>
+     * The <code>commit()</code> method ends and commits a <code>Parse</code> event, if it is worth recording.
+     * </p>
+     *
+     * @param event  The event, or <code>null</code>.
+     * @param source The file read, or <code>""</code> for stdin.
+     * @param data   The puzzle parsed.
+     */
+    static void commit(Parse event, String source, int[][] data) {
+
+        if (event != null && event.shouldCommit()) {
+
+            event.source = source.isEmpty() ? "stdin" : source;
+            event.puzzle = line(data);
+            event.clues = (int) event.puzzle.chars().filter(ch -> ch != '.').count();
+            event.commit();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method starts a <code>Solve</code> event.
+     * </p>
+     *
+     * @return The event, begun, or <code>null</code> if it is disabled.
+     */
+    static Solve solve() {
+
+        if (!SOLVE.isEnabled()) {
+
+            return null;
+
+        }
+
+        Solve event = new Solve();
+
+        event.begin();
+
+        return event;
+
+    }
+
+    /**
+     * <p>
+     * The <code>commit()</code> method ends and commits a <code>Solve</code> event, if it is worth recording.
+     * </p>
+     *
+     * @param event      The event, or <code>null</code>.
+     * @param engine     The name of the engine.
+     * @param puzzle     The puzzle, from <code>line()</code> (taken before the solve, if it fills in the puzzle).
+     * @param outcome    The outcome, such as <code>SOLVED</code>.
+     * @param nodes      The number of nodes expanded.
+     * @param backtracks The number of backtracks.
+     */
+    static void commit(Solve event, String engine, String puzzle, String outcome, long nodes, long backtracks) {
+
+        if (event != null && event.shouldCommit()) {
+
+            event.engine = engine;
+            event.puzzle = puzzle;
+            event.outcome = outcome;
+            event.nodes = nodes;
+            event.backtracks = backtracks;
+            event.commit();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>cache()</code> method records a memo lookup (which takes no time of its own).
+     * </p>
+     *
+     * @param cache The name of the memo table.
+     * @param key   The key looked up.
+     * @param hit   Whether it was found.
+     */
+    static void cache(String cache, long key, boolean hit) {
+
+        if (CACHE.isEnabled()) {
+
+            Cache event = new Cache();
+
+            event.cache = cache;
+            event.key = key;
+            event.hit = hit;
+            event.commit();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>render()</code> method starts a <code>Render</code> event.
+     * </p>
+     *
+     * @return The event, begun, or <code>null</code> if it is disabled.
+     */
+    static Render render() {
+
+        if (!RENDER.isEnabled()) {
+
+            return null;
+
+        }
+
+        Render event = new Render();
+
+        event.begin();
+
+        return event;
+
+    }
+
+    /**
+     * <p>
+     * The <code>commit()</code> method ends and commits a <code>Render</code> event, if it is worth recording.
+     * </p>
+     *
+     * @param event  The event, or <code>null</code>.
+     * @param data   The puzzle rendered.
+     * @param output The text it was rendered to.
+     */
+    static void commit(Render event, int[][] data, String output) {
+
+        if (event != null && event.shouldCommit()) {
+
+            event.puzzle = line(data);
+            event.length = output.length();
+            event.commit();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>line()</code> method renders a puzzle as a single line of 81 characters, the form every
+     * event records it in.
+     * </p>
+     *
+     * @param data The puzzle.
+     * @return The line.
+     */
+    static String line(int[][] data) {
+
+        StringBuilder line = new StringBuilder(81);
+
+        for (int[] row : data) {
+
+            for (int v : row) {
+
+                line.append(v == 0 ? '.' : (char) ('0' + v));
+
+            }
+
+        }
+
+        return line.toString();
+
+    }
+
+    /**
+     * <p>
+     * The <code>line()</code> method renders a puzzle given as 81 digits as a single line.
+     * </p>
+     *
+     * @param cells The puzzle.
+     * @return The line.
+     */
+    static String line(int[] cells) {
+
+        StringBuilder line = new StringBuilder(81);
+
+        for (int v : cells) {
+
+            line.append(v == 0 ? '.' : (char) ('0' + v));
+
+        }
+
+        return line.toString();
+
+    }
+
+}
@@ -0,0 +1,247 @@
+package zone.otto;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The <code>GridValidator</code> class checks completed grids against the row, column and box
+ * constraints (the same ones <code>Sudoku.getValidSet()</code> enforces), either one at a time or in
+ * bulk over a <code>Batch</code>.
+ * </p>
+ * <p>
+ * A grid is valid when each of its 27 units contains every digit 1 to 9 exactly once, i.e. when the
+ * OR of <code>1 &lt;&lt; digit</code> over the unit is <code>0x3FE</code> (an empty cell contributes bit 0,
+ * so it can never pass).
+ * </p>
+ * <p>
+ * The bulk check stores the batch as a struct-of-arrays (all the grids' cell 0, then all the grids'
+ * cell 1, etc.) so that the innermost loops run over grids with unit stride and no branches, which is
+ * exactly the shape C2's superword pass turns into SIMD instructions. This gives the data parallelism of
+ * the (still incubating) Vector API without depending on it, with <code>isValid()</code> as the scalar bitmask
+ * fallback.
+ * </p>
+ */
+class GridValidator {
+
+    // The mask of a unit which contains each digit 1 to 9 exactly once.
+    static final int FULL_MASK = 0x3FE;
+
+    /**
+     * <p>
+     * The <code>Batch</code> class holds many grids in struct-of-arrays layout, one byte per cell, where
+     * cell <code>k</code> of grid <code>g</code> lives at <code>cells[k * capacity + g]</code>.
+     * </p>
+     */
+    static class Batch {
+
+        private final int capacity;
+        private final byte[] cells;
+
+        // Scratch space for validate(), so that checking a batch allocates nothing.
+        private final int[] masks;
+        private final int[] errors;
+
+        private int size;
+
+        Batch(int capacity) {
+
+            this.capacity = capacity;
+            this.cells = new byte[81 * capacity];
+            this.masks = new int[capacity];
+            this.errors = new int[capacity];
+
+        }
+
+        int capacity() {
+
+            return capacity;
+
+        }
+
+        int size() {
+
+            return size;
+
+        }
+
+        /**
+         * <p>
+         * The <code>clear()</code> method empties the batch so it can be refilled, without reallocating.
+         * </p>
+         */
+        void clear() {
+
+            size = 0;
+
+        }
+
+        /**
+         * <p>
+         * The <code>add()</code> method appends a 9 x 9 grid to the batch.
+         * </p>
+         *
+         * @param data The grid, values 0 (empty) to 9.
+         * @return The index of the grid within the batch.
+         */
+        int add(int[][] data) {
+
+            if (size == capacity) {
+
+                throw new IllegalStateException("ERROR: The batch is full: " + capacity);
+
+            }
+
+            for (int r = 0; r < 9; r++) {
+
+                for (int c = 0; c < 9; c++) {
+
+                    set(size, r * 9 + c, data[r][c]);
+
+                }
+
+            }
+
+            return size++;
+
+        }
+
+        /**
+         * <p>
+         * The <code>set()</code> method overwrites a single cell of a grid already in the batch.
+         * </p>
+         *
+         * @param grid  The grid index.
+         * @param cell  The cell index (r * 9 + c).
+         * @param value The value, 0 (empty) to 9.
+         */
+        void set(int grid, int cell, int value) {
+
+            // Anything outside 0 to 9 would alias another digit's bit in the mask.
+            if (value < 0 || value > 9) {
+
+                throw new IllegalArgumentException("ERROR: Invalid cell value: " + value);
+
+            }
+
+            cells[cell * capacity + grid] = (byte) value;
+
+        }
+
+        int get(int grid, int cell) {
+
+            return cells[cell * capacity + grid];
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>isValid()</code> method checks a single completed grid, using one mask per unit.
+     * </p>
+     *
+     * @param data The grid.
+     * @return Whether every row, column and box holds 1 to 9 exactly once.
+     */
+    static boolean isValid(int[][] data) {
+
+        int[] rows = new int[9];
+        int[] cols = new int[9];
+        int[] boxes = new int[9];
+
+        for (int r = 0; r < 9; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                int v = data[r][c];
+
+                if (v < 1 || v > 9) {
+
+                    return false;
+
+                }
+
+                rows[r] |= 1 << v;
+                cols[c] |= 1 << v;
+                boxes[3 * (r / 3) + c / 3] |= 1 << v;
+
+            }
+
+        }
+
+        for (int i = 0; i < 9; i++) {
+
+            if (rows[i] != FULL_MASK || cols[i] != FULL_MASK || boxes[i] != FULL_MASK) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>validate()</code> method checks every grid in the batch at once.
+     * </p>
+     * <p>
+     * For each unit, the masks of all of the grids are accumulated together a cell at a time, and any
+     * difference from <code>FULL_MASK</code> is folded into a per grid error word. Both inner loops are
+     * branch free and unit stride across grids.
+     * </p>
+     *
+     * @param batch   The grids to check.
+     * @param results Receives the verdict for each grid, must be at least <code>batch.size()</code> long.
+     * @return The number of valid grids.
+     */
+    static int validate(Batch batch, boolean[] results) {
+
+        int size = batch.size;
+        int capacity = batch.capacity;
+        byte[] cells = batch.cells;
+        int[] masks = batch.masks;
+        int[] errors = batch.errors;
+
+        Arrays.fill(errors, 0, size, 0);
+
+        for (int u = 0; u < 27; u++) {
+
+            Arrays.fill(masks, 0, size, 0);
+
+            for (int k = 0; k < 9; k++) {
+
+                int base = Board.UNITS[u * 9 + k] * capacity;
+
+                for (int g = 0; g < size; g++) {
+
+                    masks[g] |= 1 << cells[base + g];
+
+                }
+
+            }
+
+            for (int g = 0; g < size; g++) {
+
+                errors[g] |= masks[g] ^ FULL_MASK;
+
+            }
+
+        }
+
+        int valid = 0;
+
+        for (int g = 0; g < size; g++) {
+
+            results[g] = errors[g] == 0;
+            valid += errors[g] == 0 ? 1 : 0;
+
+        }
+
+        return valid;
+
+    }
+
+}
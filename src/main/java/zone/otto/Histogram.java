@@ -0,0 +1,226 @@
+package zone.otto;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * The <code>Histogram</code> class is a lock-free histogram of non-negative <code>long</code> values (such
+ * as latencies in nanoseconds, or node counts), from which percentiles can be read at any time.
+ * </p>
+ * <p>
+ * The buckets are logarithmic: each power of two is split into <code>SUB_BUCKETS</code> equal parts, so a
+ * bucket is never more than 12.5% wide relative to the values in it, whatever their magnitude, in a fixed
+ * 488 buckets. Recording a value is a leading-zero count, a shift and a <code>LongAdder</code> increment,
+ * which stripes itself across threads under contention, so there is no lock and no shared cache line to
+ * fight over.
+ * </p>
+ * <p>
+ * Reads are not atomic with respect to concurrent writes, so a percentile read while values are being
+ * recorded reflects some, but perhaps not all, of them, which is fine for monitoring.
+ * </p>
+ */
+class Histogram {
+
+    // The number of buckets per power of two, and its log.
+    static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // Enough buckets for any non-negative long.
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * <p>
+     * Create an empty histogram.
+     * </p>
+     */
+    Histogram() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            counts[i] = new LongAdder();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>bucket()</code> method returns the index of the bucket a value falls in. Values below
+     * <code>SUB_BUCKETS</code> have a bucket each.
+     * </p>
+     *
+     * @param value The value, negatives counting as 0.
+     * @return The bucket index.
+     */
+    static int bucket(long value) {
+
+        if (value < SUB_BUCKETS) {
+
+            return value < 0 ? 0 : (int) value;
+
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+
+    }
+
+    /**
+     * <p>
+     * The <code>lowerBound()</code> method returns the smallest value in a bucket.
+     * </p>
+     *
+     * @param bucket The bucket index.
+     * @return The smallest value which falls in it.
+     */
+    static long lowerBound(int bucket) {
+
+        if (bucket < SUB_BUCKETS) {
+
+            return bucket;
+
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+
+    }
+
+    /**
+     * <p>
+     * The <code>upperBound()</code> method returns the largest value in a bucket.
+     * </p>
+     *
+     * @param bucket The bucket index.
+     * @return The largest value which falls in it.
+     */
+    static long upperBound(int bucket) {
+
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+
+    }
+
+    /**
+     * <p>
+     * The <code>record()</code> method adds a value.
+     * </p>
+     *
+     * @param value The value, negatives counting as 0.
+     */
+    void record(long value) {
+
+        counts[bucket(value)].increment();
+        sum.add(Math.max(value, 0));
+
+    }
+
+    /**
+     * <p>
+     * The <code>count()</code> method returns the number of values recorded.
+     * </p>
+     *
+     * @return The count.
+     */
+    long count() {
+
+        long count = 0;
+
+        for (LongAdder bucket : counts) {
+
+            count += bucket.sum();
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * <p>
+     * The <code>sum()</code> method returns the total of the values recorded.
+     * </p>
+     *
+     * @return The sum.
+     */
+    long sum() {
+
+        return sum.sum();
+
+    }
+
+    /**
+     * <p>
+     * The <code>percentile()</code> method estimates a percentile, as the largest value of the bucket it
+     * falls in (so it never understates, and overstates by at most the bucket's width).
+     * </p>
+     *
+     * @param quantile The quantile, from 0 to 1 (0.99 for p99).
+     * @return The estimate, or 0 if nothing has been recorded.
+     * @throws IllegalArgumentException If the quantile is out of range.
+     */
+    long percentile(double quantile) {
+
+        if (!(quantile >= 0 && quantile <= 1)) {
+
+            throw new IllegalArgumentException("ERROR: Invalid quantile: " + quantile);
+
+        }
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+
+        }
+
+        if (total == 0) {
+
+            return 0;
+
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+
+                return upperBound(i);
+
+            }
+
+        }
+
+        return upperBound(BUCKETS - 1);
+
+    }
+
+    /**
+     * <p>
+     * The <code>reset()</code> method forgets every value.
+     * </p>
+     */
+    void reset() {
+
+        for (LongAdder bucket : counts) {
+
+            bucket.reset();
+
+        }
+
+        sum.reset();
+
+    }
+
+}
@@ -0,0 +1,1305 @@
+package zone.otto;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The <code>LogicSolver</code> class solves puzzles the way a person would, by applying human solving
+ * techniques in order of difficulty, so that it can hand out the next hint or grade a puzzle by the
+ * hardest technique it needs.
+ * </p>
+ * <p>
+ * The techniques (see <code>Technique</code>) are tried easiest first, and the first one that makes any
+ * progress wins. Candidates are kept as digit masks per cell (as in <code>Board</code>), and sets of cells
+ * as 81 bit sets split over two longs (cells 0-63 and 64-80), so that e.g. "the cells in this box which
+ * could hold a 7" is a couple of ANDs against the precomputed unit and peer tables. A solver can be
+ * reused for any number of puzzles via <code>load()</code>, and grading allocates nothing.
+ * </p>
+ */
+class LogicSolver {
+
+    /**
+     * <p>
+     * The <code>Grade</code> enum ranks puzzles by the hardest technique needed to solve them.
+     * </p>
+     */
+    enum Grade {
+
+        EASY,
+        MEDIUM,
+        HARD,
+        EXPERT,
+
+        // Not solvable with these techniques alone (or not solvable at all), so guessing is needed.
+        BEYOND_LOGIC
+
+    }
+
+    /**
+     * <p>
+     * The <code>Technique</code> enum lists the supported techniques, in the order they are tried.
+     * </p>
+     */
+    enum Technique {
+
+        NAKED_SINGLE(Grade.EASY),
+        HIDDEN_SINGLE(Grade.EASY),
+        LOCKED_CANDIDATES(Grade.MEDIUM),
+        NAKED_PAIR(Grade.MEDIUM),
+        HIDDEN_PAIR(Grade.MEDIUM),
+        NAKED_TRIPLE(Grade.HARD),
+        HIDDEN_TRIPLE(Grade.HARD),
+        X_WING(Grade.HARD),
+        SWORDFISH(Grade.EXPERT),
+        SIMPLE_COLOURING(Grade.EXPERT);
+
+        final Grade grade;
+
+        Technique(Grade grade) {
+
+            this.grade = grade;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>Hint</code> class is an immutable description of one step: either a single placement,
+     * or a set of candidate eliminations.
+     * </p>
+     */
+    static final class Hint {
+
+        private final Technique technique;
+        private final int cell;
+        private final int value;
+        private final int[] eliminations;
+
+        private Hint(Technique technique, int cell, int value, int[] eliminations) {
+
+            this.technique = technique;
+            this.cell = cell;
+            this.value = value;
+            this.eliminations = eliminations;
+
+        }
+
+        Technique technique() {
+
+            return technique;
+
+        }
+
+        /**
+         * @return The cell to fill, or -1 if this hint only eliminates candidates.
+         */
+        int cell() {
+
+            return cell;
+
+        }
+
+        /**
+         * @return The digit to place in <code>cell()</code>, or 0.
+         */
+        int value() {
+
+            return value;
+
+        }
+
+        /**
+         * @return The candidate mask to remove from each cell (all zero for a placement).
+         */
+        int[] eliminations() {
+
+            return eliminations.clone();
+
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder output = new StringBuilder(technique.name());
+
+            if (cell >= 0) {
+
+                output.append(": r").append(cell / 9).append('c').append(cell % 9).append(" = ").append(value);
+
+            } else {
+
+                output.append(':');
+
+                for (int i = 0; i < 81; i++) {
+
+                    for (int m = eliminations[i]; m != 0; m &= m - 1) {
+
+                        output.append(" r").append(i / 9).append('c').append(i % 9)
+                                .append(" -").append(Integer.numberOfTrailingZeros(m));
+
+                    }
+
+                }
+
+            }
+
+            return output.toString();
+
+        }
+
+    }
+
+    // The cells of each unit as a two long bit set.
+    private static final long[] UNIT_LO = new long[27];
+    private static final long[] UNIT_HI = new long[27];
+
+    // The peers of each cell as a two long bit set.
+    private static final long[] PEER_LO = new long[81];
+    private static final long[] PEER_HI = new long[81];
+
+    // Each box paired with each row/column through it, i.e. (box unit, line unit) for the 54 intersections.
+    private static final int[] INTERSECTIONS = new int[54 * 2];
+
+    static {
+
+        for (int u = 0; u < 27; u++) {
+
+            for (int k = 0; k < 9; k++) {
+
+                int cell = Board.UNITS[u * 9 + k];
+
+                if (cell < 64) {
+
+                    UNIT_LO[u] |= 1L << cell;
+
+                } else {
+
+                    UNIT_HI[u] |= 1L << (cell - 64);
+
+                }
+
+            }
+
+        }
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            for (int k = 0; k < 20; k++) {
+
+                int peer = Board.PEERS[cell * 20 + k];
+
+                if (peer < 64) {
+
+                    PEER_LO[cell] |= 1L << peer;
+
+                } else {
+
+                    PEER_HI[cell] |= 1L << (peer - 64);
+
+                }
+
+            }
+
+        }
+
+        int n = 0;
+
+        for (int b = 0; b < 9; b++) {
+
+            for (int i = 0; i < 3; i++) {
+
+                INTERSECTIONS[n++] = 18 + b;
+                INTERSECTIONS[n++] = 3 * (b / 3) + i;
+                INTERSECTIONS[n++] = 18 + b;
+                INTERSECTIONS[n++] = 9 + 3 * (b % 3) + i;
+
+            }
+
+        }
+
+    }
+
+    private final int[] values = new int[81];
+    private final int[] cand = new int[81];
+    private boolean broken;
+
+    // The cells (as two long bit sets) which could hold each digit, refreshed by digitSets().
+    private final long[] digitLo = new long[10];
+    private final long[] digitHi = new long[10];
+
+    // The outcome of the last technique which made progress: a placement, or a set of eliminations.
+    private Technique found;
+    private int foundCell;
+    private int foundValue;
+    private final int[] pending = new int[81];
+    private final int[] touched = new int[81];
+    private int touchedSize;
+
+    // Scratch space for the subset and colouring techniques.
+    private final int[] scratch = new int[9];
+    private final int[] colour = new int[81];
+    private final int[] queue = new int[81];
+
+    /**
+     * <p>
+     * The <code>load()</code> method resets the solver to a new puzzle.
+     * </p>
+     *
+     * @param data The puzzle, as returned by <code>Sudoku.dataParse()</code>.
+     * @return Whether the givens are consistent.
+     */
+    boolean load(int[][] data) {
+
+        Arrays.fill(values, 0);
+        Arrays.fill(cand, Board.ALL);
+        broken = false;
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            int v = data[cell / 9][cell % 9];
+
+            if (v != 0) {
+
+                if (v < 0 || v > 9 || (cand[cell] & (1 << v)) == 0) {
+
+                    broken = true;
+
+                    return false;
+
+                }
+
+                place(cell, v);
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>load()</code> method resets the solver to the current state of a <code>Board</code>. The
+     * techniques only know the classic row, column and box constraints, so on a board of any other variant
+     * they would make eliminations which aren't sound, and such a board is rejected.
+     * </p>
+     *
+     * @param board The board.
+     * @throws IllegalArgumentException If the board is not of the <code>CLASSIC</code> variant.
+     */
+    void load(Board board) {
+
+        if (board.variant() != Variant.CLASSIC) {
+
+            throw new IllegalArgumentException("ERROR: Only classic boards can be solved with logic, not " + board.variant());
+
+        }
+
+        broken = false;
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            values[cell] = board.get(cell);
+            cand[cell] = board.candidates(cell);
+
+        }
+
+    }
+
+    int get(int cell) {
+
+        return values[cell];
+
+    }
+
+    int candidates(int cell) {
+
+        return cand[cell];
+
+    }
+
+    /**
+     * <p>
+     * The <code>isSolved()</code> method returns whether every cell has been filled.
+     * </p>
+     *
+     * @return Whether the puzzle is solved.
+     */
+    boolean isSolved() {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (values[cell] == 0) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>nextHint()</code> method finds the easiest next step, without applying it.
+     * </p>
+     *
+     * @return The hint, or <code>null</code> if the puzzle is solved, broken, or beyond these techniques.
+     */
+    Hint nextHint() {
+
+        if (!find()) {
+
+            return null;
+
+        }
+
+        Hint hint;
+
+        if (foundCell >= 0) {
+
+            hint = new Hint(found, foundCell, foundValue, new int[81]);
+
+        } else {
+
+            hint = new Hint(found, -1, 0, pending.clone());
+
+        }
+
+        clearPending();
+
+        return hint;
+
+    }
+
+    /**
+     * <p>
+     * The <code>apply()</code> method applies a hint previously returned by <code>nextHint()</code>.
+     * </p>
+     *
+     * @param hint The hint.
+     */
+    void apply(Hint hint) {
+
+        if (hint.cell >= 0) {
+
+            place(hint.cell, hint.value);
+
+        } else {
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                cand[cell] &= ~hint.eliminations[cell];
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>step()</code> method finds and applies the easiest next step.
+     * </p>
+     *
+     * @return The technique used, or <code>null</code> if no progress could be made.
+     */
+    Technique step() {
+
+        if (!find()) {
+
+            return null;
+
+        }
+
+        if (foundCell >= 0) {
+
+            place(foundCell, foundValue);
+
+        } else {
+
+            for (int i = 0; i < touchedSize; i++) {
+
+                cand[touched[i]] &= ~pending[touched[i]];
+
+            }
+
+        }
+
+        clearPending();
+
+        return found;
+
+    }
+
+    /**
+     * <p>
+     * The <code>grade()</code> method solves the loaded puzzle as far as possible, and grades it by the
+     * hardest technique needed.
+     * </p>
+     *
+     * @return The grade, <code>BEYOND_LOGIC</code> if the techniques run out before the puzzle is solved.
+     */
+    Grade grade() {
+
+        Grade hardest = Grade.EASY;
+        Technique technique;
+
+        while ((technique = step()) != null) {
+
+            if (technique.grade.compareTo(hardest) > 0) {
+
+                hardest = technique.grade;
+
+            }
+
+        }
+
+        return isSolved() && !broken ? hardest : Grade.BEYOND_LOGIC;
+
+    }
+
+    /**
+     * <p>
+     * The <code>grade()</code> convenience method loads and grades a puzzle.
+     * </p>
+     *
+     * @param data The puzzle.
+     * @return The grade.
+     */
+    Grade grade(int[][] data) {
+
+        return load(data) ? grade() : Grade.BEYOND_LOGIC;
+
+    }
+
+    /**
+     * <p>
+     * The <code>find()</code> method tries each technique in turn, stopping at the first which makes
+     * progress (recorded in <code>found</code> and friends).
+     * </p>
+     *
+     * @return Whether any technique made progress.
+     */
+    private boolean find() {
+
+        clearPending();
+
+        if (broken) {
+
+            return false;
+
+        }
+
+        // The singles also spot contradictions (an empty cell, or a digit with nowhere to go).
+        if (nakedSingle()) {
+
+            return true;
+
+        }
+
+        if (broken) {
+
+            return false;
+
+        }
+
+        if (hiddenSingle()) {
+
+            return true;
+
+        }
+
+        if (broken) {
+
+            return false;
+
+        }
+
+        digitSets();
+
+        return lockedCandidates()
+                || nakedSubset(2, Technique.NAKED_PAIR)
+                || hiddenSubset(2, Technique.HIDDEN_PAIR)
+                || nakedSubset(3, Technique.NAKED_TRIPLE)
+                || hiddenSubset(3, Technique.HIDDEN_TRIPLE)
+                || fish(2, Technique.X_WING)
+                || fish(3, Technique.SWORDFISH)
+                || simpleColouring();
+
+    }
+
+    private boolean nakedSingle() {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (values[cell] == 0) {
+
+                if (cand[cell] == 0) {
+
+                    broken = true;
+
+                    return false;
+
+                }
+
+                if (Integer.bitCount(cand[cell]) == 1) {
+
+                    return placement(Technique.NAKED_SINGLE, cell, Integer.numberOfTrailingZeros(cand[cell]));
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean hiddenSingle() {
+
+        for (int u = 0; u < 27; u++) {
+
+            int once = 0;
+            int twice = 0;
+            int placed = 0;
+
+            for (int k = 0; k < 9; k++) {
+
+                int cell = Board.UNITS[u * 9 + k];
+
+                if (values[cell] != 0) {
+
+                    placed |= 1 << values[cell];
+
+                } else {
+
+                    twice |= once & cand[cell];
+                    once |= cand[cell];
+
+                }
+
+            }
+
+            // A digit which is neither placed nor possible anywhere in the unit means a contradiction.
+            if ((placed | once) != Board.ALL) {
+
+                broken = true;
+
+                return false;
+
+            }
+
+            int singles = once & ~twice;
+
+            if (singles != 0) {
+
+                int v = Integer.numberOfTrailingZeros(singles);
+
+                for (int k = 0; k < 9; k++) {
+
+                    int cell = Board.UNITS[u * 9 + k];
+
+                    if ((cand[cell] & (1 << v)) != 0) {
+
+                        return placement(Technique.HIDDEN_SINGLE, cell, v);
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * Pointing and claiming: if within a box a digit is confined to one row/column, it can be removed
+     * from the rest of that row/column, and vice versa.
+     * </p>
+     */
+    private boolean lockedCandidates() {
+
+        for (int i = 0; i < INTERSECTIONS.length; i += 2) {
+
+            int box = INTERSECTIONS[i];
+            int line = INTERSECTIONS[i + 1];
+            long interLo = UNIT_LO[box] & UNIT_LO[line];
+            long interHi = UNIT_HI[box] & UNIT_HI[line];
+
+            for (int v = 1; v <= 9; v++) {
+
+                long boxLo = digitLo[v] & UNIT_LO[box];
+                long boxHi = digitHi[v] & UNIT_HI[box];
+                long lineLo = digitLo[v] & UNIT_LO[line];
+                long lineHi = digitHi[v] & UNIT_HI[line];
+
+                if ((boxLo | boxHi) != 0 && (boxLo & ~interLo) == 0 && (boxHi & ~interHi) == 0) {
+
+                    eliminate(lineLo & ~interLo, lineHi & ~interHi, 1 << v);
+
+                }
+
+                if ((lineLo | lineHi) != 0 && (lineLo & ~interLo) == 0 && (lineHi & ~interHi) == 0) {
+
+                    eliminate(boxLo & ~interLo, boxHi & ~interHi, 1 << v);
+
+                }
+
+                if (touchedSize > 0) {
+
+                    found = Technique.LOCKED_CANDIDATES;
+
+                    return true;
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * Naked pairs/triples: <code>size</code> cells of a unit whose candidates, between them, number only
+     * <code>size</code> digits, so those digits can be removed from the rest of the unit.
+     * </p>
+     */
+    private boolean nakedSubset(int size, Technique technique) {
+
+        for (int u = 0; u < 27; u++) {
+
+            int n = 0;
+
+            for (int k = 0; k < 9; k++) {
+
+                int cell = Board.UNITS[u * 9 + k];
+                int count = Integer.bitCount(cand[cell]);
+
+                if (values[cell] == 0 && count >= 2 && count <= size) {
+
+                    scratch[n++] = cell;
+
+                }
+
+            }
+
+            for (int a = 0; a < n; a++) {
+
+                for (int b = a + 1; b < n; b++) {
+
+                    int ab = cand[scratch[a]] | cand[scratch[b]];
+
+                    if (size == 2) {
+
+                        if (Integer.bitCount(ab) == 2 && nakedEliminate(u, ab, scratch[a], scratch[b], -1, technique)) {
+
+                            return true;
+
+                        }
+
+                        continue;
+
+                    }
+
+                    for (int c = b + 1; c < n; c++) {
+
+                        int abc = ab | cand[scratch[c]];
+
+                        if (Integer.bitCount(abc) == 3 && nakedEliminate(u, abc, scratch[a], scratch[b], scratch[c], technique)) {
+
+                            return true;
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean nakedEliminate(int u, int digits, int a, int b, int c, Technique technique) {
+
+        for (int k = 0; k < 9; k++) {
+
+            int cell = Board.UNITS[u * 9 + k];
+
+            if (cell != a && cell != b && cell != c) {
+
+                eliminate(cell, digits);
+
+            }
+
+        }
+
+        if (touchedSize > 0) {
+
+            found = technique;
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * Hidden pairs/triples: <code>size</code> digits which, within a unit, only fit in the same
+     * <code>size</code> cells, so all other candidates can be removed from those cells.
+     * </p>
+     */
+    private boolean hiddenSubset(int size, Technique technique) {
+
+        for (int u = 0; u < 27; u++) {
+
+            // The positions (unit indices 0-8) of each digit, in scratch[v - 1].
+            int digits = 0;
+
+            for (int v = 1; v <= 9; v++) {
+
+                int positions = 0;
+
+                for (int k = 0; k < 9; k++) {
+
+                    if ((cand[Board.UNITS[u * 9 + k]] & (1 << v)) != 0) {
+
+                        positions |= 1 << k;
+
+                    }
+
+                }
+
+                scratch[v - 1] = positions;
+
+                int count = Integer.bitCount(positions);
+
+                if (count >= 2 && count <= size) {
+
+                    digits |= 1 << v;
+
+                }
+
+            }
+
+            for (int a = 1; a <= 9; a++) {
+
+                if ((digits & (1 << a)) == 0) {
+
+                    continue;
+
+                }
+
+                for (int b = a + 1; b <= 9; b++) {
+
+                    if ((digits & (1 << b)) == 0) {
+
+                        continue;
+
+                    }
+
+                    int ab = scratch[a - 1] | scratch[b - 1];
+
+                    if (size == 2) {
+
+                        if (Integer.bitCount(ab) == 2 && hiddenEliminate(u, ab, (1 << a) | (1 << b), technique)) {
+
+                            return true;
+
+                        }
+
+                        continue;
+
+                    }
+
+                    for (int c = b + 1; c <= 9; c++) {
+
+                        if ((digits & (1 << c)) == 0) {
+
+                            continue;
+
+                        }
+
+                        int abc = ab | scratch[c - 1];
+
+                        if (Integer.bitCount(abc) == 3
+                                && hiddenEliminate(u, abc, (1 << a) | (1 << b) | (1 << c), technique)) {
+
+                            return true;
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean hiddenEliminate(int u, int positions, int digits, Technique technique) {
+
+        for (int m = positions; m != 0; m &= m - 1) {
+
+            eliminate(Board.UNITS[u * 9 + Integer.numberOfTrailingZeros(m)], ~digits);
+
+        }
+
+        if (touchedSize > 0) {
+
+            found = technique;
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * X-Wing (<code>size</code> 2) and Swordfish (3): <code>size</code> rows in which a digit is confined
+     * to the same <code>size</code> columns, so it can be removed from the rest of those columns (and the
+     * same with rows and columns swapped).
+     * </p>
+     */
+    private boolean fish(int size, Technique technique) {
+
+        for (int v = 1; v <= 9; v++) {
+
+            for (int base = 0; base <= 9; base += 9) {
+
+                int cover = 9 - base;
+
+                // The positions (unit indices 0-8) of the digit in each base line, in scratch.
+                for (int i = 0; i < 9; i++) {
+
+                    int positions = 0;
+
+                    for (int k = 0; k < 9; k++) {
+
+                        if ((cand[Board.UNITS[(base + i) * 9 + k]] & (1 << v)) != 0) {
+
+                            positions |= 1 << k;
+
+                        }
+
+                    }
+
+                    int count = Integer.bitCount(positions);
+
+                    scratch[i] = count >= 2 && count <= size ? positions : 0;
+
+                }
+
+                for (int a = 0; a < 9; a++) {
+
+                    if (scratch[a] == 0) {
+
+                        continue;
+
+                    }
+
+                    for (int b = a + 1; b < 9; b++) {
+
+                        if (scratch[b] == 0) {
+
+                            continue;
+
+                        }
+
+                        int ab = scratch[a] | scratch[b];
+
+                        if (size == 2) {
+
+                            if (Integer.bitCount(ab) == 2 && fishEliminate(v, base, cover, ab, (1 << a) | (1 << b), technique)) {
+
+                                return true;
+
+                            }
+
+                            continue;
+
+                        }
+
+                        for (int c = b + 1; c < 9; c++) {
+
+                            if (scratch[c] == 0) {
+
+                                continue;
+
+                            }
+
+                            int abc = ab | scratch[c];
+
+                            if (Integer.bitCount(abc) == 3
+                                    && fishEliminate(v, base, cover, abc, (1 << a) | (1 << b) | (1 << c), technique)) {
+
+                                return true;
+
+                            }
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean fishEliminate(int v, int base, int cover, int covers, int bases, Technique technique) {
+
+        for (int m = covers; m != 0; m &= m - 1) {
+
+            int line = cover + Integer.numberOfTrailingZeros(m);
+
+            for (int k = 0; k < 9; k++) {
+
+                // Index k along a cover line is the base line it crosses.
+                if ((bases & (1 << k)) == 0) {
+
+                    eliminate(Board.UNITS[line * 9 + k], 1 << v);
+
+                }
+
+            }
+
+        }
+
+        if (touchedSize > 0) {
+
+            found = technique;
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * Simple colouring (single digit chains): the cells linked by units in which a digit has exactly two
+     * places alternate between true and false, so:
+     * <ul>
+     * <li>If two cells of the same colour see each other, that colour is false everywhere.</li>
+     * <li>Any other cell which sees both colours cannot hold the digit.</li>
+     * </ul>
+     * </p>
+     */
+    private boolean simpleColouring() {
+
+        for (int v = 1; v <= 9; v++) {
+
+            Arrays.fill(colour, 0);
+
+            for (int start = 0; start < 81; start++) {
+
+                if (colour[start] != 0 || (cand[start] & (1 << v)) == 0 || !hasConjugate(start, v)) {
+
+                    continue;
+
+                }
+
+                // Colour the chain through start, 1 and 2 alternately, collecting each colour as a set.
+                long aLo = 0;
+                long aHi = 0;
+                long bLo = 0;
+                long bHi = 0;
+                int head = 0;
+                int tail = 0;
+
+                colour[start] = 1;
+                queue[tail++] = start;
+
+                while (head < tail) {
+
+                    int cell = queue[head++];
+
+                    if (colour[cell] == 1) {
+
+                        aLo |= cell < 64 ? 1L << cell : 0;
+                        aHi |= cell < 64 ? 0 : 1L << (cell - 64);
+
+                    } else {
+
+                        bLo |= cell < 64 ? 1L << cell : 0;
+                        bHi |= cell < 64 ? 0 : 1L << (cell - 64);
+
+                    }
+
+                    for (int i = 0; i < 3; i++) {
+
+                        int other = conjugate(unit(cell, i), cell, v);
+
+                        if (other >= 0 && colour[other] == 0) {
+
+                            colour[other] = 3 - colour[cell];
+                            queue[tail++] = other;
+
+                        }
+
+                    }
+
+                }
+
+                if (tail < 3) {
+
+                    continue;
+
+                }
+
+                // Colour wrap.
+                if (seesItself(aLo, aHi)) {
+
+                    eliminate(aLo, aHi, 1 << v);
+
+                } else if (seesItself(bLo, bHi)) {
+
+                    eliminate(bLo, bHi, 1 << v);
+
+                } else {
+
+                    // Colour trap.
+                    long restLo = digitLo[v] & ~aLo & ~bLo;
+                    long restHi = digitHi[v] & ~aHi & ~bHi;
+
+                    for (int cell = 0; cell < 81; cell++) {
+
+                        boolean candidate = cell < 64 ? (restLo & (1L << cell)) != 0 : (restHi & (1L << (cell - 64))) != 0;
+
+                        if (candidate
+                                && ((PEER_LO[cell] & aLo) | (PEER_HI[cell] & aHi)) != 0
+                                && ((PEER_LO[cell] & bLo) | (PEER_HI[cell] & bHi)) != 0) {
+
+                            eliminate(cell, 1 << v);
+
+                        }
+
+                    }
+
+                }
+
+                if (touchedSize > 0) {
+
+                    found = Technique.SIMPLE_COLOURING;
+
+                    return true;
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean hasConjugate(int cell, int v) {
+
+        return conjugate(unit(cell, 0), cell, v) >= 0
+                || conjugate(unit(cell, 1), cell, v) >= 0
+                || conjugate(unit(cell, 2), cell, v) >= 0;
+
+    }
+
+    /**
+     * <p>
+     * The <code>unit()</code> method returns the row (<code>i</code> = 0), column (1) or box (2) unit
+     * of a cell.
+     * </p>
+     */
+    private static int unit(int cell, int i) {
+
+        return i == 0 ? Board.ROW[cell] : i == 1 ? 9 + Board.COL[cell] : 18 + Board.BOX[cell];
+
+    }
+
+    /**
+     * <p>
+     * The <code>conjugate()</code> method finds the other cell of a unit which could hold <code>v</code>,
+     * if there is exactly one.
+     * </p>
+     */
+    private int conjugate(int unit, int cell, int v) {
+
+        int other = -1;
+
+        for (int k = 0; k < 9; k++) {
+
+            int c = Board.UNITS[unit * 9 + k];
+
+            if (c != cell && (cand[c] & (1 << v)) != 0) {
+
+                if (other >= 0) {
+
+                    return -1;
+
+                }
+
+                other = c;
+
+            }
+
+        }
+
+        return other;
+
+    }
+
+    private boolean seesItself(long lo, long hi) {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            boolean member = cell < 64 ? (lo & (1L << cell)) != 0 : (hi & (1L << (cell - 64))) != 0;
+
+            if (member && ((PEER_LO[cell] & lo) | (PEER_HI[cell] & hi)) != 0) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>digitSets()</code> method refreshes, for each digit, the set of cells which could hold it.
+     * </p>
+     */
+    private void digitSets() {
+
+        Arrays.fill(digitLo, 0);
+        Arrays.fill(digitHi, 0);
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            for (int m = cand[cell]; m != 0; m &= m - 1) {
+
+                int v = Integer.numberOfTrailingZeros(m);
+
+                if (cell < 64) {
+
+                    digitLo[v] |= 1L << cell;
+
+                } else {
+
+                    digitHi[v] |= 1L << (cell - 64);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    private boolean placement(Technique technique, int cell, int v) {
+
+        found = technique;
+        foundCell = cell;
+        foundValue = v;
+
+        return true;
+
+    }
+
+    private void eliminate(long lo, long hi, int digits) {
+
+        for (; lo != 0; lo &= lo - 1) {
+
+            eliminate(Long.numberOfTrailingZeros(lo), digits);
+
+        }
+
+        for (; hi != 0; hi &= hi - 1) {
+
+            eliminate(64 + Long.numberOfTrailingZeros(hi), digits);
+
+        }
+
+    }
+
+    private void eliminate(int cell, int digits) {
+
+        int m = cand[cell] & digits & ~pending[cell];
+
+        if (m != 0) {
+
+            if (pending[cell] == 0) {
+
+                touched[touchedSize++] = cell;
+
+            }
+
+            pending[cell] |= m;
+
+        }
+
+    }
+
+    private void clearPending() {
+
+        for (int i = 0; i < touchedSize; i++) {
+
+            pending[touched[i]] = 0;
+
+        }
+
+        touchedSize = 0;
+        foundCell = -1;
+        foundValue = 0;
+
+    }
+
+    private void place(int cell, int v) {
+
+        int bit = ~(1 << v);
+
+        values[cell] = v;
+        cand[cell] = 0;
+
+        for (int k = 0; k < 20; k++) {
+
+            cand[Board.PEERS[cell * 20 + k]] &= bit;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,672 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * The <code>MappedMatrix</code> class is an int matrix which lives in a memory-mapped file rather than
+ * on the heap, offering the same transforms as <code>MatrixHelper</code> for matrices that are far too
+ * large to fit in memory.
+ * </p>
+ * <p>
+ * The file is a 16 byte header (magic, version, row count, column count) followed by the cells in
+ * row-major order as little-endian int32s. Since a single <code>MappedByteBuffer</code> is limited to
+ * 2GB, the file is mapped as a series of fixed size segments.
+ * </p>
+ * <p>
+ * A matrix which is only to be read, such as the source of a transform, can be opened with
+ * <code>openReadOnly()</code>, which needs no write access to the file (writing to such a matrix throws a
+ * <code>ReadOnlyBufferException</code>).
+ * </p>
+ * <p>
+ * Transforms never materialise the matrix; each one writes a new file, walking the source in square
+ * tiles small enough that both the source tile and its (possibly transposed) destination stay resident
+ * in the page cache. Nothing is allocated on the heap per cell, so tens of GB can be transformed without
+ * any GC pressure.
+ * </p>
+ * <p>
+ * NOTA BENE! Java offers no way to eagerly unmap a <code>MappedByteBuffer</code>, so although
+ * <code>close()</code> releases the file handle the mapping itself lingers until it is garbage collected.
+ * </p>
+ */
+class MappedMatrix implements Closeable {
+
+    // "MMAT" in ASCII.
+    private static final int MAGIC = 0x4D4D4154;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    // Default segment size is 1GB (a multiple of 4, so no cell ever straddles two segments).
+    static final int DEFAULT_SEGMENT_SHIFT = 30;
+
+    // Segments must hold the header and a whole number of cells, and be mappable (under 2GB).
+    static final int MIN_SEGMENT_SHIFT = 4;
+    static final int MAX_SEGMENT_SHIFT = 30;
+
+    // 256 x 256 cells = 256KB per tile, comfortably within the page cache (and most L2 caches).
+    static final int TILE = 256;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final int rowCount;
+    private final int colCount;
+
+    /**
+     * <p>
+     * The <code>Transform</code> enum lists the shape altering operations, each of which knows where a
+     * source cell lands in the destination.
+     * </p>
+     */
+    private enum Transform {
+
+        REFLECT_HORIZONTAL(false),
+        REFLECT_VERTICAL(false),
+        TRANSPOSE(true),
+        ROTATE_QUARTER_CW(true),
+        ROTATE_QUARTER_AC(true),
+        ROTATE_HALF(false);
+
+        private final boolean swapsShape;
+
+        Transform(boolean swapsShape) {
+
+            this.swapsShape = swapsShape;
+
+        }
+
+    }
+
+    private MappedMatrix(FileChannel channel, int rowCount, int colCount, int segmentShift, FileChannel.MapMode mode) throws IOException {
+
+        this.channel = channel;
+        this.rowCount = rowCount;
+        this.colCount = colCount;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+
+        long size = HEADER_BYTES + 4L * rowCount * colCount;
+        int segmentCount = (int) ((size + segmentMask) >>> segmentShift);
+
+        segments = new MappedByteBuffer[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+
+            long position = (long) i << segmentShift;
+
+            segments[i] = channel.map(mode, position, Math.min(1L << segmentShift, size - position));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>create()</code> method creates (or truncates) a file holding a zero filled matrix.
+     * </p>
+     *
+     * @param path     The backing file.
+     * @param rowCount The number of rows.
+     * @param colCount The number of columns.
+     * @return The mapped matrix, open for reading and writing.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    static MappedMatrix create(Path path, int rowCount, int colCount) throws IOException {
+
+        return create(path, rowCount, colCount, DEFAULT_SEGMENT_SHIFT);
+
+    }
+
+    /**
+     * <p>
+     * The <code>create()</code> method with an explicit segment size, which is only really useful for
+     * exercising segment boundaries without writing GBs of test data.
+     * </p>
+     *
+     * @param path         The backing file.
+     * @param rowCount     The number of rows.
+     * @param colCount     The number of columns.
+     * @param segmentShift The log2 of the segment size in bytes, from <code>MIN_SEGMENT_SHIFT</code> to
+     *                     <code>MAX_SEGMENT_SHIFT</code>.
+     * @return The mapped matrix, open for reading and writing.
+     * @throws IOException              If the file cannot be created or mapped.
+     * @throws IllegalArgumentException If the dimensions or the segment size are invalid.
+     */
+    static MappedMatrix create(Path path, int rowCount, int colCount, int segmentShift) throws IOException {
+
+        if (rowCount < 1 || colCount < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid matrix dimensions: " + rowCount + " x " + colCount);
+
+        }
+
+        checkSegmentShift(segmentShift);
+
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(MAGIC).putInt(VERSION).putInt(rowCount).putInt(colCount).flip();
+
+            while (header.hasRemaining()) {
+
+                channel.write(header);
+
+            }
+
+            return new MappedMatrix(channel, rowCount, colCount, segmentShift, FileChannel.MapMode.READ_WRITE);
+
+        } catch (IOException | RuntimeException e) {
+
+            channel.close();
+            throw e;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>open()</code> method maps an existing matrix file for reading and writing.
+     * </p>
+     *
+     * @param path The backing file.
+     * @return The mapped matrix.
+     * @throws IOException If the file cannot be read, is not a matrix file, or is truncated.
+     */
+    static MappedMatrix open(Path path) throws IOException {
+
+        return open(path, DEFAULT_SEGMENT_SHIFT);
+
+    }
+
+    /**
+     * <p>
+     * The <code>open()</code> method with an explicit segment size, see <code>create()</code>.
+     * </p>
+     *
+     * @param path         The backing file.
+     * @param segmentShift The log2 of the segment size in bytes, from <code>MIN_SEGMENT_SHIFT</code> to
+     *                     <code>MAX_SEGMENT_SHIFT</code>.
+     * @return The mapped matrix.
+     * @throws IOException              If the file cannot be read, is not a matrix file, or is truncated.
+     * @throws IllegalArgumentException If the segment size is invalid.
+     */
+    static MappedMatrix open(Path path, int segmentShift) throws IOException {
+
+        return open(path, segmentShift, false);
+
+    }
+
+    /**
+     * <p>
+     * The <code>openReadOnly()</code> method maps an existing matrix file for reading only, so that a file
+     * which may not be written (or whose source must not be touched) can still be transformed.
+     * </p>
+     *
+     * @param path The backing file.
+     * @return The mapped matrix, whose <code>set()</code> throws a <code>ReadOnlyBufferException</code>.
+     * @throws IOException If the file cannot be read, is not a matrix file, or is truncated.
+     */
+    static MappedMatrix openReadOnly(Path path) throws IOException {
+
+        return open(path, DEFAULT_SEGMENT_SHIFT, true);
+
+    }
+
+    /**
+     * <p>
+     * The <code>openReadOnly()</code> method with an explicit segment size, see <code>create()</code>.
+     * </p>
+     *
+     * @param path         The backing file.
+     * @param segmentShift The log2 of the segment size in bytes, from <code>MIN_SEGMENT_SHIFT</code> to
+     *                     <code>MAX_SEGMENT_SHIFT</code>.
+     * @return The mapped matrix, whose <code>set()</code> throws a <code>ReadOnlyBufferException</code>.
+     * @throws IOException              If the file cannot be read, is not a matrix file, or is truncated.
+     * @throws IllegalArgumentException If the segment size is invalid.
+     */
+    static MappedMatrix openReadOnly(Path path, int segmentShift) throws IOException {
+
+        return open(path, segmentShift, true);
+
+    }
+
+    private static MappedMatrix open(Path path, int segmentShift, boolean readOnly) throws IOException {
+
+        checkSegmentShift(segmentShift);
+
+        FileChannel channel = readOnly ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining()) {
+
+                if (channel.read(header, header.position()) < 0) {
+
+                    throw new IOException("ERROR: The file (" + path + ") is too short to be a matrix.");
+
+                }
+
+            }
+
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+
+                throw new IOException("ERROR: The file (" + path + ") is not a matrix.");
+
+            }
+
+            int rowCount = header.getInt();
+            int colCount = header.getInt();
+
+            if (rowCount < 1 || colCount < 1 || channel.size() < HEADER_BYTES + 4L * rowCount * colCount) {
+
+                throw new IOException("ERROR: The file (" + path + ") is truncated.");
+
+            }
+
+            return new MappedMatrix(channel, rowCount, colCount, segmentShift,
+                    readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE);
+
+        } catch (IOException | RuntimeException e) {
+
+            channel.close();
+            throw e;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Check a segment size: below <code>MIN_SEGMENT_SHIFT</code> a cell could straddle two segments, and
+     * above <code>MAX_SEGMENT_SHIFT</code> a segment couldn't be mapped.
+     * </p>
+     */
+    private static void checkSegmentShift(int segmentShift) {
+
+        if (segmentShift < MIN_SEGMENT_SHIFT || segmentShift > MAX_SEGMENT_SHIFT) {
+
+            throw new IllegalArgumentException("ERROR: Invalid segment shift: " + segmentShift);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>fromArray()</code> method writes an on-heap int[][] out to a new matrix file.
+     * </p>
+     *
+     * @param path The backing file.
+     * @param data The source array.
+     * @return The mapped matrix.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    static MappedMatrix fromArray(Path path, int[][] data) throws IOException {
+
+        MappedMatrix result = create(path, data.length, data[0].length);
+
+        for (int r = 0; r < result.rowCount; r++) {
+
+            for (int c = 0; c < result.colCount; c++) {
+
+                result.set(r, c, data[r][c]);
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>toArray()</code> method copies the matrix onto the heap, so obviously only makes sense
+     * for matrices which fit there.
+     * </p>
+     *
+     * @return The matrix as an int[][].
+     */
+    int[][] toArray() {
+
+        int[][] result = new int[rowCount][colCount];
+
+        for (int r = 0; r < rowCount; r++) {
+
+            for (int c = 0; c < colCount; c++) {
+
+                result[r][c] = get(r, c);
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    int rowCount() {
+
+        return rowCount;
+
+    }
+
+    int colCount() {
+
+        return colCount;
+
+    }
+
+    /**
+     * <p>
+     * The <code>get()</code> method reads the cell at row <code>r</code> and column <code>c</code>.
+     * </p>
+     *
+     * @param r The row.
+     * @param c The column.
+     * @return The cell value.
+     */
+    int get(int r, int c) {
+
+        long offset = HEADER_BYTES + 4L * ((long) r * colCount + c);
+
+        return segments[(int) (offset >>> segmentShift)].getInt((int) (offset & segmentMask));
+
+    }
+
+    /**
+     * <p>
+     * The <code>set()</code> method writes the cell at row <code>r</code> and column <code>c</code>.
+     * </p>
+     *
+     * @param r     The row.
+     * @param c     The column.
+     * @param value The new cell value.
+     */
+    void set(int r, int c, int value) {
+
+        long offset = HEADER_BYTES + 4L * ((long) r * colCount + c);
+
+        segments[(int) (offset >>> segmentShift)].putInt((int) (offset & segmentMask), value);
+
+    }
+
+    /**
+     * <p>
+     * The <code>deepCopy()</code> method creates an exact replica of this matrix at <code>target</code>.
+     * The copy is done by the kernel (<code>FileChannel.transferTo()</code>), so the cells never pass
+     * through the JVM at all.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The replicated matrix.
+     * @throws IOException If the copy fails.
+     */
+    MappedMatrix deepCopy(Path target) throws IOException {
+
+        force();
+
+        try (FileChannel out = FileChannel.open(target,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            long size = HEADER_BYTES + 4L * rowCount * colCount;
+
+            for (long position = 0; position < size; ) {
+
+                position += channel.transferTo(position, size - position, out);
+
+            }
+
+        }
+
+        return open(target, segmentShift);
+
+    }
+
+    /**
+     * <p>
+     * The <code>reflectHorizontal()</code> method reflects the COLUMNS, see
+     * <code>MatrixHelper.matrixReflectHorizontal()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The reflected matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix reflectHorizontal(Path target) throws IOException {
+
+        return transform(Transform.REFLECT_HORIZONTAL, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>reflectVertical()</code> method reflects the ROWS, see
+     * <code>MatrixHelper.matrixReflectVertical()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The reflected matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix reflectVertical(Path target) throws IOException {
+
+        return transform(Transform.REFLECT_VERTICAL, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>transpose()</code> method transposes the ROWS with the COLUMNS, see
+     * <code>MatrixHelper.matrixTranspose()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The transposed matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix transpose(Path target) throws IOException {
+
+        return transform(Transform.TRANSPOSE, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>rotateQuarterCW()</code> method rotates the values 90° CLOCKWISE, see
+     * <code>MatrixHelper.matrixRotateQuarterCW()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The rotated matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix rotateQuarterCW(Path target) throws IOException {
+
+        return transform(Transform.ROTATE_QUARTER_CW, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>rotateQuarterAC()</code> method rotates the values 90° ANTI-CLOCKWISE, see
+     * <code>MatrixHelper.matrixRotateQuarterAC()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The rotated matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix rotateQuarterAC(Path target) throws IOException {
+
+        return transform(Transform.ROTATE_QUARTER_AC, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>rotateHalf()</code> method rotates the values 180°, see
+     * <code>MatrixHelper.matrixRotateHalf()</code>.
+     * </p>
+     *
+     * @param target The file to create (or truncate).
+     * @return The rotated matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    MappedMatrix rotateHalf(Path target) throws IOException {
+
+        return transform(Transform.ROTATE_HALF, target);
+
+    }
+
+    /**
+     * <p>
+     * The <code>transform()</code> method does the actual work for all of the above, walking the source
+     * tile by tile so that the scattered writes of the transposing transforms stay within a small,
+     * cache resident, window of the destination.
+     * </p>
+     *
+     * @param transform The transform to apply.
+     * @param target    The file to create (or truncate).
+     * @return The transformed matrix.
+     * @throws IOException If the target cannot be created.
+     */
+    private MappedMatrix transform(Transform transform, Path target) throws IOException {
+
+        MappedMatrix result = transform.swapsShape
+                ? create(target, colCount, rowCount, segmentShift)
+                : create(target, rowCount, colCount, segmentShift);
+
+        for (int tr = 0; tr < rowCount; tr += TILE) {
+
+            int rowEnd = Math.min(tr + TILE, rowCount);
+
+            for (int tc = 0; tc < colCount; tc += TILE) {
+
+                int colEnd = Math.min(tc + TILE, colCount);
+
+                for (int r = tr; r < rowEnd; r++) {
+
+                    for (int c = tc; c < colEnd; c++) {
+
+                        int value = get(r, c);
+
+                        switch (transform) {
+
+                            case REFLECT_HORIZONTAL:
+                                result.set(r, colCount - c - 1, value);
+                                break;
+
+                            case REFLECT_VERTICAL:
+                                result.set(rowCount - r - 1, c, value);
+                                break;
+
+                            case TRANSPOSE:
+                                result.set(c, r, value);
+                                break;
+
+                            case ROTATE_QUARTER_CW:
+                                result.set(c, rowCount - r - 1, value);
+                                break;
+
+                            case ROTATE_QUARTER_AC:
+                                result.set(colCount - c - 1, r, value);
+                                break;
+
+                            case ROTATE_HALF:
+                                result.set(rowCount - r - 1, colCount - c - 1, value);
+                                break;
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>render()</code> method streams the matrix to a <code>Writer</code> in exactly the same
+     * layout as <code>MatrixHelper.renderMatrix()</code>. This takes two passes over the file, one to
+     * measure the widest cell and one to render.
+     * </p>
+     *
+     * @param labels Whether row/column labels should be rendered.
+     * @param out    The destination of the rendering.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    void render(boolean labels, Writer out) throws IOException {
+
+        int maxDataChars = 1;
+
+        for (int r = 0; r < rowCount; r++) {
+
+            for (int c = 0; c < colCount; c++) {
+
+                maxDataChars = Integer.max(maxDataChars, MatrixHelper.digitWidth(get(r, c)));
+
+            }
+
+        }
+
+        MatrixHelper.renderMatrix(labels, rowCount, colCount, maxDataChars,
+                (o, scratch, r, c, width) -> MatrixHelper.writeCell(o, scratch, get(r, c), width), out);
+
+    }
+
+    /**
+     * <p>
+     * The <code>force()</code> method flushes any dirty pages to the backing file.
+     * </p>
+     */
+    void force() {
+
+        for (MappedByteBuffer segment : segments) {
+
+            segment.force();
+
+        }
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        force();
+        channel.close();
+
+    }
+
+}
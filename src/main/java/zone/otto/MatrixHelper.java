@@ -1,18 +1,52 @@
 package zone.otto;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Arrays;
-import java.util.OptionalInt;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * <p>
  * The <code>MatrixHelper</code> class is a utility class that provides functionality
  * in the form of transforms on int[][] as well as rendering to multi-line String.
  * </p>
+ * <p>
+ * The int[][] transforms are generated, with those of the other primitive types, from
+ * <code>src/main/templates/zone/otto/PrimitiveMatrixHelper.java.template</code> (as
+ * <code>IntMatrixHelper</code>), and delegated to from here, so that every type shares the one
+ * implementation; the rendering workhorse they share lives here.
+ * </p>
  */
 class MatrixHelper {
 
+    // The buffer floating point cells are formatted into, one per thread.
+    private static final ThreadLocal<StringBuilder> DOUBLE_TEXT = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    /**
+     * <p>
+     * The <code>CellRenderer</code> interface lets <code>renderMatrix()</code> lay out any source of cells,
+     * whatever the element type or wherever they are stored.
+     * </p>
+     */
+    interface CellRenderer {
+
+        /**
+         * <p>
+         * Write the cell at row <code>r</code> and column <code>c</code>, right aligned in a field of
+         * <code>width</code> characters.
+         * </p>
+         *
+         * @param out     The destination.
+         * @param scratch A scratch buffer of at least 20 characters.
+         * @param r       The row.
+         * @param c       The column.
+         * @param width   The field width.
+         * @throws IOException If the <code>Writer</code> fails.
+         */
+        void render(Writer out, char[] scratch, int r, int c, int width) throws IOException;
+
+    }
+
     /**
      * <p>
      * The <code>matrixDeepCopy()</code> creates a new instance of int[][] which
@@ -24,22 +58,7 @@ class MatrixHelper {
      */
     static int[][] matrixDeepCopy(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[rowSize][colSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[r][c] = data[r][c];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixDeepCopy(data);
 
     }
 
@@ -54,22 +73,7 @@ class MatrixHelper {
      */
     static int[][] matrixReflectHorizontal(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[rowSize][colSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[r][c] = data[r][colSize - c - 1];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixReflectHorizontal(data);
 
     }
 
@@ -84,22 +88,7 @@ class MatrixHelper {
      */
     static int[][] matrixReflectVertical(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[rowSize][colSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[r][c] = data[rowSize - r - 1][c];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixReflectVertical(data);
 
     }
 
@@ -118,22 +107,7 @@ class MatrixHelper {
      */
     static int[][] matrixTranspose(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[colSize][rowSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[c][r] = data[r][c];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixTranspose(data);
 
     }
 
@@ -156,22 +130,7 @@ class MatrixHelper {
      */
     static int[][] matrixRotateQuarterCW(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[colSize][rowSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[c][rowSize - r - 1] = data[r][c];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixRotateQuarterCW(data);
 
     }
 
@@ -194,22 +153,7 @@ class MatrixHelper {
      */
     static int[][] matrixRotateQuarterAC(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[colSize][rowSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[c][r] = data[r][colSize - c - 1];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixRotateQuarterAC(data);
 
     }
 
@@ -228,22 +172,7 @@ class MatrixHelper {
      */
     static int[][] matrixRotateHalf(int[][] data) {
 
-        int rowSize = data.length;
-        int colSize = data[0].length;
-
-        int[][] result = new int[rowSize][colSize];
-
-        for (int r = 0; r < rowSize; r++) {
-
-            for (int c = 0; c < colSize; c++) {
-
-                result[rowSize - r - 1][colSize - c - 1] = data[r][c];
-
-            }
-
-        }
-
-        return result;
+        return IntMatrixHelper.matrixRotateHalf(data);
 
     }
 
@@ -261,93 +190,307 @@ class MatrixHelper {
      * Dynamically zero padded labels (based on dimension sizes).
      * </li>
      * </ul></p>
+     * <p>
+     * This is a convenience wrapper around the streaming
+     * <code>renderMatrix(boolean, int[][], Writer)</code>, and the layout is identical.
+     * </p>
      *
      * @param data The source array.
      * @return The string representation of the provided array.
      */
     static String renderMatrix(boolean labels, int[][] data) {
 
-        int rowCount = data.length;
-        int colCount = data[0].length;
-        int maxLabelChars = 1 + (int) Math.log10(Integer.max(rowCount - 1, colCount - 1));
-        int maxDataChars = array2dMaxStringLength(data);
-        String labelFormat = "%0" + maxLabelChars + "d";
-        String dataFormat = "%" + maxDataChars + "d";
-        StringBuilder output = new StringBuilder(rowCount * colCount * maxDataChars * 30);
-
-        // Dynamically calculate separator based on maximum column label/cell width.
-        String rowSeparator = IntStream.range(0, Integer.max(maxLabelChars, maxDataChars) + 2)
-                .mapToObj(x -> "-")
-                .collect(Collectors.joining());
-
-        // Dynamically calculate row label whitespace padding based on maximum column label/cell width.
-        String rowLabelPad = IntStream.range(0, Integer.max(maxLabelChars, maxDataChars) - maxLabelChars)
-                .mapToObj(x -> " ")
-                .collect(Collectors.joining());
-
-        // Dynamically calculate column label whitespace padding based on cell width.
-        // (if maximum cell width is wider than column header width).
-        String colLabelPad = IntStream.range(0, maxLabelChars + 2)
-                .mapToObj(x -> " ")
-                .collect(Collectors.joining());
-
-        // Dynamically calculate data cell whitespace padding based on cell width
-        // (if column header width is wider than maximum cell width).
-        String dataPad = IntStream.range(0, Integer.max(maxLabelChars, maxDataChars) - maxDataChars)
-                .mapToObj(x -> " ")
-                .collect(Collectors.joining());
+        StringWriter output = new StringWriter();
+
+        try {
+
+            renderMatrix(labels, data, output);
+
+        } catch (IOException io) {
+
+            // A StringWriter never actually throws, but the signature insists.
+            throw new RuntimeException("ERROR: An I/O Exception has occured.", io);
+
+        }
+
+        return output.toString();
+
+    }
+
+    /**
+     * <p>
+     * The <code>renderMatrix()</code> streams the rendering of an int[][] to a <code>Writer</code>
+     * one row at a time, so that arbitrarily large matrices can be dumped without ever holding
+     * the whole rendering in memory.
+     * </p>
+     * <p>
+     * Cell and label widths are measured arithmetically (see <code>digitWidth()</code>) and cells are
+     * written straight from a small scratch buffer, so beyond a single pre-rendered separator line
+     * nothing is allocated per row or per cell. The output is not buffered here, so callers writing
+     * to files or sockets should supply a <code>BufferedWriter</code>.
+     * </p>
+     *
+     * @param labels Whether row/column labels should be rendered.
+     * @param data   The source array.
+     * @param out    The destination of the rendering.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    static void renderMatrix(boolean labels, int[][] data, Writer out) throws IOException {
+
+        IntMatrixHelper.renderMatrix(labels, data, out);
+
+    }
+
+    /**
+     * <p>
+     * The <code>renderMatrix()</code> workhorse, which renders any <code>rowCount</code> by
+     * <code>colCount</code> source of cells (written by <code>cell</code>) to a <code>Writer</code>.
+     * </p>
+     *
+     * @param labels       Whether row/column labels should be rendered.
+     * @param rowCount     The number of rows.
+     * @param colCount     The number of columns.
+     * @param maxDataChars The width of the widest cell value.
+     * @param cell         Writes the value at (row, column).
+     * @param out          The destination of the rendering.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    static void renderMatrix(boolean labels, int rowCount, int colCount, int maxDataChars,
+                             CellRenderer cell, Writer out) throws IOException {
+
+        int maxLabelChars = digitWidth(Integer.max(rowCount - 1, colCount - 1));
+        int cellChars = Integer.max(maxLabelChars, maxDataChars);
+        int indent = labels ? maxLabelChars + 2 : 0;
+
+        // Scratch space large enough for any long (sign included) or any padded cell.
+        char[] scratch = new char[Integer.max(20, cellChars)];
+
+        // Pre-render the separator line once, as it is repeated after every row.
+        char[] separator = new char[indent + colCount * (cellChars + 3) + 2];
+
+        Arrays.fill(separator, 0, indent, ' ');
+        Arrays.fill(separator, indent, separator.length - 1, '-');
+
+        for (int c = 0; c <= colCount; c++) {
+
+            separator[indent + c * (cellChars + 3)] = '+';
+
+        }
+
+        separator[separator.length - 1] = '\n';
 
         // If labels are required, render column header labels.
         if (labels) {
 
-            output.append(IntStream.range(0, colCount)
-                    .mapToObj(e -> rowLabelPad + String.format(labelFormat, e))
-                    .collect(
-                            Collectors.joining("   ",
-                                    colLabelPad + "  ",
-                                    "\n")
-                    )
-            );
+            writeRepeated(out, ' ', indent + 2);
+
+            for (int c = 0; c < colCount; c++) {
+
+                if (c > 0) {
+
+                    out.write("   ");
+
+                }
+
+                writeRepeated(out, ' ', cellChars - maxLabelChars);
+                writePadded(out, scratch, c, maxLabelChars, '0');
+
+            }
+
+            out.write('\n');
 
         }
 
         // Render opening separator.
-        output.append(IntStream.range(0, colCount)
-                .mapToObj(e -> rowSeparator)
-                .collect(
-                        Collectors.joining("+",
-                                labels ? colLabelPad + "+" : "+",
-                                "+\n")
-                )
-        );
+        out.write(separator);
 
         for (int r = 0; r < rowCount; r++) {
 
             // Render data line, optionally prefixed with row header labels if required.
-            output.append(Arrays.stream(data[r])
-                    .mapToObj(e -> dataPad + String.format(dataFormat, e))
-                    .collect(
-                            Collectors.joining(
-                                    " | ",
-                                    labels ? " " + String.format(labelFormat, r) + " | " : "| ",
-                                    " |\n")
-                    )
-            );
+            if (labels) {
+
+                out.write(' ');
+                writePadded(out, scratch, r, maxLabelChars, '0');
+                out.write(" | ");
+
+            } else {
+
+                out.write("| ");
+
+            }
+
+            for (int c = 0; c < colCount; c++) {
+
+                if (c > 0) {
+
+                    out.write(" | ");
+
+                }
+
+                cell.render(out, scratch, r, c, cellChars);
+
+            }
+
+            out.write(" |\n");
 
             // Render separator.
-            output.append(IntStream.range(0, colCount)
-                    .mapToObj(e -> rowSeparator)
-                    .collect(
-                            Collectors.joining(
-                                    "+",
-                                    labels ? colLabelPad + "+" : "+",
-                                    "+\n")
-                    )
-            );
+            out.write(separator);
 
         }
 
-        return output.toString();
+    }
+
+    /**
+     * <p>
+     * The <code>writeCell()</code> writes an integral cell value right aligned in a field of
+     * <code>width</code> characters, without creating a String.
+     * </p>
+     *
+     * @param out     The destination.
+     * @param scratch A scratch buffer of at least 20 characters.
+     * @param value   The value to write.
+     * @param width   The field width.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    static void writeCell(Writer out, char[] scratch, long value, int width) throws IOException {
+
+        writePadded(out, scratch, value, width, ' ');
+
+    }
+
+    /**
+     * <p>
+     * The <code>writeCell()</code> writes a floating point cell value (as per <code>Double.toString()</code>)
+     * right aligned in a field of <code>width</code> characters.
+     * </p>
+     *
+     * @param out     The destination.
+     * @param scratch A scratch buffer, used if the value fits in it.
+     * @param value   The value to write.
+     * @param width   The field width.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    static void writeCell(Writer out, char[] scratch, double value, int width) throws IOException {
+
+        StringBuilder text = format(value);
+        int length = text.length();
+
+        writeRepeated(out, ' ', width - length);
+
+        if (length <= scratch.length) {
+
+            text.getChars(0, length, scratch, 0);
+            out.write(scratch, 0, length);
+
+        } else {
+
+            out.append(text);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>cellWidth()</code> measures an integral cell value, see <code>digitWidth()</code>.
+     * </p>
+     *
+     * @param value The value to measure.
+     * @return The number of characters in its decimal representation.
+     */
+    static int cellWidth(long value) {
+
+        return digitWidth(value);
+
+    }
+
+    /**
+     * <p>
+     * The <code>cellWidth()</code> measures a floating point cell value, as per <code>Double.toString()</code>.
+     * There is no cheap arithmetic shortcut for this one, so it is formatted, but without creating a String.
+     * </p>
+     *
+     * @param value The value to measure.
+     * @return The number of characters in its representation.
+     */
+    static int cellWidth(double value) {
+
+        return format(value).length();
+
+    }
+
+    /**
+     * <p>
+     * Format a floating point value, as per <code>Double.toString()</code>, into this thread's reusable
+     * buffer (<code>StringBuilder.append(double)</code> writes the digits straight into it, where
+     * <code>Double.toString()</code> would create a String per value).
+     * </p>
+     */
+    private static StringBuilder format(double value) {
+
+        StringBuilder text = DOUBLE_TEXT.get();
+
+        text.setLength(0);
+
+        return text.append(value);
+
+    }
+
+    /**
+     * <p>
+     * The <code>writePadded()</code> writes <code>value</code> right aligned in a field of
+     * <code>width</code> characters, padded on the left with <code>pad</code>.
+     * </p>
+     *
+     * @param out     The destination.
+     * @param scratch A scratch buffer of at least 20 characters.
+     * @param value   The value to write.
+     * @param width   The minimum field width.
+     * @param pad     The padding character.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    private static void writePadded(Writer out, char[] scratch, long value, int width, char pad) throws IOException {
+
+        int pos = scratch.length;
+
+        // Work in negative space so that Long.MIN_VALUE doesn't overflow.
+        long v = value < 0 ? value : -value;
+
+        do {
+
+            scratch[--pos] = (char) ('0' - (v % 10));
+            v /= 10;
+
+        } while (v != 0);
+
+        if (value < 0) {
+
+            scratch[--pos] = '-';
+
+        }
+
+        writeRepeated(out, pad, width - (scratch.length - pos));
+        out.write(scratch, pos, scratch.length - pos);
+
+    }
+
+    /**
+     * <p>
+     * The <code>writeRepeated()</code> writes <code>count</code> copies of <code>ch</code>.
+     * </p>
+     *
+     * @param out   The destination.
+     * @param ch    The character to repeat.
+     * @param count The number of copies, nothing is written if not positive.
+     * @throws IOException If the <code>Writer</code> fails.
+     */
+    private static void writeRepeated(Writer out, char ch, int count) throws IOException {
+
+        for (int i = 0; i < count; i++) {
+
+            out.write(ch);
+
+        }
 
     }
 
@@ -363,14 +506,44 @@ class MatrixHelper {
      */
     static int array2dMaxStringLength(int[][] data) {
 
-        OptionalInt max = Arrays.stream(data)
-                .flatMapToInt(Arrays::stream)
-                .map(e -> (Integer.toString(e)).length())
-                .max();
+        int max = 1;
+
+        for (int[] row : data) {
+
+            for (int value : row) {
+
+                max = Integer.max(max, digitWidth(value));
 
-        return max.isPresent() ? max.getAsInt() : 1;
+            }
+
+        }
+
+        return max;
 
     }
 
+    /**
+     * <p>
+     * The <code>digitWidth()</code> calculates the number of characters needed to render
+     * <code>value</code> in decimal (including any minus sign), without creating a String.
+     * </p>
+     *
+     * @param value The value to measure.
+     * @return The number of characters in its decimal representation.
+     */
+    static int digitWidth(long value) {
+
+        int width = value < 0 ? 2 : 1;
+
+        // Work in negative space so that Long.MIN_VALUE doesn't overflow.
+        for (long v = value < 0 ? value : -value; v <= -10; v /= 10) {
+
+            width++;
+
+        }
+
+        return width;
+
+    }
 
 }
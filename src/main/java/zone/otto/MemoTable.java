@@ -0,0 +1,255 @@
+package zone.otto;
+
+/**
+ * <p>
+ * The <code>MemoTable</code> class is a growable, thread-safe map from <code>long</code> keys to
+ * non-negative <code>long</code> values, for memoising counts on a packed state without boxing either.
+ * </p>
+ * <p>
+ * Unlike <code>NogoodTable</code>, which may forget, a memo must be exact, so the table never evicts: it
+ * is split into <code>SEGMENTS</code> segments by the high bits of the key's hash, each an open addressed
+ * pair of <code>long</code> arrays (keys and values, linear probing) under its own lock, which doubles
+ * once it is half full. A lookup is a multiply, an uncontended lock and a probe or two, and allocates
+ * nothing.
+ * </p>
+ */
+class MemoTable {
+
+    // The number of segments, each locked separately.
+    static final int SEGMENT_BITS = 6;
+    static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    // The value returned for a key which isn't in the table.
+    static final long ABSENT = -1;
+
+    // The slot value meaning "empty"; values are stored complemented, so that every key may be used and a
+    // slot in use always holds a negative value.
+    private static final long EMPTY = 0;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * <p>
+     * The <code>Segment</code> class is one lock's share of the table.
+     * </p>
+     */
+    private static final class Segment {
+
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        Segment(int capacity) {
+
+            keys = new long[capacity];
+            values = new long[capacity];
+
+        }
+
+        synchronized long get(long key, int hash) {
+
+            int mask = keys.length - 1;
+
+            for (int slot = hash & mask; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+
+                if (keys[slot] == key) {
+
+                    return ~values[slot];
+
+                }
+
+            }
+
+            return ABSENT;
+
+        }
+
+        synchronized void put(long key, int hash, long value) {
+
+            if (insert(keys, values, key, hash, ~value)) {
+
+                if (++size * 2 > keys.length) {
+
+                    grow();
+
+                }
+
+            }
+
+        }
+
+        private void grow() {
+
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+
+                if (oldValues[i] != EMPTY) {
+
+                    insert(keys, values, oldKeys[i], hash(oldKeys[i]), oldValues[i]);
+
+                }
+
+            }
+
+        }
+
+        /**
+         * <p>
+         * Insert a key and its (complemented) value unless the key is already there, returning whether it
+         * was added.
+         * </p>
+         */
+        private static boolean insert(long[] keys, long[] values, long key, int hash, long stored) {
+
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+
+            while (values[slot] != EMPTY) {
+
+                if (keys[slot] == key) {
+
+                    return false;
+
+                }
+
+                slot = (slot + 1) & mask;
+
+            }
+
+            keys[slot] = key;
+            values[slot] = stored;
+
+            return true;
+
+        }
+
+        synchronized int size() {
+
+            return size;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Create a table with room for about 1000 entries before it first grows.
+     * </p>
+     */
+    MemoTable() {
+
+        this(1 << 11);
+
+    }
+
+    /**
+     * <p>
+     * Create a table.
+     * </p>
+     *
+     * @param capacity The number of slots to start with, rounded up to a power of two, at least one per
+     *                 segment (the table holds half as many entries before it grows).
+     * @throws IllegalArgumentException If the capacity is not positive or too large.
+     */
+    MemoTable(int capacity) {
+
+        if (capacity < 1 || capacity > 1 << 30) {
+
+            throw new IllegalArgumentException("ERROR: Invalid capacity: " + capacity);
+
+        }
+
+        int size = Integer.highestOneBit(capacity);
+
+        if (size < capacity) {
+
+            size <<= 1;
+
+        }
+
+        for (int i = 0; i < SEGMENTS; i++) {
+
+            segments[i] = new Segment(Math.max(2, size / SEGMENTS));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>get()</code> method looks a key up.
+     * </p>
+     *
+     * @param key The key.
+     * @return The key's value, or <code>ABSENT</code> if it has none.
+     */
+    long get(long key) {
+
+        int hash = hash(key);
+
+        return segments[hash >>> (32 - SEGMENT_BITS)].get(key, hash);
+
+    }
+
+    /**
+     * <p>
+     * The <code>put()</code> method gives a key a value, unless it already has one (as when two threads
+     * have computed the same count at once), in which case the first is kept.
+     * </p>
+     *
+     * @param key   The key.
+     * @param value The value, which must not be negative.
+     * @throws IllegalArgumentException If the value is negative.
+     */
+    void put(long key, long value) {
+
+        if (value < 0) {
+
+            throw new IllegalArgumentException("ERROR: Invalid value: " + value);
+
+        }
+
+        int hash = hash(key);
+
+        segments[hash >>> (32 - SEGMENT_BITS)].put(key, hash, value);
+
+    }
+
+    /**
+     * <p>
+     * The <code>size()</code> method counts the entries. It is a snapshot, and O(<code>SEGMENTS</code>).
+     * </p>
+     *
+     * @return The number of keys with a value.
+     */
+    int size() {
+
+        int size = 0;
+
+        for (Segment segment : segments) {
+
+            size += segment.size();
+
+        }
+
+        return size;
+
+    }
+
+    /**
+     * <p>
+     * Spread a key's bits, the top <code>SEGMENT_BITS</code> choosing its segment and the rest its slot.
+     * </p>
+     */
+    private static int hash(long key) {
+
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+
+    }
+
+}
@@ -0,0 +1,406 @@
+package zone.otto;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * The <code>Metrics</code> class is an in-process registry of counters and histograms for a long-running
+ * solver, which can be exported in the Prometheus text format, either to a file (for the node exporter's
+ * textfile collector) or from a local HTTP endpoint.
+ * </p>
+ * <p>
+ * It counts puzzles parsed, solved, found unsolvable, aborted (cancelled before an answer) and rejected
+ * (turned away by a full <code>AsyncSolver</code>), and records the latency and node count of each solve
+ * in a <code>Histogram</code>, from which the p50, p99 and p99.9 are exported. Recording is lock-free: the
+ * counters are <code>LongAdder</code>s, which stripe themselves across threads under contention, and a
+ * histogram is one more, so the cost on the solve path is a few nanoseconds plus the two
+ * <code>nanoTime()</code> calls which time it. Exporting reads the registry without stopping the writers.
+ * </p>
+ * <p>
+ * <code>Sudoku</code>, <code>Solver</code>, <code>SolutionStream</code> and <code>AsyncSolver</code> all
+ * record into <code>global()</code>.
+ * </p>
+ */
+class Metrics {
+
+    // The quantiles exported for each histogram.
+    static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder solved = new LongAdder();
+    private final LongAdder unsolvable = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram latency = new Histogram();
+    private final Histogram nodes = new Histogram();
+
+    /**
+     * <p>
+     * The <code>global()</code> method returns the registry the solver records into.
+     * </p>
+     *
+     * @return The registry.
+     */
+    static Metrics global() {
+
+        return GLOBAL;
+
+    }
+
+    /**
+     * <p>
+     * The <code>parsed()</code> method counts a puzzle parsed.
+     * </p>
+     */
+    void parsed() {
+
+        parsed.increment();
+
+    }
+
+    /**
+     * <p>
+     * The <code>solved()</code> method records a puzzle solved.
+     * </p>
+     *
+     * @param nanos The time the solve took.
+     * @param nodes The number of nodes it expanded, or a negative number if the engine doesn't count them.
+     */
+    void solved(long nanos, long nodes) {
+
+        solved.increment();
+        record(nanos, nodes);
+
+    }
+
+    /**
+     * <p>
+     * The <code>unsolvable()</code> method records a puzzle proved to have no solution (including one with
+     * conflicting givens).
+     * </p>
+     *
+     * @param nanos The time the solve took.
+     * @param nodes The number of nodes it expanded, or a negative number if the engine doesn't count them.
+     */
+    void unsolvable(long nanos, long nodes) {
+
+        unsolvable.increment();
+        record(nanos, nodes);
+
+    }
+
+    /**
+     * <p>
+     * The <code>aborted()</code> method counts a solve abandoned before an answer. Its latency is not
+     * recorded, as it would measure when it was abandoned, not how long it took.
+     * </p>
+     */
+    void aborted() {
+
+        aborted.increment();
+
+    }
+
+    /**
+     * <p>
+     * The <code>rejected()</code> method counts a solve turned away without being started, because there
+     * was no room to queue it.
+     * </p>
+     */
+    void rejected() {
+
+        rejected.increment();
+
+    }
+
+    private void record(long nanos, long nodes) {
+
+        latency.record(nanos);
+
+        if (nodes >= 0) {
+
+            this.nodes.record(nodes);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>latency()</code> method returns the histogram of solve latencies, in nanoseconds.
+     * </p>
+     *
+     * @return The histogram.
+     */
+    Histogram latency() {
+
+        return latency;
+
+    }
+
+    /**
+     * <p>
+     * The <code>nodes()</code> method returns the histogram of node counts per solve.
+     * </p>
+     *
+     * @return The histogram.
+     */
+    Histogram nodes() {
+
+        return nodes;
+
+    }
+
+    /**
+     * <p>
+     * The <code>reset()</code> method zeroes every counter and histogram.
+     * </p>
+     */
+    void reset() {
+
+        parsed.reset();
+        solved.reset();
+        unsolvable.reset();
+        aborted.reset();
+        rejected.reset();
+        latency.reset();
+        nodes.reset();
+
+    }
+
+    /**
+     * <p>
+     * The <code>render()</code> method renders the registry in the Prometheus text exposition format.
+     * </p>
+     *
+     * @return The text.
+     */
+    String render() {
+
+        StringBuilder text = new StringBuilder();
+
+        counter(text, "sudoku_puzzles_parsed_total", "Puzzles parsed.", parsed.sum());
+        counter(text, "sudoku_puzzles_solved_total", "Puzzles solved.", solved.sum());
+        counter(text, "sudoku_puzzles_unsolvable_total", "Puzzles proved to have no solution.", unsolvable.sum());
+        counter(text, "sudoku_puzzles_aborted_total", "Solves abandoned before an answer.", aborted.sum());
+        counter(text, "sudoku_puzzles_rejected_total", "Solves rejected because the queue was full.", rejected.sum());
+        summary(text, "sudoku_solve_seconds", "Solve latency.", latency, 1e-9);
+        summary(text, "sudoku_solve_nodes", "Search nodes expanded per solve.", nodes, 1);
+
+        return text.toString();
+
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+
+    }
+
+    private static void summary(StringBuilder text, String name, String help, Histogram histogram, double scale) {
+
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+
+        for (double quantile : QUANTILES) {
+
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(number(histogram.percentile(quantile) * scale)).append('\n');
+
+        }
+
+        text.append(name).append("_sum ").append(number(histogram.sum() * scale)).append('\n');
+        text.append(name).append("_count ").append(histogram.count()).append('\n');
+
+    }
+
+    private static String number(double value) {
+
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.9g", value);
+
+    }
+
+    /**
+     * <p>
+     * The <code>write()</code> method writes the registry to a file, atomically where the file system
+     * allows, so that a collector reading it never sees half of it.
+     * </p>
+     *
+     * @param file The file.
+     * @throws IOException If it cannot be written.
+     */
+    void write(Path file) throws IOException {
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+        try {
+
+            Files.write(temp, render().getBytes(StandardCharsets.UTF_8));
+
+            try {
+
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            } catch (AtomicMoveNotSupportedException e) {
+
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+
+            }
+
+        } finally {
+
+            Files.deleteIfExists(temp);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>exportEvery()</code> method writes the registry to a file periodically, from a daemon thread,
+     * until closed. A failed write is retried at the next period, and reported only if the one before it
+     * succeeded, so that a file which stays unwritable is reported once rather than every period.
+     * </p>
+     *
+     * @param file   The file.
+     * @param period The time between writes.
+     * @param unit   The unit of the period.
+     * @return A handle which stops the writes when closed.
+     */
+    Closeable exportEvery(Path file, long period, TimeUnit unit) {
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "metrics");
+
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+        // Only touched by the timer's one thread.
+        boolean[] failing = new boolean[1];
+
+        timer.scheduleAtFixedRate(() -> {
+
+            try {
+
+                write(file);
+                failing[0] = false;
+
+            } catch (IOException io) {
+
+                if (!failing[0]) {
+
+                    failing[0] = true;
+                    io.printStackTrace();
+
+                }
+
+            }
+
+        }, 0, period, unit);
+
+        return timer::shutdown;
+
+    }
+
+    /**
+     * <p>
+     * The <code>serve()</code> method serves the registry over HTTP at <code>/metrics</code>, until closed.
+     * </p>
+     *
+     * @param address The address to listen on (port 0 for any free port), normally a loopback one.
+     * @return The server, already started, which stops when closed.
+     * @throws IOException If the address cannot be bound.
+     */
+    Endpoint serve(InetSocketAddress address) throws IOException {
+
+        HttpServer server = HttpServer.create(address, 0);
+
+        server.createContext("/metrics", exchange -> {
+
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+
+                out.write(body);
+
+            }
+
+        });
+
+        server.start();
+
+        return new Endpoint(server);
+
+    }
+
+    /**
+     * <p>
+     * The <code>Endpoint</code> class is a running HTTP endpoint.
+     * </p>
+     */
+    static final class Endpoint implements Closeable {
+
+        private final HttpServer server;
+
+        private Endpoint(HttpServer server) {
+
+            this.server = server;
+
+        }
+
+        /**
+         * <p>
+         * The <code>port()</code> method returns the port the endpoint is listening on.
+         * </p>
+         *
+         * @return The port.
+         */
+        int port() {
+
+            return server.getAddress().getPort();
+
+        }
+
+        /**
+         * <p>
+         * The <code>close()</code> method stops the endpoint.
+         * </p>
+         */
+        @Override
+        public void close() {
+
+            server.stop(0);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,246 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * The <code>Minimizer</code> class removes clues from a puzzle with a unique solution until every clue
+ * left is necessary, i.e. until removing any one of them would allow a second solution.
+ * </p>
+ * <p>
+ * A clue is redundant exactly when the puzzle without it has no solution with a different value in its
+ * cell, so each test is a single search for one solution (of the current board with the clue replaced by
+ * each other candidate in turn), never a count of them. The board is built once per puzzle and each test
+ * works on a copy of it, and all of the searches share one <code>NogoodTable</code> for the life of the
+ * minimizer: whether a state can be completed doesn't depend on the puzzle it came from, so dead ends
+ * proved for one clue (or puzzle) prune the searches for every other.
+ * </p>
+ * <p>
+ * Removing clues only ever adds solutions, so a clue which is necessary once stays necessary. So first
+ * every clue is tested at once, in parallel, against the full puzzle, and the necessary ones are settled.
+ * The rest are then tested in order, as if one at a time, but speculatively a window of them at once, so
+ * that the result is the same whatever the number of threads: the first redundant clue in the window is
+ * removed, any before it are settled as necessary, and those after it are tested again against the
+ * smaller puzzle.
+ * </p>
+ * <p>
+ * The threads are created once, with the minimizer, so a minimizer should be kept and reused for a whole
+ * catalogue (it is safe to call <code>minimize()</code> from several threads at once) and closed when
+ * finished with.
+ * </p>
+ */
+class Minimizer implements Closeable {
+
+    // The capacity of the nogood table, shared by every search.
+    static final int NOGOOD_CAPACITY = 1 << 16;
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final NogoodTable nogoods = new NogoodTable(NOGOOD_CAPACITY);
+
+    /**
+     * <p>
+     * Create a minimizer.
+     * </p>
+     *
+     * @param threads The number of threads to test clues with.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    Minimizer(int threads) {
+
+        if (threads < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid number of threads: " + threads);
+
+        }
+
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+
+            Thread thread = new Thread(runnable, "minimizer");
+
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+    }
+
+    /**
+     * <p>
+     * The <code>minimize()</code> method removes redundant clues from a puzzle.
+     * </p>
+     *
+     * @param data The puzzle, as returned by <code>Sudoku.dataParse()</code>, which is not changed.
+     * @return The minimal puzzle, in the same shape, with the same unique solution.
+     * @throws IllegalArgumentException If the givens conflict, or the puzzle does not have exactly one
+     *                                  solution.
+     */
+    int[][] minimize(int[][] data) {
+
+        // Validates the givens, which are then placed as moves instead, so that they can be erased.
+        Board givens = new Board(data);
+        Board board = new Board();
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (givens.get(cell) != 0) {
+
+                board.place(cell, givens.get(cell));
+
+            }
+
+        }
+
+        if (SolutionSpliterator.solutions(board).limit(2).count() != 1) {
+
+            throw new IllegalArgumentException("ERROR: The puzzle does not have a unique solution");
+
+        }
+
+        List<Integer> undecided = new ArrayList<>();
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (board.get(cell) != 0) {
+
+                undecided.add(cell);
+
+            }
+
+        }
+
+        boolean[] redundant = test(board, undecided);
+        List<Integer> remaining = new ArrayList<>();
+
+        for (int i = 0; i < undecided.size(); i++) {
+
+            if (redundant[i]) {
+
+                remaining.add(undecided.get(i));
+
+            }
+
+        }
+
+        while (!remaining.isEmpty()) {
+
+            List<Integer> window = remaining.subList(0, Math.min(threads, remaining.size()));
+            int settled = window.size();
+
+            redundant = test(board, window);
+
+            for (int i = 0; i < redundant.length; i++) {
+
+                if (redundant[i]) {
+
+                    board.erase(window.get(i));
+                    settled = i + 1;
+                    break;
+
+                }
+
+            }
+
+            // Everything up to the first redundant clue (or the whole window) is now decided.
+            window.subList(0, settled).clear();
+
+        }
+
+        return board.toArray();
+
+    }
+
+    /**
+     * <p>
+     * Test clues of the current board in parallel.
+     * </p>
+     */
+    private boolean[] test(Board board, List<Integer> cells) {
+
+        List<Callable<Boolean>> tests = new ArrayList<>();
+
+        for (int cell : cells) {
+
+            tests.add(() -> isRedundant(new Board(board), cell));
+
+        }
+
+        try {
+
+            List<Future<Boolean>> results = pool.invokeAll(tests);
+            boolean[] redundant = new boolean[cells.size()];
+
+            for (int i = 0; i < redundant.length; i++) {
+
+                redundant[i] = results.get(i).get();
+
+            }
+
+            return redundant;
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("ERROR: Interrupted while minimizing", e);
+
+        } catch (ExecutionException e) {
+
+            throw new RuntimeException("ERROR: Test failed", e.getCause());
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Whether a clue can be removed: whether the board, without it, has no solution with any other value
+     * in its cell.
+     * </p>
+     */
+    private boolean isRedundant(Board board, int cell) {
+
+        int v = board.get(cell);
+
+        board.erase(cell);
+
+        for (int m = board.candidates(cell) & ~(1 << v); m != 0; m &= m - 1) {
+
+            board.place(cell, Integer.numberOfTrailingZeros(m));
+
+            if (board.solution(null, nogoods, null)) {
+
+                return false;
+
+            }
+
+            board.undo();
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method stops the minimizer's threads.
+     * </p>
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+
+    }
+
+}
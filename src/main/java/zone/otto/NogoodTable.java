@@ -0,0 +1,190 @@
+package zone.otto;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * The <code>NogoodTable</code> class is a bounded, lock-free set of board states known to have no
+ * solution, keyed by their Zobrist hash (see <code>Board.hash()</code>).
+ * </p>
+ * <p>
+ * Whether a state can be completed depends only on the cells filled (not on the route taken to them, nor
+ * on which of them were givens), so one table can be shared by any number of searches over the same
+ * <code>Variant</code>, sequential or concurrent. A search consults the table before expanding a state
+ * and adds the state once it has exhausted it, so a dead end reached again (by another worker, after a
+ * restart, or while solving a closely related puzzle) is pruned at once.
+ * </p>
+ * <p>
+ * The table is open addressed in an <code>AtomicLongArray</code>: a hash may live in any of
+ * <code>PROBES</code> consecutive slots, an empty slot is claimed with a CAS, and when all of them are
+ * taken the first (the hash's home slot) is simply overwritten, whatever the age of the entry there, as no
+ * age is kept. So the table never grows and never blocks, it just forgets entries. A 64 bit key means a
+ * false match (which would prune a live state) is vanishingly unlikely.
+ * </p>
+ */
+class NogoodTable {
+
+    // The number of slots a hash may occupy.
+    static final int PROBES = 4;
+
+    // The slot value meaning "empty", a hash of 0 is stored as 1 instead.
+    private static final long EMPTY = 0;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * <p>
+     * Create a table.
+     * </p>
+     *
+     * @param capacity The number of slots, rounded up to a power of two.
+     * @throws IllegalArgumentException If the capacity is not positive or too large.
+     */
+    NogoodTable(int capacity) {
+
+        if (capacity < 1 || capacity > 1 << 30) {
+
+            throw new IllegalArgumentException("ERROR: Invalid capacity: " + capacity);
+
+        }
+
+        int size = Integer.highestOneBit(capacity);
+
+        if (size < capacity) {
+
+            size <<= 1;
+
+        }
+
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+
+    }
+
+    /**
+     * <p>
+     * The <code>capacity()</code> method returns the number of slots.
+     * </p>
+     *
+     * @return The capacity.
+     */
+    int capacity() {
+
+        return mask + 1;
+
+    }
+
+    /**
+     * <p>
+     * The <code>contains()</code> method returns whether a state is known to have no solution.
+     * </p>
+     *
+     * @param hash The state's hash.
+     * @return Whether the state is recorded.
+     */
+    boolean contains(long hash) {
+
+        long key = key(hash);
+        int index = index(key);
+
+        for (int i = 0; i < PROBES; i++) {
+
+            if (slots.get((index + i) & mask) == key) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>add()</code> method records that a state has no solution, evicting the entry in its home
+     * slot if its slots are all taken.
+     * </p>
+     *
+     * @param hash The state's hash.
+     */
+    void add(long hash) {
+
+        long key = key(hash);
+        int index = index(key);
+
+        for (int i = 0; i < PROBES; i++) {
+
+            int slot = (index + i) & mask;
+            long current = slots.get(slot);
+
+            if (current == key || (current == EMPTY && slots.compareAndSet(slot, EMPTY, key))) {
+
+                return;
+
+            }
+
+            // Another thread may have just claimed the slot with this very key.
+            if (slots.get(slot) == key) {
+
+                return;
+
+            }
+
+        }
+
+        slots.set(index, key);
+
+    }
+
+    /**
+     * <p>
+     * The <code>size()</code> method counts the occupied slots. It is a snapshot, and O(capacity).
+     * </p>
+     *
+     * @return The number of recorded states.
+     */
+    int size() {
+
+        int size = 0;
+
+        for (int i = 0; i <= mask; i++) {
+
+            size += slots.get(i) != EMPTY ? 1 : 0;
+
+        }
+
+        return size;
+
+    }
+
+    /**
+     * <p>
+     * The <code>clear()</code> method forgets every state, for example before switching variant.
+     * </p>
+     */
+    void clear() {
+
+        for (int i = 0; i <= mask; i++) {
+
+            slots.set(i, EMPTY);
+
+        }
+
+    }
+
+    private static long key(long hash) {
+
+        return hash == EMPTY ? 1 : hash;
+
+    }
+
+    private int index(long key) {
+
+        return (int) (key ^ (key >>> 32)) & mask;
+
+    }
+
+}
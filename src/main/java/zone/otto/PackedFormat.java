@@ -0,0 +1,403 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * The <code>PackedFormat</code> class is a compact binary alternative to the 9 line text format of
+ * <code>Sudoku.dataParse()</code>/<code>Sudoku.dataRender()</code>, for archiving large numbers of
+ * puzzles and solutions.
+ * </p>
+ * <p>
+ * A file is an 8 byte header followed by fixed size records:
+ * <ul>
+ * <li>Header: the magic <code>"SDKP"</code>, a version byte, and three reserved (zero) bytes.</li>
+ * <li>Record: the 81 cells (0 for empty, 1 to 9) in row-major order, taken three at a time as a decimal
+ * number 0 to 999, each of which is packed into 10 bits. 27 groups of 10 bits is 270 bits, so a record is
+ * <code>RECORD_BYTES</code> (34) bytes rather than the ~200 of the text format.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Since records are fixed size, a file can be sliced at <code>HEADER_BYTES + n * RECORD_BYTES</code>
+ * without decoding anything. The <code>Writer</code> and <code>Reader</code> stream through a
+ * <code>FileChannel</code> a buffer at a time, and allocate nothing per record.
+ * </p>
+ */
+class PackedFormat {
+
+    static final int MAGIC = 0x53444B50;
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_BYTES = 34;
+
+    // 64KB worth of records per channel read/write.
+    static final int BUFFER_BYTES = 1927 * RECORD_BYTES;
+
+    /**
+     * <p>
+     * The <code>encode()</code> method packs a 9 x 9 grid into <code>RECORD_BYTES</code> bytes at the
+     * buffer's current position.
+     * </p>
+     *
+     * @param data The grid, values 0 (empty) to 9.
+     * @param out  The destination, which must have at least <code>RECORD_BYTES</code> remaining.
+     */
+    static void encode(int[][] data, ByteBuffer out) {
+
+        long acc = 0;
+        int bits = 0;
+
+        for (int i = 0; i < 81; i += 3) {
+
+            int group = 0;
+
+            for (int k = i; k < i + 3; k++) {
+
+                int v = data[k / 9][k % 9];
+
+                if (v < 0 || v > 9) {
+
+                    throw new IllegalArgumentException("ERROR: Invalid cell value: " + v);
+
+                }
+
+                group = group * 10 + v;
+
+            }
+
+            acc = (acc << 10) | group;
+            bits += 10;
+
+            while (bits >= 8) {
+
+                bits -= 8;
+                out.put((byte) (acc >>> bits));
+
+            }
+
+        }
+
+        // 270 bits leaves 6 over, which are left aligned in the final byte.
+        out.put((byte) (acc << (8 - bits)));
+
+    }
+
+    /**
+     * <p>
+     * The <code>decode()</code> method unpacks <code>RECORD_BYTES</code> bytes at the buffer's current
+     * position into a 9 x 9 grid.
+     * </p>
+     *
+     * @param in   The source, which must have at least <code>RECORD_BYTES</code> remaining.
+     * @param data The grid to overwrite.
+     * @throws IOException If the record is corrupt.
+     */
+    static void decode(ByteBuffer in, int[][] data) throws IOException {
+
+        long acc = 0;
+        int bits = 0;
+        int cell = 0;
+
+        while (cell < 81) {
+
+            if (bits < 10) {
+
+                acc = (acc << 8) | (in.get() & 0xFF);
+                bits += 8;
+                continue;
+
+            }
+
+            bits -= 10;
+
+            int group = (int) (acc >>> bits) & 0x3FF;
+
+            if (group > 999) {
+
+                throw new IOException("ERROR: Corrupt record, invalid cell group: " + group);
+
+            }
+
+            data[cell / 9][cell % 9] = group / 100;
+            data[(cell + 1) / 9][(cell + 1) % 9] = group / 10 % 10;
+            data[(cell + 2) / 9][(cell + 2) % 9] = group % 10;
+            cell += 3;
+
+        }
+
+        // The final 2 bits of padding were consumed along with the last group.
+
+    }
+
+    /**
+     * <p>
+     * The <code>Writer</code> class appends records to a new file.
+     * </p>
+     */
+    static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long count;
+
+        /**
+         * <p>
+         * Create (or truncate) <code>path</code>, and write the header.
+         * </p>
+         *
+         * @param path The file to write.
+         * @throws IOException If the file cannot be created.
+         */
+        Writer(Path path) throws IOException {
+
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+
+            buffer.putInt(MAGIC).put(VERSION).put((byte) 0).put((byte) 0).put((byte) 0);
+
+        }
+
+        /**
+         * <p>
+         * The <code>write()</code> method appends a single grid.
+         * </p>
+         *
+         * @param data The grid, values 0 (empty) to 9.
+         * @throws IOException If the file cannot be written.
+         */
+        void write(int[][] data) throws IOException {
+
+            if (buffer.remaining() < RECORD_BYTES) {
+
+                flush();
+
+            }
+
+            encode(data, buffer);
+            count++;
+
+        }
+
+        /**
+         * <p>
+         * The <code>count()</code> method returns the number of records written so far.
+         * </p>
+         *
+         * @return The record count.
+         */
+        long count() {
+
+            return count;
+
+        }
+
+        /**
+         * <p>
+         * The <code>flush()</code> method writes any buffered records to the channel.
+         * </p>
+         *
+         * @throws IOException If the file cannot be written.
+         */
+        void flush() throws IOException {
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+
+                channel.write(buffer);
+
+            }
+
+            buffer.clear();
+
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            try {
+
+                flush();
+
+            } finally {
+
+                channel.close();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>Reader</code> class reads records back, in bulk, from a file.
+     * </p>
+     */
+    static class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final long count;
+
+        /**
+         * <p>
+         * Open <code>path</code> and verify its header.
+         * </p>
+         *
+         * @param path The file to read.
+         * @throws IOException If the file cannot be read, or is not a packed file.
+         */
+        Reader(Path path) throws IOException {
+
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+
+            try {
+
+                long size = channel.size();
+
+                if (size < HEADER_BYTES) {
+
+                    throw new IOException("ERROR: The file (" + path + ") is too short to be a packed file.");
+
+                }
+
+                if ((size - HEADER_BYTES) % RECORD_BYTES != 0) {
+
+                    throw new IOException("ERROR: The file (" + path + ") ends with a partial record.");
+
+                }
+
+                count = (size - HEADER_BYTES) / RECORD_BYTES;
+
+                buffer.limit(0);
+                fill(HEADER_BYTES);
+
+                if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+
+                    throw new IOException("ERROR: The file (" + path + ") is not a packed file.");
+
+                }
+
+                buffer.position(HEADER_BYTES);
+
+            } catch (IOException | RuntimeException e) {
+
+                channel.close();
+                throw e;
+
+            }
+
+        }
+
+        /**
+         * <p>
+         * The <code>count()</code> method returns the total number of records in the file.
+         * </p>
+         *
+         * @return The record count.
+         */
+        long count() {
+
+            return count;
+
+        }
+
+        /**
+         * <p>
+         * The <code>seek()</code> method moves to the record with index <code>record</code>, so that the
+         * next <code>read()</code> returns it.
+         * </p>
+         *
+         * @param record The record index.
+         * @throws IOException If the channel cannot be repositioned.
+         */
+        void seek(long record) throws IOException {
+
+            channel.position(HEADER_BYTES + record * RECORD_BYTES);
+            buffer.clear().limit(0);
+
+        }
+
+        /**
+         * <p>
+         * The <code>read()</code> method decodes the next record into <code>data</code>.
+         * </p>
+         *
+         * @param data The grid to overwrite.
+         * @return Whether a record was read, <code>false</code> at the end of the file.
+         * @throws IOException If the file cannot be read or the record is corrupt.
+         */
+        boolean read(int[][] data) throws IOException {
+
+            if (buffer.remaining() < RECORD_BYTES && !fill(RECORD_BYTES)) {
+
+                return false;
+
+            }
+
+            decode(buffer, data);
+
+            return true;
+
+        }
+
+        /**
+         * <p>
+         * The <code>fill()</code> method tops the buffer up from the channel until at least
+         * <code>needed</code> bytes are available.
+         * </p>
+         *
+         * @param needed The number of bytes required.
+         * @return Whether they are available, <code>false</code> at the end of the file.
+         * @throws IOException If the file cannot be read, or ends part way through.
+         */
+        private boolean fill(int needed) throws IOException {
+
+            buffer.compact();
+
+            try {
+
+                while (buffer.position() < needed) {
+
+                    if (channel.read(buffer) < 0) {
+
+                        if (buffer.position() == 0) {
+
+                            return false;
+
+                        }
+
+                        throw new IOException("ERROR: Unexpected end of file.");
+
+                    }
+
+                }
+
+            } finally {
+
+                buffer.flip();
+
+            }
+
+            return true;
+
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            channel.close();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * The <code>ParallelSearch</code> class solves a single puzzle on several threads.
+ * </p>
+ * <p>
+ * The board is split at its most constrained cell (one sub-board per candidate), and the sub-boards are
+ * split again the same way, breadth first, until there are a few per thread. Each is then searched by
+ * <code>Board.solution()</code> on a pool of threads, all sharing one cancellation flag (so the first
+ * solution stops the rest) and optionally one <code>NogoodTable</code>, so that a dead end proved by one
+ * worker is pruned by every other.
+ * </p>
+ * <p>
+ * The threads are created once, with the search, so a search should be kept and reused for many puzzles
+ * (it is safe to call <code>solve()</code> from several threads at once, though the calls then share the
+ * threads) and closed when finished with.
+ * </p>
+ */
+class ParallelSearch implements Closeable {
+
+    // How many sub-boards to aim for per thread, so that one slow branch doesn't leave the rest idle.
+    static final int SPLIT_FACTOR = 4;
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final int threads;
+    private final ExecutorService pool;
+
+    /**
+     * <p>
+     * Create a search.
+     * </p>
+     *
+     * @param threads The number of threads to search with.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    ParallelSearch(int threads) {
+
+        if (threads < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid number of threads: " + threads);
+
+        }
+
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+
+            Thread thread = new Thread(runnable, "parallel-search-" + THREADS.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method finds a completion of the board, leaving the board unchanged.
+     * </p>
+     *
+     * @param board   The board.
+     * @param out     Receives the 81 solved cell values, if not <code>null</code>.
+     * @param nogoods The dead ends known so far, or <code>null</code> to search without one.
+     * @return Whether a solution exists.
+     */
+    boolean solve(Board board, int[] out, NogoodTable nogoods) {
+
+        List<Board> parts = split(board, threads * SPLIT_FACTOR);
+
+        if (parts.isEmpty()) {
+
+            return false;
+
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        CompletionService<int[]> service = new ExecutorCompletionService<>(pool);
+
+        try {
+
+            for (Board part : parts) {
+
+                service.submit(() -> {
+
+                    int[] result = new int[81];
+
+                    return part.solution(result, nogoods, stop) ? result : null;
+
+                });
+
+            }
+
+            for (int i = 0; i < parts.size(); i++) {
+
+                int[] result = service.take().get();
+
+                if (result != null) {
+
+                    if (out != null) {
+
+                        System.arraycopy(result, 0, out, 0, 81);
+
+                    }
+
+                    return true;
+
+                }
+
+            }
+
+            return false;
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("ERROR: Interrupted while solving", e);
+
+        } catch (ExecutionException e) {
+
+            throw new RuntimeException("ERROR: Search failed", e.getCause());
+
+        } finally {
+
+            // Any parts still queued or running give up at once.
+            stop.set(true);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>split()</code> method divides a board into sub-boards which between them cover every
+     * completion, splitting breadth first at each sub-board's most constrained cell. Dead ends are
+     * dropped, and full boards are kept as they are.
+     * </p>
+     *
+     * @param board  The board.
+     * @param target The number of sub-boards to stop at (or shortly after).
+     * @return The sub-boards, empty if the board is a dead end.
+     */
+    static List<Board> split(Board board, int target) {
+
+        ArrayDeque<Board> open = new ArrayDeque<>();
+        List<Board> result = new ArrayList<>();
+
+        open.add(new Board(board));
+
+        while (!open.isEmpty() && open.size() + result.size() < target) {
+
+            Board part = open.poll();
+            int cell = part.mostConstrained();
+
+            if (cell < 0) {
+
+                result.add(part);
+                continue;
+
+            }
+
+            for (int m = part.candidates(cell); m != 0; m &= m - 1) {
+
+                Board child = new Board(part);
+
+                child.place(cell, Integer.numberOfTrailingZeros(m));
+                open.add(child);
+
+            }
+
+        }
+
+        result.addAll(open);
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method stops the search's threads.
+     * </p>
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+
+    }
+
+}
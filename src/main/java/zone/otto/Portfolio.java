@@ -0,0 +1,335 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * The <code>Portfolio</code> class races several differently configured engines against each other on
+ * the same puzzle, one thread each, and takes whichever answers first.
+ * </p>
+ * <p>
+ * No single strategy wins on every puzzle, and a strategy that is usually fast may occasionally be very
+ * slow, so the tail latency of the race is far better than that of any one engine. Each engine works on
+ * its own copy of the board, and as soon as one of them has an answer (a solution, or a proof that there
+ * is none) the others are cancelled through a shared flag, which the searches check every
+ * <code>Board.CANCEL_INTERVAL</code> nodes.
+ * </p>
+ * <p>
+ * A thread per engine is created with the portfolio, so a portfolio should be kept and reused and closed
+ * when finished with. It is safe to call <code>solve()</code> from several threads at once: the pool grows
+ * by a thread whenever every thread is busy (and shrinks again once they have been idle for
+ * <code>KEEP_ALIVE_SECONDS</code>), so no engine ever waits in a queue behind another call's engines, nor
+ * behind a losing engine which has yet to notice it was cancelled. It grows to no more than
+ * <code>MAX_CONCURRENT_CALLS</code> threads per engine, though, beyond which an engine is run on the
+ * calling thread instead, so that a surge of calls slows its callers down rather than starting threads
+ * without limit.
+ * </p>
+ */
+class Portfolio implements Closeable {
+
+    /**
+     * <p>
+     * The <code>Engine</code> interface is one strategy in the portfolio.
+     * </p>
+     */
+    interface Engine {
+
+        /**
+         * <p>
+         * The <code>solve()</code> method finds a completion of a board, which it may change freely.
+         * </p>
+         *
+         * @param board     The engine's own copy of the board.
+         * @param out       Receives the 81 solved cell values.
+         * @param cancelled Set when another engine has answered, after which the result is ignored.
+         * @return Whether a solution was found, <code>false</code> only if there is none (or once cancelled).
+         */
+        boolean solve(Board board, int[] out, AtomicBoolean cancelled);
+
+    }
+
+    // How long a thread beyond one per engine is kept once idle.
+    static final int KEEP_ALIVE_SECONDS = 60;
+
+    // The number of calls whose engines all have threads of their own, beyond which they run on the caller.
+    static final int MAX_CONCURRENT_CALLS = 4;
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final Engine[] engines;
+    private final ThreadPoolExecutor pool;
+    private final AtomicLongArray wins;
+
+    /**
+     * <p>
+     * Create a portfolio.
+     * </p>
+     *
+     * @param engines The engines to race.
+     * @throws IllegalArgumentException If there are no engines.
+     */
+    Portfolio(Engine... engines) {
+
+        if (engines.length == 0) {
+
+            throw new IllegalArgumentException("ERROR: A portfolio needs at least one engine");
+
+        }
+
+        this.engines = engines.clone();
+        this.wins = new AtomicLongArray(engines.length);
+        this.pool = new ThreadPoolExecutor(engines.length, engines.length * MAX_CONCURRENT_CALLS, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+
+            Thread thread = new Thread(runnable, "portfolio-" + THREADS.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+
+        }, (runnable, executor) -> {
+
+            // Unlike CallerRunsPolicy, which would drop the engine and leave solve() waiting for it forever.
+            if (executor.isShutdown()) {
+
+                throw new RejectedExecutionException("ERROR: The portfolio is closed");
+
+            }
+
+            runnable.run();
+
+        });
+
+        pool.prestartAllCoreThreads();
+
+    }
+
+    /**
+     * <p>
+     * The <code>standard()</code> method creates a portfolio of three complementary engines:
+     * <code>backtracking()</code>, <code>logicThenSearch()</code> and randomised restarts.
+     * </p>
+     *
+     * @return The portfolio.
+     */
+    static Portfolio standard() {
+
+        return new Portfolio(backtracking(), logicThenSearch(),
+                restarts(Board.ValueOrder.RANDOM, 0x5EED, 256));
+
+    }
+
+    /**
+     * <p>
+     * The <code>backtracking()</code> method returns the plain MRV backtracking search of <code>Board</code>.
+     * </p>
+     *
+     * @return The engine.
+     */
+    static Engine backtracking() {
+
+        return (board, out, cancelled) -> board.solution(out, null, cancelled);
+
+    }
+
+    /**
+     * <p>
+     * The <code>restarts()</code> method returns a <code>RestartSearch</code> engine.
+     * </p>
+     *
+     * @param order The order to try candidates in.
+     * @param seed  The seed, the same for every puzzle so that any run can be replayed.
+     * @param unit  The restart unit, in nodes.
+     * @return The engine.
+     */
+    static Engine restarts(Board.ValueOrder order, long seed, long unit) {
+
+        return (board, out, cancelled) -> new RestartSearch(order, seed, unit).solve(board, out, null, cancelled);
+
+    }
+
+    /**
+     * <p>
+     * The <code>logicThenSearch()</code> method returns an engine which first fills in everything the
+     * <code>LogicSolver</code> techniques can (propagating far further than the search's own candidate
+     * masks), then searches what is left. Non-classic variants go straight to the search.
+     * </p>
+     *
+     * @return The engine.
+     */
+    static Engine logicThenSearch() {
+
+        return (board, out, cancelled) -> {
+
+            if (board.variant() == Variant.CLASSIC) {
+
+                LogicSolver logic = new LogicSolver();
+                boolean progress = true;
+
+                logic.load(board);
+
+                while (progress && !cancelled.get()) {
+
+                    progress = logic.step() != null;
+
+                }
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    int v = logic.get(cell);
+
+                    // The techniques are sound, so a conflict means there was never a solution.
+                    if (v != 0 && board.get(cell) != v && !board.place(cell, v)) {
+
+                        return false;
+
+                    }
+
+                }
+
+            }
+
+            return board.solution(out, null, cancelled);
+
+        };
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method races the engines on a puzzle.
+     * </p>
+     *
+     * @param data The puzzle, as returned by <code>Sudoku.dataParse()</code>, which is not changed.
+     * @return The solution in the same shape (ready for <code>Sudoku.dataRender()</code>), or
+     * <code>null</code> if there is none.
+     * @throws IllegalArgumentException If the givens conflict.
+     * @throws RuntimeException         If every engine failed.
+     */
+    int[][] solve(int[][] data) {
+
+        Board board = new Board(data);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletionService<int[]> service = new ExecutorCompletionService<>(pool);
+        int[] none = new int[0];
+        RuntimeException failure = null;
+
+        for (int i = 0; i < engines.length; i++) {
+
+            Engine engine = engines[i];
+            Board copy = new Board(board);
+            int index = i;
+
+            service.submit(() -> {
+
+                int[] result = new int[82];
+
+                if (!engine.solve(copy, result, cancelled)) {
+
+                    return cancelled.get() ? null : none;
+
+                }
+
+                result[81] = index;
+
+                return result;
+
+            });
+
+        }
+
+        try {
+
+            for (int i = 0; i < engines.length; i++) {
+
+                int[] result;
+
+                try {
+
+                    result = service.take().get();
+
+                } catch (ExecutionException e) {
+
+                    failure = new RuntimeException("ERROR: Engine failed", e.getCause());
+                    continue;
+
+                }
+
+                if (result == none) {
+
+                    return null;
+
+                }
+
+                if (result != null) {
+
+                    wins.incrementAndGet(result[81]);
+
+                    int[][] solution = new int[9][9];
+
+                    for (int cell = 0; cell < 81; cell++) {
+
+                        solution[cell / 9][cell % 9] = result[cell];
+
+                    }
+
+                    return solution;
+
+                }
+
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("ERROR: Interrupted while solving", e);
+
+        } finally {
+
+            cancelled.set(true);
+
+        }
+
+        throw failure != null ? failure : new RuntimeException("ERROR: No engine answered");
+
+    }
+
+    /**
+     * <p>
+     * The <code>wins()</code> method returns how many times an engine has answered first, for tuning the
+     * portfolio.
+     * </p>
+     *
+     * @param engine The engine's index, in the order given to the constructor.
+     * @return The number of wins.
+     */
+    long wins(int engine) {
+
+        return wins.get(engine);
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method stops the portfolio's threads, cancelling nothing already running.
+     * </p>
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+
+    }
+
+}
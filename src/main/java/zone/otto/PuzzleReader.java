@@ -0,0 +1,661 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * The <code>PuzzleReader</code> class reads puzzles in any of the common interchange formats, detecting
+ * which from the leading bytes of the input, so that large collections can be fed to the solver as they
+ * are, without a conversion step.
+ * </p>
+ * <ul>
+ * <li><code>LINE</code>: one puzzle per line, 81 characters with <code>.</code> or <code>0</code> for empty
+ * cells (anything after them, such as a rating, is ignored).</li>
+ * <li><code>SDM</code>: the same, but digits only, <code>0</code> for empty cells.</li>
+ * <li><code>SDK</code>: 9 rows of 9 per puzzle, <code>.</code> for empty cells, optionally under a
+ * <code>[Puzzle]</code> header (rows under any other header, such as <code>[State]</code>, are skipped).
+ * Whitespace between cells is ignored, so <code>Sudoku.dataParse()</code>'s own format, with
+ * <code>_</code> for empty cells, is read as this too.</li>
+ * <li><code>GRID</code>: 9 rows of 9 drawn with pipes and dashes (<code>| - + =</code>), with
+ * <code>.</code>, <code>0</code> or <code>_</code> for empty cells; lines with no cells are separators.</li>
+ * </ul>
+ * <p>
+ * In every format, blank lines and lines beginning with <code>#</code> (comments, or SDK metadata) are
+ * ignored, and a file may hold any number of puzzles.
+ * </p>
+ * <p>
+ * The input is read in one pass, a buffer at a time, and each line is scanned byte by byte (there are no
+ * regular expressions, and nothing is allocated per line), so multi-GB files stream through in constant
+ * memory. A puzzle is only checked for shape, not for conflicting givens, which is left to the solver.
+ * </p>
+ * <p>
+ * The reader counts the bytes it has consumed, which after each <code>read()</code> is the offset of the end
+ * of the line the puzzle ended on, so that a caller can record how far it has got and later carry on from
+ * there, by opening the input at that offset with the format already known. A malformed puzzle is reported
+ * as a <code>MalformedPuzzleException</code>, after which the reader carries on from the next puzzle: in the
+ * line formats that is the next line, and in the others the rest of the puzzle's rows are skipped first (up
+ * to 9 in all, but no further than a blank line, a comment or a header), so that a malformed puzzle is only
+ * ever reported once.
+ * </p>
+ */
+class PuzzleReader implements Closeable {
+
+    /**
+     * <p>
+     * The <code>Format</code> enum lists the formats which can be read.
+     * </p>
+     */
+    enum Format {
+        LINE, SDM, SDK, GRID
+    }
+
+    // How much of the input is looked at to detect its format, and how much is read at a time.
+    static final int DETECT_BYTES = 4096;
+    static final int BUFFER_BYTES = 1 << 16;
+
+    // The longest line kept; the rest of a longer line is skipped.
+    static final int LINE_BYTES = 1024;
+
+    /**
+     * <p>
+     * The <code>MalformedPuzzleException</code> class is thrown for a puzzle of the wrong shape, or with a
+     * character which isn't a cell, as opposed to input which can't be read at all.
+     * </p>
+     */
+    static final class MalformedPuzzleException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MalformedPuzzleException(String message) {
+
+            super(message);
+
+        }
+
+    }
+
+    // The SDK header of the section holding the puzzle.
+    private static final byte[] PUZZLE_HEADER = "[Puzzle]".getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream in;
+    private final String source;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private final byte[] line = new byte[LINE_BYTES];
+    private final Format format;
+    private long discarded;
+    private long lineStart;
+    private long held;
+    private int position;
+    private int limit;
+    private int length;
+    private long lineNumber;
+    private boolean eof;
+    private boolean inPuzzle = true;
+
+    /**
+     * <p>
+     * Open a file, and detect its format.
+     * </p>
+     *
+     * @param path The file.
+     * @throws IOException If the file cannot be read, or its format is not recognised.
+     */
+    PuzzleReader(Path path) throws IOException {
+
+        this(Files.newInputStream(path), path.toString());
+
+    }
+
+    /**
+     * <p>
+     * Read a stream, and detect its format.
+     * </p>
+     *
+     * @param in     The stream, which is closed with the reader.
+     * @param source The name of the stream, for events and error messages.
+     * @throws IOException If the stream cannot be read, or its format is not recognised.
+     */
+    PuzzleReader(InputStream in, String source) throws IOException {
+
+        this.in = in;
+        this.source = source;
+
+        try {
+
+            // Look ahead without consuming anything.
+            while (limit < DETECT_BYTES && fill()) {
+
+                // Keep reading.
+
+            }
+
+            this.format = detect();
+
+        } catch (IOException | RuntimeException e) {
+
+            in.close();
+            throw e;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Read a stream whose format is already known, such as the rest of an input read before.
+     * </p>
+     *
+     * @param in     The stream, which is closed with the reader.
+     * @param source The name of the stream, for events and error messages.
+     * @param format The format of the stream.
+     */
+    PuzzleReader(InputStream in, String source, Format format) {
+
+        this.in = in;
+        this.source = source;
+        this.format = format;
+
+    }
+
+    /**
+     * <p>
+     * Top up the buffer from the stream, returning whether anything was read.
+     * </p>
+     */
+    private boolean fill() throws IOException {
+
+        if (position > 0) {
+
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            discarded += position;
+            limit -= position;
+            position = 0;
+
+        }
+
+        int n = eof ? -1 : in.read(buffer, limit, buffer.length - limit);
+
+        if (n > 0) {
+
+            limit += n;
+
+        }
+
+        eof = n < 0;
+
+        return !eof;
+
+    }
+
+    /**
+     * <p>
+     * Detect the format from the first line of cells in the buffer.
+     * </p>
+     */
+    private Format detect() throws IOException {
+
+        int i = 0;
+
+        while (i < limit) {
+
+            int end = i;
+
+            while (end < limit && buffer[end] != '\n') {
+
+                end++;
+
+            }
+
+            int start = skipSpace(buffer, i, end);
+
+            if (start < end && buffer[start] != '#' && buffer[start] != '[') {
+
+                boolean digitsOnly = true;
+                int run = 0;
+
+                for (int k = start; k < end && cell(buffer[k]) >= 0; k++) {
+
+                    digitsOnly &= buffer[k] >= '0' && buffer[k] <= '9';
+                    run++;
+
+                }
+
+                if (run >= 81) {
+
+                    return digitsOnly ? Format.SDM : Format.LINE;
+
+                }
+
+                if (end == limit && !eof) {
+
+                    // The line goes on beyond what has been read, so it can't be judged.
+                    break;
+
+                }
+
+                for (int k = start; k < end; k++) {
+
+                    if (buffer[k] == '|' || buffer[k] == '+' || buffer[k] == '-') {
+
+                        return Format.GRID;
+
+                    }
+
+                }
+
+                return Format.SDK;
+
+            }
+
+            i = end + 1;
+
+        }
+
+        if (eof) {
+
+            // Nothing but comments (or nothing at all), so there are no puzzles, in any format.
+            return Format.LINE;
+
+        }
+
+        throw new IOException("ERROR: The format of " + source + " is not recognised.");
+
+    }
+
+    /**
+     * <p>
+     * The <code>format()</code> method returns the format detected.
+     * </p>
+     *
+     * @return The format.
+     */
+    Format format() {
+
+        return format;
+
+    }
+
+    /**
+     * <p>
+     * The <code>offset()</code> method returns the number of bytes of the stream consumed so far.
+     * </p>
+     *
+     * @return The offset of the end of the last line read, from where the stream was when the reader was
+     *         created.
+     */
+    long offset() {
+
+        return discarded + position - held;
+
+    }
+
+    /**
+     * <p>
+     * The <code>read()</code> method reads the next puzzle.
+     * </p>
+     *
+     * @param data The grid to overwrite, 0 for empty cells.
+     * @return Whether a puzzle was read, <code>false</code> at the end of the input.
+     * @throws MalformedPuzzleException If the puzzle is malformed.
+     * @throws IOException               If the input cannot be read.
+     */
+    boolean read(int[][] data) throws IOException {
+
+        Events.Parse event = Events.parse();
+        boolean found = format == Format.LINE || format == Format.SDM ? readLine(data) : readRows(data);
+
+        if (found) {
+
+            Events.commit(event, source, data);
+            Metrics.global().parsed();
+
+        }
+
+        return found;
+
+    }
+
+    private boolean readLine(int[][] data) throws IOException {
+
+        while (nextLine()) {
+
+            int start = skipSpace(line, 0, length);
+
+            if (start == length || line[start] == '#') {
+
+                continue;
+
+            }
+
+            if (length - start < 81 || (length - start > 81 && cell(line[start + 81]) >= 0)) {
+
+                throw new MalformedPuzzleException("ERROR: Expected 81 cells on line " + lineNumber + " of " + source);
+
+            }
+
+            for (int k = 0; k < 81; k++) {
+
+                int v = cell(line[start + k]);
+
+                if (v < 0) {
+
+                    throw invalid(line[start + k]);
+
+                }
+
+                data[k / 9][k % 9] = v;
+
+            }
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    private boolean readRows(int[][] data) throws IOException {
+
+        int rows = 0;
+
+        while (rows < 9 && nextLine()) {
+
+            int start = skipSpace(line, 0, length);
+
+            if (start == length || line[start] == '#') {
+
+                continue;
+
+            }
+
+            if (line[start] == '[') {
+
+                if (rows > 0) {
+
+                    // The header belongs to the next puzzle, so is left to be read with it.
+                    hold();
+
+                    throw new MalformedPuzzleException("ERROR: Incomplete puzzle before line " + lineNumber + " of " + source);
+
+                }
+
+                inPuzzle = startsWith(line, start, length, PUZZLE_HEADER);
+
+                continue;
+
+            }
+
+            int cells;
+
+            try {
+
+                cells = readRow(data[rows], start);
+
+                if (cells > 0 && cells < 9 && inPuzzle) {
+
+                    throw new MalformedPuzzleException("ERROR: Expected 9 cells on line " + lineNumber + " of " + source + ", got " + cells);
+
+                }
+
+            } catch (MalformedPuzzleException e) {
+
+                skipRows(rows + 1);
+
+                throw e;
+
+            }
+
+            if (cells == 0 || !inPuzzle) {
+
+                continue;
+
+            }
+
+            rows++;
+
+        }
+
+        if (rows > 0 && rows < 9) {
+
+            throw new MalformedPuzzleException("ERROR: Incomplete puzzle at the end of " + source);
+
+        }
+
+        return rows == 9;
+
+    }
+
+    /**
+     * <p>
+     * Read the cells of the row in <code>line</code> from <code>start</code>, returning how many there were
+     * (none for a separator line).
+     * </p>
+     */
+    private int readRow(int[] row, int start) throws MalformedPuzzleException {
+
+        int cells = 0;
+
+        for (int k = start; k < length; k++) {
+
+            byte b = line[k];
+            int v = cell(b);
+
+            if (v >= 0) {
+
+                if (cells == 9) {
+
+                    throw new MalformedPuzzleException("ERROR: More than 9 cells on line " + lineNumber + " of " + source);
+
+                }
+
+                row[cells++] = v;
+
+            } else if (!separator(b)) {
+
+                throw invalid(b);
+
+            }
+
+        }
+
+        return cells;
+
+    }
+
+    /**
+     * <p>
+     * Skip the rest of a malformed puzzle, of which <code>rows</code> rows (the bad one included) have been
+     * read: up to the 9 rows it should have had, not counting separator lines (which a grid has between its
+     * boxes), but no further than a blank line, a comment, or a header, which is left to be read.
+     * </p>
+     */
+    private void skipRows(int rows) throws IOException {
+
+        while (rows < 9 && nextLine()) {
+
+            int start = skipSpace(line, 0, length);
+
+            if (start == length || line[start] == '#') {
+
+                return;
+
+            }
+
+            if (line[start] == '[') {
+
+                hold();
+
+                return;
+
+            }
+
+            for (int k = start; k < length; k++) {
+
+                if (cell(line[k]) >= 0) {
+
+                    rows++;
+
+                    break;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Hand the line just read back, so that the next <code>nextLine()</code> returns it again.
+     * </p>
+     */
+    private void hold() {
+
+        held = discarded + position - lineStart;
+
+    }
+
+    /**
+     * <p>
+     * Read the next line into <code>line</code> (without its terminator), returning whether there was one.
+     * </p>
+     */
+    private boolean nextLine() throws IOException {
+
+        if (held > 0) {
+
+            held = 0;
+
+            return true;
+
+        }
+
+        length = 0;
+        lineStart = discarded + position;
+
+        if (position == limit && !fill() && position == limit) {
+
+            return false;
+
+        }
+
+        while (true) {
+
+            while (position < limit) {
+
+                byte b = buffer[position++];
+
+                if (b == '\n') {
+
+                    lineNumber++;
+
+                    return true;
+
+                }
+
+                if (b != '\r' && length < LINE_BYTES) {
+
+                    line[length++] = b;
+
+                }
+
+            }
+
+            if (!fill()) {
+
+                // A final line without a terminator.
+                lineNumber++;
+
+                return true;
+
+            }
+
+        }
+
+    }
+
+    private MalformedPuzzleException invalid(byte b) {
+
+        return new MalformedPuzzleException("ERROR: Invalid character '" + (char) (b & 0xFF) + "' on line " + lineNumber + " of " + source);
+
+    }
+
+    /**
+     * <p>
+     * The value of a cell character, 0 for empty, or -1 if it is not one.
+     * </p>
+     */
+    private static int cell(byte b) {
+
+        if (b >= '1' && b <= '9') {
+
+            return b - '0';
+
+        }
+
+        return b == '.' || b == '0' || b == '_' ? 0 : -1;
+
+    }
+
+    private static boolean separator(byte b) {
+
+        return b == ' ' || b == '\t' || b == '|' || b == '-' || b == '+' || b == '=';
+
+    }
+
+    private static boolean startsWith(byte[] bytes, int from, int to, byte[] prefix) {
+
+        if (to - from < prefix.length) {
+
+            return false;
+
+        }
+
+        for (int k = 0; k < prefix.length; k++) {
+
+            if (bytes[from + k] != prefix[k]) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    private static int skipSpace(byte[] bytes, int from, int to) {
+
+        while (from < to && (bytes[from] == ' ' || bytes[from] == '\t' || bytes[from] == '\r')) {
+
+            from++;
+
+        }
+
+        return from;
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method closes the input.
+     * </p>
+     *
+     * @throws IOException If it cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        in.close();
+
+    }
+
+}
@@ -0,0 +1,148 @@
+package zone.otto;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * The <code>RestartSearch</code> class solves a board by a series of randomised searches, each cut off
+ * after a number of nodes given by the Luby sequence (1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...) times a unit.
+ * </p>
+ * <p>
+ * With a fixed value order the run time on adversarial puzzles is heavy-tailed: one bad early choice can
+ * cost a huge subtree. Restarting with a fresh random order bounds the time spent in any one such subtree,
+ * and the Luby sequence is within a log factor of the best fixed cut-off without having to know it. The
+ * limits keep growing, so a puzzle is always eventually solved (or proved to have no solution). Passing a
+ * <code>NogoodTable</code> carries the dead ends proved by each run over to the next.
+ * </p>
+ * <p>
+ * Every run draws from one random source seeded with <code>seed</code>, so (without a table shared with
+ * other threads) the whole sequence of runs can be replayed exactly from the seed.
+ * </p>
+ */
+class RestartSearch {
+
+    private final Board.ValueOrder order;
+    private final long seed;
+    private final long unit;
+
+    private int runs;
+    private long nodes;
+
+    /**
+     * <p>
+     * Create a restarting search.
+     * </p>
+     *
+     * @param order The order to try candidates in, usually <code>RANDOM</code> or
+     *              <code>LEAST_CONSTRAINING</code> (whose ties are broken randomly).
+     * @param seed  The seed of the random source.
+     * @param unit  The number of nodes which the Luby sequence is multiplied by.
+     * @throws IllegalArgumentException If the unit is not positive.
+     */
+    RestartSearch(Board.ValueOrder order, long seed, long unit) {
+
+        if (unit < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid restart unit: " + unit);
+
+        }
+
+        this.order = order;
+        this.seed = seed;
+        this.unit = unit;
+
+    }
+
+    /**
+     * <p>
+     * The <code>luby()</code> method returns the <code>i</code>th term of the Luby sequence, from 1.
+     * </p>
+     *
+     * @param i The index, 1 or more.
+     * @return The term, a power of two.
+     */
+    static long luby(long i) {
+
+        while (true) {
+
+            // Find k with 2^(k - 1) <= i < 2^k.
+            int k = 64 - Long.numberOfLeadingZeros(i);
+
+            if (i == (1L << k) - 1) {
+
+                return 1L << (k - 1);
+
+            }
+
+            i -= (1L << (k - 1)) - 1;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method finds a completion of the board, leaving the board unchanged.
+     * </p>
+     *
+     * @param board     The board.
+     * @param out       Receives the 81 solved cell values, if not <code>null</code>.
+     * @param nogoods   The dead ends known so far, or <code>null</code> to search without one.
+     * @param cancelled Abandons the search when set, or <code>null</code> if it cannot be cancelled.
+     * @return Whether a solution was found, <code>false</code> if there is none or the search was cancelled.
+     */
+    boolean solve(Board board, int[] out, NogoodTable nogoods, AtomicBoolean cancelled) {
+
+        SplittableRandom random = new SplittableRandom(seed);
+
+        runs = 0;
+        nodes = 0;
+
+        while (true) {
+
+            runs++;
+
+            long limit = luby(runs) <= Long.MAX_VALUE / unit ? luby(runs) * unit : Long.MAX_VALUE;
+            boolean found = board.solution(out, nogoods, cancelled, order, random, limit);
+
+            nodes += board.nodes();
+
+            if (found || !board.isStopped() || (cancelled != null && cancelled.get())) {
+
+                return found;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>runs()</code> method returns the number of runs the most recent <code>solve()</code> took.
+     * </p>
+     *
+     * @return The number of runs.
+     */
+    int runs() {
+
+        return runs;
+
+    }
+
+    /**
+     * <p>
+     * The <code>nodes()</code> method returns the total nodes expanded by the most recent
+     * <code>solve()</code>, over all of its runs.
+     * </p>
+     *
+     * @return The node count.
+     */
+    long nodes() {
+
+        return nodes;
+
+    }
+
+}
@@ -0,0 +1,416 @@
+package zone.otto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * The <code>SearchTrace</code> class records the decisions of <code>Board</code>'s backtracking search, one
+ * event per branch and per backtrack, so that a puzzle which blows up can be examined afterwards: the
+ * analyzer rebuilds the search tree and reports the subtrees which cost the most, i.e. the wrong guesses
+ * which were the most expensive to refute.
+ * </p>
+ * <p>
+ * Each event is packed into an int (cell, value, the number of candidates the cell had, the number of
+ * empty cells, which identifies the level of the search, and whether it is a branch or a backtrack) and
+ * written to a ring buffer, which holds the most recent <code>capacity</code> events and overwrites the
+ * oldest. The buffer is either on the heap or in a memory-mapped file, which survives the process and can
+ * be reopened for analysis with <code>open()</code>. Either way it is allocated once, so recording an event
+ * is a shift, a mask and two stores, and allocates nothing.
+ * </p>
+ * <p>
+ * The file (and the heap buffer) is a 24 byte header (magic, version, capacity, reserved, and the number
+ * of events ever recorded as an int64) followed by the ring of little-endian int32 events.
+ * </p>
+ * <p>
+ * A trace is attached to a board with <code>Board.trace()</code>, and is not thread-safe: give each board
+ * being searched at once its own.
+ * </p>
+ */
+class SearchTrace implements Closeable {
+
+    // "STRC" in ASCII.
+    private static final int MAGIC = 0x53545243;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int COUNT_OFFSET = 16;
+
+    // The packing of an event.
+    private static final int VALUE_SHIFT = 7;
+    private static final int COUNT_SHIFT = 11;
+    private static final int EMPTY_SHIFT = 15;
+    private static final int BACKTRACK = 1 << 22;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private long count;
+
+    /**
+     * <p>
+     * The <code>Subtree</code> class is one branch of the search: a value tried in a cell, and everything
+     * searched beneath it.
+     * </p>
+     */
+    static final class Subtree {
+
+        final int cell;
+        final int value;
+        final int candidates;
+        final int empty;
+        final long event;
+        long nodes;
+        boolean failed;
+
+        private Subtree(int cell, int value, int candidates, int empty, long event, long nodes) {
+
+            this.cell = cell;
+            this.value = value;
+            this.candidates = candidates;
+            this.empty = empty;
+            this.event = event;
+            this.nodes = nodes;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("r%dc%d=%d (of %d candidates, %d cells empty) at event %d: %d nodes, %s",
+                    cell / 9 + 1, cell % 9 + 1, value, candidates, empty, event, nodes,
+                    failed ? "failed" : "not refuted");
+
+        }
+
+    }
+
+    private SearchTrace(FileChannel channel, ByteBuffer buffer) {
+
+        this.channel = channel;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.capacity = this.buffer.getInt(8);
+        this.mask = capacity - 1;
+        this.count = this.buffer.getLong(COUNT_OFFSET);
+
+    }
+
+    /**
+     * <p>
+     * Create a trace on the heap.
+     * </p>
+     *
+     * @param capacity The number of events to keep, a power of two.
+     * @return The trace.
+     * @throws IllegalArgumentException If the capacity is not a power of two.
+     */
+    static SearchTrace inMemory(int capacity) {
+
+        return new SearchTrace(null, header(ByteBuffer.allocate(bytes(capacity)), capacity));
+
+    }
+
+    /**
+     * <p>
+     * The <code>create()</code> method creates a trace in a memory-mapped file, replacing any already there.
+     * </p>
+     *
+     * @param path     The file.
+     * @param capacity The number of events to keep, a power of two.
+     * @return The trace.
+     * @throws IOException              If the file cannot be created or mapped.
+     * @throws IllegalArgumentException If the capacity is not a power of two.
+     */
+    static SearchTrace create(Path path, int capacity) throws IOException {
+
+        int bytes = bytes(capacity);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+
+            return new SearchTrace(channel, header(channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes), capacity));
+
+        } catch (IOException | RuntimeException e) {
+
+            channel.close();
+            throw e;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>open()</code> method maps an existing trace file, to analyze it (or to carry on recording).
+     * </p>
+     *
+     * @param path The file.
+     * @return The trace.
+     * @throws IOException If the file cannot be read, is not a trace file, or is truncated.
+     */
+    static SearchTrace open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+
+            long size = channel.size();
+
+            if (size < HEADER_BYTES) {
+
+                throw new IOException("ERROR: Not a trace file: " + path);
+
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int capacity = header.getInt(8);
+
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || Integer.bitCount(capacity) != 1
+                    || size < HEADER_BYTES + 4L * capacity) {
+
+                throw new IOException("ERROR: Not a trace file, or truncated: " + path);
+
+            }
+
+            return new SearchTrace(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 4L * capacity));
+
+        } catch (IOException | RuntimeException e) {
+
+            channel.close();
+            throw e;
+
+        }
+
+    }
+
+    private static int bytes(int capacity) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1 || capacity > (Integer.MAX_VALUE - HEADER_BYTES) / 4) {
+
+            throw new IllegalArgumentException("ERROR: Invalid trace capacity: " + capacity);
+
+        }
+
+        return HEADER_BYTES + 4 * capacity;
+
+    }
+
+    private static ByteBuffer header(ByteBuffer buffer, int capacity) {
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN).putInt(0, MAGIC).putInt(4, VERSION).putInt(8, capacity).putInt(12, 0)
+                .putLong(COUNT_OFFSET, 0);
+
+        return buffer;
+
+    }
+
+    /**
+     * <p>
+     * The <code>branch()</code> method records a value being tried in a cell.
+     * </p>
+     *
+     * @param cell       The cell.
+     * @param value      The value.
+     * @param candidates The number of candidates the cell had.
+     * @param empty      The number of empty cells before the value was placed.
+     */
+    void branch(int cell, int value, int candidates, int empty) {
+
+        put(cell | value << VALUE_SHIFT | candidates << COUNT_SHIFT | empty << EMPTY_SHIFT);
+
+    }
+
+    /**
+     * <p>
+     * The <code>backtrack()</code> method records a value, and everything beneath it, having failed.
+     * </p>
+     *
+     * @param cell  The cell.
+     * @param value The value.
+     * @param empty The number of empty cells before the value was placed.
+     */
+    void backtrack(int cell, int value, int empty) {
+
+        put(BACKTRACK | cell | value << VALUE_SHIFT | empty << EMPTY_SHIFT);
+
+    }
+
+    private void put(int event) {
+
+        buffer.putInt(HEADER_BYTES + ((int) count & mask) * 4, event);
+        buffer.putLong(COUNT_OFFSET, ++count);
+
+    }
+
+    /**
+     * <p>
+     * The <code>count()</code> method returns the number of events ever recorded, including any since
+     * overwritten.
+     * </p>
+     *
+     * @return The count.
+     */
+    long count() {
+
+        return count;
+
+    }
+
+    /**
+     * <p>
+     * The <code>clear()</code> method forgets every event.
+     * </p>
+     */
+    void clear() {
+
+        count = 0;
+        buffer.putLong(COUNT_OFFSET, 0);
+
+    }
+
+    /**
+     * <p>
+     * The <code>expensive()</code> method rebuilds the search tree from the events kept and returns its
+     * most expensive subtrees, measured in nodes (branches, including their own). Only failed subtrees are
+     * reported, as a subtree which led to the solution was not wasted (and contains every failed one above
+     * it); if the buffer wrapped, the subtrees begun before its oldest event are not seen.
+     * </p>
+     *
+     * @param k The number of subtrees to report.
+     * @return The subtrees, most expensive first.
+     */
+    List<Subtree> expensive(int k) {
+
+        PriorityQueue<Subtree> top = new PriorityQueue<>(Comparator.comparingLong((Subtree s) -> s.nodes));
+        Subtree[] stack = new Subtree[82];
+        int depth = 0;
+        long branches = 0;
+
+        for (long i = Math.max(0, count - capacity); i < count; i++) {
+
+            int event = buffer.getInt(HEADER_BYTES + ((int) i & mask) * 4);
+            int cell = event & 0x7F;
+            int value = event >>> VALUE_SHIFT & 0xF;
+            int empty = event >>> EMPTY_SHIFT & 0x7F;
+
+            if ((event & BACKTRACK) == 0) {
+
+                // Anything still open at this level or deeper was on a path which succeeded (the next search).
+                while (depth > 0 && stack[depth - 1].empty <= empty) {
+
+                    close(stack[--depth], branches);
+
+                }
+
+                stack[depth++] = new Subtree(cell, value, event >>> COUNT_SHIFT & 0xF, empty, i, branches);
+                branches++;
+
+            } else {
+
+                while (depth > 0 && stack[depth - 1].empty < empty) {
+
+                    close(stack[--depth], branches);
+
+                }
+
+                if (depth > 0 && stack[depth - 1].cell == cell && stack[depth - 1].value == value) {
+
+                    Subtree subtree = stack[--depth];
+
+                    subtree.failed = true;
+                    close(subtree, branches);
+                    offer(top, subtree, k);
+
+                }
+
+            }
+
+        }
+
+        List<Subtree> result = new ArrayList<>(top);
+
+        result.sort(Comparator.comparingLong((Subtree s) -> s.nodes).reversed());
+
+        return result;
+
+    }
+
+    private static void close(Subtree subtree, long branches) {
+
+        // Until it is closed, nodes holds the number of branches recorded before it.
+        subtree.nodes = branches - subtree.nodes;
+
+    }
+
+    private static void offer(PriorityQueue<Subtree> top, Subtree subtree, int k) {
+
+        if (top.size() < k) {
+
+            top.add(subtree);
+
+        } else if (k > 0 && top.peek().nodes < subtree.nodes) {
+
+            top.poll();
+            top.add(subtree);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>report()</code> method renders the most expensive subtrees, one per line.
+     * </p>
+     *
+     * @param k The number of subtrees to report.
+     * @return The report.
+     */
+    String report(int k) {
+
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("%d events, %d kept%n", count, Math.min(count, capacity)));
+
+        for (Subtree subtree : expensive(k)) {
+
+            report.append(subtree).append(System.lineSeparator());
+
+        }
+
+        return report.toString();
+
+    }
+
+    /**
+     * <p>
+     * The <code>close()</code> method releases the file, if any (see the note on unmapping in
+     * <code>MappedMatrix</code>).
+     * </p>
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (channel != null) {
+
+            channel.close();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,728 @@
+package zone.otto;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>
+ * The <code>SolutionCounter</code> class counts the solutions of a (classic) puzzle exactly, without
+ * enumerating them one by one, so that very sparse puzzles with billions of solutions can be counted.
+ * </p>
+ * <p>
+ * The grid is filled a band (three rows) at a time. Whatever was placed in the bands above only affects
+ * the bands below through the digits used in each column, and after each band every column holds exactly
+ * three (then six) digits, so that state packs into a <code>long</code> and the number of completions of
+ * the remaining bands is memoised on it: every filling of the top band which leaves the columns the same
+ * shares one count of the bands below. When the remaining bands have no givens, the count is also the
+ * same under any permutation of the columns within a stack and of the stacks, so the state is first put
+ * into a canonical order and all of those equivalent states share one entry.
+ * </p>
+ * <p>
+ * The count is the same for every orientation of the puzzle, so it is first turned (with the
+ * <code>MatrixHelper</code> reflections and rotations) to put as many givens as possible in the top band,
+ * which is the one enumerated cell by cell, and as few as possible in the bottom bands, which are then
+ * more often free to canonicalise. A bottom band without givens isn't searched at all, but counted
+ * directly from the digits each of its columns is missing (see <code>bottom()</code>).
+ * </p>
+ * <p>
+ * The fillings of the top band (and of the middle band, if need be) are split breadth first among the
+ * threads of a pool of the caller's (so that one pool serves every count), sharing the memo tables, and
+ * the total is accumulated in a <code>long</code> per thread, spilling into a <code>BigInteger</code> only
+ * when it would overflow.
+ * </p>
+ * <p>
+ * The top band is still enumerated in full, and the middle band once per state, so the empty grid itself
+ * (with 948,109,639,680 fillings of the top band) is out of reach. A single given band, with over seven
+ * billion completions, takes a few tens of seconds on one core.
+ * </p>
+ */
+class SolutionCounter {
+
+    // All nine digits, as a candidate mask.
+    private static final int ALL = 0x3FE;
+
+    // No values chosen yet (nor digits used in any column).
+    private static final int[] NONE = new int[27];
+
+    // The six permutations of three rows.
+    private static final int[][] PERMUTATIONS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+    // The rank of each 3-subset of the nine digits (as a 9 bit mask, digit 1 in bit 0), from 0 to 83.
+    private static final int[] RANK = new int[512];
+
+    // The names of the memo tables, by band, for Events.Cache.
+    private static final String[] MEMO_NAMES = {"band 0", "band 1", "band 2"};
+
+    // The eight orientations of a square (the symmetries of MatrixHelper), identity first.
+    private static final List<UnaryOperator<int[][]>> ORIENTATIONS = List.of(
+            UnaryOperator.identity(),
+            MatrixHelper::matrixReflectHorizontal,
+            MatrixHelper::matrixReflectVertical,
+            MatrixHelper::matrixRotateHalf,
+            MatrixHelper::matrixTranspose,
+            MatrixHelper::matrixRotateQuarterCW,
+            MatrixHelper::matrixRotateQuarterAC,
+            data -> MatrixHelper.matrixRotateHalf(MatrixHelper.matrixTranspose(data)));
+
+    static {
+
+        int rank = 0;
+
+
+        for (int mask = 0; mask < 512; mask++) {
+
+            RANK[mask] = Integer.bitCount(mask) == 3 ? rank++ : -1;
+
+        }
+
+    }
+
+    // The givens, oriented, by cell.
+    private final int[] givens = new int[81];
+
+    // The digits given in each column of each band, and in each column of all the bands below each band.
+    private final int[][] given = new int[3][9];
+    private final int[][] below = new int[3][9];
+
+    // Whether each band and every band below it are free of givens.
+    private final boolean[] free = new boolean[3];
+
+    // The number of completions of each band (and those below), by the state of the columns above it. Only
+    // bands 1 and 2 are memoised, the top band has just the one state.
+    private final MemoTable[] memo = {new MemoTable(), new MemoTable(), new MemoTable()};
+
+    private SolutionCounter(int[][] data) {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            int v = data[cell / 9][cell % 9];
+
+            givens[cell] = v;
+
+            if (v != 0) {
+
+                given[cell / 27][cell % 9] |= 1 << v;
+
+            }
+
+        }
+
+        for (int band = 1; band >= 0; band--) {
+
+            for (int c = 0; c < 9; c++) {
+
+                below[band][c] = below[band + 1][c] | given[band + 1][c];
+
+            }
+
+        }
+
+        for (int band = 2; band >= 0; band--) {
+
+            free[band] = (band == 2 || free[band + 1]) && givenCount(data, band) == 0;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>count()</code> method counts the solutions of a puzzle.
+     * </p>
+     *
+     * @param data    The puzzle, as returned by <code>Sudoku.dataParse()</code>, which is not changed.
+     * @param pool    The threads to count on.
+     * @param threads The number of them to count with, which the work is split for.
+     * @return The number of solutions, 0 if there are none.
+     * @throws IllegalArgumentException If the number of threads is not positive, or the givens conflict.
+     */
+    static BigInteger count(int[][] data, ExecutorService pool, int threads) {
+
+        if (threads < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid number of threads: " + threads);
+
+        }
+
+        // Validates the givens.
+        new Board(data);
+
+        return new SolutionCounter(orient(data)).count(pool, threads);
+
+    }
+
+    /**
+     * <p>
+     * The <code>orient()</code> method turns a puzzle to the orientation which is quickest to count: the
+     * most givens in the top band, then the most in the middle band.
+     * </p>
+     *
+     * @param data The puzzle.
+     * @return The puzzle, turned (a new array, unless it was best as it is).
+     */
+    static int[][] orient(int[][] data) {
+
+        int[][] best = data;
+        int bestScore = -1;
+
+        for (UnaryOperator<int[][]> orientation : ORIENTATIONS) {
+
+            int[][] candidate = orientation.apply(data);
+            int score = givenCount(candidate, 0) * 28 + givenCount(candidate, 1);
+
+            if (score > bestScore) {
+
+                best = candidate;
+                bestScore = score;
+
+            }
+
+        }
+
+        return best;
+
+    }
+
+    private static int givenCount(int[][] data, int band) {
+
+        int count = 0;
+
+        for (int r = band * 3; r < band * 3 + 3; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                count += data[r][c] != 0 ? 1 : 0;
+
+            }
+
+        }
+
+        return count;
+
+    }
+
+    private BigInteger count(ExecutorService pool, int threads) {
+
+        List<int[]> parts = split(threads * ParallelSearch.SPLIT_FACTOR);
+
+        if (parts.isEmpty()) {
+
+            return BigInteger.ZERO;
+
+        }
+
+        List<Future<BigInteger>> futures = new ArrayList<>();
+        BigInteger total = BigInteger.ZERO;
+
+        try {
+
+            for (int[] part : parts) {
+
+                futures.add(pool.submit(() -> {
+
+                    Worker worker = new Worker();
+                    int p = part[54];
+
+                    worker.start(part);
+
+                    if (p <= 27) {
+
+                        worker.fill(0, p);
+
+                    } else {
+
+                        worker.add(worker.fill(1, p - 27));
+
+                    }
+
+                    return worker.total();
+
+                }));
+
+            }
+
+            for (Future<BigInteger> future : futures) {
+
+                total = total.add(future.get());
+
+            }
+
+            return total;
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("ERROR: Interrupted while counting", e);
+
+        } catch (ExecutionException e) {
+
+            throw new RuntimeException("ERROR: Count failed", e.getCause());
+
+        } finally {
+
+            // After a failure, the parts not yet started are not needed.
+            for (Future<BigInteger> future : futures) {
+
+                future.cancel(false);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Divide the fillings of the top two bands breadth first, a cell at a time, into prefixes (the values
+     * of their 54 cells so far, then the position reached) which between them cover every filling. The
+     * middle band is only split once the top band is complete, which matters when the top band is given
+     * in full and so has only one filling.
+     * </p>
+     */
+    private List<int[]> split(int target) {
+
+        ArrayDeque<int[]> open = new ArrayDeque<>();
+        List<int[]> result = new ArrayList<>();
+        Worker worker = new Worker();
+
+        open.add(new int[55]);
+
+        while (!open.isEmpty() && open.size() + result.size() < target) {
+
+            int[] part = open.poll();
+            int p = part[54];
+
+            while (p < 54 && givens[p] != 0) {
+
+                p++;
+
+            }
+
+            part[54] = p;
+
+            if (p == 54) {
+
+                result.add(part);
+                continue;
+
+            }
+
+            worker.start(part);
+
+            for (int m = worker.candidates(p / 27, p % 27); m != 0; m &= m - 1) {
+
+                int[] child = part.clone();
+
+                child[p] = Integer.numberOfTrailingZeros(m);
+                child[54] = p + 1;
+                open.add(child);
+
+            }
+
+        }
+
+        result.addAll(open);
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>Worker</code> class fills bands on one thread, with the masks of each band kept apart so
+     * that filling a band can recurse into the next.
+     * </p>
+     */
+    private final class Worker {
+
+        private final int[][] rows = new int[3][3];
+        private final int[][] boxes = new int[3][3];
+        private final int[][] columns = new int[3][9];
+        private final int[][] used = new int[3][9];
+        private final int[] ranks = new int[9];
+        private final long[] stacks = new long[3];
+        private final int[] missing = new int[9];
+        private final int[] firstRow = new int[10];
+        private final int[] secondRow = new int[10];
+
+        private long partial;
+        private BigInteger total = BigInteger.ZERO;
+
+        /**
+         * <p>
+         * Start from a prefix made by <code>split()</code>: the top band, and the middle band too if the
+         * prefix has reached it.
+         * </p>
+         */
+        private void start(int[] part) {
+
+            load(0, NONE, part, 0);
+
+            if (part[54] >= 27) {
+
+                load(1, used[0], part, 27);
+
+            }
+
+        }
+
+        /**
+         * <p>
+         * Start a band, below bands which used the given digits in each column, with the band's givens
+         * and any values already chosen for it (0 for none) from an offset in an array.
+         * </p>
+         */
+        private void load(int band, int[] above, int[] values, int offset) {
+
+            for (int i = 0; i < 3; i++) {
+
+                rows[band][i] = 0;
+                boxes[band][i] = 0;
+
+            }
+
+            for (int c = 0; c < 9; c++) {
+
+                used[band][c] = above[c];
+                columns[band][c] = above[c] | below[band][c];
+
+            }
+
+            for (int p = 0; p < 27; p++) {
+
+                int v = givens[band * 27 + p] != 0 ? givens[band * 27 + p] : values[offset + p];
+
+                if (v != 0) {
+
+                    set(band, p, 1 << v);
+
+                }
+
+            }
+
+        }
+
+        private int candidates(int band, int p) {
+
+            return ALL & ~(rows[band][p / 9] | boxes[band][p % 9 / 3] | columns[band][p % 9]);
+
+        }
+
+        private void set(int band, int p, int bit) {
+
+            rows[band][p / 9] |= bit;
+            boxes[band][p % 9 / 3] |= bit;
+            columns[band][p % 9] |= bit;
+            used[band][p % 9] |= bit;
+
+        }
+
+        private void unset(int band, int p, int bit) {
+
+            rows[band][p / 9] &= ~bit;
+            boxes[band][p % 9 / 3] &= ~bit;
+            columns[band][p % 9] &= ~bit;
+            used[band][p % 9] &= ~bit;
+
+        }
+
+        /**
+         * <p>
+         * Count the completions of a band from a position on, and of the bands below. The top band's
+         * count can overflow a <code>long</code>, so it goes to <code>add()</code> instead and 0 is
+         * returned.
+         * </p>
+         */
+        private long fill(int band, int p) {
+
+            while (p < 27 && givens[band * 27 + p] != 0) {
+
+                p++;
+
+            }
+
+            if (p == 27) {
+
+                if (band == 2) {
+
+                    return 1;
+
+                }
+
+                long count = complete(band + 1, used[band]);
+
+                if (band == 0) {
+
+                    add(count);
+
+                    return 0;
+
+                }
+
+                return count;
+
+            }
+
+            long count = 0;
+
+            for (int m = candidates(band, p); m != 0; m &= m - 1) {
+
+                int bit = m & -m;
+
+                set(band, p, bit);
+                count += fill(band, p + 1);
+                unset(band, p, bit);
+
+            }
+
+            return count;
+
+        }
+
+        /**
+         * <p>
+         * Count the completions of a band and the bands below, given the digits used in each column
+         * above, memoised.
+         * </p>
+         */
+        private long complete(int band, int[] above) {
+
+            long key = key(above, free[band]);
+            MemoTable table = memo[band];
+            long count = table.get(key);
+
+            Events.cache(MEMO_NAMES[band], key, count != MemoTable.ABSENT);
+
+            if (count == MemoTable.ABSENT) {
+
+                if (band == 2 && free[2]) {
+
+                    count = bottom(above);
+
+                } else {
+
+                    load(band, above, NONE, 0);
+                    count = fill(band, 0);
+
+                }
+
+                table.put(key, count);
+
+            }
+
+            return count;
+
+        }
+
+        /**
+         * <p>
+         * Count the fillings of the bottom band, without givens, below bands which used the given digits
+         * in each column.
+         * </p>
+         * <p>
+         * Each column must take exactly the three digits it is missing, so each stack's columns must be
+         * missing three digits each, between them all nine, and then each digit is in one column of each
+         * stack and needs a different row in each. So it is enough to choose the rows of the first stack's
+         * digits, those of the second stack's (which each column can choose alone), and check that the
+         * third stack's rows, which are then forced, are a permutation in each column. Permuting the rows
+         * of a filling gives another, so the first column's digits are kept in order and the count
+         * multiplied by 6.
+         * </p>
+         */
+        private long bottom(int[] above) {
+
+            for (int c = 0; c < 9; c++) {
+
+                missing[c] = ALL & ~above[c];
+
+            }
+
+            for (int s = 0; s < 9; s += 3) {
+
+                if ((missing[s] | missing[s + 1] | missing[s + 2]) != ALL) {
+
+                    return 0;
+
+                }
+
+            }
+
+            long count = 0;
+
+            setRows(0, 0, firstRow);
+
+            for (int a = 0; a < 6; a++) {
+
+                setRows(1, a, firstRow);
+
+                for (int b = 0; b < 6; b++) {
+
+                    setRows(2, b, firstRow);
+                    count += second(3);
+
+                }
+
+            }
+
+            return count * 6;
+
+        }
+
+        /**
+         * <p>
+         * Count the row orders of the second stack's columns from a column on which put no digit in its
+         * row in the first stack, and for each, check the third stack.
+         * </p>
+         */
+        private long second(int c) {
+
+            if (c == 6) {
+
+                for (int t = 6; t < 9; t++) {
+
+                    int rows = 0;
+
+                    for (int m = missing[t]; m != 0; m &= m - 1) {
+
+                        int d = Integer.numberOfTrailingZeros(m);
+
+                        rows |= 1 << (3 - firstRow[d] - secondRow[d]);
+
+                    }
+
+                    if (rows != 7) {
+
+                        return 0;
+
+                    }
+
+                }
+
+                return 1;
+
+            }
+
+            long count = 0;
+
+            outer:
+            for (int order = 0; order < 6; order++) {
+
+                setRows(c, order, secondRow);
+
+                for (int m = missing[c]; m != 0; m &= m - 1) {
+
+                    int d = Integer.numberOfTrailingZeros(m);
+
+                    if (secondRow[d] == firstRow[d]) {
+
+                        continue outer;
+
+                    }
+
+                }
+
+                count += second(c + 1);
+
+            }
+
+            return count;
+
+        }
+
+        /**
+         * <p>
+         * Put a column's three missing digits, in ascending order, into the rows of one of the six
+         * permutations.
+         * </p>
+         */
+        private void setRows(int c, int order, int[] row) {
+
+            int k = 0;
+
+            for (int m = missing[c]; m != 0; m &= m - 1) {
+
+                row[Integer.numberOfTrailingZeros(m)] = PERMUTATIONS[order][k++];
+
+            }
+
+        }
+
+        /**
+         * <p>
+         * Pack the digits used in each column (three, or six, in every column) into a key: 7 bits for the
+         * rank of each column's three digits (or three missing digits), in column order, or if canonical,
+         * sorted within each stack and then by stack.
+         * </p>
+         */
+        private long key(int[] above, boolean canonical) {
+
+            for (int c = 0; c < 9; c++) {
+
+                int mask = above[c] >>> 1;
+
+                ranks[c] = RANK[Integer.bitCount(mask) == 3 ? mask : ~mask & 0x1FF];
+
+            }
+
+            long key = 0;
+
+            if (!canonical) {
+
+                for (int c = 0; c < 9; c++) {
+
+                    key = key << 7 | ranks[c];
+
+                }
+
+                return key;
+
+            }
+
+            for (int s = 0; s < 3; s++) {
+
+                int a = ranks[s * 3];
+                int b = ranks[s * 3 + 1];
+                int c = ranks[s * 3 + 2];
+                int low = Math.min(a, Math.min(b, c));
+                int high = Math.max(a, Math.max(b, c));
+
+                stacks[s] = (long) low << 14 | (long) (a + b + c - low - high) << 7 | high;
+
+            }
+
+            Arrays.sort(stacks);
+
+            return stacks[0] << 42 | stacks[1] << 21 | stacks[2];
+
+        }
+
+        private void add(long count) {
+
+            if (partial > Long.MAX_VALUE - count) {
+
+                total = total.add(BigInteger.valueOf(partial));
+                partial = 0;
+
+            }
+
+            partial += count;
+
+        }
+
+        private BigInteger total() {
+
+            return total.add(BigInteger.valueOf(partial));
+
+        }
+
+    }
+
+}
@@ -0,0 +1,234 @@
+package zone.otto;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>
+ * The <code>SolutionSpliterator</code> class enumerates every solution of a puzzle, lazily, as a
+ * <code>Spliterator</code> (and so as a <code>Stream</code>, see <code>solutions()</code>).
+ * </p>
+ * <p>
+ * The search is the same MRV backtracking as <code>Board.solution()</code>, but iterative, with an explicit
+ * stack of (cell, untried candidates) frames, so that it can stop after each solution and carry on from
+ * there on the next <code>tryAdvance()</code>. Nothing but the current path is ever held, and each
+ * spliterator works on a single <code>Board</code> of its own (plus an untouched copy to split from), so
+ * a parallel stream allocates boards per split rather than per solution.
+ * </p>
+ * <p>
+ * <code>trySplit()</code> hands over half of the untried candidates of the shallowest frame which has
+ * any, i.e. it splits on the top-level branches first, so <code>solutions(puzzle).parallel().limit(n)</code>
+ * spreads across cores. The order of the solutions is not significant (the spliterator is not
+ * <code>ORDERED</code>), which keeps <code>limit()</code> cheap in parallel.
+ * </p>
+ */
+class SolutionSpliterator implements Spliterator<int[][]> {
+
+    // The board as it was before this spliterator's search (including the path of the one it was split
+    // from), which is never changed, and the board being searched.
+    private final Board origin;
+    private final Board board;
+
+    // The search path: the cell branched on at each depth, the candidates not yet tried there, and the
+    // value currently placed there (0 for none).
+    private final int[] stackCell = new int[82];
+    private final int[] stackMask = new int[82];
+    private final int[] stackValue = new int[82];
+    private int depth;
+
+    // Whether the origin is already full, and not yet reported.
+    private boolean full;
+
+    /**
+     * <p>
+     * Create a spliterator over the completions of a board.
+     * </p>
+     *
+     * @param board The board, which is copied (and so not changed).
+     */
+    SolutionSpliterator(Board board) {
+
+        this.origin = new Board(board);
+        this.board = new Board(board);
+
+        int cell = board.mostConstrained();
+
+        if (cell < 0) {
+
+            full = true;
+
+        } else {
+
+            push(cell, board.candidates(cell));
+
+        }
+
+    }
+
+    private SolutionSpliterator(Board board, int cell, int mask) {
+
+        this.origin = new Board(board);
+        this.board = board;
+
+        push(cell, mask);
+
+    }
+
+    /**
+     * <p>
+     * The <code>solutions()</code> method streams every solution of a puzzle.
+     * </p>
+     *
+     * @param data The puzzle, as returned by <code>Sudoku.dataParse()</code>.
+     * @return The solutions, in the same shape (ready for <code>Sudoku.dataRender()</code>).
+     * @throws IllegalArgumentException If the givens conflict.
+     */
+    static Stream<int[][]> solutions(int[][] data) {
+
+        return solutions(new Board(data));
+
+    }
+
+    /**
+     * <p>
+     * The <code>solutions()</code> method streams every completion of a board (of any variant).
+     * </p>
+     *
+     * @param board The board, which is not changed.
+     * @return The solutions.
+     */
+    static Stream<int[][]> solutions(Board board) {
+
+        return StreamSupport.stream(new SolutionSpliterator(board), false);
+
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[][]> action) {
+
+        if (full) {
+
+            full = false;
+            action.accept(board.toArray());
+
+            return true;
+
+        }
+
+        while (depth > 0) {
+
+            int top = depth - 1;
+
+            if (stackValue[top] != 0) {
+
+                board.undo();
+                stackValue[top] = 0;
+
+            }
+
+            int mask = stackMask[top];
+
+            if (mask == 0) {
+
+                depth--;
+                continue;
+
+            }
+
+            int v = Integer.numberOfTrailingZeros(mask);
+
+            stackMask[top] = mask & (mask - 1);
+            stackValue[top] = v;
+            board.place(stackCell[top], v);
+
+            int next = board.mostConstrained();
+
+            if (next < 0) {
+
+                // The board is full; the next call will undo this placement and carry on.
+                action.accept(board.toArray());
+
+                return true;
+
+            }
+
+            int candidates = board.candidates(next);
+
+            if (candidates != 0) {
+
+                push(next, candidates);
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    @Override
+    public Spliterator<int[][]> trySplit() {
+
+        for (int i = 0; i < depth; i++) {
+
+            int mask = stackMask[i];
+            int count = Integer.bitCount(mask);
+
+            // Give away half of the untried candidates, or all of them if a value is already being tried
+            // here (a frame which hasn't started yet must keep at least one).
+            if (count >= (stackValue[i] != 0 ? 1 : 2)) {
+
+                int given = 0;
+
+                for (int k = 0; k < (count + 1) / 2; k++) {
+
+                    given |= Integer.highestOneBit(mask & ~given);
+
+                }
+
+                stackMask[i] = mask & ~given;
+
+                Board split = new Board(origin);
+
+                for (int k = 0; k < i; k++) {
+
+                    split.place(stackCell[k], stackValue[k]);
+
+                }
+
+                return new SolutionSpliterator(split, stackCell[i], given);
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    @Override
+    public long estimateSize() {
+
+        return depth == 0 ? (full ? 1 : 0) : Long.MAX_VALUE;
+
+    }
+
+    @Override
+    public int characteristics() {
+
+        return NONNULL | IMMUTABLE;
+
+    }
+
+    private void push(int cell, int mask) {
+
+        stackCell[depth] = cell;
+        stackMask[depth] = mask;
+        stackValue[depth] = 0;
+        depth++;
+
+    }
+
+}
@@ -0,0 +1,423 @@
+package zone.otto;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * The <code>SolutionStream</code> class turns a <code>Flow.Publisher</code> of puzzles into a
+ * <code>Flow.Publisher</code> of results, solving them on an <code>Executor</code>.
+ * </p>
+ * <p>
+ * Demand flows upstream: puzzles are only requested from the source as the subscriber requests results,
+ * and never more than <code>concurrency</code> at a time are being requested, solved or waiting to be
+ * delivered. So however fast the source and however slow the subscriber, the memory in flight is bounded,
+ * with no queue that can grow without limit.
+ * </p>
+ * <p>
+ * Results are delivered as they are solved, which may not be the order the puzzles arrived in, so each
+ * carries the index of its puzzle. Each subscription to the returned publisher subscribes to the source
+ * afresh; cancelling it cancels the source and any solves still running.
+ * </p>
+ */
+class SolutionStream {
+
+    /**
+     * <p>
+     * The <code>Result</code> class is the outcome of one puzzle.
+     * </p>
+     */
+    static final class Result {
+
+        private final long index;
+        private final int[][] puzzle;
+        private final int[][] solution;
+
+        private Result(long index, int[][] puzzle, int[][] solution) {
+
+            this.index = index;
+            this.puzzle = puzzle;
+            this.solution = solution;
+
+        }
+
+        /**
+         * <p>
+         * The <code>index()</code> method returns the position of the puzzle in the source, from 0.
+         * </p>
+         *
+         * @return The index.
+         */
+        long index() {
+
+            return index;
+
+        }
+
+        /**
+         * <p>
+         * The <code>puzzle()</code> method returns the puzzle, as received from the source.
+         * </p>
+         *
+         * @return The puzzle.
+         */
+        int[][] puzzle() {
+
+            return puzzle;
+
+        }
+
+        /**
+         * <p>
+         * The <code>solution()</code> method returns the solution, ready for <code>Sudoku.dataRender()</code>.
+         * </p>
+         *
+         * @return The solution, or <code>null</code> if there is none (including when the givens conflict).
+         */
+        int[][] solution() {
+
+            return solution;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a stream of puzzles with <code>Board</code>'s backtracking search.
+     * </p>
+     *
+     * @param puzzles     The source of puzzles.
+     * @param executor    Where to solve them.
+     * @param concurrency The most puzzles in flight at once.
+     * @return The results.
+     * @throws IllegalArgumentException If the concurrency is not positive.
+     */
+    static Flow.Publisher<Result> solve(Flow.Publisher<int[][]> puzzles, Executor executor, int concurrency) {
+
+        return solve(puzzles, executor, concurrency, Portfolio.backtracking());
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a stream of puzzles with any engine.
+     * </p>
+     *
+     * @param puzzles     The source of puzzles.
+     * @param executor    Where to solve them.
+     * @param concurrency The most puzzles in flight at once.
+     * @param engine      The engine, which is cancelled if the subscription is.
+     * @return The results.
+     * @throws IllegalArgumentException If the concurrency is not positive.
+     */
+    static Flow.Publisher<Result> solve(Flow.Publisher<int[][]> puzzles, Executor executor, int concurrency,
+                                        Portfolio.Engine engine) {
+
+        if (concurrency < 1) {
+
+            throw new IllegalArgumentException("ERROR: Invalid concurrency: " + concurrency);
+
+        }
+
+        Objects.requireNonNull(puzzles);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(engine);
+
+        return subscriber -> puzzles.subscribe(new Pipeline(subscriber, executor, concurrency, engine));
+
+    }
+
+    /**
+     * <p>
+     * The <code>Pipeline</code> class is one subscription: a subscriber to the source and a subscription
+     * for the downstream subscriber.
+     * </p>
+     * <p>
+     * All signals to the subscriber, and all requests to the source, are made from <code>drain()</code>,
+     * which only ever runs on one thread at a time (whichever thread bumps <code>wip</code> from 0) and
+     * loops until no more work has been signalled. So the counters it owns need no locking, and a
+     * <code>request()</code> from within <code>onNext()</code> does not recurse.
+     * </p>
+     */
+    private static final class Pipeline implements Flow.Subscriber<int[][]>, Flow.Subscription {
+
+        private final Flow.Subscriber<? super Result> downstream;
+        private final Executor executor;
+        private final int concurrency;
+        private final Portfolio.Engine engine;
+
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final Queue<Result> solved = new ConcurrentLinkedQueue<>();
+
+        private Flow.Subscription upstream;
+        private volatile long received;
+        private volatile boolean upstreamDone;
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        // Owned by drain().
+        private long requested;
+        private long emitted;
+        private boolean terminated;
+
+        private Pipeline(Flow.Subscriber<? super Result> downstream, Executor executor, int concurrency,
+                         Portfolio.Engine engine) {
+
+            this.downstream = downstream;
+            this.executor = executor;
+            this.concurrency = concurrency;
+            this.engine = engine;
+
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+
+            if (upstream != null) {
+
+                subscription.cancel();
+
+                return;
+
+            }
+
+            upstream = subscription;
+            downstream.onSubscribe(this);
+
+        }
+
+        @Override
+        public void onNext(int[][] puzzle) {
+
+            long index = received++;
+
+            try {
+
+                executor.execute(() -> {
+
+                    try {
+
+                        solved.add(new Result(index, puzzle, solve(puzzle)));
+
+                    } catch (RuntimeException e) {
+
+                        fail(e);
+
+                        return;
+
+                    }
+
+                    drain();
+
+                });
+
+            } catch (RejectedExecutionException e) {
+
+                fail(e);
+
+            }
+
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+
+            fail(throwable);
+
+        }
+
+        @Override
+        public void onComplete() {
+
+            upstreamDone = true;
+            drain();
+
+        }
+
+        @Override
+        public void request(long n) {
+
+            if (n <= 0) {
+
+                fail(new IllegalArgumentException("ERROR: Invalid request: " + n));
+
+                return;
+
+            }
+
+            demand.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            drain();
+
+        }
+
+        @Override
+        public void cancel() {
+
+            if (cancelled.compareAndSet(false, true)) {
+
+                upstream.cancel();
+
+            }
+
+        }
+
+        private int[][] solve(int[][] puzzle) {
+
+            if (cancelled.get()) {
+
+                Metrics.global().aborted();
+
+                return null;
+
+            }
+
+            long bgn = System.nanoTime();
+
+            try {
+
+                Board board = new Board(puzzle);
+                int[] out = new int[81];
+
+                if (!engine.solve(board, out, cancelled)) {
+
+                    if (cancelled.get()) {
+
+                        Metrics.global().aborted();
+
+                    } else {
+
+                        Metrics.global().unsolvable(System.nanoTime() - bgn, board.nodes());
+
+                    }
+
+                    return null;
+
+                }
+
+                Metrics.global().solved(System.nanoTime() - bgn, board.nodes());
+
+                int[][] solution = new int[9][9];
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    solution[cell / 9][cell % 9] = out[cell];
+
+                }
+
+                return solution;
+
+            } catch (IllegalArgumentException e) {
+
+                // Conflicting givens, found before any search.
+                Metrics.global().unsolvable(System.nanoTime() - bgn, 0);
+
+                return null;
+
+            }
+
+        }
+
+        private void fail(Throwable throwable) {
+
+            // The first failure wins.
+            error.compareAndSet(null, throwable);
+
+            if (cancelled.compareAndSet(false, true)) {
+
+                upstream.cancel();
+
+            }
+
+            upstreamDone = true;
+            drain();
+
+        }
+
+        private void drain() {
+
+            if (wip.getAndIncrement() != 0) {
+
+                return;
+
+            }
+
+            int missed = 1;
+
+            do {
+
+                if (terminated) {
+
+                    return;
+
+                }
+
+                Throwable failure = error.get();
+
+                if (failure != null) {
+
+                    terminated = true;
+                    solved.clear();
+                    downstream.onError(failure);
+
+                    return;
+
+                }
+
+                if (cancelled.get()) {
+
+                    terminated = true;
+                    solved.clear();
+
+                    return;
+
+                }
+
+                Result result;
+
+                while (emitted < demand.get() && (result = solved.poll()) != null) {
+
+                    emitted++;
+                    downstream.onNext(result);
+
+                }
+
+                if (upstreamDone && emitted == received && solved.isEmpty()) {
+
+                    terminated = true;
+                    downstream.onComplete();
+
+                    return;
+
+                }
+
+                // Top up the source, to at most the demand, and at most concurrency beyond what has been emitted.
+                long limit = Math.min(demand.get(), emitted + concurrency);
+
+                if (!upstreamDone && requested < limit) {
+
+                    long more = limit - requested;
+
+                    requested = limit;
+                    upstream.request(more);
+
+                }
+
+                missed = wip.addAndGet(-missed);
+
+            } while (missed != 0);
+
+        }
+
+    }
+
+}
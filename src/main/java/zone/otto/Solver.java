@@ -0,0 +1,451 @@
+package zone.otto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>Solver</code> class is the public entry point for embedding the solver: unlike the static
+ * methods of <code>Sudoku</code>, it never changes the caller's arrays, and returns an immutable
+ * <code>Result</code> rather than a <code>boolean</code> and a filled-in input.
+ * </p>
+ * <p>
+ * Each solver owns one <code>Board</code>, whose candidate masks, undo trail and search stack are all
+ * allocated up front, and is reset and reloaded for each puzzle, so once warmed up the search itself
+ * allocates nothing. <code>solve(int[], int[])</code> writes into the caller's buffer and returns a
+ * <code>Status</code>, so it allocates nothing at all; the other <code>solve()</code> methods allocate only
+ * their <code>Result</code>. Every solve is recorded in <code>Metrics.global()</code>.
+ * </p>
+ * <p>
+ * A solve can also be given a time limit, for callers which need an answer within a latency budget
+ * whatever the puzzle: if it runs out, the result is the fullest consistent partial assignment the search
+ * reached, with the candidates left in each of its empty cells, rather than nothing.
+ * </p>
+ * <p>
+ * A solver is not thread-safe, but it is cheap to keep one per thread: <code>forCurrentThread()</code>
+ * returns the calling thread's own, created on first use.
+ * </p>
+ */
+public final class Solver {
+
+    /**
+     * <p>
+     * The <code>Status</code> enum lists the outcomes of solving a puzzle.
+     * </p>
+     * <ul>
+     * <li><code>SOLVED</code>: a solution was found.</li>
+     * <li><code>NO_SOLUTION</code>: the givens are consistent, but cannot be completed.</li>
+     * <li><code>CONFLICTING_GIVENS</code>: two givens share a row, column or box.</li>
+     * <li><code>DEADLINE_EXCEEDED</code>: time ran out first; the result is a partial assignment.</li>
+     * </ul>
+     */
+    public enum Status {
+        SOLVED, NO_SOLUTION, CONFLICTING_GIVENS, DEADLINE_EXCEEDED
+    }
+
+    /**
+     * <p>
+     * The <code>Result</code> class is the immutable outcome of solving one puzzle.
+     * </p>
+     */
+    public static final class Result {
+
+        private final Status status;
+        private final byte[] cells;
+        private final short[] candidates;
+        private final long nodes;
+        private final long backtracks;
+
+        private Result(Status status, int[] cells, int[] candidates, long nodes, long backtracks) {
+
+            this.status = status;
+            this.cells = new byte[81];
+            this.candidates = new short[81];
+            this.nodes = nodes;
+            this.backtracks = backtracks;
+
+            if (status == Status.SOLVED || status == Status.DEADLINE_EXCEEDED) {
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    this.cells[cell] = (byte) cells[cell];
+
+                }
+
+            }
+
+            if (candidates != null) {
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    this.candidates[cell] = (short) candidates[cell];
+
+                }
+
+            }
+
+        }
+
+        /**
+         * <p>
+         * The <code>status()</code> method returns the outcome.
+         * </p>
+         *
+         * @return The status.
+         */
+        public Status status() {
+
+            return status;
+
+        }
+
+        /**
+         * <p>
+         * The <code>isSolved()</code> method returns whether a solution was found.
+         * </p>
+         *
+         * @return Whether the status is <code>SOLVED</code>.
+         */
+        public boolean isSolved() {
+
+            return status == Status.SOLVED;
+
+        }
+
+        /**
+         * <p>
+         * The <code>get()</code> method returns a cell of the solution (or partial assignment).
+         * </p>
+         *
+         * @param r The row, 0 to 8.
+         * @param c The column, 0 to 8.
+         * @return The digit, or 0 if there is no solution or the cell is empty.
+         */
+        public int get(int r, int c) {
+
+            return cells[Board.cell(r, c)];
+
+        }
+
+        /**
+         * <p>
+         * The <code>candidates()</code> method returns the digits still possible in an empty cell of a partial
+         * assignment, as a mask with bit <code>v</code> set for each digit <code>v</code>.
+         * </p>
+         *
+         * @param r The row, 0 to 8.
+         * @param c The column, 0 to 8.
+         * @return The mask, 0 unless the status is <code>DEADLINE_EXCEEDED</code> and the cell is empty.
+         */
+        public int candidates(int r, int c) {
+
+            return candidates[Board.cell(r, c)];
+
+        }
+
+        /**
+         * <p>
+         * The <code>toArray()</code> method copies the solution into the int[][] shape used by
+         * <code>Sudoku</code>.
+         * </p>
+         *
+         * @return A new 9 x 9 array, all zeroes if there is no solution (or partial assignment).
+         */
+        public int[][] toArray() {
+
+            int[][] result = new int[9][9];
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                result[cell / 9][cell % 9] = cells[cell];
+
+            }
+
+            return result;
+
+        }
+
+        /**
+         * <p>
+         * The <code>nodes()</code> method returns the number of nodes the search expanded.
+         * </p>
+         *
+         * @return The node count, 0 if the givens conflict.
+         */
+        public long nodes() {
+
+            return nodes;
+
+        }
+
+        /**
+         * <p>
+         * The <code>backtracks()</code> method returns the number of placements the search took back.
+         * </p>
+         *
+         * @return The backtrack count, 0 if the givens conflict.
+         */
+        public long backtracks() {
+
+            return backtracks;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return isSolved() ? Sudoku.dataRender(toArray())
+                    : status == Status.DEADLINE_EXCEEDED ? status + "\n" + Sudoku.dataRender(toArray()) : status.toString();
+
+        }
+
+    }
+
+    private static final ThreadLocal<Solver> POOL = ThreadLocal.withInitial(Solver::new);
+
+    private final Board board = new Board();
+    private final int[] puzzle = new int[81];
+    private final int[] solution = new int[81];
+    private final int[] deepest = new int[81];
+    private final int[] candidates = new int[81];
+
+    /**
+     * <p>
+     * Create a solver, with all of its working state.
+     * </p>
+     */
+    public Solver() {
+
+    }
+
+    /**
+     * <p>
+     * The <code>forCurrentThread()</code> method returns the calling thread's own solver.
+     * </p>
+     *
+     * @return The solver, which must not be shared with other threads.
+     */
+    public static Solver forCurrentThread() {
+
+        return POOL.get();
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a puzzle in the shape returned by <code>Sudoku.dataParse()</code>.
+     * </p>
+     *
+     * @param data The puzzle, 9 rows of 9 digits (0 for empty), which is not changed.
+     * @return The result.
+     * @throws IllegalArgumentException If the puzzle is not 9 x 9 or a digit is out of range.
+     */
+    public Result solve(int[][] data) {
+
+        return solve(flatten(data));
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a puzzle in the shape returned by <code>Sudoku.dataParse()</code>
+     * within a time limit.
+     * </p>
+     *
+     * @param data    The puzzle, 9 rows of 9 digits (0 for empty), which is not changed.
+     * @param timeout The time limit.
+     * @param unit    The unit of the time limit.
+     * @return The result, with the status <code>DEADLINE_EXCEEDED</code> if time ran out.
+     * @throws IllegalArgumentException If the puzzle is not 9 x 9 or a digit is out of range.
+     */
+    public Result solve(int[][] data, long timeout, TimeUnit unit) {
+
+        return solve(flatten(data), timeout, unit);
+
+    }
+
+    private int[] flatten(int[][] data) {
+
+        if (data.length != 9) {
+
+            throw new IllegalArgumentException("ERROR: Expected 9 rows, got " + data.length);
+
+        }
+
+        for (int r = 0; r < 9; r++) {
+
+            if (data[r].length != 9) {
+
+                throw new IllegalArgumentException("ERROR: Expected 9 columns in row " + r + ", got " + data[r].length);
+
+            }
+
+            System.arraycopy(data[r], 0, puzzle, r * 9, 9);
+
+        }
+
+        return puzzle;
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a puzzle given as 81 digits, row by row.
+     * </p>
+     *
+     * @param cells The puzzle, 81 digits (0 for empty), which is not changed.
+     * @return The result.
+     * @throws IllegalArgumentException If there are not 81 digits or one is out of range.
+     */
+    public Result solve(int[] cells) {
+
+        Status status = solve(cells, solution);
+
+        return new Result(status, solution, null, board.nodes(), board.backtracks());
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a puzzle given as 81 digits, row by row, within a time limit.
+     * If time runs out the result holds the fullest consistent partial assignment the search reached (the
+     * givens and its placements, which may not lead to the solution) and the candidates of its empty cells.
+     * </p>
+     *
+     * @param cells   The puzzle, 81 digits (0 for empty), which is not changed.
+     * @param timeout The time limit.
+     * @param unit    The unit of the time limit.
+     * @return The result, with the status <code>DEADLINE_EXCEEDED</code> if time ran out.
+     * @throws IllegalArgumentException If there are not 81 digits or one is out of range.
+     */
+    public Result solve(int[] cells, long timeout, TimeUnit unit) {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        if (cells.length != 81) {
+
+            throw new IllegalArgumentException("ERROR: Expected 81 cells, got " + cells.length);
+
+        }
+
+        Status status = run(cells, solution, deadline);
+
+        if (status != Status.DEADLINE_EXCEEDED) {
+
+            return new Result(status, solution, null, board.nodes(), board.backtracks());
+
+        }
+
+        // The search has unwound to the givens, so replay the fullest state to read its candidates.
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (board.get(cell) == 0 && deepest[cell] != 0) {
+
+                board.place(cell, deepest[cell]);
+
+            }
+
+        }
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            candidates[cell] = board.get(cell) == 0 ? board.candidates(cell) : 0;
+
+        }
+
+        return new Result(status, deepest, candidates, board.nodes(), board.backtracks());
+
+    }
+
+    /**
+     * <p>
+     * The <code>solve()</code> method solves a puzzle given as 81 digits, row by row, into a buffer of the
+     * caller's, allocating nothing.
+     * </p>
+     *
+     * @param cells The puzzle, 81 digits (0 for empty), which is not changed.
+     * @param out   Receives the 81 digits of the solution, if there is one (it may be <code>cells</code>).
+     * @return The outcome.
+     * @throws IllegalArgumentException If there are not 81 digits or one is out of range.
+     */
+    public Status solve(int[] cells, int[] out) {
+
+        if (cells.length != 81 || out.length != 81) {
+
+            throw new IllegalArgumentException("ERROR: Expected 81 cells, got " + cells.length + " and " + out.length);
+
+        }
+
+        return run(cells, out, Long.MAX_VALUE);
+
+    }
+
+    private Status run(int[] cells, int[] out, long deadline) {
+
+        Events.Solve event = Events.solve();
+        String puzzle = event != null ? Events.line(cells) : null;
+        long bgn = System.nanoTime();
+        Status status;
+
+        if (!load(cells)) {
+
+            status = Status.CONFLICTING_GIVENS;
+
+        } else if (deadline == Long.MAX_VALUE ? board.solution(out) : board.solution(out, deadline, deepest)) {
+
+            status = Status.SOLVED;
+
+        } else {
+
+            status = board.isStopped() ? Status.DEADLINE_EXCEEDED : Status.NO_SOLUTION;
+
+        }
+
+        long nanos = System.nanoTime() - bgn;
+
+        if (status == Status.SOLVED) {
+
+            Metrics.global().solved(nanos, board.nodes());
+
+        } else if (status == Status.DEADLINE_EXCEEDED) {
+
+            Metrics.global().aborted();
+
+        } else {
+
+            Metrics.global().unsolvable(nanos, board.nodes());
+
+        }
+
+        Events.commit(event, "Solver", puzzle, status.name(), board.nodes(), board.backtracks());
+
+        return status;
+
+    }
+
+    private boolean load(int[] cells) {
+
+        board.reset();
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            int v = cells[cell];
+
+            if (v < 0 || v > 9) {
+
+                throw new IllegalArgumentException("ERROR: Invalid digit at row " + cell / 9 + ", column " + cell % 9 + ": " + v);
+
+            }
+
+            if (v != 0 && !board.give(cell, v)) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package zone.otto;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -51,7 +52,7 @@ public class Sudoku {
      * The <code>main</code> method gets executed by Java.
      * </p>
      *
-     * @param args Possibly contains a filename.
+     * @param args Possibly contains a filename, or <code>--batch</code> and the input and output filenames.
      */
     public static void main(String[] args) {
 
@@ -59,6 +60,14 @@ public class Sudoku {
 
         boolean solved;
         long bgn, end;
+        long[] counts = new long[2];
+
+        if (args.length == 3 && args[0].equals("--batch")) {
+
+            batch(args[1], args[2]);
+            return;
+
+        }
 
         switch (args.length) {
 
@@ -78,18 +87,25 @@ public class Sudoku {
 
         System.out.println(dataRender(data));
 
+        Events.Solve event = Events.solve();
+        String puzzle = event != null ? Events.line(data) : null;
+
         bgn = System.nanoTime();
 
-        solved = dataSolve(0, 0, data);
+        solved = dataSolve(0, 0, data, counts);
 
         end = System.nanoTime();
 
+        Events.commit(event, "dataSolve", puzzle, solved ? "SOLVED" : "NO_SOLUTION", counts[0], counts[1]);
+
         if (solved) {
 
+            Metrics.global().solved(end - bgn, counts[0]);
             System.out.println(dataRender(data));
 
         } else {
 
+            Metrics.global().unsolvable(end - bgn, counts[0]);
             System.out.println("NO SOLUTION FOUND.");
 
         }
@@ -110,6 +126,23 @@ public class Sudoku {
      */
     static boolean dataSolve(int r, int c, int[][] data) {
 
+        return dataSolve(r, c, data, new long[2]);
+
+    }
+
+    /**
+     * <p>
+     * The <code>dataSolve</code> method solves the puzzle as above, counting as it goes the nodes (empty cells
+     * visited) and backtracks (values tried and taken back), in the same sense as <code>Board</code>'s.
+     * </p>
+     *
+     * @param r      The starting row
+     * @param c      The starting column
+     * @param data   The puzzle array.
+     * @param counts Has the nodes added to its first element and the backtracks to its second.
+     */
+    static boolean dataSolve(int r, int c, int[][] data, long[] counts) {
+
         if (r == 9) {
 
             r = 0;
@@ -124,20 +157,24 @@ public class Sudoku {
 
         if (data[r][c] != 0) {
 
-            return dataSolve(r + 1, c, data);
+            return dataSolve(r + 1, c, data, counts);
 
         }
 
+        counts[0]++;
+
         for (int v : getValidSet(r, c, data)) {
 
             data[r][c] = v;
 
-            if (dataSolve(r + 1, c, data)) {
+            if (dataSolve(r + 1, c, data, counts)) {
 
                 return true;
 
             }
 
+            counts[1]++;
+
         }
 
         data[r][c] = 0;
@@ -228,6 +265,7 @@ public class Sudoku {
      */
     static int[][] dataParse(String fileName) {
 
+        Events.Parse event = Events.parse();
         int[][] data = new int[9][9];
 
         Reader reader = new InputStreamReader(System.in);
@@ -305,6 +343,9 @@ public class Sudoku {
 
         }
 
+        Events.commit(event, fileName, data);
+        Metrics.global().parsed();
+
         return data;
 
     }
@@ -319,6 +360,7 @@ public class Sudoku {
      */
     static String dataRender(int[][] data) {
 
+        Events.Render event = Events.render();
         String tmp = MatrixHelper.renderMatrix(true, data);
         StringBuilder output = new StringBuilder(1000);
 
@@ -349,7 +391,40 @@ public class Sudoku {
 
         }
 
-        return output.toString();
+        String result = output.toString();
+
+        Events.commit(event, data, result);
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * The <code>batch()</code> method runs a <code>BatchJob</code> from the command line, resuming it from its
+     * checkpoint if it was interrupted.
+     * </p>
+     *
+     * @param input  The file of puzzles, in any format <code>PuzzleReader</code> reads.
+     * @param output The file of results.
+     */
+    private static void batch(String input, String output) {
+
+        long bgn = System.nanoTime();
+
+        try {
+
+            long completed = new BatchJob(Paths.get(input), Paths.get(output)).run();
+
+            System.out.printf("Completed %d puzzles in: %d ms%n%n", completed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bgn));
+
+        } catch (IOException io) {
+
+            io.printStackTrace();
+            throw new RuntimeException("ERROR: An I/O Exception has occured.");
+
+        }
 
     }
 
@@ -373,6 +448,10 @@ public class Sudoku {
         output.append("\n");
         output.append("  cat <filename> | java Sudoku\n");
         output.append("\n");
+        output.append("    OR\n");
+        output.append("\n");
+        output.append("  java Sudoku --batch <input> <output>\n");
+        output.append("\n");
 
         return output.toString();
 
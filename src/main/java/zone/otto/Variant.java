@@ -0,0 +1,608 @@
+package zone.otto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>Variant</code> class describes the constraints of a Sudoku variant as a list of units, each a
+ * set of cells whose digits must all differ, optionally with a required sum (a Killer cage).
+ * </p>
+ * <p>
+ * <code>Sudoku.getValidSet()</code> hard-codes the row, column and box loops. Here a variant declares its
+ * units once, through a <code>Builder</code>, and they are compiled into flat index tables which the
+ * engines read directly:
+ * <ul>
+ * <li><code>unitStart</code>/<code>unitCells</code>: the cells of unit <code>u</code> are
+ * <code>unitCells[unitStart[u]]</code> up to (but excluding) <code>unitCells[unitStart[u + 1]]</code>.</li>
+ * <li><code>cellUnitStart</code>/<code>cellUnits</code>: likewise, the units each cell belongs to.</li>
+ * <li><code>cellHouses</code>/<code>cellExtraStart</code>: the same again, split into exactly three units
+ * per cell (<code>cellHouses[cell * 3]</code> to <code>cellHouses[cell * 3 + 2]</code>, padded by
+ * repeating the cell's first unit) and the rest, <code>cellUnits[cellExtraStart[cell]]</code>
+ * up to <code>cellUnits[cellUnitStart[cell + 1]]</code>. Every cell of every usual variant has a row,
+ * column and box (or region), so the hot loops unroll those and only loop over the extras.</li>
+ * <li><code>cellCageStart</code>/<code>cellCages</code>: the subset of those which are cages, so that
+ * variants without cages pay nothing for them.</li>
+ * <li><code>peerStart</code>/<code>peers</code>: the distinct cells sharing at least one unit with each cell.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Classic Sudoku is simply 27 units of 9, so an engine written against these tables runs any variant
+ * (X-Sudoku, jigsaw, anti-knight, Killer, or a mix) with the same loops it uses for the classic puzzle.
+ * </p>
+ */
+final class Variant {
+
+    // The largest possible sum of a cage, 1 + 2 + ... + 9.
+    static final int MAX_SUM = 45;
+
+    // Every set of distinct digits, grouped by (size, sum): the masks for (k, s) are
+    // COMBO_MASKS[COMBO_START[k * 46 + s]] up to COMBO_MASKS[COMBO_START[k * 46 + s + 1]].
+    private static final int[] COMBO_START = new int[10 * (MAX_SUM + 1) + 1];
+    private static final int[] COMBO_MASKS = new int[512];
+
+    static {
+
+        int[] counts = new int[10 * (MAX_SUM + 1)];
+
+        for (int set = 0; set < 512; set++) {
+
+            counts[key(set << 1)]++;
+
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+
+            COMBO_START[i + 1] = COMBO_START[i] + counts[i];
+
+        }
+
+        int[] next = Arrays.copyOf(COMBO_START, counts.length);
+
+        for (int set = 0; set < 512; set++) {
+
+            COMBO_MASKS[next[key(set << 1)]++] = set << 1;
+
+        }
+
+    }
+
+    static final Variant CLASSIC = new Builder().rows().columns().boxes().build();
+    static final Variant X_SUDOKU = new Builder().rows().columns().boxes().diagonals().build();
+    static final Variant ANTI_KNIGHT = new Builder().rows().columns().boxes().antiKnight().build();
+
+    final int[] unitStart;
+    final int[] unitCells;
+    final int[] unitSum;
+    final int[] cellUnitStart;
+    final int[] cellUnits;
+    final int[] cellHouses;
+    final int[] cellExtraStart;
+    final int[] cellCageStart;
+    final int[] cellCages;
+    final int[] peerStart;
+    final int[] peers;
+
+    private Variant(List<int[]> units, List<Integer> sums) {
+
+        int unitCount = units.size();
+        int total = 0;
+
+        unitStart = new int[unitCount + 1];
+        unitSum = new int[unitCount];
+
+        for (int u = 0; u < unitCount; u++) {
+
+            unitStart[u] = total;
+            unitSum[u] = sums.get(u);
+            total += units.get(u).length;
+
+        }
+
+        unitStart[unitCount] = total;
+        unitCells = new int[total];
+
+        for (int u = 0; u < unitCount; u++) {
+
+            System.arraycopy(units.get(u), 0, unitCells, unitStart[u], units.get(u).length);
+
+        }
+
+        cellUnitStart = new int[82];
+        cellUnits = new int[total];
+        cellCageStart = new int[82];
+
+        int cages = 0;
+
+        for (int u = 0; u < unitCount; u++) {
+
+            for (int i = unitStart[u]; i < unitStart[u + 1]; i++) {
+
+                cellUnitStart[unitCells[i] + 1]++;
+                cellCageStart[unitCells[i] + 1] += unitSum[u] > 0 ? 1 : 0;
+                cages += unitSum[u] > 0 ? 1 : 0;
+
+            }
+
+        }
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            cellUnitStart[cell + 1] += cellUnitStart[cell];
+            cellCageStart[cell + 1] += cellCageStart[cell];
+
+        }
+
+        cellCages = new int[cages];
+
+        int[] nextUnit = Arrays.copyOf(cellUnitStart, 81);
+        int[] nextCage = Arrays.copyOf(cellCageStart, 81);
+
+        for (int u = 0; u < unitCount; u++) {
+
+            for (int i = unitStart[u]; i < unitStart[u + 1]; i++) {
+
+                cellUnits[nextUnit[unitCells[i]]++] = u;
+
+                if (unitSum[u] > 0) {
+
+                    cellCages[nextCage[unitCells[i]]++] = u;
+
+                }
+
+            }
+
+        }
+
+        // The first three units of each cell, padded by repeating the first (which is harmless, since
+        // masks are only ever ORed in or ANDed out), so that engines can unroll the usual row, column
+        // and box and only loop over the rest.
+        cellHouses = new int[81 * 3];
+        cellExtraStart = new int[81];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            int count = Math.min(3, cellUnitStart[cell + 1] - cellUnitStart[cell]);
+
+            if (count == 0) {
+
+                throw new IllegalArgumentException("ERROR: Cell " + cell + " is not in any unit");
+
+            }
+
+            Arrays.fill(cellHouses, cell * 3, cell * 3 + 3, cellUnits[cellUnitStart[cell]]);
+            System.arraycopy(cellUnits, cellUnitStart[cell], cellHouses, cell * 3, count);
+            cellExtraStart[cell] = cellUnitStart[cell] + count;
+
+        }
+
+        // Peers are the union of a cell's units, less the cell itself, each peer once.
+        int[] peerBuffer = new int[81 * 80];
+        boolean[] seen = new boolean[81];
+        int peerCount = 0;
+
+        peerStart = new int[82];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            Arrays.fill(seen, false);
+            seen[cell] = true;
+
+            for (int i = cellUnitStart[cell]; i < cellUnitStart[cell + 1]; i++) {
+
+                int u = cellUnits[i];
+
+                for (int j = unitStart[u]; j < unitStart[u + 1]; j++) {
+
+                    if (!seen[unitCells[j]]) {
+
+                        seen[unitCells[j]] = true;
+                        peerBuffer[peerCount++] = unitCells[j];
+
+                    }
+
+                }
+
+            }
+
+            peerStart[cell + 1] = peerCount;
+
+        }
+
+        peers = Arrays.copyOf(peerBuffer, peerCount);
+
+    }
+
+    /**
+     * <p>
+     * The <code>jigsaw()</code> method creates a jigsaw (irregular box) variant, i.e. rows and columns
+     * plus nine arbitrary regions of nine cells.
+     * </p>
+     *
+     * @param regions The region, 0 to 8, of each of the 81 cells.
+     * @return The variant.
+     * @throws IllegalArgumentException If the regions are not nine regions of nine cells.
+     */
+    static Variant jigsaw(int[] regions) {
+
+        return new Builder().rows().columns().regions(regions).build();
+
+    }
+
+    /**
+     * <p>
+     * The <code>unitCount()</code> method returns the number of units.
+     * </p>
+     *
+     * @return The number of units.
+     */
+    int unitCount() {
+
+        return unitSum.length;
+
+    }
+
+    /**
+     * <p>
+     * The <code>hasCages()</code> method returns whether any unit has a required sum.
+     * </p>
+     *
+     * @return Whether this is a Killer variant.
+     */
+    boolean hasCages() {
+
+        return cellCages.length > 0;
+
+    }
+
+    /**
+     * <p>
+     * The <code>hasExtras()</code> method returns whether any cell is in more than three units.
+     * </p>
+     *
+     * @return Whether any cell has units beyond <code>cellHouses</code>.
+     */
+    boolean hasExtras() {
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            if (cellExtraStart[cell] != cellUnitStart[cell + 1]) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * <p>
+     * The <code>cageCandidates()</code> method returns the digits which could still go in an empty cell of
+     * a cage, i.e. the union of every set of <code>empty</code> unused digits adding up to
+     * <code>remaining</code>.
+     * </p>
+     *
+     * @param used      The mask of the digits already in the cage.
+     * @param empty     The number of empty cells left in the cage.
+     * @param remaining The cage's sum less the digits already in it.
+     * @return The candidate mask, 0 if the cage cannot be completed.
+     */
+    static int cageCandidates(int used, int empty, int remaining) {
+
+        if (remaining < 0 || remaining > MAX_SUM) {
+
+            return 0;
+
+        }
+
+        int key = empty * (MAX_SUM + 1) + remaining;
+        int result = 0;
+
+        for (int i = COMBO_START[key]; i < COMBO_START[key + 1]; i++) {
+
+            if ((COMBO_MASKS[i] & used) == 0) {
+
+                result |= COMBO_MASKS[i];
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    private static int key(int set) {
+
+        int sum = 0;
+
+        for (int m = set; m != 0; m &= m - 1) {
+
+            sum += Integer.numberOfTrailingZeros(m);
+
+        }
+
+        return Integer.bitCount(set) * (MAX_SUM + 1) + sum;
+
+    }
+
+    /**
+     * <p>
+     * The <code>Builder</code> class collects the units of a variant. Each method adds a family of units
+     * and returns the builder, so a variant reads as, for example,
+     * <code>new Builder().rows().columns().boxes().cage(10, 0, 1).build()</code>.
+     * </p>
+     */
+    static class Builder {
+
+        private final List<int[]> units = new ArrayList<>();
+        private final List<Integer> sums = new ArrayList<>();
+
+        /**
+         * <p>
+         * The <code>rows()</code> method adds the nine rows.
+         * </p>
+         *
+         * @return This builder.
+         */
+        Builder rows() {
+
+            for (int r = 0; r < 9; r++) {
+
+                int[] cells = new int[9];
+
+                for (int c = 0; c < 9; c++) {
+
+                    cells[c] = Board.cell(r, c);
+
+                }
+
+                add(cells, 0);
+
+            }
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>columns()</code> method adds the nine columns.
+         * </p>
+         *
+         * @return This builder.
+         */
+        Builder columns() {
+
+            for (int c = 0; c < 9; c++) {
+
+                int[] cells = new int[9];
+
+                for (int r = 0; r < 9; r++) {
+
+                    cells[r] = Board.cell(r, c);
+
+                }
+
+                add(cells, 0);
+
+            }
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>boxes()</code> method adds the nine 3 x 3 boxes.
+         * </p>
+         *
+         * @return This builder.
+         */
+        Builder boxes() {
+
+            int[] regions = new int[81];
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                regions[cell] = Board.BOX[cell];
+
+            }
+
+            return regions(regions);
+
+        }
+
+        /**
+         * <p>
+         * The <code>regions()</code> method adds nine irregular regions of nine cells, as in jigsaw Sudoku.
+         * </p>
+         *
+         * @param regions The region, 0 to 8, of each of the 81 cells.
+         * @return This builder.
+         * @throws IllegalArgumentException If the regions are not nine regions of nine cells.
+         */
+        Builder regions(int[] regions) {
+
+            if (regions.length != 81) {
+
+                throw new IllegalArgumentException("ERROR: Expected 81 regions, got " + regions.length);
+
+            }
+
+            int[][] cells = new int[9][9];
+            int[] sizes = new int[9];
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                int region = regions[cell];
+
+                if (region < 0 || region > 8 || sizes[region] == 9) {
+
+                    throw new IllegalArgumentException("ERROR: Invalid or overfull region for cell " + cell + ": " + region);
+
+                }
+
+                cells[region][sizes[region]++] = cell;
+
+            }
+
+            for (int[] region : cells) {
+
+                add(region, 0);
+
+            }
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>diagonals()</code> method adds the two main diagonals, as in X-Sudoku.
+         * </p>
+         *
+         * @return This builder.
+         */
+        Builder diagonals() {
+
+            int[] down = new int[9];
+            int[] up = new int[9];
+
+            for (int i = 0; i < 9; i++) {
+
+                down[i] = Board.cell(i, i);
+                up[i] = Board.cell(8 - i, i);
+
+            }
+
+            add(down, 0);
+            add(up, 0);
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>antiKnight()</code> method adds a two cell unit for every pair of cells a chess knight's
+         * move apart.
+         * </p>
+         *
+         * @return This builder.
+         */
+        Builder antiKnight() {
+
+            int[][] moves = {{1, 2}, {2, 1}, {1, -2}, {2, -1}};
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                for (int[] move : moves) {
+
+                    int r = Board.ROW[cell] + move[0];
+                    int c = Board.COL[cell] + move[1];
+
+                    if (r < 9 && c >= 0 && c < 9) {
+
+                        add(new int[]{cell, Board.cell(r, c)}, 0);
+
+                    }
+
+                }
+
+            }
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>unit()</code> method adds an arbitrary unit of two to nine cells, whose digits must differ.
+         * </p>
+         *
+         * @param cells The cells of the unit.
+         * @return This builder.
+         * @throws IllegalArgumentException If the cells are invalid or repeated.
+         */
+        Builder unit(int... cells) {
+
+            add(cells.clone(), 0);
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>cage()</code> method adds a Killer cage, whose digits must differ and add up to
+         * <code>sum</code>.
+         * </p>
+         *
+         * @param sum   The required sum.
+         * @param cells The cells of the cage.
+         * @return This builder.
+         * @throws IllegalArgumentException If the cells are invalid or repeated, or no digits can make the sum.
+         */
+        Builder cage(int sum, int... cells) {
+
+            if (sum < 1 || cells.length > 9 || cageCandidates(0, cells.length, sum) == 0) {
+
+                throw new IllegalArgumentException("ERROR: Impossible sum for a cage of " + cells.length + " cells: " + sum);
+
+            }
+
+            add(cells.clone(), sum);
+
+            return this;
+
+        }
+
+        /**
+         * <p>
+         * The <code>build()</code> method compiles the units into a <code>Variant</code>.
+         * </p>
+         *
+         * @return The variant.
+         */
+        Variant build() {
+
+            return new Variant(units, sums);
+
+        }
+
+        private void add(int[] cells, int sum) {
+
+            // A single cell cage is allowed (it is just a given), a single cell unit is meaningless.
+            if (cells.length > 9 || cells.length < (sum > 0 ? 1 : 2)) {
+
+                throw new IllegalArgumentException("ERROR: Invalid unit size: " + cells.length);
+
+            }
+
+            boolean[] seen = new boolean[81];
+
+            for (int cell : cells) {
+
+                if (cell < 0 || cell > 80 || seen[cell]) {
+
+                    throw new IllegalArgumentException("ERROR: Invalid or repeated cell in unit: " + cell);
+
+                }
+
+                seen[cell] = true;
+
+            }
+
+            units.add(cells);
+            sums.add(sum);
+
+        }
+
+    }
+
+}
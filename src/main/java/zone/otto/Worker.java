@@ -0,0 +1,129 @@
+package zone.otto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * The <code>Worker</code> class is the solving side of a <code>Coordinator</code>: a process (normally a JVM
+ * of its own) which connects to the coordinator, then solves shards of puzzles for it until the coordinator
+ * hangs up.
+ * </p>
+ * <p>
+ * The protocol is binary throughout, with puzzles and solutions as <code>PackedFormat</code> records:
+ * <ul>
+ * <li>Hello, worker to coordinator: <code>MAGIC</code>, <code>VERSION</code> (ints).</li>
+ * <li>Shard, coordinator to worker: the shard number and record count (ints), then the records.</li>
+ * <li>Result, worker to coordinator: the shard number and record count (ints), then for each puzzle the
+ * ordinal of its <code>Solver.Status</code> (a byte) and its solution (a record, all empty unless
+ * solved).</li>
+ * </ul>
+ * </p>
+ */
+class Worker {
+
+    // "SDKW" in ASCII.
+    static final int MAGIC = 0x53444B57;
+    static final int VERSION = 1;
+
+    // The bytes per puzzle of a result.
+    static final int RESULT_BYTES = 1 + PackedFormat.RECORD_BYTES;
+
+    /**
+     * <p>
+     * The <code>main</code> method runs a worker process.
+     * </p>
+     *
+     * @param args The coordinator's host and port.
+     * @throws IOException If the connection fails part way through a shard.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length != 2) {
+
+            System.err.println("USAGE: java zone.otto.Worker <host> <port>");
+            System.exit(2);
+
+        }
+
+        run(args[0], Integer.parseInt(args[1]));
+
+    }
+
+    /**
+     * <p>
+     * The <code>run()</code> method connects to a coordinator and solves shards until it hangs up.
+     * </p>
+     *
+     * @param host The coordinator's host.
+     * @param port The coordinator's port.
+     * @throws IOException If the connection fails part way through a shard, or a record is corrupt.
+     */
+    static void run(String host, int port) throws IOException {
+
+        try (Socket socket = new Socket(host, port)) {
+
+            socket.setTcpNoDelay(true);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Solver solver = Solver.forCurrentThread();
+            int[][] puzzle = new int[9][9];
+            int[][] empty = new int[9][9];
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+
+            while (true) {
+
+                int shard;
+
+                try {
+
+                    shard = in.readInt();
+
+                } catch (EOFException e) {
+
+                    // The coordinator has finished with us.
+                    return;
+
+                }
+
+                int count = in.readInt();
+                byte[] request = new byte[count * PackedFormat.RECORD_BYTES];
+
+                in.readFully(request);
+
+                ByteBuffer records = ByteBuffer.wrap(request);
+                ByteBuffer results = ByteBuffer.allocate(count * RESULT_BYTES);
+
+                for (int i = 0; i < count; i++) {
+
+                    PackedFormat.decode(records, puzzle);
+
+                    Solver.Result result = solver.solve(puzzle);
+
+                    results.put((byte) result.status().ordinal());
+                    PackedFormat.encode(result.isSolved() ? result.toArray() : empty, results);
+
+                }
+
+                out.writeInt(shard);
+                out.writeInt(count);
+                out.write(results.array());
+                out.flush();
+
+            }
+
+        }
+
+    }
+
+}
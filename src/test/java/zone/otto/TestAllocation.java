@@ -0,0 +1,318 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * The <code>TestAllocation</code> class guards against performance regressions: it measures the bytes
+ * allocated per parse, solve and render, which must stay within a budget, and the nodes each engine
+ * expands on a corpus of hard puzzles, which must stay within a ceiling.
+ * </p>
+ * <p>
+ * The budgets are about 50% above what each operation allocates today, once warmed up, so they catch
+ * creep (another collection per cell, a <code>String.format()</code> per line) rather than noise. The node
+ * ceilings are in the corpus, <code>TestHard.txt</code>.
+ * </p>
+ */
+public class TestAllocation {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    // The calls of each operation to warm up with, and then to measure (fewer for the slow hard puzzles).
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 1000;
+    private static final int HARD_ITERATIONS = 20;
+
+    // The rounds of measurement, of which the least is taken, so that a one-off allocation by the JVM (such as
+    // a LongAdder striping itself when another test's threads contend on Metrics.global()) isn't counted.
+    private static final int ROUNDS = 3;
+
+    // The byte budgets per operation.
+    private static final long PARSE_BUDGET = 80_000;
+    private static final long DATA_SOLVE_BUDGET = 600_000;
+    private static final long RENDER_BUDGET = 40_000;
+    private static final long RENDER_MATRIX_BUDGET = 6_000;
+    private static final long RENDER_DOUBLE_BUDGET = 1_000;
+    private static final long RESULT_BUDGET = 512;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    /**
+     * <p>
+     * A puzzle of the corpus, and its node ceilings.
+     * </p>
+     */
+    private static final class Hard {
+
+        final String name;
+        final int[][] data;
+        final long backtracking;
+        final long logicThenSearch;
+        final long restarts;
+
+        Hard(String line) {
+
+            String[] fields = line.trim().split("\\s+");
+
+            this.data = TestLogicSolver.parseLine(fields[0]);
+            this.name = fields[1];
+            this.backtracking = Long.parseLong(fields[2]);
+            this.logicThenSearch = Long.parseLong(fields[3]);
+            this.restarts = Long.parseLong(fields[4]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Skip the suite on a JVM which can't measure allocation.
+     * </p>
+     */
+    @BeforeClass
+    public static void setUp() {
+
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+    }
+
+    /**
+     * <p>
+     * Measure the bytes an operation allocates per call, once warmed up, in the best of
+     * <code>ROUNDS</code> rounds.
+     * </p>
+     */
+    private static long allocated(Runnable operation) {
+
+        return allocated(operation, WARMUP, ITERATIONS);
+
+    }
+
+    private static long allocated(Runnable operation, int warmup, int iterations) {
+
+        for (int i = 0; i < warmup; i++) {
+
+            operation.run();
+
+        }
+
+        long id = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+
+            long before = threads.getThreadAllocatedBytes(id);
+
+            for (int i = 0; i < iterations; i++) {
+
+                operation.run();
+
+            }
+
+            least = Math.min(least, (threads.getThreadAllocatedBytes(id) - before) / iterations);
+
+        }
+
+        return least;
+
+    }
+
+    private static void assertWithin(String operation, long budget, long bytes) {
+
+        Assert.assertTrue(operation + " allocated " + bytes + " bytes, over its budget of " + budget, bytes <= budget);
+
+    }
+
+    private static int[][] grid(int[] cells) {
+
+        int[][] grid = new int[9][9];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            grid[cell / 9][cell % 9] = cells[cell];
+
+        }
+
+        return grid;
+
+    }
+
+    private static List<Hard> corpus() throws IOException {
+
+        List<Hard> corpus = new ArrayList<>();
+
+        for (String line : Files.readAllLines(Paths.get(testResourcePath + "TestHard.txt"), StandardCharsets.US_ASCII)) {
+
+            if (!line.startsWith("#") && !line.trim().isEmpty()) {
+
+                corpus.add(new Hard(line));
+
+            }
+
+        }
+
+        return corpus;
+
+    }
+
+    /**
+     * <p>
+     * Test that parsing a puzzle file stays within its budget.
+     * </p>
+     */
+    @Test
+    public void testParse() {
+
+        assertWithin("dataParse", PARSE_BUDGET, allocated(() -> Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+
+    }
+
+    /**
+     * <p>
+     * Test that the recursive <code>dataSolve()</code> stays within its budget.
+     * </p>
+     */
+    @Test
+    public void testDataSolve() {
+
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] data = new int[9][9];
+
+        assertWithin("dataSolve", DATA_SOLVE_BUDGET, allocated(() -> {
+
+            for (int r = 0; r < 9; r++) {
+
+                System.arraycopy(easy[r], 0, data[r], 0, 9);
+
+            }
+
+            Sudoku.dataSolve(0, 0, data);
+
+        }));
+
+    }
+
+    /**
+     * <p>
+     * Test that rendering stays within its budget.
+     * </p>
+     */
+    @Test
+    public void testRender() {
+
+        int[][] data = TestBoard.EASY_SOLVED;
+
+        assertWithin("dataRender", RENDER_BUDGET, allocated(() -> Sudoku.dataRender(data)));
+        assertWithin("renderMatrix", RENDER_MATRIX_BUDGET, allocated(() -> MatrixHelper.renderMatrix(true, data)));
+
+        double[][] doubles = new double[9][9];
+        Writer none = Writer.nullWriter();
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            doubles[cell / 9][cell % 9] = data[cell / 9][cell % 9] / 3.0;
+
+        }
+
+        // Streamed, so that only the formatting of the values is measured, not the output.
+        assertWithin("renderMatrix(double)", RENDER_DOUBLE_BUDGET, allocated(() -> {
+
+            try {
+
+                DoubleMatrixHelper.renderMatrix(true, doubles, none);
+
+            } catch (IOException e) {
+
+                throw new RuntimeException(e);
+
+            }
+
+        }));
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>Solver</code> allocates nothing solving into a buffer, and only its result otherwise,
+     * across the corpus.
+     * </p>
+     */
+    @Test
+    public void testSolver() throws IOException {
+
+        Solver solver = new Solver();
+        int[] out = new int[81];
+
+        for (Hard hard : corpus()) {
+
+            int[] cells = new int[81];
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                cells[cell] = hard.data[cell / 9][cell % 9];
+
+            }
+
+            assertWithin("Solver buffer " + hard.name, 0,
+                    allocated(() -> solver.solve(cells, out), HARD_ITERATIONS, HARD_ITERATIONS));
+            assertWithin("Solver result " + hard.name, RESULT_BUDGET,
+                    allocated(() -> solver.solve(cells), HARD_ITERATIONS, HARD_ITERATIONS));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that each engine solves every puzzle of the corpus within its node ceiling.
+     * </p>
+     */
+    @Test
+    public void testNodeCeilings() throws IOException {
+
+        for (Hard hard : corpus()) {
+
+            int[] out = new int[81];
+            Board board = new Board(hard.data);
+
+            Assert.assertTrue(board.solution(out));
+            Assert.assertTrue(GridValidator.isValid(grid(out)));
+            Assert.assertTrue(hard.name + " backtracking took " + board.nodes() + " nodes",
+                    board.nodes() <= hard.backtracking);
+
+            board = new Board(hard.data);
+
+            Assert.assertTrue(Portfolio.logicThenSearch().solve(board, out, new AtomicBoolean()));
+            Assert.assertTrue(hard.name + " logicThenSearch took " + board.nodes() + " nodes",
+                    board.nodes() <= hard.logicThenSearch);
+
+            RestartSearch restarts = new RestartSearch(Board.ValueOrder.RANDOM, 0x5EED, 256);
+
+            Assert.assertTrue(restarts.solve(new Board(hard.data), out, null, null));
+            Assert.assertTrue(hard.name + " restarts took " + restarts.nodes() + " nodes",
+                    restarts.nodes() <= hard.restarts);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,245 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>TestAsyncSolver</code> class tests the functionality of the <code>AsyncSolver</code> class.
+ * </p>
+ */
+public class TestAsyncSolver {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that a puzzle is solved in the background, and that the caller's array may be reused at once.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync() throws ExecutionException, InterruptedException {
+
+        try (AsyncSolver solver = new AsyncSolver(2, 16)) {
+
+            int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+            CompletableFuture<Solver.Result> future = solver.solveAsync(data);
+
+            data[0][2] = 1;
+
+            Solver.Result result = future.get();
+
+            Assert.assertEquals(Solver.Status.SOLVED, result.status());
+            Assert.assertArrayEquals(TestBoard.EASY_SOLVED, result.toArray());
+            Assert.assertEquals(Solver.Status.NO_SOLUTION, solver.solveAsync(data).get().status());
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that many solves fanned out at once all complete, each with its own result.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync_FanOut() {
+
+        try (AsyncSolver solver = new AsyncSolver(2, 256)) {
+
+            int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+            int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+            int[][] inkalaSolved = new Solver().solve(inkala).toArray();
+            List<CompletableFuture<Solver.Result>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 200; i++) {
+
+                futures.add(solver.solveAsync(i % 2 == 0 ? easy : inkala));
+
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+            for (int i = 0; i < futures.size(); i++) {
+
+                Assert.assertArrayEquals(i % 2 == 0 ? TestBoard.EASY_SOLVED : inkalaSolved, futures.get(i).join().toArray());
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a solve composes with a parse stage on the same threads and a render stage after it.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync_Compose() {
+
+        try (AsyncSolver solver = new AsyncSolver(1, 16)) {
+
+            String text = CompletableFuture.supplyAsync(() -> Sudoku.dataParse(testResourcePath + "TestEasy.dat"),
+                    solver.executor())
+                    .thenCompose(solver::solveAsync)
+                    .thenApply(Solver.Result::toString)
+                    .join();
+
+            Assert.assertEquals(Sudoku.dataRender(TestBoard.EASY_SOLVED), text);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a solve is rejected at once when the queue is full, and that those queued still complete.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync_Rejected() throws InterruptedException {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (AsyncSolver solver = new AsyncSolver(1, 1)) {
+
+            solver.executor().execute(() -> {
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+
+                }
+
+            });
+
+            CompletableFuture<Solver.Result> queued = solver.solveAsync(data);
+            CompletableFuture<Solver.Result> rejected = solver.solveAsync(data);
+
+            Assert.assertEquals(1, solver.queued());
+            Assert.assertTrue(rejected.isCompletedExceptionally());
+
+            try {
+
+                rejected.join();
+                Assert.fail();
+
+            } catch (Exception e) {
+
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+            }
+
+            release.countDown();
+
+            Assert.assertEquals(Solver.Status.SOLVED, queued.join().status());
+
+        } finally {
+
+            release.countDown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a time limit includes the time spent queued.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync_Deadline() throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (AsyncSolver solver = new AsyncSolver(1, 4)) {
+
+            solver.executor().execute(() -> {
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+
+                }
+
+            });
+
+            CompletableFuture<Solver.Result> future =
+                    solver.solveAsync(TestLogicSolver.parseLine(TestLogicSolver.INKALA), 1, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(20);
+            release.countDown();
+
+            Assert.assertEquals(Solver.Status.DEADLINE_EXCEEDED, future.join().status());
+
+        } finally {
+
+            release.countDown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a closed solver rejects puzzles.
+     * </p>
+     */
+    @Test
+    public void testSolveAsync_Closed() {
+
+        AsyncSolver solver = new AsyncSolver(1, 1);
+
+        solver.close();
+
+        Assert.assertTrue(solver.solveAsync(Sudoku.dataParse(testResourcePath + "TestEasy.dat")).isCompletedExceptionally());
+
+    }
+
+    /**
+     * <p>
+     * Test that a malformed puzzle is rejected on the caller's thread.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSolveAsync_Invalid() {
+
+        try (AsyncSolver solver = new AsyncSolver(1, 1)) {
+
+            solver.solveAsync(new int[9][8]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a solver needs at least one thread.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testAsyncSolver_InvalidThreads() {
+
+        new AsyncSolver(0, 1);
+
+    }
+
+}
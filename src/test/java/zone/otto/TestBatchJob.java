@@ -0,0 +1,307 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * The <code>TestBatchJob</code> class tests the functionality of the <code>BatchJob</code> class.
+ * </p>
+ */
+public class TestBatchJob {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * The puzzles of a batch, with one of each outcome.
+     * </p>
+     */
+    private static List<String> puzzles() {
+
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] none = MatrixHelper.matrixDeepCopy(easy);
+
+        none[0][2] = 1;
+
+        return Arrays.asList(
+                Events.line(easy),
+                TestLogicSolver.INKALA,
+                Events.line(none),
+                "11" + Events.line(new int[79]),
+                "not a puzzle",
+                Events.line(easy).replace('.', '0'));
+
+    }
+
+    /**
+     * <p>
+     * The results of the puzzles of a batch.
+     * </p>
+     */
+    private static List<String> results() {
+
+        String easy = Events.line(TestBoard.EASY_SOLVED);
+
+        return Arrays.asList(
+                easy,
+                Events.line(new Solver().solve(TestLogicSolver.parseLine(TestLogicSolver.INKALA)).toArray()),
+                "NO_SOLUTION",
+                "CONFLICTING_GIVENS",
+                "INVALID",
+                easy);
+
+    }
+
+    /**
+     * <p>
+     * Test that a job writes one result per puzzle, in order, and a checkpoint at the end.
+     * </p>
+     */
+    @Test
+    public void testRun() throws IOException {
+
+        Path dir = Files.createTempDirectory("batch");
+        Path input = dir.resolve("puzzles.txt");
+        Path output = dir.resolve("results.txt");
+
+        try {
+
+            Files.write(input, puzzles(), StandardCharsets.US_ASCII);
+
+            BatchJob job = new BatchJob(input, output, 2);
+
+            Assert.assertEquals(6, job.run());
+            Assert.assertEquals(results(), Files.readAllLines(output, StandardCharsets.US_ASCII));
+            Assert.assertTrue(Files.exists(job.checkpoint()));
+
+            // A finished job has nothing left to do.
+            Assert.assertEquals(6, job.run());
+            Assert.assertEquals(results(), Files.readAllLines(output, StandardCharsets.US_ASCII));
+
+        } finally {
+
+            delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a job restarted after being killed discards what it wrote after its checkpoint, and carries
+     * on from the checkpoint, so that no result is lost or duplicated.
+     * </p>
+     */
+    @Test
+    public void testResume() throws IOException {
+
+        Path dir = Files.createTempDirectory("batch");
+        Path input = dir.resolve("puzzles.txt");
+        Path output = dir.resolve("results.txt");
+        List<String> puzzles = puzzles();
+
+        try {
+
+            Files.write(input, puzzles.subList(0, 3), StandardCharsets.US_ASCII);
+            Assert.assertEquals(3, new BatchJob(input, output, 2).run());
+
+            // Killed half way through writing a result, before the next checkpoint.
+            Files.write(output, "1234".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            Files.write(input, puzzles.subList(3, puzzles.size()), StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+
+            Assert.assertEquals(6, new BatchJob(input, output, 2).run());
+            Assert.assertEquals(results(), Files.readAllLines(output, StandardCharsets.US_ASCII));
+
+        } finally {
+
+            delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that puzzles of several lines each, here in the SDK format with comments and other sections
+     * between them, are solved and resumed from a checkpoint in the same way.
+     * </p>
+     */
+    @Test
+    public void testResume_Sdk() throws IOException {
+
+        Path dir = Files.createTempDirectory("batch");
+        Path input = dir.resolve("puzzles.sdk");
+        Path output = dir.resolve("results.txt");
+        List<String> puzzles = puzzles();
+        List<String> results = results();
+
+        try {
+
+            Files.write(input, sdk(puzzles.subList(0, 3)), StandardCharsets.US_ASCII);
+            Assert.assertEquals(3, new BatchJob(input, output, 1).run());
+
+            Files.write(output, "1234".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            Files.write(input, sdk(puzzles.subList(0, 2)), StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+
+            Assert.assertEquals(5, new BatchJob(input, output, 1).run());
+            Assert.assertEquals(Arrays.asList(results.get(0), results.get(1), results.get(2), results.get(0),
+                    results.get(1)), Files.readAllLines(output, StandardCharsets.US_ASCII));
+
+        } finally {
+
+            delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle of several lines with a malformed row has the one <code>INVALID</code> result, and
+     * that the puzzles after it are solved as they are, in the SDK and grid formats.
+     * </p>
+     */
+    @Test
+    public void testRun_MalformedRows() throws IOException {
+
+        Path dir = Files.createTempDirectory("batch");
+        Path sdk = dir.resolve("puzzles.sdk");
+        Path grid = dir.resolve("puzzles.txt");
+        Path output = dir.resolve("results.txt");
+        List<String> puzzles = puzzles();
+        List<String> results = results();
+        String text = new String(Files.readAllBytes(Path.of(testResourcePath + "TestPuzzleReader_Grid.txt")),
+                StandardCharsets.US_ASCII);
+
+        try {
+
+            List<String> lines = sdk(puzzles.subList(0, 3));
+
+            // Row 5 of the first puzzle.
+            lines.set(6, "4..x.3..1");
+            Files.write(sdk, lines, StandardCharsets.US_ASCII);
+
+            Assert.assertEquals(3, new BatchJob(sdk, output, 1).run());
+            Assert.assertEquals(Arrays.asList("INVALID", results.get(1), results.get(2)),
+                    Files.readAllLines(output, StandardCharsets.US_ASCII));
+
+            Files.delete(output);
+            Files.delete(dir.resolve("results.txt" + BatchJob.CHECKPOINT_SUFFIX));
+            Files.write(grid, (text.replaceFirst("\\| 4 \\. \\.", "| 4 x .") + text).getBytes(StandardCharsets.US_ASCII));
+
+            Assert.assertEquals(4, new BatchJob(grid, output, 1).run());
+            Assert.assertEquals(Arrays.asList("INVALID", results.get(1), results.get(0), results.get(1)),
+                    Files.readAllLines(output, StandardCharsets.US_ASCII));
+
+        } finally {
+
+            delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Render puzzles given as lines in the SDK format, each under a header and followed by a section which
+     * isn't a puzzle.
+     * </p>
+     */
+    private static List<String> sdk(List<String> lines) {
+
+        List<String> text = new ArrayList<>();
+
+        for (String line : lines) {
+
+            text.add("#C A puzzle.");
+            text.add("[Puzzle]");
+
+            for (int row = 0; row < 9; row++) {
+
+                text.add(line.substring(row * 9, row * 9 + 9));
+
+            }
+
+            text.add("[State]");
+
+            for (int row = 0; row < 9; row++) {
+
+                text.add(line.substring(row * 9, row * 9 + 9).replace('.', '1'));
+
+            }
+
+        }
+
+        return text;
+
+    }
+
+    /**
+     * <p>
+     * Test that a checkpoint which doesn't match the files is rejected rather than trusted.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidCheckpoint() throws IOException {
+
+        Path dir = Files.createTempDirectory("batch");
+        Path input = dir.resolve("puzzles.txt");
+        Path output = dir.resolve("results.txt");
+        BatchJob job = new BatchJob(input, output);
+
+        try {
+
+            Files.write(input, puzzles(), StandardCharsets.US_ASCII);
+            Files.write(job.checkpoint(), Arrays.asList("input.offset=99999", "output.offset=0", "completed=0"),
+                    StandardCharsets.US_ASCII);
+
+            job.run();
+
+        } finally {
+
+            delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a checkpoint interval which is not positive is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInterval() {
+
+        new BatchJob(Path.of("in"), Path.of("out"), 0);
+
+    }
+
+    private static void delete(Path dir) throws IOException {
+
+        try (Stream<Path> files = Files.list(dir)) {
+
+            for (Path file : (Iterable<Path>) files::iterator) {
+
+                Files.delete(file);
+
+            }
+
+        }
+
+        Files.delete(dir);
+
+    }
+
+}
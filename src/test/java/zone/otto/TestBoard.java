@@ -0,0 +1,361 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * The <code>TestBoard</code> class tests the functionality of the <code>Board</code> class.
+ * </p>
+ */
+public class TestBoard {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * The (unique) solution to <code>TestEasy.dat</code>.
+     * </p>
+     */
+    static final int[][] EASY_SOLVED = new int[][]{
+            {5, 3, 4, 6, 7, 8, 9, 1, 2},
+            {6, 7, 2, 1, 9, 5, 3, 4, 8},
+            {1, 9, 8, 3, 4, 2, 5, 6, 7},
+            {8, 5, 9, 7, 6, 1, 4, 2, 3},
+            {4, 2, 6, 8, 5, 3, 7, 9, 1},
+            {7, 1, 3, 9, 2, 4, 8, 5, 6},
+            {9, 6, 1, 5, 3, 7, 2, 8, 4},
+            {2, 8, 7, 4, 1, 9, 6, 3, 5},
+            {3, 4, 5, 2, 8, 6, 1, 7, 9}
+    };
+
+    private static int toMask(Set<Integer> set) {
+
+        int mask = 0;
+
+        for (int v : set) {
+
+            mask |= 1 << v;
+
+        }
+
+        return mask;
+
+    }
+
+    /**
+     * <p>
+     * Test that the incrementally maintained candidates agree with <code>Sudoku.getValidSet()</code>,
+     * both initially and after some moves.
+     * </p>
+     */
+    @Test
+    public void testCandidates() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestSudoku.dat");
+        Board board = new Board(data);
+        int[] candidates = new int[81];
+
+        for (int round = 0; round < 2; round++) {
+
+            board.candidates(candidates);
+
+            for (int r = 0; r < 9; r++) {
+
+                for (int c = 0; c < 9; c++) {
+
+                    int expected = data[r][c] == 0 ? toMask(Sudoku.getValidSet(r, c, data)) : 0;
+
+                    Assert.assertEquals("Cell " + r + ", " + c, expected, candidates[Board.cell(r, c)]);
+                    Assert.assertEquals(data[r][c], board.get(Board.cell(r, c)));
+
+                }
+
+            }
+
+            // Make a couple of moves (keeping data in step) and check again.
+            if (round == 0) {
+
+                Assert.assertTrue(board.place(Board.cell(7, 2), 1));
+                Assert.assertTrue(board.place(Board.cell(0, 0), 3));
+                data[7][2] = 1;
+                data[0][0] = 3;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that illegal moves are refused and leave the board untouched.
+     * </p>
+     */
+    @Test
+    public void testPlaceErase_Illegal() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestSudoku.dat"));
+        int empty = board.emptyCount();
+
+        // Row 1 already has a 1.
+        Assert.assertFalse(board.place(Board.cell(1, 0), 1));
+
+        // Cell (1, 1) is a given.
+        Assert.assertFalse(board.place(Board.cell(1, 1), 2));
+        Assert.assertFalse(board.erase(Board.cell(1, 1)));
+        Assert.assertTrue(board.isGiven(Board.cell(1, 1)));
+
+        // Cell (0, 0) is empty.
+        Assert.assertFalse(board.erase(Board.cell(0, 0)));
+
+        Assert.assertFalse(board.place(Board.cell(0, 0), 0));
+        Assert.assertFalse(board.place(Board.cell(0, 0), 10));
+
+        Assert.assertEquals(empty, board.emptyCount());
+        Assert.assertFalse(board.undo());
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>undo()</code> reverts places and erases in reverse order.
+     * </p>
+     */
+    @Test
+    public void testUndo() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestSudoku.dat"));
+        int[] before = new int[81];
+        int[] after = new int[81];
+
+        board.candidates(before);
+
+        Assert.assertTrue(board.place(Board.cell(0, 0), 3));
+        Assert.assertTrue(board.place(Board.cell(0, 1), 4));
+        Assert.assertTrue(board.erase(Board.cell(0, 0)));
+        Assert.assertTrue(board.place(Board.cell(0, 0), 8));
+        Assert.assertEquals(8, board.get(Board.cell(0, 0)));
+
+        Assert.assertTrue(board.undo());
+        Assert.assertEquals(0, board.get(Board.cell(0, 0)));
+        Assert.assertTrue(board.undo());
+        Assert.assertEquals(3, board.get(Board.cell(0, 0)));
+        Assert.assertTrue(board.undo());
+        Assert.assertEquals(0, board.get(Board.cell(0, 1)));
+        Assert.assertTrue(board.undo());
+        Assert.assertFalse(board.undo());
+
+        board.candidates(after);
+        Assert.assertArrayEquals(before, after);
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>solution()</code> finds the known solution without disturbing the board, and
+     * that a doomed move is detected.
+     * </p>
+     */
+    @Test
+    public void testSolution() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+        int empty = board.emptyCount();
+        int[] solution = new int[81];
+
+        Assert.assertTrue(board.isSolvable());
+        Assert.assertTrue(board.solution(solution));
+        Assert.assertEquals(empty, board.emptyCount());
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            Assert.assertEquals(EASY_SOLVED[cell / 9][cell % 9], solution[cell]);
+
+        }
+
+        // (0, 2) must be 4, so 1 is legal now but cannot lead to a solution.
+        Assert.assertTrue(board.place(Board.cell(0, 2), 1));
+        Assert.assertFalse(board.isSolvable());
+        Assert.assertTrue(board.undo());
+        Assert.assertTrue(board.isSolvable());
+
+        // An empty board is trivially solvable, a dead end obviously not.
+        Assert.assertTrue(new Board().isSolvable());
+
+        Board dead = new Board();
+
+        for (int v = 1; v <= 8; v++) {
+
+            Assert.assertTrue(dead.place(Board.cell(0, v), v));
+
+        }
+
+        Assert.assertTrue(dead.place(Board.cell(1, 0), 9));
+        Assert.assertTrue(dead.isDeadEnd());
+        Assert.assertFalse(dead.isSolvable());
+
+    }
+
+    /**
+     * <p>
+     * Test that the hash depends only on the cells, not the order of the moves, and that a copy is
+     * independent of the original.
+     * </p>
+     */
+    @Test
+    public void testHash() {
+
+        Board first = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+        Board second = new Board(first);
+        long initial = first.hash();
+
+        Assert.assertEquals(initial, second.hash());
+        Assert.assertNotEquals(initial, new Board().hash());
+
+        Assert.assertTrue(first.place(Board.cell(0, 2), 4));
+        Assert.assertTrue(first.place(Board.cell(0, 3), 6));
+        Assert.assertTrue(second.place(Board.cell(0, 3), 6));
+        Assert.assertTrue(second.place(Board.cell(0, 2), 4));
+
+        Assert.assertEquals(first.hash(), second.hash());
+        Assert.assertNotEquals(initial, first.hash());
+
+        Assert.assertTrue(first.erase(Board.cell(0, 3)));
+        Assert.assertTrue(first.undo());
+        Assert.assertEquals(second.hash(), first.hash());
+
+        Assert.assertTrue(first.undo());
+        Assert.assertTrue(first.undo());
+        Assert.assertEquals(initial, first.hash());
+        Assert.assertEquals(4, second.get(Board.cell(0, 2)));
+        Assert.assertFalse(new Board(second).undo());
+
+    }
+
+    /**
+     * <p>
+     * Test that recorded dead ends are pruned when the same states come up again, and that a cancelled
+     * search neither succeeds nor records anything.
+     * </p>
+     */
+    @Test
+    public void testSolution_Nogoods() {
+
+        int[][] data = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[] expected = new int[81];
+        int[] actual = new int[81];
+        NogoodTable nogoods = new NogoodTable(1 << 16);
+        Board board = new Board(data);
+
+        Assert.assertTrue(board.solution(expected));
+        long plain = board.nodes();
+
+        Assert.assertTrue(board.solution(actual, nogoods, null));
+        Assert.assertArrayEquals(expected, actual);
+        Assert.assertEquals(plain, board.nodes());
+        Assert.assertTrue(nogoods.size() > 0);
+
+        // The second time round (even from another board) every failed branch is pruned at once.
+        Board again = new Board(data);
+
+        Assert.assertTrue(again.solution(actual, nogoods, null));
+        Assert.assertArrayEquals(expected, actual);
+        Assert.assertTrue(again.nodes() + " vs " + plain, again.nodes() * 10 < plain);
+
+        // A board with no solution is recognised without expanding anything.
+        int cell = Board.cell(0, 1);
+        int wrong = Integer.numberOfTrailingZeros(board.candidates(cell) & ~(1 << expected[cell]));
+
+        Assert.assertTrue(board.place(cell, wrong));
+        Assert.assertFalse(board.solution(null, nogoods, null));
+        Assert.assertFalse(board.solution(null, nogoods, null));
+        Assert.assertEquals(0, board.nodes());
+        Assert.assertTrue(board.undo());
+
+        NogoodTable untouched = new NogoodTable(1 << 16);
+
+        Assert.assertFalse(new Board(data).solution(actual, untouched, new AtomicBoolean(true)));
+        Assert.assertEquals(0, untouched.size());
+
+    }
+
+    /**
+     * <p>
+     * Test the value orders: each finds the unique solution, a random order is reproducible from its
+     * seed, and a node limit stops the search.
+     * </p>
+     */
+    @Test
+    public void testSolution_Orders() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+        int[] actual = new int[81];
+
+        for (Board.ValueOrder order : Board.ValueOrder.values()) {
+
+            Assert.assertTrue(board.solution(actual, null, null, order, new SplittableRandom(3), Long.MAX_VALUE));
+            Assert.assertFalse(board.isStopped());
+
+            for (int cell = 0; cell < 81; cell++) {
+
+                Assert.assertEquals(EASY_SOLVED[cell / 9][cell % 9], actual[cell]);
+
+            }
+
+        }
+
+        // On an empty board the order decides which of the many solutions is found.
+        Board empty = new Board();
+        int[] first = new int[81];
+        int[] second = new int[81];
+
+        Assert.assertTrue(empty.solution(first, null, null, Board.ValueOrder.RANDOM, new SplittableRandom(1), 1_000));
+        Assert.assertTrue(empty.solution(second, null, null, Board.ValueOrder.RANDOM, new SplittableRandom(1), 1_000));
+        Assert.assertArrayEquals(first, second);
+        Assert.assertTrue(empty.solution(second, null, null, Board.ValueOrder.RANDOM, new SplittableRandom(2), 1_000));
+        Assert.assertFalse(Arrays.equals(first, second));
+        Assert.assertEquals(81, empty.emptyCount());
+
+        Board hard = new Board(TestLogicSolver.parseLine(TestLogicSolver.INKALA));
+
+        Assert.assertFalse(hard.solution(null, null, null, Board.ValueOrder.ASCENDING, null, 10));
+        Assert.assertTrue(hard.isStopped());
+
+    }
+
+    /**
+     * <p>
+     * Test that a random order without a random source is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSolution_RandomWithoutSource() {
+
+        new Board().solution(null, null, null, Board.ValueOrder.RANDOM, null, Long.MAX_VALUE);
+
+    }
+
+    /**
+     * <p>
+     * Test that conflicting givens are rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBoard_ConflictingGivens() {
+
+        int[][] data = new int[9][9];
+
+        data[0][0] = 5;
+        data[8][0] = 5;
+
+        new Board(data);
+
+    }
+
+}
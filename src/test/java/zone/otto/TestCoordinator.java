@@ -0,0 +1,405 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>TestCoordinator</code> class tests the functionality of the <code>Coordinator</code> and
+ * <code>Worker</code> classes.
+ * </p>
+ */
+public class TestCoordinator {
+
+    private static final String testResourcePath = "src/test/resources/";
+    private static final String host = InetAddress.getLoopbackAddress().getHostAddress();
+
+    /**
+     * <p>
+     * Write a file of puzzles, with some of every outcome, and return them.
+     * </p>
+     */
+    private static List<int[][]> write(Path path, int count) throws IOException {
+
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] none = MatrixHelper.matrixDeepCopy(easy);
+        int[][] conflicting = new int[9][9];
+
+        none[0][2] = 1;
+        conflicting[0][0] = conflicting[0][1] = 5;
+
+        int[][][] kinds = {easy, TestLogicSolver.parseLine(TestLogicSolver.INKALA), none, conflicting};
+        List<int[][]> puzzles = new ArrayList<>();
+
+        try (PackedFormat.Writer writer = new PackedFormat.Writer(path)) {
+
+            for (int i = 0; i < count; i++) {
+
+                puzzles.add(kinds[i % kinds.length]);
+                writer.write(kinds[i % kinds.length]);
+
+            }
+
+        }
+
+        return puzzles;
+
+    }
+
+    /**
+     * <p>
+     * Check a file of solutions against its puzzles.
+     * </p>
+     */
+    private static void check(List<int[][]> puzzles, Path path) throws IOException {
+
+        int[][] grid = new int[9][9];
+
+        try (PackedFormat.Reader reader = new PackedFormat.Reader(path)) {
+
+            Assert.assertEquals(puzzles.size(), reader.count());
+
+            for (int[][] puzzle : puzzles) {
+
+                Assert.assertTrue(reader.read(grid));
+                Assert.assertArrayEquals(new Solver().solve(puzzle).toArray(), grid);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * A worker which takes one shard and then hangs up without answering.
+     * </p>
+     */
+    private static boolean fail(int port) throws IOException {
+
+        try (Socket socket = new Socket(host, port)) {
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            out.writeInt(Worker.MAGIC);
+            out.writeInt(Worker.VERSION);
+            out.flush();
+            in.readInt();
+            in.readFully(new byte[in.readInt() * PackedFormat.RECORD_BYTES]);
+
+            return true;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * A worker which answers one shard with the given status for every puzzle, and either all empty or
+     * corrupt records, then waits to be hung up on.
+     * </p>
+     */
+    private static boolean answer(int port, byte status, boolean corrupt) throws IOException {
+
+        try (Socket socket = new Socket(host, port)) {
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            out.writeInt(Worker.MAGIC);
+            out.writeInt(Worker.VERSION);
+            out.flush();
+
+            int shard = in.readInt();
+            int count = in.readInt();
+
+            in.readFully(new byte[count * PackedFormat.RECORD_BYTES]);
+            out.writeInt(shard);
+            out.writeInt(count);
+
+            for (int i = 0; i < count; i++) {
+
+                byte[] record = new byte[PackedFormat.RECORD_BYTES];
+
+                Arrays.fill(record, corrupt ? (byte) 0xFF : 0);
+                out.writeByte(status);
+                out.write(record);
+
+            }
+
+            out.flush();
+
+            // The coordinator hangs up on a worker it drops.
+            return in.read() < 0;
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * The interface of a faulty in-process worker.
+     * </p>
+     */
+    private interface Faulty {
+
+        boolean run(int port) throws IOException;
+
+    }
+
+    /**
+     * <p>
+     * Solve with a faulty worker, which takes the first shard, then a good one, and check that the faulty
+     * worker's shard was retried.
+     * </p>
+     */
+    private static void assertRetried(Faulty faulty) throws Exception {
+
+        Path dir = Files.createTempDirectory("coordinator");
+        Path puzzles = dir.resolve("puzzles.sdkp");
+        Path solutions = dir.resolve("solutions.sdkp");
+
+        try (Coordinator coordinator = new Coordinator(5, 60_000)) {
+
+            List<int[][]> expected = write(puzzles, 12);
+            CountDownLatch failed = new CountDownLatch(1);
+
+            new Thread(() -> {
+
+                try {
+
+                    if (faulty.run(coordinator.port())) {
+
+                        failed.countDown();
+
+                    }
+
+                } catch (IOException e) {
+
+                    // The test will time out waiting.
+
+                }
+
+            }).start();
+
+            new Thread(() -> {
+
+                try {
+
+                    Assert.assertTrue(failed.await(30, TimeUnit.SECONDS));
+                    Worker.run(host, coordinator.port());
+
+                } catch (Exception e) {
+
+                    // The solve will fail for want of workers.
+
+                }
+
+            }).start();
+
+            Assert.assertEquals(6, coordinator.solve(puzzles, solutions));
+            Assert.assertEquals(0, failed.getCount());
+            check(expected, solutions);
+
+        } finally {
+
+            Files.deleteIfExists(puzzles);
+            Files.deleteIfExists(solutions);
+            Files.delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test solving on worker JVMs, with the results merged in order.
+     * </p>
+     */
+    @Test
+    public void testSolve() throws Exception {
+
+        Path dir = Files.createTempDirectory("coordinator");
+        Path puzzles = dir.resolve("puzzles.sdkp");
+        Path solutions = dir.resolve("solutions.sdkp");
+
+        try (Coordinator coordinator = new Coordinator(3, 60_000)) {
+
+            List<int[][]> expected = write(puzzles, 22);
+
+            coordinator.spawn();
+            coordinator.spawn();
+
+            for (int i = 0; i < 600 && coordinator.connected() < 2; i++) {
+
+                Thread.sleep(50);
+
+            }
+
+            Assert.assertEquals(12, coordinator.solve(puzzles, solutions));
+            check(expected, solutions);
+
+            // The workers stay connected for the next job.
+            Assert.assertEquals(2, coordinator.connected());
+            Assert.assertEquals(12, coordinator.solve(puzzles, solutions));
+            check(expected, solutions);
+
+        } finally {
+
+            Files.deleteIfExists(puzzles);
+            Files.deleteIfExists(solutions);
+            Files.delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that the shard of a worker which fails is given to another.
+     * </p>
+     */
+    @Test
+    public void testRetry() throws Exception {
+
+        assertRetried(TestCoordinator::fail);
+
+    }
+
+    /**
+     * <p>
+     * Test that the shard of a worker which sends corrupt records is given to another.
+     * </p>
+     */
+    @Test
+    public void testRetry_CorruptRecord() throws Exception {
+
+        assertRetried(port -> answer(port, (byte) Solver.Status.SOLVED.ordinal(), true));
+
+    }
+
+    /**
+     * <p>
+     * Test that the shard of a worker which sends an invalid status is given to another.
+     * </p>
+     */
+    @Test
+    public void testRetry_InvalidStatus() throws Exception {
+
+        assertRetried(port -> answer(port, (byte) 42, false));
+
+    }
+
+    /**
+     * <p>
+     * Test that the shard of a worker which claims puzzles are solved without solving them is given to
+     * another.
+     * </p>
+     */
+    @Test
+    public void testRetry_InvalidSolution() throws Exception {
+
+        assertRetried(port -> answer(port, (byte) Solver.Status.SOLVED.ordinal(), false));
+
+    }
+
+    /**
+     * <p>
+     * Test that a shard which fails every time fails the job.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testShardFails() throws IOException {
+
+        Path dir = Files.createTempDirectory("coordinator");
+        Path puzzles = dir.resolve("puzzles.sdkp");
+        Path solutions = dir.resolve("solutions.sdkp");
+
+        try (Coordinator coordinator = new Coordinator(100, 60_000)) {
+
+            write(puzzles, 4);
+
+            new Thread(() -> {
+
+                try {
+
+                    for (int i = 0; i < Coordinator.MAX_ATTEMPTS; i++) {
+
+                        fail(coordinator.port());
+
+                    }
+
+                } catch (IOException e) {
+
+                    // The solve will fail anyway.
+
+                }
+
+            }).start();
+
+            coordinator.solve(puzzles, solutions);
+
+        } finally {
+
+            Files.deleteIfExists(puzzles);
+            Files.deleteIfExists(solutions);
+            Files.delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a job with no workers fails rather than waiting for ever.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testNoWorkers() throws IOException {
+
+        Path dir = Files.createTempDirectory("coordinator");
+        Path puzzles = dir.resolve("puzzles.sdkp");
+        Path solutions = dir.resolve("solutions.sdkp");
+
+        try (Coordinator coordinator = new Coordinator(10, 200)) {
+
+            write(puzzles, 4);
+            coordinator.solve(puzzles, solutions);
+
+        } finally {
+
+            Files.deleteIfExists(puzzles);
+            Files.deleteIfExists(solutions);
+            Files.delete(dir);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a shard size which is not positive is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidShardSize() throws IOException {
+
+        new Coordinator(0, 1000).close();
+
+    }
+
+}
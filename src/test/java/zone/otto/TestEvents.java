@@ -0,0 +1,175 @@
+package zone.otto;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * The <code>TestEvents</code> class tests the Flight Recorder events emitted by the solver.
+ * </p>
+ */
+public class TestEvents {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Record some work with the given events enabled, and read back what was recorded.
+     * </p>
+     */
+    private static List<RecordedEvent> record(Runnable work, String... names) throws IOException {
+
+        Path file = Files.createTempFile("events", ".jfr");
+
+        try (Recording recording = new Recording()) {
+
+            for (String name : names) {
+
+                recording.enable(name).withoutThreshold();
+
+            }
+
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("zone.otto."))
+                    .collect(Collectors.toList());
+
+        } finally {
+
+            Files.delete(file);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that parse, solve and render events carry the same puzzle line, and the solve its counts.
+     * </p>
+     */
+    @Test
+    public void testEvents() throws IOException {
+
+        String fileName = testResourcePath + "TestEasy.dat";
+        String line = Events.line(Sudoku.dataParse(fileName));
+        List<RecordedEvent> events = record(() -> {
+
+            int[][] data = Sudoku.dataParse(fileName);
+
+            new Solver().solve(data);
+            Sudoku.dataRender(data);
+
+        }, "zone.otto.Parse", "zone.otto.Solve", "zone.otto.Render");
+
+        Assert.assertEquals(3, events.size());
+
+        RecordedEvent parse = events.get(0);
+        RecordedEvent solve = events.get(1);
+        RecordedEvent render = events.get(2);
+
+        Assert.assertEquals("zone.otto.Parse", parse.getEventType().getName());
+        Assert.assertEquals(fileName, parse.getString("source"));
+        Assert.assertEquals(line, parse.getString("puzzle"));
+        Assert.assertEquals(line.replace(".", "").length(), parse.getInt("clues"));
+
+        Assert.assertEquals("zone.otto.Solve", solve.getEventType().getName());
+        Assert.assertEquals("Solver", solve.getString("engine"));
+        Assert.assertEquals(line, solve.getString("puzzle"));
+        Assert.assertEquals("SOLVED", solve.getString("outcome"));
+        Assert.assertTrue(solve.getLong("nodes") > 0);
+        Assert.assertTrue(solve.getLong("backtracks") >= 0);
+
+        Assert.assertEquals("zone.otto.Render", render.getEventType().getName());
+        Assert.assertEquals(line, render.getString("puzzle"));
+        Assert.assertTrue(render.getInt("length") > 81);
+
+    }
+
+    /**
+     * <p>
+     * Test that the backtrack count of a hard puzzle is recorded, and that memo lookups are only recorded
+     * when enabled.
+     * </p>
+     */
+    @Test
+    public void testEvents_Counts() throws IOException {
+
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[][] sparse = new int[9][9];
+
+        for (int r = 0; r < 4; r++) {
+
+            sparse[r] = TestBoard.EASY_SOLVED[r].clone();
+
+        }
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        try {
+
+            List<RecordedEvent> events = record(() -> {
+
+                new Solver().solve(inkala);
+                SolutionCounter.count(sparse, pool, 1);
+
+            }, "zone.otto.Solve");
+
+            Assert.assertEquals(1, events.size());
+            Assert.assertTrue(events.get(0).getLong("backtracks") > 0);
+
+            events = record(() -> SolutionCounter.count(sparse, pool, 1), "zone.otto.Cache");
+
+            Assert.assertFalse(events.isEmpty());
+            Assert.assertTrue(events.stream().anyMatch(event -> event.getBoolean("hit")));
+            Assert.assertTrue(events.stream().anyMatch(event -> !event.getBoolean("hit")));
+
+        } finally {
+
+            pool.shutdown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test the puzzle line.
+     * </p>
+     */
+    @Test
+    public void testLine() {
+
+        int[][] data = new int[9][9];
+        int[] cells = new int[81];
+
+        data[0][0] = 5;
+        data[8][8] = 9;
+        cells[0] = 5;
+        cells[80] = 9;
+
+        String line = Events.line(data);
+
+        Assert.assertEquals(81, line.length());
+        Assert.assertTrue(line.startsWith("5."));
+        Assert.assertTrue(line.endsWith(".9"));
+        Assert.assertEquals(line, Events.line(cells));
+        Assert.assertEquals(TestLogicSolver.INKALA, Events.line(TestLogicSolver.parseLine(TestLogicSolver.INKALA)));
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * The <code>TestGridValidator</code> class tests the functionality of the <code>GridValidator</code> class.
+ * </p>
+ */
+public class TestGridValidator {
+
+    /**
+     * <p>
+     * The solution to <code>TestSudoku.dat</code>.
+     * </p>
+     */
+    static final int[][] SOLVED = new int[][]{
+            {3, 4, 7, 1, 8, 2, 5, 6, 9},
+            {5, 1, 9, 6, 7, 4, 2, 3, 8},
+            {2, 8, 6, 3, 5, 9, 1, 4, 7},
+            {1, 2, 8, 7, 4, 5, 3, 9, 6},
+            {4, 7, 3, 9, 2, 6, 8, 5, 1},
+            {6, 9, 5, 8, 3, 1, 7, 2, 4},
+            {7, 3, 2, 4, 6, 8, 9, 1, 5},
+            {8, 6, 1, 5, 9, 3, 4, 7, 2},
+            {9, 5, 4, 2, 1, 7, 6, 8, 3}
+    };
+
+    /**
+     * <p>
+     * Test that <code>isValid()</code> accepts a solution (and its symmetries), and rejects broken grids.
+     * </p>
+     */
+    @Test
+    public void testIsValid() {
+
+        Assert.assertTrue(GridValidator.isValid(SOLVED));
+        Assert.assertTrue(GridValidator.isValid(MatrixHelper.matrixTranspose(SOLVED)));
+        Assert.assertTrue(GridValidator.isValid(MatrixHelper.matrixRotateQuarterCW(SOLVED)));
+
+        // Swapping two cells in a row keeps the row intact, but breaks two columns.
+        int[][] swapped = MatrixHelper.matrixDeepCopy(SOLVED);
+        swapped[0][0] = SOLVED[0][1];
+        swapped[0][1] = SOLVED[0][0];
+        Assert.assertFalse(GridValidator.isValid(swapped));
+
+        int[][] empty = MatrixHelper.matrixDeepCopy(SOLVED);
+        empty[4][4] = 0;
+        Assert.assertFalse(GridValidator.isValid(empty));
+
+    }
+
+    /**
+     * <p>
+     * Test that the bulk <code>validate()</code> agrees with <code>isValid()</code> grid by grid.
+     * </p>
+     */
+    @Test
+    public void testValidate() {
+
+        GridValidator.Batch batch = new GridValidator.Batch(64);
+
+        for (int i = 0; i < batch.capacity(); i++) {
+
+            int[][] grid = (i & 1) == 0 ? SOLVED : MatrixHelper.matrixRotateHalf(SOLVED);
+
+            if (i % 3 == 0) {
+
+                grid = MatrixHelper.matrixDeepCopy(grid);
+                grid[i % 9][(i / 9) % 9] = 1 + grid[i % 9][(i / 9) % 9] % 9;
+
+            } else if (i % 7 == 0) {
+
+                grid = MatrixHelper.matrixDeepCopy(grid);
+                grid[8][8] = 0;
+
+            }
+
+            Assert.assertEquals(i, batch.add(grid));
+
+        }
+
+        boolean[] results = new boolean[batch.size()];
+        int valid = GridValidator.validate(batch, results);
+        int expected = 0;
+
+        for (int i = 0; i < batch.size(); i++) {
+
+            boolean isValid = i % 3 != 0 && i % 7 != 0;
+
+            Assert.assertEquals("Grid #" + i, isValid, results[i]);
+            expected += isValid ? 1 : 0;
+
+        }
+
+        Assert.assertEquals(expected, valid);
+
+        // A cleared batch can be refilled and revalidated.
+        batch.clear();
+        batch.add(SOLVED);
+        Assert.assertEquals(1, GridValidator.validate(batch, results));
+
+    }
+
+    /**
+     * <p>
+     * Test that values which would alias another digit's bit are refused.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatch_InvalidValue() {
+
+        new GridValidator.Batch(1).set(0, 0, 33);
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>TestHistogram</code> class tests the functionality of the <code>Histogram</code> class.
+ * </p>
+ */
+public class TestHistogram {
+
+    /**
+     * <p>
+     * Test that the buckets cover every value, in order, without gaps, and are never more than 12.5% wide.
+     * </p>
+     */
+    @Test
+    public void testBuckets() {
+
+        Assert.assertEquals(0, Histogram.lowerBound(0));
+        Assert.assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.BUCKETS - 1));
+
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+
+            long lower = Histogram.lowerBound(i);
+            long upper = Histogram.upperBound(i);
+
+            Assert.assertEquals(i, Histogram.bucket(lower));
+            Assert.assertEquals(i, Histogram.bucket(upper));
+            Assert.assertTrue(upper - lower <= lower / 8);
+
+            if (i > 0) {
+
+                Assert.assertEquals(Histogram.upperBound(i - 1) + 1, lower);
+
+            }
+
+        }
+
+        Assert.assertEquals(0, Histogram.bucket(-5));
+
+    }
+
+    /**
+     * <p>
+     * Test the percentiles, count and sum of a known distribution.
+     * </p>
+     */
+    @Test
+    public void testPercentile() {
+
+        Histogram histogram = new Histogram();
+
+        Assert.assertEquals(0, histogram.percentile(0.5));
+
+        for (long v = 1; v <= 1000; v++) {
+
+            histogram.record(v);
+
+        }
+
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(500500, histogram.sum());
+
+        long p50 = histogram.percentile(0.5);
+        long p99 = histogram.percentile(0.99);
+        long p999 = histogram.percentile(0.999);
+
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 * 9 / 8);
+        Assert.assertTrue(p99 >= 990 && p99 <= 990 * 9 / 8);
+        Assert.assertTrue(p999 >= 999 && p999 <= 999 * 9 / 8);
+        Assert.assertEquals(1, histogram.percentile(0));
+
+        histogram.reset();
+
+        Assert.assertEquals(0, histogram.count());
+        Assert.assertEquals(0, histogram.sum());
+
+    }
+
+    /**
+     * <p>
+     * Test that values recorded from several threads at once are all counted.
+     * </p>
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+
+        Histogram histogram = new Histogram();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+
+            Thread thread = new Thread(() -> {
+
+                for (int i = 0; i < 10000; i++) {
+
+                    histogram.record(i);
+
+                }
+
+            });
+
+            threads.add(thread);
+            thread.start();
+
+        }
+
+        for (Thread thread : threads) {
+
+            thread.join();
+
+        }
+
+        Assert.assertEquals(40000, histogram.count());
+        Assert.assertEquals(4L * 9999 * 10000 / 2, histogram.sum());
+
+    }
+
+    /**
+     * <p>
+     * Test that an invalid quantile is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile() {
+
+        new Histogram().percentile(1.5);
+
+    }
+
+}
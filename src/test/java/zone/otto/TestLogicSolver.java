@@ -0,0 +1,180 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+/**
+ * <p>
+ * The <code>TestLogicSolver</code> class tests the functionality of the <code>LogicSolver</code> class.
+ * </p>
+ */
+public class TestLogicSolver {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    // Puzzles (all with unique solutions) which between them need every technique.
+    private static final String X_WING = "1.....569492.561.8.561.924...964.8.1.64.1....218.356.4.4.5...169.5.614.2621.....5";
+    static final String SWORDFISH = "7...9452...2..........2..46..........56..3.....486..9...39.52.....1..38..81......";
+    private static final String NAKED_TRIPLE = "..1..9..7.3.7.42.1..8..........3....3...1..84.6.5..9...16.9.....7.2..15......7...";
+    private static final String HIDDEN_TRIPLE = ".......83...1.6....1..2..5.925.7.4...4......9........7.63..8.....4..5...18..92...";
+    private static final String COLOURING = ".9....23.7..5...........4....6.7......3.9...81..8.47...1.....9..3...7.655....2...";
+    private static final String PAIRS = "4.....3.....8.2......7........1...8734.......6........5...6........1.4...82......";
+    static final String INKALA = "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+
+    /**
+     * <p>
+     * Parse a puzzle from a single line of 81 characters, <code>.</code> for empty cells.
+     * </p>
+     */
+    static int[][] parseLine(String line) {
+
+        int[][] data = new int[9][9];
+
+        for (int i = 0; i < 81; i++) {
+
+            char ch = line.charAt(i);
+
+            data[i / 9][i % 9] = ch >= '1' && ch <= '9' ? ch - '0' : 0;
+
+        }
+
+        return data;
+
+    }
+
+    /**
+     * <p>
+     * Test that every hint is sound, i.e. agrees with the unique solution, and return the techniques used.
+     * </p>
+     */
+    private static EnumSet<LogicSolver.Technique> assertSound(int[][] data) {
+
+        int[] solution = new int[81];
+
+        Assert.assertTrue(new Board(data).solution(solution));
+
+        LogicSolver solver = new LogicSolver();
+        EnumSet<LogicSolver.Technique> used = EnumSet.noneOf(LogicSolver.Technique.class);
+        LogicSolver.Hint hint;
+
+        Assert.assertTrue(solver.load(data));
+
+        while ((hint = solver.nextHint()) != null) {
+
+            used.add(hint.technique());
+
+            if (hint.cell() >= 0) {
+
+                Assert.assertEquals(hint.toString(), solution[hint.cell()], hint.value());
+
+            } else {
+
+                int[] eliminations = hint.eliminations();
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    Assert.assertEquals(hint.toString(), 0, eliminations[cell] & (1 << solution[cell]));
+
+                }
+
+            }
+
+            solver.apply(hint);
+
+        }
+
+        return used;
+
+    }
+
+    /**
+     * <p>
+     * Test that each technique is exercised, and never eliminates the solution.
+     * </p>
+     */
+    @Test
+    public void testTechniques() {
+
+        EnumSet<LogicSolver.Technique> used = EnumSet.noneOf(LogicSolver.Technique.class);
+
+        used.addAll(assertSound(Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+
+        for (String line : new String[]{X_WING, SWORDFISH, NAKED_TRIPLE, HIDDEN_TRIPLE, COLOURING, PAIRS, INKALA}) {
+
+            used.addAll(assertSound(parseLine(line)));
+
+        }
+
+        Assert.assertEquals(EnumSet.allOf(LogicSolver.Technique.class), used);
+
+    }
+
+    /**
+     * <p>
+     * Test that puzzles are graded by the hardest technique needed.
+     * </p>
+     */
+    @Test
+    public void testGrade() {
+
+        LogicSolver solver = new LogicSolver();
+
+        Assert.assertEquals(LogicSolver.Grade.EASY, solver.grade(Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+        Assert.assertEquals(LogicSolver.Grade.MEDIUM, solver.grade(parseLine(PAIRS)));
+        Assert.assertEquals(LogicSolver.Grade.HARD, solver.grade(parseLine(X_WING)));
+        Assert.assertEquals(LogicSolver.Grade.HARD, solver.grade(parseLine(HIDDEN_TRIPLE)));
+        Assert.assertEquals(LogicSolver.Grade.EXPERT, solver.grade(parseLine(COLOURING)));
+        Assert.assertEquals(LogicSolver.Grade.BEYOND_LOGIC, solver.grade(parseLine(INKALA)));
+
+        // Conflicting givens can't be graded.
+        int[][] broken = parseLine(X_WING);
+        broken[0][1] = 1;
+        Assert.assertEquals(LogicSolver.Grade.BEYOND_LOGIC, solver.grade(broken));
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>nextHint()</code> doesn't change anything until the hint is applied, and that
+     * hints can be taken from a <code>Board</code> part way through a game.
+     * </p>
+     */
+    @Test
+    public void testNextHint() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+
+        Assert.assertTrue(board.place(Board.cell(0, 2), 4));
+
+        LogicSolver solver = new LogicSolver();
+
+        solver.load(board);
+
+        LogicSolver.Hint first = solver.nextHint();
+        LogicSolver.Hint second = solver.nextHint();
+
+        Assert.assertNotNull(first);
+        Assert.assertEquals(first.toString(), second.toString());
+        Assert.assertEquals(0, solver.get(first.cell()));
+
+        solver.apply(first);
+        Assert.assertEquals(first.value(), solver.get(first.cell()));
+        Assert.assertEquals(TestBoard.EASY_SOLVED[first.cell() / 9][first.cell() % 9], first.value());
+
+    }
+
+    /**
+     * <p>
+     * Test that a board of a variant the techniques don't know is rejected, rather than solved unsoundly.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoad_Variant() {
+
+        new LogicSolver().load(new Board(Variant.X_SUDOKU));
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * The <code>TestMappedMatrix</code> class tests the functionality of the <code>MappedMatrix</code> class,
+ * using <code>MatrixHelper</code> as the reference implementation.
+ * </p>
+ */
+public class TestMappedMatrix {
+
+    /**
+     * <p>
+     * Set up a scratch folder for the backing files.
+     * </p>
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * <p>
+     * Build a non-square input which spans several (partial) tiles.
+     * </p>
+     */
+    private static int[][] input() {
+
+        int[][] data = new int[MappedMatrix.TILE + 44][7];
+
+        for (int r = 0; r < data.length; r++) {
+
+            for (int c = 0; c < data[0].length; c++) {
+
+                data[r][c] = r * 31 - c * 1_000;
+
+            }
+
+        }
+
+        return data;
+
+    }
+
+    /**
+     * <p>
+     * Test that every transform agrees with its <code>MatrixHelper</code> equivalent, using a tiny segment
+     * size so that the cells are spread over many mapped segments.
+     * </p>
+     */
+    @Test
+    public void testTransforms() throws IOException {
+
+        int[][] input = input();
+        Path source = folder.newFile().toPath();
+
+        try (MappedMatrix matrix = MappedMatrix.create(source, input.length, input[0].length, 6)) {
+
+            for (int r = 0; r < input.length; r++) {
+
+                for (int c = 0; c < input[0].length; c++) {
+
+                    matrix.set(r, c, input[r][c]);
+
+                }
+
+            }
+
+            assertTransform(MatrixHelper.matrixDeepCopy(input), matrix.deepCopy(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixReflectHorizontal(input), matrix.reflectHorizontal(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixReflectVertical(input), matrix.reflectVertical(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixTranspose(input), matrix.transpose(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixRotateQuarterCW(input), matrix.rotateQuarterCW(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixRotateQuarterAC(input), matrix.rotateQuarterAC(folder.newFile().toPath()));
+            assertTransform(MatrixHelper.matrixRotateHalf(input), matrix.rotateHalf(folder.newFile().toPath()));
+
+        }
+
+    }
+
+    private static void assertTransform(int[][] expected, MappedMatrix actual) throws IOException {
+
+        try (MappedMatrix matrix = actual) {
+
+            Assert.assertArrayEquals(expected, matrix.toArray());
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a matrix survives being closed and reopened.
+     * </p>
+     */
+    @Test
+    public void testReopen() throws IOException {
+
+        int[][] input = input();
+        Path source = folder.newFile().toPath();
+
+        MappedMatrix.fromArray(source, input).close();
+
+        try (MappedMatrix matrix = MappedMatrix.open(source)) {
+
+            Assert.assertEquals(input.length, matrix.rowCount());
+            Assert.assertEquals(input[0].length, matrix.colCount());
+            Assert.assertArrayEquals(input, matrix.toArray());
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a matrix opened read only can be transformed, but not written to.
+     * </p>
+     */
+    @Test
+    public void testOpenReadOnly() throws IOException {
+
+        int[][] input = input();
+        Path source = folder.newFile().toPath();
+
+        MappedMatrix.fromArray(source, input).close();
+
+        try (MappedMatrix matrix = MappedMatrix.openReadOnly(source, 6)) {
+
+            assertTransform(MatrixHelper.matrixTranspose(input), matrix.transpose(folder.newFile().toPath()));
+            assertTransform(input, matrix.deepCopy(folder.newFile().toPath()));
+
+            try {
+
+                matrix.set(0, 0, 1);
+                Assert.fail();
+
+            } catch (ReadOnlyBufferException e) {
+
+                Assert.assertArrayEquals(input, matrix.toArray());
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a segment size too small to keep each cell in one segment is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreate_InvalidSegmentShift() throws IOException {
+
+        MappedMatrix.create(folder.newFile().toPath(), 2, 2, MappedMatrix.MIN_SEGMENT_SHIFT - 1);
+
+    }
+
+    /**
+     * <p>
+     * Test that a segment size too large to be mapped is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpen_InvalidSegmentShift() throws IOException {
+
+        Path source = folder.newFile().toPath();
+
+        MappedMatrix.fromArray(source, new int[][]{{1}}).close();
+        MappedMatrix.openReadOnly(source, MappedMatrix.MAX_SEGMENT_SHIFT + 1);
+
+    }
+
+    /**
+     * <p>
+     * Test that a file which is not a matrix is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testOpen_NotAMatrix() throws IOException {
+
+        MappedMatrix.open(folder.newFile().toPath());
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>render()</code> matches <code>MatrixHelper.renderMatrix()</code>.
+     * </p>
+     */
+    @Test
+    public void testRender() throws IOException {
+
+        int[][] input = new int[][]{
+                {10_000_000, 1_000_000},
+                {100_000, -10_000},
+                {1_000, 100},
+                {10, 1}
+        };
+
+        try (MappedMatrix matrix = MappedMatrix.fromArray(folder.newFile().toPath(), input)) {
+
+            StringWriter actual = new StringWriter();
+
+            matrix.render(true, actual);
+
+            Assert.assertEquals(MatrixHelper.renderMatrix(true, input), actual.toString());
+
+        }
+
+    }
+
+}
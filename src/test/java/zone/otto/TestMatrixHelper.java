@@ -3,6 +3,9 @@ package zone.otto;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 
 /**
  * <p>
@@ -353,4 +356,58 @@ public class TestMatrixHelper {
 
     }
 
+    /**
+     * <p>
+     * Test that the streaming <code>renderMatrix()</code> produces exactly the same layout as
+     * the String variant, including negative values.
+     * </p>
+     */
+    @Test
+    public void testMatrixToString_Streaming() throws IOException {
+
+        int[][] input = new int[][]{
+                {-10, 1_000},
+                {7, Integer.MIN_VALUE},
+                {0, Integer.MAX_VALUE}
+        };
+
+        StringWriter actual = new StringWriter();
+
+        MatrixHelper.renderMatrix(true, input, actual);
+
+        String expected = "               0             1\n" +
+                "   +-------------+-------------+\n" +
+                " 0 |         -10 |        1000 |\n" +
+                "   +-------------+-------------+\n" +
+                " 1 |           7 | -2147483648 |\n" +
+                "   +-------------+-------------+\n" +
+                " 2 |           0 |  2147483647 |\n" +
+                "   +-------------+-------------+\n";
+
+        Assert.assertEquals(expected, actual.toString());
+        Assert.assertEquals(expected, MatrixHelper.renderMatrix(true, input));
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>digitWidth()</code> agrees with the length of the decimal String.
+     * </p>
+     */
+    @Test
+    public void testDigitWidth() {
+
+        long[] values = new long[]{0, 9, 10, -1, -9, -10, 99_999, 100_000,
+                Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+
+        for (long value : values) {
+
+            Assert.assertEquals(Long.toString(value).length(), MatrixHelper.digitWidth(value));
+
+        }
+
+        Assert.assertEquals(11, MatrixHelper.array2dMaxStringLength(new int[][]{{1, Integer.MIN_VALUE}}));
+
+    }
+
 }
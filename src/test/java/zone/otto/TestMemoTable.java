@@ -0,0 +1,151 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * The <code>TestMemoTable</code> class tests the functionality of the <code>MemoTable</code> class.
+ * </p>
+ */
+public class TestMemoTable {
+
+    /**
+     * <p>
+     * Test putting and getting values, including the keys which clash with an empty slot, and that the first
+     * value put for a key is kept.
+     * </p>
+     */
+    @Test
+    public void testGetPut() {
+
+        MemoTable table = new MemoTable();
+
+        Assert.assertEquals(MemoTable.ABSENT, table.get(0));
+        Assert.assertEquals(MemoTable.ABSENT, table.get(-1));
+
+        table.put(0, 7);
+        table.put(-1, 0);
+        table.put(Long.MAX_VALUE, Long.MAX_VALUE);
+        table.put(0, 8);
+
+        Assert.assertEquals(7, table.get(0));
+        Assert.assertEquals(0, table.get(-1));
+        Assert.assertEquals(Long.MAX_VALUE, table.get(Long.MAX_VALUE));
+        Assert.assertEquals(MemoTable.ABSENT, table.get(1));
+        Assert.assertEquals(3, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that the table grows to keep every key, however small it starts.
+     * </p>
+     */
+    @Test
+    public void testGrow() {
+
+        MemoTable table = new MemoTable(1);
+        SplittableRandom random = new SplittableRandom(1);
+        long[] keys = new long[20_000];
+
+        for (int i = 0; i < keys.length; i++) {
+
+            keys[i] = random.nextLong();
+            table.put(keys[i], i);
+
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+
+            Assert.assertEquals(i, table.get(keys[i]));
+
+        }
+
+        Assert.assertEquals(keys.length, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that values put concurrently by several threads are all kept.
+     * </p>
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+
+        MemoTable table = new MemoTable(16);
+        long[] keys = new long[4_000];
+        SplittableRandom random = new SplittableRandom(2);
+
+        for (int i = 0; i < keys.length; i++) {
+
+            keys[i] = random.nextLong();
+
+        }
+
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+
+            int offset = t;
+
+            // Every thread puts every key, starting at different places, with the same value for each.
+            threads[t] = new Thread(() -> {
+
+                for (int i = 0; i < keys.length; i++) {
+
+                    int k = (i + offset * 1_000) % keys.length;
+
+                    table.put(keys[k], k);
+
+                }
+
+            });
+            threads[t].start();
+
+        }
+
+        for (Thread thread : threads) {
+
+            thread.join();
+
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+
+            Assert.assertEquals(i, table.get(keys[i]));
+
+        }
+
+        Assert.assertEquals(keys.length, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that a negative value, which would read as absent, is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_InvalidValue() {
+
+        new MemoTable().put(1, -1);
+
+    }
+
+    /**
+     * <p>
+     * Test that a silly capacity is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMemoTable_InvalidCapacity() {
+
+        new MemoTable(0);
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * The <code>TestMetrics</code> class tests the functionality of the <code>Metrics</code> class.
+ * </p>
+ */
+public class TestMetrics {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that the registry renders its counters and percentiles in the Prometheus text format.
+     * </p>
+     */
+    @Test
+    public void testRender() {
+
+        Metrics metrics = new Metrics();
+
+        metrics.parsed();
+        metrics.parsed();
+        metrics.solved(2_000_000, 100);
+        metrics.unsolvable(1_000_000, 50);
+        metrics.aborted();
+        metrics.rejected();
+
+        String text = metrics.render();
+
+        Assert.assertTrue(text.contains("# TYPE sudoku_puzzles_parsed_total counter\nsudoku_puzzles_parsed_total 2\n"));
+        Assert.assertTrue(text.contains("sudoku_puzzles_solved_total 1\n"));
+        Assert.assertTrue(text.contains("sudoku_puzzles_unsolvable_total 1\n"));
+        Assert.assertTrue(text.contains("sudoku_puzzles_aborted_total 1\n"));
+        Assert.assertTrue(text.contains("sudoku_puzzles_rejected_total 1\n"));
+        Assert.assertTrue(text.contains("# TYPE sudoku_solve_seconds summary\n"));
+        Assert.assertTrue(text.contains("sudoku_solve_seconds{quantile=\"0.5\"} "));
+        Assert.assertTrue(text.contains("sudoku_solve_seconds{quantile=\"0.999\"} "));
+        Assert.assertTrue(text.contains("sudoku_solve_seconds_sum 0.00300000000\n"));
+        Assert.assertTrue(text.contains("sudoku_solve_seconds_count 2\n"));
+        Assert.assertTrue(text.contains("sudoku_solve_nodes{quantile=\"0.99\"} 103\n"));
+        Assert.assertTrue(text.contains("sudoku_solve_nodes_sum 150\n"));
+
+        metrics.reset();
+
+        Assert.assertTrue(metrics.render().contains("sudoku_puzzles_parsed_total 0\n"));
+        Assert.assertEquals(0, metrics.latency().count());
+
+    }
+
+    /**
+     * <p>
+     * Test that parsing and solving are recorded in the global registry.
+     * </p>
+     */
+    @Test
+    public void testGlobal() {
+
+        Metrics metrics = Metrics.global();
+        long solves = metrics.latency().count();
+        long nodes = metrics.nodes().count();
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        Assert.assertTrue(metrics.render().contains("sudoku_puzzles_parsed_total "));
+        Assert.assertEquals(Solver.Status.SOLVED, new Solver().solve(data).status());
+        Assert.assertEquals(solves + 1, metrics.latency().count());
+        Assert.assertEquals(nodes + 1, metrics.nodes().count());
+
+    }
+
+    /**
+     * <p>
+     * Test that the registry is written to a file periodically.
+     * </p>
+     */
+    @Test
+    public void testExportEvery() throws Exception {
+
+        Metrics metrics = new Metrics();
+        Path dir = Files.createTempDirectory("metrics");
+        Path file = dir.resolve("sudoku.prom");
+
+        metrics.solved(1000, 1);
+
+        Closeable export = metrics.exportEvery(file, 10, TimeUnit.MILLISECONDS);
+
+        try {
+
+            for (int i = 0; i < 500 && !Files.exists(file); i++) {
+
+                Thread.sleep(10);
+
+            }
+
+            Assert.assertTrue(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+                    .contains("sudoku_puzzles_solved_total 1\n"));
+
+        } finally {
+
+            export.close();
+
+        }
+
+        Thread.sleep(50);
+        Files.delete(file);
+
+        // Only the file itself was left behind.
+        try (Stream<Path> left = Files.list(dir)) {
+
+            Assert.assertEquals(0, left.count());
+
+        }
+
+        Files.delete(dir);
+
+    }
+
+    /**
+     * <p>
+     * Test that a file which can't be written is reported once, not every period.
+     * </p>
+     */
+    @Test
+    public void testExportEvery_Failing() throws Exception {
+
+        Path dir = Files.createTempDirectory("metrics");
+        Path file = dir.resolve("missing").resolve("sudoku.prom");
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+
+        System.setErr(new PrintStream(captured, true, "UTF-8"));
+
+        try {
+
+            Closeable export = new Metrics().exportEvery(file, 5, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(200);
+            export.close();
+            Thread.sleep(20);
+
+        } finally {
+
+            System.setErr(err);
+            Files.delete(dir);
+
+        }
+
+        String text = captured.toString("UTF-8");
+
+        Assert.assertEquals(text.indexOf("NoSuchFileException"), text.lastIndexOf("NoSuchFileException"));
+        Assert.assertTrue(text.contains("NoSuchFileException"));
+
+    }
+
+    /**
+     * <p>
+     * Test that the registry is served over HTTP.
+     * </p>
+     */
+    @Test
+    public void testServe() throws Exception {
+
+        Metrics metrics = new Metrics();
+
+        metrics.aborted();
+
+        try (Metrics.Endpoint endpoint = metrics.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+
+            URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), endpoint.port(), "/metrics");
+
+            try (InputStream in = url.openStream()) {
+
+                String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+
+                Assert.assertTrue(text.contains("sudoku_puzzles_aborted_total 1\n"));
+
+            }
+
+        }
+
+    }
+
+}
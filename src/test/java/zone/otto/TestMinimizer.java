@@ -0,0 +1,154 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * The <code>TestMinimizer</code> class tests the functionality of the <code>Minimizer</code> class.
+ * </p>
+ */
+public class TestMinimizer {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Check that a puzzle is a minimal subset of another with the same unique solution.
+     * </p>
+     */
+    private static void assertMinimal(int[][] original, int[][] minimal, int[][] solution) {
+
+        Assert.assertEquals(1, SolutionSpliterator.solutions(minimal).limit(2).count());
+        Assert.assertArrayEquals(solution, SolutionSpliterator.solutions(minimal).findFirst().get());
+
+        for (int r = 0; r < 9; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                if (minimal[r][c] == 0) {
+
+                    continue;
+
+                }
+
+                Assert.assertEquals(original[r][c], minimal[r][c]);
+
+                int[][] fewer = MatrixHelper.matrixDeepCopy(minimal);
+
+                fewer[r][c] = 0;
+                Assert.assertEquals(2, SolutionSpliterator.solutions(fewer).limit(2).count());
+
+            }
+
+        }
+
+    }
+
+    private static int clues(int[][] data) {
+
+        int clues = 0;
+
+        for (int[] row : data) {
+
+            for (int v : row) {
+
+                clues += v != 0 ? 1 : 0;
+
+            }
+
+        }
+
+        return clues;
+
+    }
+
+    /**
+     * <p>
+     * Test minimizing puzzles, and a full grid, with one thread and with several.
+     * </p>
+     */
+    @Test
+    public void testMinimize() {
+
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[][] inkalaSolved = SolutionSpliterator.solutions(inkala).findFirst().get();
+
+        try (Minimizer minimizer = new Minimizer(1)) {
+
+            int[][] minimal = minimizer.minimize(easy);
+
+            assertMinimal(easy, minimal, TestBoard.EASY_SOLVED);
+            Assert.assertTrue(clues(minimal) < clues(easy));
+            assertMinimal(inkala, minimizer.minimize(inkala), inkalaSolved);
+
+        }
+
+        try (Minimizer minimizer = new Minimizer(4)) {
+
+            int[][] minimal = minimizer.minimize(TestBoard.EASY_SOLVED);
+
+            assertMinimal(TestBoard.EASY_SOLVED, minimal, TestBoard.EASY_SOLVED);
+            Assert.assertTrue(clues(minimal) >= 17);
+
+            // Settling clues in the same order, the result doesn't depend on the number of threads.
+            try (Minimizer single = new Minimizer(1)) {
+
+                Assert.assertArrayEquals(single.minimize(TestBoard.EASY_SOLVED), minimal);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle with more than one solution is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinimize_NotUnique() {
+
+        try (Minimizer minimizer = new Minimizer(2)) {
+
+            minimizer.minimize(Sudoku.dataParse(testResourcePath + "TestSudoku.dat"));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle with no solution is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinimize_NoSolution() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        data[0][2] = 1;
+
+        try (Minimizer minimizer = new Minimizer(2)) {
+
+            minimizer.minimize(data);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a number of threads less than one is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinimizer_NoThreads() {
+
+        new Minimizer(0);
+
+    }
+
+}
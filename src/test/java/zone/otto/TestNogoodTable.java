@@ -0,0 +1,174 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * The <code>TestNogoodTable</code> class tests the functionality of the <code>NogoodTable</code> class.
+ * </p>
+ */
+public class TestNogoodTable {
+
+    /**
+     * <p>
+     * Test adding and looking up states, including the hash which clashes with an empty slot.
+     * </p>
+     */
+    @Test
+    public void testAddContains() {
+
+        NogoodTable table = new NogoodTable(1000);
+
+        Assert.assertEquals(1024, table.capacity());
+        Assert.assertFalse(table.contains(0));
+        Assert.assertFalse(table.contains(42));
+
+        table.add(0);
+        table.add(42);
+        table.add(42);
+
+        Assert.assertTrue(table.contains(0));
+        Assert.assertTrue(table.contains(42));
+        Assert.assertFalse(table.contains(43));
+        Assert.assertEquals(2, table.size());
+
+        table.clear();
+        Assert.assertFalse(table.contains(42));
+        Assert.assertEquals(0, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that the table stays within its capacity, keeping the newest states.
+     * </p>
+     */
+    @Test
+    public void testBounded() {
+
+        NogoodTable table = new NogoodTable(16);
+        SplittableRandom random = new SplittableRandom(1);
+        long last = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+
+            last = random.nextLong();
+            table.add(last);
+
+        }
+
+        Assert.assertEquals(16, table.size());
+        Assert.assertTrue(table.contains(last));
+
+    }
+
+    /**
+     * <p>
+     * Test that when every slot a hash may occupy is taken, the entry in its home slot is the one lost.
+     * </p>
+     */
+    @Test
+    public void testFullProbeRun() {
+
+        NogoodTable table = new NogoodTable(16);
+        long[] hashes = new long[NogoodTable.PROBES + 1];
+
+        // The same home slot, 1, for every hash.
+        for (int i = 0; i < hashes.length; i++) {
+
+            hashes[i] = 1 + 16L * i;
+
+        }
+
+        for (int i = 0; i < NogoodTable.PROBES; i++) {
+
+            table.add(hashes[i]);
+
+        }
+
+        // Add the first again, so that it is the newest of the run.
+        table.add(hashes[0]);
+        table.add(hashes[NogoodTable.PROBES]);
+
+        Assert.assertFalse(table.contains(hashes[0]));
+
+        for (int i = 1; i < hashes.length; i++) {
+
+            Assert.assertTrue(table.contains(hashes[i]));
+
+        }
+
+        Assert.assertEquals(NogoodTable.PROBES, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that states added concurrently by several threads are all kept.
+     * </p>
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+
+        NogoodTable table = new NogoodTable(1 << 18);
+        long[] hashes = new long[4_000];
+        SplittableRandom random = new SplittableRandom(2);
+
+        for (int i = 0; i < hashes.length; i++) {
+
+            hashes[i] = random.nextLong();
+
+        }
+
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+
+            int offset = t;
+
+            // Every thread adds every hash, starting at different places.
+            threads[t] = new Thread(() -> {
+
+                for (int i = 0; i < hashes.length; i++) {
+
+                    table.add(hashes[(i + offset * 1_000) % hashes.length]);
+
+                }
+
+            });
+            threads[t].start();
+
+        }
+
+        for (Thread thread : threads) {
+
+            thread.join();
+
+        }
+
+        for (long hash : hashes) {
+
+            Assert.assertTrue(table.contains(hash));
+
+        }
+
+        Assert.assertEquals(hashes.length, table.size());
+
+    }
+
+    /**
+     * <p>
+     * Test that a silly capacity is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNogoodTable_InvalidCapacity() {
+
+        new NogoodTable(0);
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The <code>TestPackedFormat</code> class tests the functionality of the <code>PackedFormat</code> class.
+ * </p>
+ */
+public class TestPackedFormat {
+
+    /**
+     * <p>
+     * Set up a scratch folder for the packed files.
+     * </p>
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Build a distinct (but not necessarily valid) grid for record <code>i</code>.
+     * </p>
+     */
+    private static int[][] grid(int i) {
+
+        int[][] data = new int[9][9];
+
+        for (int k = 0; k < 81; k++) {
+
+            data[k / 9][k % 9] = (i + k * 7 + k / 9) % 10;
+
+        }
+
+        return data;
+
+    }
+
+    /**
+     * <p>
+     * Test that a single grid survives <code>encode()</code>/<code>decode()</code> in exactly
+     * <code>RECORD_BYTES</code>.
+     * </p>
+     */
+    @Test
+    public void testEncodeDecode() throws IOException {
+
+        int[][] expected = Sudoku.dataParse(testResourcePath + "TestSudoku.dat");
+        int[][] actual = new int[9][9];
+        ByteBuffer buffer = ByteBuffer.allocate(PackedFormat.RECORD_BYTES);
+
+        PackedFormat.encode(expected, buffer);
+        Assert.assertEquals(PackedFormat.RECORD_BYTES, buffer.position());
+
+        buffer.flip();
+        PackedFormat.decode(buffer, actual);
+        Assert.assertEquals(PackedFormat.RECORD_BYTES, buffer.position());
+
+        Assert.assertArrayEquals(expected, actual);
+
+        // All 9s is the largest possible group in every position.
+        int[][] nines = new int[9][9];
+
+        for (int[] row : nines) {
+
+            Arrays.fill(row, 9);
+
+        }
+
+        buffer.clear();
+        PackedFormat.encode(nines, buffer);
+        buffer.flip();
+        PackedFormat.decode(buffer, actual);
+        Assert.assertArrayEquals(nines, actual);
+
+    }
+
+    /**
+     * <p>
+     * Test that many records (spanning several buffers) can be written, read back, and seeked to,
+     * and that the file is more than 5x smaller than the text format.
+     * </p>
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+
+        Path path = folder.newFile().toPath();
+        int count = 5_000;
+
+        try (PackedFormat.Writer writer = new PackedFormat.Writer(path)) {
+
+            for (int i = 0; i < count; i++) {
+
+                writer.write(grid(i));
+
+            }
+
+            Assert.assertEquals(count, writer.count());
+
+        }
+
+        long size = Files.size(path);
+
+        Assert.assertEquals(PackedFormat.HEADER_BYTES + (long) count * PackedFormat.RECORD_BYTES, size);
+        Assert.assertTrue(size * 5 < (long) count * Sudoku.dataRender(grid(0)).length());
+
+        int[][] actual = new int[9][9];
+
+        try (PackedFormat.Reader reader = new PackedFormat.Reader(path)) {
+
+            Assert.assertEquals(count, reader.count());
+
+            for (int i = 0; i < count; i++) {
+
+                Assert.assertTrue(reader.read(actual));
+                Assert.assertArrayEquals(grid(i), actual);
+
+            }
+
+            Assert.assertFalse(reader.read(actual));
+
+            reader.seek(4_321);
+            Assert.assertTrue(reader.read(actual));
+            Assert.assertArrayEquals(grid(4_321), actual);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a file which is not a packed file is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testReader_NotPacked() throws IOException {
+
+        Path path = folder.newFile().toPath();
+
+        Files.write(path, new byte[PackedFormat.HEADER_BYTES]);
+
+        new PackedFormat.Reader(path).close();
+
+    }
+
+    /**
+     * <p>
+     * Test that a truncated file is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testReader_PartialRecord() throws IOException {
+
+        Path path = folder.newFile().toPath();
+
+        try (PackedFormat.Writer writer = new PackedFormat.Writer(path)) {
+
+            writer.write(grid(0));
+
+        }
+
+        byte[] bytes = Files.readAllBytes(path);
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        new PackedFormat.Reader(path).close();
+
+    }
+
+}
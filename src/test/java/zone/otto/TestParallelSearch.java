@@ -0,0 +1,123 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>TestParallelSearch</code> class tests the functionality of the <code>ParallelSearch</code> class.
+ * </p>
+ */
+public class TestParallelSearch {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that splitting covers the candidates of the most constrained cell and goes on splitting
+     * until there are enough sub-boards.
+     * </p>
+     */
+    @Test
+    public void testSplit() {
+
+        Board board = new Board(TestLogicSolver.parseLine(TestLogicSolver.INKALA));
+        int empty = board.emptyCount();
+        int cell = board.mostConstrained();
+        List<Board> parts = ParallelSearch.split(board, 1);
+
+        Assert.assertEquals(1, parts.size());
+        Assert.assertEquals(empty, parts.get(0).emptyCount());
+
+        parts = ParallelSearch.split(board, 2);
+        Assert.assertEquals(Integer.bitCount(board.candidates(cell)), parts.size());
+
+        for (Board part : parts) {
+
+            Assert.assertEquals(empty - 1, part.emptyCount());
+            Assert.assertNotEquals(0, part.get(cell));
+
+        }
+
+        Assert.assertTrue(ParallelSearch.split(board, 16).size() >= 16);
+        Assert.assertEquals(empty, board.emptyCount());
+
+    }
+
+    /**
+     * <p>
+     * Test that the parallel search finds the same (unique) solution as the sequential one, with and
+     * without a shared nogood table.
+     * </p>
+     */
+    @Test
+    public void testSolve() {
+
+        for (String line : new String[]{TestLogicSolver.INKALA, TestLogicSolver.SWORDFISH}) {
+
+            Board board = new Board(TestLogicSolver.parseLine(line));
+            int[] expected = new int[81];
+            int[] actual = new int[81];
+
+            Assert.assertTrue(board.solution(expected));
+
+            try (ParallelSearch search = new ParallelSearch(4)) {
+
+                Assert.assertTrue(search.solve(board, actual, null));
+                Assert.assertArrayEquals(expected, actual);
+
+                // The threads are reused.
+                Assert.assertTrue(search.solve(board, actual, new NogoodTable(1 << 16)));
+                Assert.assertArrayEquals(expected, actual);
+
+            }
+
+        }
+
+        // A full board is its own solution.
+        Board full = new Board(TestBoard.EASY_SOLVED);
+
+        try (ParallelSearch search = new ParallelSearch(2)) {
+
+            Assert.assertTrue(search.solve(full, null, null));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a board with no solution is reported as such.
+     * </p>
+     */
+    @Test
+    public void testSolve_NoSolution() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+
+        // (0, 2) must be 4, see TestBoard.
+        Assert.assertTrue(board.place(Board.cell(0, 2), 1));
+
+        try (ParallelSearch search = new ParallelSearch(3)) {
+
+            Assert.assertFalse(search.solve(board, null, new NogoodTable(1 << 10)));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a silly number of threads is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSolve_InvalidThreads() {
+
+        new ParallelSearch(0).close();
+
+    }
+
+}
@@ -0,0 +1,295 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>TestPortfolio</code> class tests the functionality of the <code>Portfolio</code> class.
+ * </p>
+ */
+public class TestPortfolio {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that the standard portfolio solves puzzles (into the shape <code>Sudoku</code> renders) and
+     * leaves the puzzle untouched.
+     * </p>
+     */
+    @Test
+    public void testSolve() {
+
+        try (Portfolio portfolio = Portfolio.standard()) {
+
+            int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+            String before = Sudoku.dataRender(data);
+
+            Assert.assertArrayEquals(TestBoard.EASY_SOLVED, portfolio.solve(data));
+            Assert.assertEquals(before, Sudoku.dataRender(data));
+
+            for (String line : new String[]{TestLogicSolver.INKALA, TestLogicSolver.SWORDFISH}) {
+
+                int[] expected = new int[81];
+                int[][] solution = portfolio.solve(TestLogicSolver.parseLine(line));
+
+                Assert.assertTrue(new Board(TestLogicSolver.parseLine(line)).solution(expected));
+
+                for (int cell = 0; cell < 81; cell++) {
+
+                    Assert.assertEquals(expected[cell], solution[cell / 9][cell % 9]);
+
+                }
+
+            }
+
+            Assert.assertEquals(3, portfolio.wins(0) + portfolio.wins(1) + portfolio.wins(2));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a proof of no solution from any engine ends the race.
+     * </p>
+     */
+    @Test
+    public void testSolve_NoSolution() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        // (0, 2) must be 4, see TestBoard.
+        data[0][2] = 1;
+
+        try (Portfolio portfolio = Portfolio.standard()) {
+
+            Assert.assertNull(portfolio.solve(data));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that the first answer wins, that the slower engines are cancelled, and that a failing engine
+     * does not sink the race.
+     * </p>
+     */
+    @Test
+    public void testSolve_Cancellation() throws InterruptedException {
+
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        Portfolio.Engine stubborn = (board, out, flag) -> {
+
+            while (!flag.get()) {
+
+                Thread.yield();
+
+            }
+
+            cancelled.countDown();
+
+            return false;
+
+        };
+
+        Portfolio.Engine broken = (board, out, flag) -> {
+
+            throw new IllegalStateException("broken");
+
+        };
+
+        try (Portfolio portfolio = new Portfolio(stubborn, broken, Portfolio.backtracking())) {
+
+            Assert.assertArrayEquals(TestBoard.EASY_SOLVED,
+                    portfolio.solve(Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+            Assert.assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, portfolio.wins(0));
+            Assert.assertEquals(1, portfolio.wins(2));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a call is not held up behind another which is still running, each on threads of its own.
+     * </p>
+     */
+    @Test(timeout = 10_000)
+    public void testSolve_Concurrent() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        // Blocks on an empty grid, and solves anything else.
+        Portfolio.Engine engine = (board, out, flag) -> {
+
+            threads.add(Thread.currentThread().getName());
+
+            if (board.get(0) == 0) {
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+
+                }
+
+                return false;
+
+            }
+
+            return board.solution(out, null, flag);
+
+        };
+
+        try (Portfolio portfolio = new Portfolio(engine)) {
+
+            Thread blocked = new Thread(() -> portfolio.solve(new int[9][9]));
+
+            blocked.start();
+
+            while (threads.isEmpty()) {
+
+                Thread.sleep(1);
+
+            }
+
+            Assert.assertArrayEquals(TestBoard.EASY_SOLVED,
+                    portfolio.solve(Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+            Assert.assertEquals(2, threads.size());
+
+            release.countDown();
+            blocked.join(5000);
+
+        } finally {
+
+            release.countDown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that once every thread the portfolio may have is busy, an engine runs on the calling thread.
+     * </p>
+     */
+    @Test(timeout = 10_000)
+    public void testSolve_CallerRuns() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        // Blocks on an empty grid, and solves anything else.
+        Portfolio.Engine engine = (board, out, flag) -> {
+
+            threads.add(Thread.currentThread().getName());
+
+            if (board.get(0) == 0) {
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+
+                }
+
+                return false;
+
+            }
+
+            return board.solution(out, null, flag);
+
+        };
+
+        Thread[] blocked = new Thread[Portfolio.MAX_CONCURRENT_CALLS];
+
+        try (Portfolio portfolio = new Portfolio(engine)) {
+
+            for (int i = 0; i < blocked.length; i++) {
+
+                blocked[i] = new Thread(() -> portfolio.solve(new int[9][9]));
+                blocked[i].start();
+
+            }
+
+            while (threads.size() < blocked.length) {
+
+                Thread.sleep(1);
+
+            }
+
+            Assert.assertArrayEquals(TestBoard.EASY_SOLVED,
+                    portfolio.solve(Sudoku.dataParse(testResourcePath + "TestEasy.dat")));
+            Assert.assertTrue(threads.contains(Thread.currentThread().getName()));
+            Assert.assertEquals(blocked.length + 1, threads.size());
+
+            release.countDown();
+
+            for (Thread thread : blocked) {
+
+                thread.join(5000);
+
+            }
+
+        } finally {
+
+            release.countDown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a closed portfolio rejects puzzles.
+     * </p>
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void testSolve_Closed() {
+
+        Portfolio portfolio = new Portfolio(Portfolio.backtracking());
+
+        portfolio.close();
+        portfolio.solve(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+
+    }
+
+    /**
+     * <p>
+     * Test that the race fails if every engine fails.
+     * </p>
+     */
+    @Test(expected = RuntimeException.class)
+    public void testSolve_AllFailed() {
+
+        try (Portfolio portfolio = new Portfolio((board, out, flag) -> {
+
+            throw new IllegalStateException("broken");
+
+        })) {
+
+            portfolio.solve(new int[9][9]);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * The <code>TestPrimitiveMatrixHelper</code> class tests the primitive specialisations generated from
+ * <code>PrimitiveMatrixHelper.java.template</code>, using the int[][] <code>MatrixHelper</code> as the
+ * reference implementation (it is generated from the same template, and pinned to literal results by
+ * <code>TestMatrixHelper</code>).
+ * </p>
+ */
+public class TestPrimitiveMatrixHelper {
+
+    private static final int[][] INPUT = new int[][]{
+            {1, 2, -3},
+            {4, 5, 6},
+            {7, -8, 9},
+            {10, 11, 12}
+    };
+
+    private static byte[][] toByte(int[][] data) {
+
+        byte[][] result = new byte[data.length][data[0].length];
+
+        for (int r = 0; r < data.length; r++) {
+
+            for (int c = 0; c < data[0].length; c++) {
+
+                result[r][c] = (byte) data[r][c];
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    private static short[][] toShort(int[][] data) {
+
+        short[][] result = new short[data.length][data[0].length];
+
+        for (int r = 0; r < data.length; r++) {
+
+            for (int c = 0; c < data[0].length; c++) {
+
+                result[r][c] = (short) data[r][c];
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    private static long[][] toLong(int[][] data) {
+
+        long[][] result = new long[data.length][data[0].length];
+
+        for (int r = 0; r < data.length; r++) {
+
+            for (int c = 0; c < data[0].length; c++) {
+
+                result[r][c] = data[r][c];
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    private static double[][] toDouble(int[][] data) {
+
+        double[][] result = new double[data.length][data[0].length];
+
+        for (int r = 0; r < data.length; r++) {
+
+            for (int c = 0; c < data[0].length; c++) {
+
+                result[r][c] = data[r][c];
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * Test that the byte[][] transforms agree with the int[][] ones.
+     * </p>
+     */
+    @Test
+    public void testByteTransforms() {
+
+        byte[][] input = toByte(INPUT);
+
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixDeepCopy(INPUT)), ByteMatrixHelper.matrixDeepCopy(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixReflectHorizontal(INPUT)), ByteMatrixHelper.matrixReflectHorizontal(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixReflectVertical(INPUT)), ByteMatrixHelper.matrixReflectVertical(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixTranspose(INPUT)), ByteMatrixHelper.matrixTranspose(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixRotateQuarterCW(INPUT)), ByteMatrixHelper.matrixRotateQuarterCW(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixRotateQuarterAC(INPUT)), ByteMatrixHelper.matrixRotateQuarterAC(input));
+        Assert.assertArrayEquals(toByte(MatrixHelper.matrixRotateHalf(INPUT)), ByteMatrixHelper.matrixRotateHalf(input));
+        Assert.assertEquals(MatrixHelper.renderMatrix(true, INPUT), ByteMatrixHelper.renderMatrix(true, input));
+
+    }
+
+    /**
+     * <p>
+     * Test that the short[][] transforms agree with the int[][] ones.
+     * </p>
+     */
+    @Test
+    public void testShortTransforms() {
+
+        short[][] input = toShort(INPUT);
+
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixDeepCopy(INPUT)), ShortMatrixHelper.matrixDeepCopy(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixReflectHorizontal(INPUT)), ShortMatrixHelper.matrixReflectHorizontal(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixReflectVertical(INPUT)), ShortMatrixHelper.matrixReflectVertical(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixTranspose(INPUT)), ShortMatrixHelper.matrixTranspose(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixRotateQuarterCW(INPUT)), ShortMatrixHelper.matrixRotateQuarterCW(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixRotateQuarterAC(INPUT)), ShortMatrixHelper.matrixRotateQuarterAC(input));
+        Assert.assertArrayEquals(toShort(MatrixHelper.matrixRotateHalf(INPUT)), ShortMatrixHelper.matrixRotateHalf(input));
+        Assert.assertEquals(MatrixHelper.renderMatrix(false, INPUT), ShortMatrixHelper.renderMatrix(false, input));
+
+    }
+
+    /**
+     * <p>
+     * Test that the long[][] transforms agree with the int[][] ones, and that rendering copes with
+     * values wider than an int.
+     * </p>
+     */
+    @Test
+    public void testLongTransforms() {
+
+        long[][] input = toLong(INPUT);
+
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixDeepCopy(INPUT)), LongMatrixHelper.matrixDeepCopy(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixReflectHorizontal(INPUT)), LongMatrixHelper.matrixReflectHorizontal(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixReflectVertical(INPUT)), LongMatrixHelper.matrixReflectVertical(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixTranspose(INPUT)), LongMatrixHelper.matrixTranspose(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixRotateQuarterCW(INPUT)), LongMatrixHelper.matrixRotateQuarterCW(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixRotateQuarterAC(INPUT)), LongMatrixHelper.matrixRotateQuarterAC(input));
+        Assert.assertArrayEquals(toLong(MatrixHelper.matrixRotateHalf(INPUT)), LongMatrixHelper.matrixRotateHalf(input));
+        Assert.assertEquals(MatrixHelper.renderMatrix(true, INPUT), LongMatrixHelper.renderMatrix(true, input));
+
+        String expected = "+----------------------+\n" +
+                "| -9223372036854775808 |\n" +
+                "+----------------------+\n";
+
+        Assert.assertEquals(expected, LongMatrixHelper.renderMatrix(false, new long[][]{{Long.MIN_VALUE}}));
+
+    }
+
+    /**
+     * <p>
+     * Test that the double[][] transforms agree with the int[][] ones, and that rendering uses
+     * <code>Double.toString()</code>.
+     * </p>
+     */
+    @Test
+    public void testDoubleTransforms() {
+
+        double[][] input = toDouble(INPUT);
+
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixDeepCopy(INPUT)), DoubleMatrixHelper.matrixDeepCopy(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixReflectHorizontal(INPUT)), DoubleMatrixHelper.matrixReflectHorizontal(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixReflectVertical(INPUT)), DoubleMatrixHelper.matrixReflectVertical(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixTranspose(INPUT)), DoubleMatrixHelper.matrixTranspose(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixRotateQuarterCW(INPUT)), DoubleMatrixHelper.matrixRotateQuarterCW(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixRotateQuarterAC(INPUT)), DoubleMatrixHelper.matrixRotateQuarterAC(input));
+        Assert.assertArrayEquals(toDouble(MatrixHelper.matrixRotateHalf(INPUT)), DoubleMatrixHelper.matrixRotateHalf(input));
+
+        String expected = "+------+------+\n" +
+                "|  1.5 | -0.0 |\n" +
+                "+------+------+\n";
+
+        Assert.assertEquals(expected, DoubleMatrixHelper.renderMatrix(false, new double[][]{{1.5, -0.0}}));
+
+        // Values wider than the default scratch buffer.
+        expected = "+-------------------------+-------------------------+-------------------------+\n" +
+                "|                4.9E-324 | -1.7976931348623157E308 |                     NaN |\n" +
+                "+-------------------------+-------------------------+-------------------------+\n";
+
+        Assert.assertEquals(expected, DoubleMatrixHelper.renderMatrix(false,
+                new double[][]{{Double.MIN_VALUE, -Double.MAX_VALUE, Double.NaN}}));
+
+    }
+
+}
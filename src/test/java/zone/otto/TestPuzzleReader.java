@@ -0,0 +1,405 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The <code>TestPuzzleReader</code> class tests the functionality of the <code>PuzzleReader</code> class.
+ * </p>
+ */
+public class TestPuzzleReader {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    private static PuzzleReader reader(String text) throws IOException {
+
+        return new PuzzleReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), "test");
+
+    }
+
+    /**
+     * <p>
+     * Read a file which should hold the easy puzzle then Inkala's, in the given format.
+     * </p>
+     */
+    private static void assertReads(String file, PuzzleReader.Format format) throws IOException {
+
+        int[][] data = new int[9][9];
+
+        try (PuzzleReader reader = new PuzzleReader(Paths.get(testResourcePath + file))) {
+
+            Assert.assertEquals(format, reader.format());
+            Assert.assertTrue(reader.read(data));
+            Assert.assertArrayEquals(Sudoku.dataParse(testResourcePath + "TestEasy.dat"), data);
+            Assert.assertTrue(reader.read(data));
+            Assert.assertArrayEquals(TestLogicSolver.parseLine(TestLogicSolver.INKALA), data);
+            Assert.assertFalse(reader.read(data));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that lines of 81 characters, with ratings after them, are detected and read.
+     * </p>
+     */
+    @Test
+    public void testRead_Line() throws IOException {
+
+        assertReads("TestPuzzleReader.txt", PuzzleReader.Format.LINE);
+
+    }
+
+    /**
+     * <p>
+     * Test that lines of 81 digits, with Windows line endings, are detected as SDM and read.
+     * </p>
+     */
+    @Test
+    public void testRead_Sdm() throws IOException {
+
+        assertReads("TestPuzzleReader.sdm", PuzzleReader.Format.SDM);
+
+    }
+
+    /**
+     * <p>
+     * Test that pipe and dash grids are detected and read.
+     * </p>
+     */
+    @Test
+    public void testRead_Grid() throws IOException {
+
+        assertReads("TestPuzzleReader_Grid.txt", PuzzleReader.Format.GRID);
+
+    }
+
+    /**
+     * <p>
+     * Test that an SDK file is detected and read, skipping its metadata and its <code>[State]</code> section.
+     * </p>
+     */
+    @Test
+    public void testRead_Sdk() throws IOException {
+
+        int[][] data = new int[9][9];
+
+        try (PuzzleReader reader = new PuzzleReader(Paths.get(testResourcePath + "TestPuzzleReader.sdk"))) {
+
+            Assert.assertEquals(PuzzleReader.Format.SDK, reader.format());
+            Assert.assertTrue(reader.read(data));
+            Assert.assertArrayEquals(Sudoku.dataParse(testResourcePath + "TestEasy.dat"), data);
+            Assert.assertFalse(reader.read(data));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>Sudoku.dataParse()</code>'s own format is read as SDK.
+     * </p>
+     */
+    @Test
+    public void testRead_DataFile() throws IOException {
+
+        int[][] data = new int[9][9];
+
+        try (PuzzleReader reader = new PuzzleReader(Paths.get(testResourcePath + "TestEasy.dat"))) {
+
+            Assert.assertEquals(PuzzleReader.Format.SDK, reader.format());
+            Assert.assertTrue(reader.read(data));
+            Assert.assertArrayEquals(Sudoku.dataParse(testResourcePath + "TestEasy.dat"), data);
+            Assert.assertFalse(reader.read(data));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that many puzzles stream through, across buffer boundaries, without a final line terminator.
+     * </p>
+     */
+    @Test
+    public void testRead_Stream() throws IOException {
+
+        StringBuilder text = new StringBuilder();
+        int puzzles = 2 * PuzzleReader.BUFFER_BYTES / 82 + 1;
+
+        for (int i = 0; i < puzzles; i++) {
+
+            text.append(i > 0 ? "\n" : "").append(TestLogicSolver.INKALA);
+
+        }
+
+        int[][] data = new int[9][9];
+        int[][] expected = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int count = 0;
+
+        try (PuzzleReader reader = reader(text.toString())) {
+
+            while (reader.read(data)) {
+
+                Assert.assertArrayEquals(expected, data);
+                count++;
+
+            }
+
+        }
+
+        Assert.assertEquals(puzzles, count);
+
+    }
+
+    /**
+     * <p>
+     * Test that the offset is the end of each puzzle's last line, that a malformed puzzle is skipped past, and
+     * that a reader opened at an offset with the format known reads on from there.
+     * </p>
+     */
+    @Test
+    public void testOffset() throws IOException {
+
+        String first = "# Ratings follow.\n" + TestLogicSolver.INKALA + " 11.9\r\n";
+        String second = "not a puzzle\n";
+        String text = first + second + "\n" + TestLogicSolver.INKALA + "\n# The end.";
+        int[][] data = new int[9][9];
+
+        try (PuzzleReader reader = reader(text)) {
+
+            Assert.assertEquals(0, reader.offset());
+            Assert.assertTrue(reader.read(data));
+            Assert.assertEquals(first.length(), reader.offset());
+
+            try {
+
+                reader.read(data);
+                Assert.fail();
+
+            } catch (PuzzleReader.MalformedPuzzleException e) {
+
+                Assert.assertEquals(first.length() + second.length(), reader.offset());
+
+            }
+
+            Assert.assertTrue(reader.read(data));
+            Assert.assertArrayEquals(TestLogicSolver.parseLine(TestLogicSolver.INKALA), data);
+            Assert.assertFalse(reader.read(data));
+            Assert.assertEquals(text.length(), reader.offset());
+
+        }
+
+        byte[] bytes = Files.readAllBytes(Paths.get(testResourcePath + "TestPuzzleReader.sdk"));
+        long offset;
+
+        try (PuzzleReader reader = new PuzzleReader(new ByteArrayInputStream(bytes), "test")) {
+
+            Assert.assertTrue(reader.read(data));
+            offset = reader.offset();
+
+        }
+
+        // The rest of the file is a [State] section, which isn't a puzzle.
+        try (PuzzleReader reader = new PuzzleReader(new ByteArrayInputStream(bytes, (int) offset, bytes.length),
+                "test", PuzzleReader.Format.SDK)) {
+
+            Assert.assertFalse(reader.read(data));
+            Assert.assertEquals(bytes.length - offset, reader.offset());
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Read an input whose first puzzle is malformed, checking that it is reported once and that the puzzles
+     * after it are read as they are.
+     * </p>
+     */
+    private static void assertSkips(String text, int[][]... expected) throws IOException {
+
+        int[][] data = new int[9][9];
+
+        try (PuzzleReader reader = reader(text)) {
+
+            try {
+
+                reader.read(data);
+                Assert.fail();
+
+            } catch (PuzzleReader.MalformedPuzzleException e) {
+
+                // Expected.
+
+            }
+
+            for (int[][] puzzle : expected) {
+
+                Assert.assertTrue(reader.read(data));
+                Assert.assertArrayEquals(puzzle, data);
+
+            }
+
+            Assert.assertFalse(reader.read(data));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that the rest of a grid with a malformed row is skipped, with or without blank lines between
+     * puzzles.
+     * </p>
+     */
+    @Test
+    public void testRead_MalformedGrid() throws IOException {
+
+        String grid = new String(Files.readAllBytes(Paths.get(testResourcePath + "TestPuzzleReader_Grid.txt")),
+                StandardCharsets.US_ASCII);
+        String text = grid.replaceFirst("\\| 4 \\. \\.", "| 4 x .") + grid;
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+
+        assertSkips(text, inkala, easy, inkala);
+        assertSkips(text.replace("\n\n", "\n"), inkala, easy, inkala);
+
+        // A row too short, early on, is skipped past the separators between boxes.
+        assertSkips(grid.replaceFirst("\\| 6 \\. \\. ", "| 6 . ") + grid, inkala, easy, inkala);
+
+    }
+
+    /**
+     * <p>
+     * Test that the rest of an SDK puzzle with a malformed row is skipped, with or without headers, and
+     * that a puzzle cut short by the next header leaves the header to be read.
+     * </p>
+     */
+    @Test
+    public void testRead_MalformedSdk() throws IOException {
+
+        String sdk = new String(Files.readAllBytes(Paths.get(testResourcePath + "TestPuzzleReader.sdk")),
+                StandardCharsets.US_ASCII);
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        StringBuilder rows = new StringBuilder();
+
+        for (int r = 0; r < 9; r++) {
+
+            rows.append(Events.line(easy), r * 9, r * 9 + 9).append('\n');
+
+        }
+
+        assertSkips(sdk.replace("4..8.3..1", "4..x.3..1") + sdk, easy);
+        assertSkips(rows.toString().replace("4..8.3..1", "4..8x3..1") + rows, easy);
+        assertSkips(sdk.replace("4..8.3..1\n", "").replaceFirst("\\[State][^#]*", "") + sdk, easy);
+
+    }
+
+    /**
+     * <p>
+     * Test that an input with no puzzles is read as empty.
+     * </p>
+     */
+    @Test
+    public void testRead_Empty() throws IOException {
+
+        try (PuzzleReader reader = reader("# Nothing here.\n\n")) {
+
+            Assert.assertFalse(reader.read(new int[9][9]));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that an input whose leading bytes are not a recognisable line is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testDetect_Unrecognised() throws IOException {
+
+        char[] line = new char[PuzzleReader.DETECT_BYTES * 2];
+
+        Arrays.fill(line, '1');
+        line[0] = 'x';
+
+        reader(new String(line)).close();
+
+    }
+
+    /**
+     * <p>
+     * Test that a line with an invalid character is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testRead_InvalidCharacter() throws IOException {
+
+        try (PuzzleReader reader = reader(TestLogicSolver.INKALA.replace('4', 'x'))) {
+
+            reader.read(new int[9][9]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a line of too many cells is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testRead_LongLine() throws IOException {
+
+        try (PuzzleReader reader = reader(TestLogicSolver.INKALA + ".")) {
+
+            reader.read(new int[9][9]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a row of too few cells is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testRead_ShortRow() throws IOException {
+
+        try (PuzzleReader reader = reader("53..7....\n6..195..\n")) {
+
+            reader.read(new int[9][9]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle of too few rows is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testRead_Incomplete() throws IOException {
+
+        try (PuzzleReader reader = reader("| 5 3 . | . 7 . | . . . |\n| 6 . . | 1 9 5 | . . . |\n")) {
+
+            reader.read(new int[9][9]);
+
+        }
+
+    }
+
+}
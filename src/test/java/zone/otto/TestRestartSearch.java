@@ -0,0 +1,107 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * The <code>TestRestartSearch</code> class tests the functionality of the <code>RestartSearch</code> class.
+ * </p>
+ */
+public class TestRestartSearch {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test the start of the Luby sequence.
+     * </p>
+     */
+    @Test
+    public void testLuby() {
+
+        long[] expected = {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, 1};
+
+        for (int i = 0; i < expected.length; i++) {
+
+            Assert.assertEquals("Term " + (i + 1), expected[i], RestartSearch.luby(i + 1));
+
+        }
+
+        Assert.assertEquals(1L << 40, RestartSearch.luby((1L << 41) - 1));
+
+    }
+
+    /**
+     * <p>
+     * Test that every order finds the unique solution, even when restarting after very few nodes, and
+     * that a seed replays exactly.
+     * </p>
+     */
+    @Test
+    public void testSolve() {
+
+        Board board = new Board(TestLogicSolver.parseLine(TestLogicSolver.INKALA));
+        int[] expected = new int[81];
+        int[] actual = new int[81];
+
+        Assert.assertTrue(board.solution(expected));
+
+        for (Board.ValueOrder order : Board.ValueOrder.values()) {
+
+            RestartSearch search = new RestartSearch(order, 42, 4);
+
+            Assert.assertTrue(search.solve(board, actual, null, null));
+            Assert.assertArrayEquals(expected, actual);
+            Assert.assertTrue(search.runs() > 1);
+
+            int runs = search.runs();
+            long nodes = search.nodes();
+
+            Assert.assertTrue(search.solve(board, actual, null, null));
+            Assert.assertEquals(runs, search.runs());
+            Assert.assertEquals(nodes, search.nodes());
+
+        }
+
+        // Dead ends carried over between runs can only help.
+        RestartSearch search = new RestartSearch(Board.ValueOrder.RANDOM, 42, 4);
+
+        Assert.assertTrue(search.solve(board, actual, new NogoodTable(1 << 16), null));
+        Assert.assertArrayEquals(expected, actual);
+
+    }
+
+    /**
+     * <p>
+     * Test that a board with no solution is eventually proved to have none.
+     * </p>
+     */
+    @Test
+    public void testSolve_NoSolution() {
+
+        Board board = new Board(Sudoku.dataParse(testResourcePath + "TestEasy.dat"));
+
+        // (0, 2) must be 4, see TestBoard.
+        Assert.assertTrue(board.place(Board.cell(0, 2), 1));
+
+        RestartSearch search = new RestartSearch(Board.ValueOrder.RANDOM, 7, 1);
+
+        Assert.assertFalse(search.solve(board, null, null, null));
+        Assert.assertFalse(board.isStopped());
+
+    }
+
+    /**
+     * <p>
+     * Test that a silly restart unit is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestartSearch_InvalidUnit() {
+
+        new RestartSearch(Board.ValueOrder.RANDOM, 1, 0);
+
+    }
+
+}
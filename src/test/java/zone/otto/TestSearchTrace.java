@@ -0,0 +1,160 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>TestSearchTrace</code> class tests the functionality of the <code>SearchTrace</code> class.
+ * </p>
+ */
+public class TestSearchTrace {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that tracing a search records every branch and backtrack, without changing its outcome.
+     * </p>
+     */
+    @Test
+    public void testTrace() {
+
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[] expected = new int[81];
+        int[] actual = new int[81];
+        Board board = new Board(inkala);
+
+        Assert.assertTrue(board.solution(expected));
+
+        long backtracks = board.backtracks();
+        SearchTrace trace = SearchTrace.inMemory(1 << 20);
+
+        board.trace(trace);
+
+        Assert.assertTrue(board.solution(actual));
+        Assert.assertArrayEquals(expected, actual);
+        Assert.assertEquals(backtracks, board.backtracks());
+
+        // Every backtrack undoes a branch, and the 60 empty cells are filled by branches which stand.
+        Assert.assertEquals(2 * backtracks + 60, trace.count());
+
+        List<SearchTrace.Subtree> expensive = trace.expensive(5);
+
+        Assert.assertEquals(5, expensive.size());
+
+        for (int i = 0; i < expensive.size(); i++) {
+
+            SearchTrace.Subtree subtree = expensive.get(i);
+
+            Assert.assertTrue(subtree.failed);
+            Assert.assertTrue(subtree.nodes >= 1 && subtree.nodes <= backtracks);
+            Assert.assertTrue(i == 0 || subtree.nodes <= expensive.get(i - 1).nodes);
+
+        }
+
+        board.trace(null);
+        Assert.assertTrue(board.solution(actual));
+        Assert.assertEquals(2 * backtracks + 60, trace.count());
+
+        trace.clear();
+        Assert.assertEquals(0, trace.count());
+        Assert.assertTrue(trace.expensive(5).isEmpty());
+
+    }
+
+    /**
+     * <p>
+     * Test that a trace in a file can be reopened and analyzed after it is closed.
+     * </p>
+     */
+    @Test
+    public void testFile() throws IOException {
+
+        Path path = Files.createTempFile("trace", ".bin");
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        SearchTrace memory = SearchTrace.inMemory(1 << 12);
+        Board board = new Board(inkala);
+
+        try {
+
+            try (SearchTrace file = SearchTrace.create(path, 1 << 12)) {
+
+                board.trace(file);
+                Assert.assertTrue(board.solution(null));
+                board.trace(memory);
+                Assert.assertTrue(board.solution(null));
+
+            }
+
+            try (SearchTrace file = SearchTrace.open(path)) {
+
+                Assert.assertEquals(memory.count(), file.count());
+                Assert.assertEquals(memory.report(10), file.report(10));
+
+            }
+
+        } finally {
+
+            Files.delete(path);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a ring buffer which has wrapped keeps only the most recent events, and is still analyzed.
+     * </p>
+     */
+    @Test
+    public void testWrap() {
+
+        SearchTrace trace = SearchTrace.inMemory(64);
+        Board board = new Board(TestLogicSolver.parseLine(TestLogicSolver.INKALA));
+
+        board.trace(trace);
+        Assert.assertTrue(board.solution(null));
+        Assert.assertTrue(trace.count() > 64);
+
+        for (SearchTrace.Subtree subtree : trace.expensive(100)) {
+
+            Assert.assertTrue(subtree.nodes <= 64);
+            Assert.assertTrue(subtree.event >= trace.count() - 64);
+
+        }
+
+        Assert.assertTrue(trace.report(3).startsWith(trace.count() + " events, 64 kept"));
+
+    }
+
+    /**
+     * <p>
+     * Test that a capacity which is not a power of two is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+
+        SearchTrace.inMemory(1000);
+
+    }
+
+    /**
+     * <p>
+     * Test that a file which is not a trace is rejected.
+     * </p>
+     */
+    @Test(expected = IOException.class)
+    public void testOpenInvalid() throws IOException {
+
+        SearchTrace.open(Path.of(testResourcePath + "TestEasy.dat")).close();
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package zone.otto;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * The <code>TestSolutionCounter</code> class tests the functionality of the
+ * <code>SolutionCounter</code> class.
+ * </p>
+ */
+public class TestSolutionCounter {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    private static ExecutorService pool;
+
+    /**
+     * <p>
+     * Create the threads every count shares.
+     * </p>
+     */
+    @BeforeClass
+    public static void setUp() {
+
+        pool = Executors.newFixedThreadPool(4);
+
+    }
+
+    /**
+     * <p>
+     * Stop the shared threads.
+     * </p>
+     */
+    @AfterClass
+    public static void tearDown() {
+
+        pool.shutdown();
+
+    }
+
+    private static BigInteger count(int[][] data, int threads) {
+
+        return SolutionCounter.count(data, pool, threads);
+
+    }
+
+    /**
+     * <p>
+     * Take the first few rows of the known solution as a (very) under-constrained puzzle.
+     * </p>
+     */
+    private static int[][] firstRows(int rows) {
+
+        int[][] data = new int[9][9];
+
+        for (int r = 0; r < rows; r++) {
+
+            data[r] = TestBoard.EASY_SOLVED[r].clone();
+
+        }
+
+        return data;
+
+    }
+
+    /**
+     * <p>
+     * Test puzzles with one solution, none, and a full board.
+     * </p>
+     */
+    @Test
+    public void testCount_Small() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        Assert.assertEquals(BigInteger.ONE, count(data, 2));
+        Assert.assertEquals(BigInteger.ONE, count(TestBoard.EASY_SOLVED, 2));
+
+        data[0][2] = 1;
+        Assert.assertEquals(BigInteger.ZERO, count(data, 2));
+
+    }
+
+    /**
+     * <p>
+     * Test counts large enough to need memoisation against full enumeration, with one thread and with
+     * several.
+     * </p>
+     */
+    @Test
+    public void testCount_Sparse() {
+
+        for (int rows = 4; rows <= 6; rows++) {
+
+            int[][] data = firstRows(rows);
+            BigInteger expected = BigInteger.valueOf(SolutionSpliterator.solutions(data).parallel().count());
+
+            Assert.assertEquals(expected, count(data, 1));
+            Assert.assertEquals(expected, count(data, 4));
+
+        }
+
+        Assert.assertEquals(BigInteger.valueOf(636_960), count(firstRows(4), 3));
+
+    }
+
+    /**
+     * <p>
+     * Test puzzles with givens in every band (so that nothing can be canonicalised), and in columns
+     * rather than rows (so that the puzzle has to be turned).
+     * </p>
+     */
+    @Test
+    public void testCount_Givens() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestSudoku.dat");
+
+        Assert.assertEquals(BigInteger.valueOf(SolutionSpliterator.solutions(data).count()),
+                count(data, 2));
+
+        data = firstRows(4);
+        data[7][1] = TestBoard.EASY_SOLVED[7][1];
+        data[8][6] = TestBoard.EASY_SOLVED[8][6];
+        Assert.assertEquals(BigInteger.valueOf(SolutionSpliterator.solutions(data).count()),
+                count(data, 2));
+
+        Assert.assertEquals(BigInteger.valueOf(636_960),
+                count(MatrixHelper.matrixRotateQuarterCW(firstRows(4)), 2));
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle is turned to put its givens in the top band.
+     * </p>
+     */
+    @Test
+    public void testOrient() {
+
+        int[][] data = MatrixHelper.matrixRotateQuarterAC(firstRows(3));
+        int[][] oriented = SolutionCounter.orient(data);
+
+        for (int c = 0; c < 9; c++) {
+
+            Assert.assertNotEquals(0, oriented[0][c]);
+            Assert.assertNotEquals(0, oriented[2][c]);
+            Assert.assertEquals(0, oriented[3][c]);
+
+        }
+
+        Assert.assertSame(TestBoard.EASY_SOLVED, SolutionCounter.orient(TestBoard.EASY_SOLVED));
+
+    }
+
+    /**
+     * <p>
+     * Test that conflicting givens are rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCount_Conflict() {
+
+        int[][] data = firstRows(1);
+
+        data[1][0] = data[0][0];
+        count(data, 1);
+
+    }
+
+    /**
+     * <p>
+     * Test that a number of threads less than one is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCount_NoThreads() {
+
+        count(firstRows(4), 0);
+
+    }
+
+}
@@ -0,0 +1,167 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * The <code>TestSolutionSpliterator</code> class tests the functionality of the
+ * <code>SolutionSpliterator</code> class.
+ * </p>
+ */
+public class TestSolutionSpliterator {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Take the first few rows of the known solution as a (very) under-constrained puzzle.
+     * </p>
+     */
+    private static int[][] underConstrained(int rows) {
+
+        int[][] data = new int[9][9];
+
+        for (int r = 0; r < rows; r++) {
+
+            data[r] = TestBoard.EASY_SOLVED[r].clone();
+
+        }
+
+        return data;
+
+    }
+
+    /**
+     * <p>
+     * Test that a unique puzzle has exactly its one solution, and a full board itself.
+     * </p>
+     */
+    @Test
+    public void testSolutions_Unique() {
+
+        List<int[][]> solutions = SolutionSpliterator.solutions(Sudoku.dataParse(testResourcePath + "TestEasy.dat"))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, solutions.size());
+        Assert.assertArrayEquals(TestBoard.EASY_SOLVED, solutions.get(0));
+
+        Assert.assertEquals(1, SolutionSpliterator.solutions(TestBoard.EASY_SOLVED).count());
+
+        int[][] doomed = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        doomed[0][2] = 1;
+        Assert.assertEquals(0, SolutionSpliterator.solutions(doomed).count());
+
+    }
+
+    /**
+     * <p>
+     * Test that every solution is valid, distinct and (counting sequentially and in parallel) that none
+     * is missed or repeated.
+     * </p>
+     */
+    @Test
+    public void testSolutions_All() {
+
+        int[][] data = underConstrained(6);
+        Set<String> sequential = new HashSet<>();
+
+        SolutionSpliterator.solutions(data).forEach(solution -> {
+
+            Assert.assertTrue(GridValidator.isValid(solution));
+            Assert.assertTrue(sequential.add(Sudoku.dataRender(solution)));
+
+            for (int r = 0; r < 6; r++) {
+
+                Assert.assertArrayEquals(TestBoard.EASY_SOLVED[r], solution[r]);
+
+            }
+
+        });
+
+        Assert.assertTrue(sequential.size() > 1);
+
+        Set<String> parallel = SolutionSpliterator.solutions(data).parallel()
+                .map(Sudoku::dataRender)
+                .collect(Collectors.toSet());
+
+        Assert.assertEquals(sequential, parallel);
+        Assert.assertEquals(sequential.size(), SolutionSpliterator.solutions(data).parallel().count());
+
+    }
+
+    /**
+     * <p>
+     * Test that solutions are generated lazily: a limited stream over a puzzle with an astronomical
+     * number of solutions finishes.
+     * </p>
+     */
+    @Test
+    public void testSolutions_Lazy() {
+
+        List<int[][]> some = SolutionSpliterator.solutions(new int[9][9]).parallel()
+                .limit(1_000)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1_000, some.size());
+        Assert.assertEquals(1_000, some.stream().map(Sudoku::dataRender).distinct().count());
+
+        for (int[][] solution : some) {
+
+            Assert.assertTrue(GridValidator.isValid(solution));
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that splits, before and part way through a search, partition the solutions.
+     * </p>
+     */
+    @Test
+    public void testTrySplit() {
+
+        Set<String> seen = new HashSet<>();
+        Deque<Spliterator<int[][]>> pending = new ArrayDeque<>();
+        int parts = 0;
+
+        pending.push(new SolutionSpliterator(new Board(underConstrained(5))));
+
+        while (!pending.isEmpty()) {
+
+            Spliterator<int[][]> spliterator = pending.pop();
+            Spliterator<int[][]> split;
+
+            parts++;
+
+            while ((split = spliterator.trySplit()) != null) {
+
+                pending.push(split);
+
+            }
+
+            // Take one solution, so that the remainder is split from part way down the search.
+            if (spliterator.tryAdvance(solution -> Assert.assertTrue(seen.add(Sudoku.dataRender(solution))))) {
+
+                pending.push(spliterator);
+
+            }
+
+        }
+
+        Assert.assertEquals(SolutionSpliterator.solutions(underConstrained(5)).count(), seen.size());
+        Assert.assertTrue(parts > seen.size());
+
+    }
+
+}
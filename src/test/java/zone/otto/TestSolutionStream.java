@@ -0,0 +1,327 @@
+package zone.otto;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The <code>TestSolutionStream</code> class tests the functionality of the <code>SolutionStream</code> class.
+ * </p>
+ */
+public class TestSolutionStream {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    private ExecutorService executor;
+
+    /**
+     * <p>
+     * An in-memory source which hands out puzzles only as they are requested, and keeps track of how
+     * many have been requested but not yet delivered.
+     * </p>
+     */
+    private static class ListPublisher implements Flow.Publisher<int[][]> {
+
+        private final List<int[][]> puzzles;
+        private final AtomicLong maxOutstanding = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        ListPublisher(List<int[][]> puzzles) {
+
+            this.puzzles = puzzles;
+
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super int[][]> subscriber) {
+
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                private int next;
+                private long outstanding;
+
+                @Override
+                public synchronized void request(long n) {
+
+                    outstanding += n;
+                    maxOutstanding.accumulateAndGet(outstanding, Math::max);
+
+                    while (outstanding > 0 && next < puzzles.size() && !cancelled.get()) {
+
+                        outstanding--;
+                        subscriber.onNext(puzzles.get(next++));
+
+                    }
+
+                    if (next == puzzles.size() && !cancelled.get()) {
+
+                        next++;
+                        subscriber.onComplete();
+
+                    }
+
+                }
+
+                @Override
+                public void cancel() {
+
+                    cancelled.set(true);
+
+                }
+
+            });
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * A subscriber which queues every signal for the test to inspect.
+     * </p>
+     */
+    private static class QueueSubscriber implements Flow.Subscriber<SolutionStream.Result> {
+
+        private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+
+            this.subscription = subscription;
+
+        }
+
+        @Override
+        public void onNext(SolutionStream.Result item) {
+
+            signals.add(item);
+
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+
+            signals.add(throwable);
+
+        }
+
+        @Override
+        public void onComplete() {
+
+            signals.add("complete");
+
+        }
+
+        Object next() throws InterruptedException {
+
+            return signals.poll(10, TimeUnit.SECONDS);
+
+        }
+
+    }
+
+    private static List<int[][]> puzzles(int count) {
+
+        List<int[][]> puzzles = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+
+            puzzles.add(i % 2 == 0
+                    ? Sudoku.dataParse(testResourcePath + "TestEasy.dat")
+                    : TestLogicSolver.parseLine(TestLogicSolver.INKALA));
+
+        }
+
+        return puzzles;
+
+    }
+
+    /**
+     * <p>
+     * Set up a pool to solve on.
+     * </p>
+     */
+    @Before
+    public void setUp() {
+
+        executor = Executors.newFixedThreadPool(4);
+
+    }
+
+    /**
+     * <p>
+     * Shut the pool down.
+     * </p>
+     */
+    @After
+    public void tearDown() {
+
+        executor.shutdownNow();
+
+    }
+
+    /**
+     * <p>
+     * Test that every puzzle is solved exactly once, and that no more than <code>concurrency</code> are
+     * ever requested from the source ahead of the results, and that each solve's nodes are recorded.
+     * </p>
+     */
+    @Test
+    public void testSolve() throws InterruptedException {
+
+        ListPublisher source = new ListPublisher(puzzles(50));
+        QueueSubscriber subscriber = new QueueSubscriber();
+        List<Long> indices = new ArrayList<>();
+        long nodes = Metrics.global().nodes().count();
+
+        SolutionStream.solve(source, executor, 3).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        Object signal;
+
+        while ((signal = subscriber.next()) instanceof SolutionStream.Result) {
+
+            SolutionStream.Result result = (SolutionStream.Result) signal;
+
+            Assert.assertNotNull(result.solution());
+            Assert.assertTrue(GridValidator.isValid(result.solution()));
+
+            if (result.index() % 2 == 0) {
+
+                Assert.assertArrayEquals(TestBoard.EASY_SOLVED, result.solution());
+
+            }
+
+            indices.add(result.index());
+
+        }
+
+        Assert.assertEquals("complete", signal);
+        Collections.sort(indices);
+
+        for (int i = 0; i < 50; i++) {
+
+            Assert.assertEquals(i, (long) indices.get(i));
+
+        }
+
+        Assert.assertTrue(source.maxOutstanding.get() <= 3);
+
+        // Every solve's node count is recorded.
+        Assert.assertTrue(Metrics.global().nodes().count() - nodes >= 50);
+
+    }
+
+    /**
+     * <p>
+     * Test that nothing is requested from the source beyond the subscriber's demand.
+     * </p>
+     */
+    @Test
+    public void testSolve_Backpressure() throws InterruptedException {
+
+        ListPublisher source = new ListPublisher(puzzles(10));
+        QueueSubscriber subscriber = new QueueSubscriber();
+
+        SolutionStream.solve(source, executor, 8).subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        Assert.assertTrue(subscriber.next() instanceof SolutionStream.Result);
+        Assert.assertTrue(subscriber.next() instanceof SolutionStream.Result);
+        Assert.assertNull(subscriber.signals.poll(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, source.maxOutstanding.get());
+
+        subscriber.subscription.request(8);
+
+        for (int i = 0; i < 8; i++) {
+
+            Assert.assertTrue(subscriber.next() instanceof SolutionStream.Result);
+
+        }
+
+        Assert.assertEquals("complete", subscriber.next());
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle with no solution produces a result without one, rather than ending the stream.
+     * </p>
+     */
+    @Test
+    public void testSolve_NoSolution() throws InterruptedException {
+
+        int[][] conflicting = new int[9][9];
+
+        conflicting[0][0] = 5;
+        conflicting[0][8] = 5;
+
+        QueueSubscriber subscriber = new QueueSubscriber();
+
+        SolutionStream.solve(new ListPublisher(Collections.singletonList(conflicting)), executor, 1)
+                .subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        SolutionStream.Result result = (SolutionStream.Result) subscriber.next();
+
+        Assert.assertNull(result.solution());
+        Assert.assertSame(conflicting, result.puzzle());
+        Assert.assertEquals("complete", subscriber.next());
+
+    }
+
+    /**
+     * <p>
+     * Test that cancelling the subscription cancels the source.
+     * </p>
+     */
+    @Test
+    public void testSolve_Cancel() throws InterruptedException {
+
+        ListPublisher source = new ListPublisher(puzzles(10));
+        QueueSubscriber subscriber = new QueueSubscriber();
+
+        SolutionStream.solve(source, executor, 2).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        Assert.assertTrue(subscriber.next() instanceof SolutionStream.Result);
+
+        subscriber.subscription.cancel();
+        Assert.assertTrue(source.cancelled.get());
+
+    }
+
+    /**
+     * <p>
+     * Test that an invalid request is signalled as an error.
+     * </p>
+     */
+    @Test
+    public void testSolve_InvalidRequest() throws InterruptedException {
+
+        ListPublisher source = new ListPublisher(puzzles(10));
+        QueueSubscriber subscriber = new QueueSubscriber();
+
+        SolutionStream.solve(source, executor, 2).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        Assert.assertTrue(subscriber.next() instanceof IllegalArgumentException);
+        Assert.assertTrue(source.cancelled.get());
+
+    }
+
+}
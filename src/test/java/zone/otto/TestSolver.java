@@ -0,0 +1,259 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>TestSolver</code> class tests the functionality of the <code>Solver</code> class.
+ * </p>
+ */
+public class TestSolver {
+
+    private static final String testResourcePath = "src/test/resources/";
+
+    /**
+     * <p>
+     * Test that one solver solves a sequence of puzzles, without changing them.
+     * </p>
+     */
+    @Test
+    public void testSolve() {
+
+        Solver solver = new Solver();
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[][] inkalaCopy = MatrixHelper.matrixDeepCopy(inkala);
+
+        Solver.Result first = solver.solve(easy);
+        Solver.Result second = solver.solve(inkala);
+        Solver.Result third = solver.solve(easy);
+
+        Assert.assertEquals(Solver.Status.SOLVED, first.status());
+        Assert.assertTrue(first.isSolved());
+        Assert.assertArrayEquals(TestBoard.EASY_SOLVED, first.toArray());
+        Assert.assertEquals(TestBoard.EASY_SOLVED[4][7], first.get(4, 7));
+        Assert.assertArrayEquals(TestBoard.EASY_SOLVED, third.toArray());
+        Assert.assertEquals(first.nodes(), third.nodes());
+
+        Assert.assertTrue(second.isSolved());
+        Assert.assertTrue(GridValidator.isValid(second.toArray()));
+        Assert.assertTrue(second.nodes() > 0);
+        Assert.assertArrayEquals(inkalaCopy, inkala);
+        Assert.assertEquals(Sudoku.dataRender(second.toArray()), second.toString());
+
+        // The results are unaffected by later solves, or by changes to their arrays.
+        first.toArray()[0][0] = 0;
+        Assert.assertArrayEquals(TestBoard.EASY_SOLVED, first.toArray());
+
+    }
+
+    /**
+     * <p>
+     * Test the outcomes other than a solution.
+     * </p>
+     */
+    @Test
+    public void testSolve_Unsolved() {
+
+        Solver solver = new Solver();
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        data[0][2] = 1;
+
+        Solver.Result none = solver.solve(data);
+
+        Assert.assertEquals(Solver.Status.NO_SOLUTION, none.status());
+        Assert.assertFalse(none.isSolved());
+        Assert.assertEquals(0, none.get(0, 0));
+        Assert.assertEquals("NO_SOLUTION", none.toString());
+
+        data[0][0] = data[0][1];
+
+        Solver.Result conflict = solver.solve(data);
+
+        Assert.assertEquals(Solver.Status.CONFLICTING_GIVENS, conflict.status());
+        Assert.assertEquals(0, conflict.nodes());
+        Assert.assertArrayEquals(new int[9][9], conflict.toArray());
+
+        // And the solver is fine afterwards.
+        Assert.assertTrue(solver.solve(Sudoku.dataParse(testResourcePath + "TestEasy.dat")).isSolved());
+
+    }
+
+    /**
+     * <p>
+     * Test solving into a buffer, including the puzzle's own.
+     * </p>
+     */
+    @Test
+    public void testSolve_Buffer() {
+
+        int[] cells = new int[81];
+        int[] out = new int[81];
+        int[][] easy = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            cells[cell] = easy[cell / 9][cell % 9];
+
+        }
+
+        Assert.assertEquals(Solver.Status.SOLVED, Solver.forCurrentThread().solve(cells, out));
+        Assert.assertEquals(Solver.Status.SOLVED, Solver.forCurrentThread().solve(cells, cells));
+        Assert.assertArrayEquals(out, cells);
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            Assert.assertEquals(TestBoard.EASY_SOLVED[cell / 9][cell % 9], out[cell]);
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test solving with a time limit which is not reached, or is reached before the search starts.
+     * </p>
+     */
+    @Test
+    public void testSolve_Deadline() {
+
+        Solver solver = new Solver();
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        int[][] solution = solver.solve(inkala).toArray();
+
+        Solver.Result solved = solver.solve(inkala, 10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Solver.Status.SOLVED, solved.status());
+        Assert.assertArrayEquals(solution, solved.toArray());
+        Assert.assertEquals(0, solved.candidates(0, 1));
+
+        Solver.Result expired = solver.solve(inkala, 0, TimeUnit.NANOSECONDS);
+
+        Assert.assertEquals(Solver.Status.DEADLINE_EXCEEDED, expired.status());
+        Assert.assertFalse(expired.isSolved());
+        Assert.assertArrayEquals(inkala, expired.toArray());
+        Assert.assertTrue(expired.toString().startsWith("DEADLINE_EXCEEDED\n"));
+
+        for (int r = 0; r < 9; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                int mask = expired.candidates(r, c);
+
+                Assert.assertEquals(inkala[r][c] == 0, mask != 0);
+                Assert.assertTrue(inkala[r][c] != 0 || (mask & 1 << solution[r][c]) != 0);
+
+            }
+
+        }
+
+        // A puzzle without a solution is still reported as such, if that is proved in time.
+        int[][] none = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+
+        none[0][2] = 1;
+
+        Assert.assertEquals(Solver.Status.NO_SOLUTION, solver.solve(none, 10, TimeUnit.SECONDS).status());
+
+    }
+
+    /**
+     * <p>
+     * Test that a time limit reached part way through the search returns a consistent partial assignment
+     * extending the givens, with the candidates of its empty cells.
+     * </p>
+     */
+    @Test
+    public void testSolve_Partial() {
+
+        Solver solver = new Solver();
+        int[][] inkala = TestLogicSolver.parseLine(TestLogicSolver.INKALA);
+        Solver.Result result = solver.solve(inkala, 100, TimeUnit.MICROSECONDS);
+
+        if (result.isSolved()) {
+
+            // Too fast to catch part way, which is fine too.
+            return;
+
+        }
+
+        Assert.assertEquals(Solver.Status.DEADLINE_EXCEEDED, result.status());
+
+        int[][] partial = result.toArray();
+        Board board = new Board(partial);
+
+        for (int r = 0; r < 9; r++) {
+
+            for (int c = 0; c < 9; c++) {
+
+                Assert.assertTrue(inkala[r][c] == 0 || inkala[r][c] == partial[r][c]);
+                Assert.assertEquals(partial[r][c] == 0 ? board.candidates(Board.cell(r, c)) : 0, result.candidates(r, c));
+
+            }
+
+        }
+
+        Assert.assertTrue(result.nodes() > 0);
+
+    }
+
+    /**
+     * <p>
+     * Test that each thread gets a solver of its own, and keeps it.
+     * </p>
+     */
+    @Test
+    public void testForCurrentThread() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+
+            Solver mine = Solver.forCurrentThread();
+            Future<Solver> theirs = pool.submit(Solver::forCurrentThread);
+
+            Assert.assertSame(mine, Solver.forCurrentThread());
+            Assert.assertNotSame(mine, theirs.get());
+
+        } finally {
+
+            pool.shutdown();
+
+        }
+
+    }
+
+    /**
+     * <p>
+     * Test that a puzzle of the wrong shape is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSolve_Shape() {
+
+        new Solver().solve(new int[9][8]);
+
+    }
+
+    /**
+     * <p>
+     * Test that a digit out of range is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSolve_Digit() {
+
+        int[] cells = new int[81];
+
+        cells[40] = 10;
+        new Solver().solve(cells);
+
+    }
+
+}
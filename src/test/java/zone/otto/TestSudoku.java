@@ -119,6 +119,51 @@ public class TestSudoku {
 
     }
 
+    /**
+     * <p>
+     * Tests that <code>Sudoku.dataSolve()</code> counts its nodes and backtracks.
+     * </p>
+     */
+    @Test
+    public void testDataSolve_Counts() {
+
+        int[][] data = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        int empty = 0;
+
+        for (int[] row : data) {
+
+            for (int v : row) {
+
+                empty += v == 0 ? 1 : 0;
+
+            }
+
+        }
+
+        long[] counts = new long[2];
+
+        Assert.assertTrue(Sudoku.dataSolve(0, 0, data, counts));
+        Assert.assertTrue(counts[0] >= empty);
+        Assert.assertTrue(counts[1] >= 0);
+
+        // A solved grid has nothing left to search.
+        long[] none = new long[2];
+
+        Assert.assertTrue(Sudoku.dataSolve(0, 0, data, none));
+        Assert.assertArrayEquals(new long[2], none);
+
+        // An unsolvable puzzle takes back every value it tries.
+        int[][] unsolvable = Sudoku.dataParse(testResourcePath + "TestEasy.dat");
+        long[] failed = new long[2];
+
+        unsolvable[0][2] = 1;
+
+        Assert.assertFalse(Sudoku.dataSolve(0, 0, unsolvable, failed));
+        Assert.assertTrue(failed[0] > 0);
+        Assert.assertTrue(failed[1] > 0);
+
+    }
+
     /**
      * <p>
      * Tests that <code>Sudoku.getValidSet()</code> eliminates row, column and
@@ -244,6 +289,8 @@ public class TestSudoku {
                 "\n  java Sudoku <filename>\n" +
                 "\n    OR\n" +
                 "\n  cat <filename> | java Sudoku\n" +
+                "\n    OR\n" +
+                "\n  java Sudoku --batch <input> <output>\n" +
                 "\n";
 
         String actual = Sudoku.renderUsage();
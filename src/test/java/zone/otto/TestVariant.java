@@ -0,0 +1,243 @@
+package zone.otto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>
+ * The <code>TestVariant</code> class tests the functionality of the <code>Variant</code> class, and of
+ * <code>Board</code> running variants.
+ * </p>
+ */
+public class TestVariant {
+
+    /**
+     * <p>
+     * Check a completed grid against every unit (and cage sum) of a variant.
+     * </p>
+     */
+    private static void assertSolves(Variant variant, int[] solution) {
+
+        for (int u = 0; u < variant.unitCount(); u++) {
+
+            int mask = 0;
+            int sum = 0;
+
+            for (int i = variant.unitStart[u]; i < variant.unitStart[u + 1]; i++) {
+
+                int v = solution[variant.unitCells[i]];
+
+                Assert.assertTrue("Unit " + u, v >= 1 && v <= 9 && (mask & (1 << v)) == 0);
+                mask |= 1 << v;
+                sum += v;
+
+            }
+
+            if (variant.unitSum[u] > 0) {
+
+                Assert.assertEquals("Cage " + u, variant.unitSum[u], sum);
+
+            }
+
+        }
+
+    }
+
+    private static Set<Integer> peers(Variant variant, int cell) {
+
+        Set<Integer> result = new HashSet<>();
+
+        for (int i = variant.peerStart[cell]; i < variant.peerStart[cell + 1]; i++) {
+
+            Assert.assertTrue(result.add(variant.peers[i]));
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * <p>
+     * Test that the classic variant compiles to the same units and peers as <code>Board</code>'s
+     * fixed tables, and that the extra units of the other variants show up as extra peers.
+     * </p>
+     */
+    @Test
+    public void testTables() {
+
+        Assert.assertEquals(27, Variant.CLASSIC.unitCount());
+        Assert.assertFalse(Variant.CLASSIC.hasExtras());
+        Assert.assertFalse(Variant.CLASSIC.hasCages());
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            Set<Integer> expected = new HashSet<>();
+
+            for (int i = 0; i < 20; i++) {
+
+                expected.add(Board.PEERS[cell * 20 + i]);
+
+            }
+
+            Assert.assertEquals(expected, peers(Variant.CLASSIC, cell));
+
+            Set<Integer> houses = new HashSet<>();
+
+            for (int i = 0; i < 3; i++) {
+
+                houses.add(Variant.CLASSIC.cellHouses[cell * 3 + i]);
+
+            }
+
+            Assert.assertEquals(3, houses.size());
+
+        }
+
+        // The centre is on both diagonals, which add 16 cells less the 4 already in its box.
+        Assert.assertEquals(32, peers(Variant.X_SUDOKU, Board.cell(4, 4)).size());
+        Assert.assertEquals(20, peers(Variant.X_SUDOKU, Board.cell(4, 3)).size());
+        Assert.assertTrue(Variant.X_SUDOKU.hasExtras());
+
+        // Both knight's moves from a corner stay in its box, but six of the eight from (2, 2) leave it.
+        Assert.assertEquals(20, peers(Variant.ANTI_KNIGHT, Board.cell(0, 0)).size());
+        Assert.assertEquals(26, peers(Variant.ANTI_KNIGHT, Board.cell(2, 2)).size());
+        Assert.assertTrue(peers(Variant.ANTI_KNIGHT, Board.cell(4, 4)).contains(Board.cell(6, 5)));
+
+    }
+
+    /**
+     * <p>
+     * Test the digits that can complete a cage.
+     * </p>
+     */
+    @Test
+    public void testCageCandidates() {
+
+        Assert.assertEquals(0x6, Variant.cageCandidates(0, 2, 3));
+        Assert.assertEquals(0x300, Variant.cageCandidates(0, 2, 17));
+        Assert.assertEquals(0x3FE, Variant.cageCandidates(0, 9, 45));
+        Assert.assertEquals(0x2, Variant.cageCandidates(0, 1, 1));
+
+        // 10 in two cells, without a 5 or a 9: {2, 8}, {3, 7} or {4, 6}.
+        Assert.assertEquals(0x1DC, Variant.cageCandidates((1 << 5) | (1 << 9), 2, 10));
+
+        Assert.assertEquals(0, Variant.cageCandidates(0, 2, 18));
+        Assert.assertEquals(0, Variant.cageCandidates(0, 1, 0));
+        Assert.assertEquals(0, Variant.cageCandidates(0, 1, -1));
+
+    }
+
+    /**
+     * <p>
+     * Test that <code>Board</code> solves X-Sudoku, anti-knight and jigsaw variants from empty.
+     * </p>
+     */
+    @Test
+    public void testBoard_Variants() {
+
+        // Broken diagonals (a valid, if not very jigsaw-like, partition of the grid into nine regions).
+        int[] regions = new int[81];
+
+        for (int cell = 0; cell < 81; cell++) {
+
+            regions[cell] = (Board.ROW[cell] + Board.COL[cell]) % 9;
+
+        }
+
+        for (Variant variant : new Variant[]{Variant.CLASSIC, Variant.X_SUDOKU, Variant.ANTI_KNIGHT, Variant.jigsaw(regions)}) {
+
+            int[] solution = new int[81];
+
+            Assert.assertTrue(new Board(variant).solution(solution));
+            assertSolves(variant, solution);
+
+        }
+
+        // The anti-knight constraint is enforced on moves.
+        Board board = new Board(Variant.ANTI_KNIGHT);
+
+        Assert.assertTrue(board.place(Board.cell(0, 0), 5));
+        Assert.assertFalse(board.place(Board.cell(1, 2), 5));
+        Assert.assertTrue(board.place(Board.cell(1, 2), 6));
+
+    }
+
+    /**
+     * <p>
+     * Test a Killer puzzle with no givens at all: cages of three cells along each row, with the sums of
+     * a known solution.
+     * </p>
+     */
+    @Test
+    public void testBoard_Killer() {
+
+        Variant.Builder builder = new Variant.Builder().rows().columns().boxes();
+
+        for (int cell = 0; cell < 81; cell += 3) {
+
+            int[] row = TestBoard.EASY_SOLVED[Board.ROW[cell]];
+            int c = Board.COL[cell];
+
+            builder.cage(row[c] + row[c + 1] + row[c + 2], cell, cell + 1, cell + 2);
+
+        }
+
+        Variant killer = builder.build();
+        int[] solution = new int[81];
+
+        Assert.assertTrue(killer.hasCages());
+        Assert.assertTrue(new Board(killer).solution(solution));
+        assertSolves(killer, solution);
+
+        // The first cage is 5 + 3 + 4 = 12, so once 9 and 1 are in, only 2 can finish it.
+        Board board = new Board(killer);
+
+        Assert.assertTrue(board.place(0, 9));
+        Assert.assertTrue(board.place(1, 1));
+        Assert.assertEquals(1 << 2, board.candidates(2));
+        Assert.assertFalse(board.place(2, 3));
+        Assert.assertTrue(board.place(2, 2));
+
+    }
+
+    /**
+     * <p>
+     * Test that a repeated cell is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_RepeatedCell() {
+
+        new Variant.Builder().unit(0, 1, 1);
+
+    }
+
+    /**
+     * <p>
+     * Test that an impossible cage is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_ImpossibleCage() {
+
+        new Variant.Builder().cage(2, 0, 1);
+
+    }
+
+    /**
+     * <p>
+     * Test that regions which are not nine cells each are rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_UnevenRegions() {
+
+        Variant.jigsaw(new int[81]);
+
+    }
+
+}